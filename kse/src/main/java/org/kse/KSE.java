@@ -41,6 +41,7 @@ import org.kse.crypto.csr.pkcs12.Pkcs12Util;
 import org.kse.crypto.x509.KseX500NameStyle;
 import org.kse.gui.CreateApplicationGui;
 import org.kse.gui.CurrentDirectory;
+import org.kse.gui.KeyStoreTableModel;
 import org.kse.gui.KseRestart;
 import org.kse.gui.error.DError;
 import org.kse.gui.preferences.PreferencesManager;
@@ -120,6 +121,7 @@ public class KSE {
 
             Pkcs12Util.setEncryptionStrength(preferences.getPkcs12EncryptionSetting());
             RNG.setType(preferences.getRngTypeSetting());
+            KeyStoreTableModel.setThreads(preferences.getTableLoadingThreads());
 
             setProperties(preferences.getProperties());
 
@@ -46,11 +46,13 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import org.bouncycastle.asn1.ASN1Encodable;
@@ -58,6 +60,7 @@ import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DLSequence;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.kse.crypto.csr.CsrType;
 import org.kse.crypto.csr.pkcs10.Pkcs10Util;
 import org.kse.crypto.csr.spkac.Spkac;
@@ -69,8 +72,11 @@ import org.kse.crypto.privatekey.OpenSslPvkUtil;
 import org.kse.crypto.privatekey.Pkcs8Util;
 import org.kse.crypto.publickey.OpenSslPubUtil;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlHeader;
 
 import com.nimbusds.jwt.JWTParser;
+import org.kse.utilities.io.SniffedFile;
+import org.kse.utilities.pem.PemInfo;
 import org.kse.utilities.pem.PemUtil;
 
 /**
@@ -85,6 +91,37 @@ public class CryptoFileUtil {
     private static final int ZIP_MAGIC_NUMBER3 = 0x504B0506;
     private static final int ZIP_MAGIC_NUMBER4 = 0x504B0708;
 
+    private static final byte DER_SEQUENCE_TAG = 0x30;
+    private static final int DER_INTEGER_TAG = 0x02;
+    private static final int DER_BIT_STRING_TAG = 0x03;
+    private static final int DER_OCTET_STRING_TAG = 0x04;
+    private static final int DER_OID_TAG = 0x06;
+    private static final int DER_UTC_TIME_TAG = 0x17;
+    private static final int DER_GENERALIZED_TIME_TAG = 0x18;
+
+    // DER encodings of the OIDs 1.2.840.113549.1.7.1 (data) and 1.2.840.113549.1.7.2 (signedData)
+    private static final byte[] PKCS7_DATA_OID = {
+            0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x07, 0x01 };
+    private static final byte[] PKCS7_SIGNED_DATA_OID = {
+            0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x07, 0x02 };
+
+    private static final int TEXT_SNIFF_LENGTH = 1024;
+
+    private static final String PKCS8_UNENC_PVK_PEM_TYPE = "PRIVATE KEY";
+    private static final String PKCS8_ENC_PVK_PEM_TYPE = "ENCRYPTED PRIVATE KEY";
+    private static final String OPENSSL_RSA_PVK_PEM_TYPE = "RSA PRIVATE KEY";
+    private static final String OPENSSL_DSA_PVK_PEM_TYPE = "DSA PRIVATE KEY";
+    private static final String OPENSSL_EC_PVK_PEM_TYPE = "EC PRIVATE KEY";
+    private static final String OPENSSL_PUB_PEM_TYPE = "PUBLIC KEY";
+    private static final String CERT_PEM_TYPE = "CERTIFICATE";
+    private static final String X509_CERT_PEM_TYPE = "X509 CERTIFICATE";
+    private static final String TRUSTED_CERT_PEM_TYPE = "TRUSTED CERTIFICATE";
+    private static final String PKCS7_PEM_TYPE = "PKCS7";
+    private static final String CRL_PEM_TYPE = "X509 CRL";
+    private static final String CSR_PEM_TYPE = "CERTIFICATE REQUEST";
+    private static final String NEW_CSR_PEM_TYPE = "NEW CERTIFICATE REQUEST";
+    private static final String SPKAC_PROPERTY = "SPKAC";
+
     private CryptoFileUtil() {
     }
 
@@ -98,7 +135,18 @@ public class CryptoFileUtil {
      * @throws NoSuchFileException If the file does not exist.
      */
     public static CryptoFileType detectFileType(File file) throws IOException {
-        return detectFileType(Files.readAllBytes(file.toPath()));
+        try (SniffedFile sniffedFile = SniffedFile.open(file)) {
+            // KeyStores with a magic number can be recognised without reading the whole file
+            if (hasKeyStoreMagicNumber(sniffedFile.getHead())) {
+                KeyStoreType keyStoreType = detectKeyStoreType(sniffedFile);
+
+                if (keyStoreType != null) {
+                    return keyStoreType.getCryptoFileType();
+                }
+            }
+
+            return detectFileType(sniffedFile.readAll());
+        }
     }
 
     /** Attempts to decode Base64 encoded file and for PEM files, remove excessive indentations from each line
@@ -143,6 +191,382 @@ public class CryptoFileUtil {
             // was not valid b64
         }
 
+        CryptoFileType fileType = classifyFileType(data);
+
+        if (fileType != null) {
+            return fileType;
+        }
+
+        return probeFileType(data);
+    }
+
+    /**
+     * Classify the data by looking at the PEM type, the outer ASN.1 structure
+     * or the magic number only once. At most one parser is then used to
+     * confirm the result.
+     *
+     * @param data Cryptographic data, already decoded if it was Base64
+     * @return Type, UNKNOWN if the data cannot be of any supported type or
+     *         null if the data has to be probed with all parsers
+     * @throws IOException If an I/O problem occurred
+     */
+    private static CryptoFileType classifyFileType(byte[] data) throws IOException {
+
+        if (data.length < 4) {
+            return null;
+        }
+
+        if (isJarFile(data)) {
+            return JAR;
+        }
+
+        EncryptionType msPvkEncType = MsPvkUtil.getEncryptionType(data);
+
+        if (msPvkEncType != null) {
+            return msPvkEncType == ENCRYPTED ? ENC_MS_PVK : UNENC_MS_PVK;
+        }
+
+        if (PemUtil.isPemFormat(data)) {
+            return classifyPem(data);
+        }
+
+        if (data[0] == DER_SEQUENCE_TAG) {
+            return classifyDer(data);
+        }
+
+        KeyStoreType keyStoreType = detectKeyStoreType(data);
+
+        if (keyStoreType != null) {
+            return keyStoreType.getCryptoFileType();
+        }
+
+        // None of the text based formats contains control characters
+        if (isBinary(data)) {
+            return UNKNOWN;
+        }
+
+        if (isJwtLike(data) && isJwt(data)) {
+            return JSON_WEB_TOKEN;
+        }
+
+        if (containsSpkacProperty(data) && isSpkac(data)) {
+            return CsrType.SPKAC.getCryptoFileType();
+        }
+
+        // Other text may still be Base64 encoded certificates with line breaks
+        return null;
+    }
+
+    private static CryptoFileType classifyPem(byte[] data) throws IOException {
+        PemInfo pemInfo = PemUtil.decode(data);
+
+        if (pemInfo == null) {
+            return null;
+        }
+
+        switch (pemInfo.getType()) {
+        case PKCS8_UNENC_PVK_PEM_TYPE:
+            return UNENC_PKCS8_PVK;
+        case PKCS8_ENC_PVK_PEM_TYPE:
+            return ENC_PKCS8_PVK;
+        case OPENSSL_RSA_PVK_PEM_TYPE:
+        case OPENSSL_DSA_PVK_PEM_TYPE:
+        case OPENSSL_EC_PVK_PEM_TYPE:
+            return toOpenSslPvkType(OpenSslPvkUtil.getEncryptionType(data));
+        case OPENSSL_PUB_PEM_TYPE:
+            return isOpenSslPublicKey(data) ? OPENSSL_PUB : null;
+        case CERT_PEM_TYPE:
+        case X509_CERT_PEM_TYPE:
+        case TRUSTED_CERT_PEM_TYPE:
+        case PKCS7_PEM_TYPE:
+            return containsCertificates(data) ? CERT : null;
+        case CRL_PEM_TYPE:
+            return isCrl(data) ? CRL : null;
+        case CSR_PEM_TYPE:
+        case NEW_CSR_PEM_TYPE:
+            return isPkcs10Csr(data) ? PKCS10.getCryptoFileType() : null;
+        default:
+            // e.g. several PEM blocks with an unsupported one first
+            return null;
+        }
+    }
+
+    /**
+     * Classify DER data by the tags of the outer elements and the content type
+     * OIDs, without parsing the whole structure. Only the headers are read.
+     */
+    private static CryptoFileType classifyDer(byte[] data) throws IOException {
+        long[] outer = readDerHeader(data, 0);
+
+        if (outer == null || outer[0] != DER_SEQUENCE_TAG) {
+            return null;
+        }
+
+        List<long[]> elements = readDerElements(data, outer);
+
+        if (elements == null || elements.isEmpty()) {
+            return null;
+        }
+
+        int size = elements.size();
+        long[] first = elements.get(0);
+
+        if (first[0] == DER_INTEGER_TAG) {
+            // Starts with a version: unencrypted PKCS #8, OpenSSL private key or PKCS #12
+            if (first[2] < 1 || first[2] > 4) {
+                return null;
+            }
+            int version = new BigInteger(Arrays.copyOfRange(data, (int) first[1], (int) (first[1] + first[2])))
+                    .intValue();
+
+            if (version == 0 && (size == 3 || size == 4)) {
+                CryptoFileType fileType = toPkcs8PvkType(Pkcs8Util.getEncryptionType(data));
+
+                if (fileType != null) {
+                    return fileType;
+                }
+            }
+
+            if ((version == 1 && size >= 2 && size <= 4) || size == 6 || size == 9) {
+                return toOpenSslPvkType(OpenSslPvkUtil.getEncryptionType(data));
+            }
+
+            if (version == 3 && (size == 2 || size == 3) && isPkcs12AuthSafe(data, elements.get(1))) {
+                return PKCS12.getCryptoFileType();
+            }
+
+            return null;
+        }
+
+        if (first[0] == DER_OID_TAG) {
+            // PKCS #7 content info
+            return containsCertificates(data) ? CERT : null;
+        }
+
+        if (first[0] != DER_SEQUENCE_TAG) {
+            return null;
+        }
+
+        if (size == 2 && elements.get(1)[0] == DER_OCTET_STRING_TAG) {
+            return toPkcs8PvkType(Pkcs8Util.getEncryptionType(data));
+        }
+
+        if (size == 2 && elements.get(1)[0] == DER_BIT_STRING_TAG) {
+            return isOpenSslPublicKey(data) ? OPENSSL_PUB : null;
+        }
+
+        if (isSigned(elements)) {
+            return classifySigned(readDerElements(data, first), data);
+        }
+
+        boolean pkiPath = true;
+        for (long[] element : elements) {
+            pkiPath &= element[0] == DER_SEQUENCE_TAG && isSigned(readDerElements(data, element));
+        }
+
+        if (pkiPath) {
+            return containsCertificates(data) ? CERT : null;
+        }
+
+        if (size == 2 || size == 3) {
+            // BCFKS: a sequence of two or three components, the first of which is a sequence
+            return BCFKS.getCryptoFileType();
+        }
+
+        return null;
+    }
+
+    private static CryptoFileType classifySigned(List<long[]> elements, byte[] data) throws IOException {
+        if (elements == null) {
+            return null;
+        }
+
+        int size = elements.size();
+
+        // Certificate: [0] version, serial, signature, issuer, validity, subject, ...
+        if ((size > 0 && isContextTag(elements.get(0))) ||
+            (size >= 6 && elements.get(0)[0] == DER_INTEGER_TAG && elements.get(3)[0] == DER_SEQUENCE_TAG)) {
+            return containsCertificates(data) ? CERT : null;
+        }
+
+        // CSR: version, subject, subject public key info, [0] attributes
+        if (size == 4 && elements.get(0)[0] == DER_INTEGER_TAG && isContextTag(elements.get(3))) {
+            return isPkcs10Csr(data) ? PKCS10.getCryptoFileType() : null;
+        }
+
+        // CRL: optional version, signature, issuer, this update, ...
+        if ((size > 2 && isTime(elements.get(2))) || (size > 3 && isTime(elements.get(3)))) {
+            return isCrl(data) ? CRL : null;
+        }
+
+        return null;
+    }
+
+    private static boolean isSigned(List<long[]> elements) {
+        // signed data, signature algorithm, signature
+        return elements != null && elements.size() == 3 && elements.get(0)[0] == DER_SEQUENCE_TAG &&
+               elements.get(1)[0] == DER_SEQUENCE_TAG && elements.get(2)[0] == DER_BIT_STRING_TAG;
+    }
+
+    private static boolean isContextTag(long[] element) {
+        return (element[0] & 0xc0) == 0x80;
+    }
+
+    private static boolean isTime(long[] element) {
+        return element[0] == DER_UTC_TIME_TAG || element[0] == DER_GENERALIZED_TIME_TAG;
+    }
+
+    /**
+     * Is the element the authSafe of a PKCS #12 PFX, i.e. a content info of
+     * type data or signedData?
+     */
+    private static boolean isPkcs12AuthSafe(byte[] data, long[] contentInfo) {
+        return contentInfo[0] == DER_SEQUENCE_TAG && isAuthSafeContentType(data, (int) contentInfo[1]);
+    }
+
+    private static boolean isAuthSafeContentType(byte[] data, int offset) {
+        return startsWith(data, offset, PKCS7_DATA_OID) || startsWith(data, offset, PKCS7_SIGNED_DATA_OID);
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        return offset + prefix.length <= data.length &&
+               Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static boolean isAuthSafe(ASN1Encodable authSafe) {
+        if (!(authSafe instanceof ASN1Sequence) || ((ASN1Sequence) authSafe).size() == 0) {
+            return false;
+        }
+        ASN1Encodable contentType = ((ASN1Sequence) authSafe).getObjectAt(0);
+        return PKCSObjectIdentifiers.data.equals(contentType) || PKCSObjectIdentifiers.signedData.equals(contentType);
+    }
+
+    /**
+     * Read the headers of the elements contained in a constructed DER element.
+     *
+     * @return Headers as returned by {@link #readDerHeader(byte[], long)} or
+     *         null if the content cannot be split up into elements
+     */
+    private static List<long[]> readDerElements(byte[] data, long[] parent) {
+        List<long[]> elements = new ArrayList<>();
+        long end = parent[1] + parent[2];
+
+        for (long offset = parent[1]; offset < end; ) {
+            long[] element = readDerHeader(data, offset);
+
+            if (element == null || element[1] + element[2] > end) {
+                return null;
+            }
+
+            elements.add(element);
+            offset = element[1] + element[2];
+        }
+
+        return elements;
+    }
+
+    private static CryptoFileType toPkcs8PvkType(EncryptionType encryptionType) {
+        if (encryptionType == null) {
+            return null;
+        }
+        return encryptionType == ENCRYPTED ? ENC_PKCS8_PVK : UNENC_PKCS8_PVK;
+    }
+
+    private static CryptoFileType toOpenSslPvkType(EncryptionType encryptionType) {
+        if (encryptionType == null) {
+            return null;
+        }
+        return encryptionType == ENCRYPTED ? ENC_OPENSSL_PVK : UNENC_OPENSSL_PVK;
+    }
+
+    private static boolean isOpenSslPublicKey(byte[] data) {
+        try {
+            OpenSslPubUtil.load(data);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static boolean containsCertificates(byte[] data) {
+        try {
+            return X509CertUtil.loadCertificates(data).length > 0;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static boolean isCrl(byte[] data) {
+        try {
+            X509CrlHeader.create(data);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static boolean isPkcs10Csr(byte[] data) {
+        try {
+            Pkcs10Util.loadCsr(data);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static boolean isSpkac(byte[] data) {
+        try {
+            new Spkac(data);
+            return true;
+        } catch (IOException | SpkacException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isBinary(byte[] data) {
+        int length = Math.min(data.length, TEXT_SNIFF_LENGTH);
+
+        for (int i = 0; i < length; i++) {
+            int b = data[i] & 0xff;
+
+            if ((b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f') || b == 0x7f) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isJwtLike(byte[] data) {
+        // three Base64url encoded parts separated by dots, surrounding whitespace is tolerated
+        int dots = 0;
+
+        for (byte b : data) {
+            if (b == '.') {
+                dots++;
+            } else if (!Character.isLetterOrDigit(b) && b != '-' && b != '_' && b != '=' &&
+                       !Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+
+        return dots == 2;
+    }
+
+    private static boolean containsSpkacProperty(byte[] data) {
+        return new String(data, StandardCharsets.US_ASCII).contains(SPKAC_PROPERTY + "=");
+    }
+
+    /**
+     * Detect the cryptographic file type by trying all parsers in turn. Slow,
+     * but also finds types that cannot be classified by their structure.
+     *
+     * @param data Cryptographic data, already decoded if it was Base64
+     * @return Type, UNKNOWN if not of a recognised type
+     * @throws IOException If an I/O problem occurred
+     */
+    static CryptoFileType probeFileType(byte[] data) throws IOException {
+
         if (isJarFile(data)) {
             return JAR;
         }
@@ -196,7 +620,7 @@ public class CryptoFileUtil {
         }
 
         try {
-            X509CertUtil.loadCRL(data);
+            X509CrlHeader.create(data);
             return CRL;
         } catch (Exception ex) {
             // Ignore - not a CRL file
@@ -227,8 +651,7 @@ public class CryptoFileUtil {
             return false;
         }
 
-        int magic = (data[0] << 24) & 0xff000000 | (data[1] << 16) & 0x00ff0000 | (data[2] << 8) & 0x0000ff00 |
-                    (data[3]) & 0x000000ff;
+        int magic = readInt(data);
 
         return magic == ZIP_MAGIC_NUMBER1 || magic == ZIP_MAGIC_NUMBER2 || magic == ZIP_MAGIC_NUMBER3 ||
                magic == ZIP_MAGIC_NUMBER4;
@@ -272,7 +695,185 @@ public class CryptoFileUtil {
      * @throws IOException If an I/O problem occurred
      */
     public static KeyStoreType detectKeyStoreType(File file) throws IOException {
-        return detectKeyStoreType(Files.readAllBytes(file.toPath()));
+        try (SniffedFile sniffedFile = SniffedFile.open(file)) {
+            return detectKeyStoreType(sniffedFile);
+        }
+    }
+
+    /**
+     * Detect the KeyStore type contained in the supplied file by only reading
+     * its head, its tail and the headers of the outermost ASN.1 elements. The
+     * content of the file can be read afterwards from the same SniffedFile
+     * without reading the head again.
+     *
+     * @param file Opened keystore file
+     * @return KeyStore type or null if none matched
+     * @throws IOException If an I/O problem occurred
+     */
+    public static KeyStoreType detectKeyStoreType(SniffedFile file) throws IOException {
+        byte[] head = file.getHead();
+
+        // If less than 4 bytes are available it isn't a KeyStore
+        if (head.length < 4) {
+            return null;
+        }
+
+        int i1 = readInt(head);
+
+        if (i1 == JKS_MAGIC_NUMBER) {
+            return JKS;
+        }
+
+        if (i1 == JCEKS_MAGIC_NUMBER) {
+            return JCEKS;
+        }
+
+        if ((i1 == 0) || (i1 == 1) || (i1 == 2)) {
+            // See detectKeyStoreType(byte[]) for why the 21st byte from the end distinguishes BKS from UBER
+            if (file.size() < 26) {
+                return null;
+            }
+
+            if (file.read(file.size() - 21, 1)[0] == 0) {
+                return i1 == 1 ? null : BKS;
+            } else {
+                return UBER;
+            }
+        }
+
+        if (head[0] != DER_SEQUENCE_TAG) {
+            return null;
+        }
+
+        /*
+         * PKCS #12 and BCFKS are a single sequence of two or three components. The first one is
+         * the version 3 for PKCS #12 and a sequence for BCFKS. Only the headers of the outermost
+         * elements are read for checking this.
+         */
+        long[] outer = readDerHeader(file, 0);
+
+        if (outer == null) {
+            // indefinite length or other unusual encoding - check the whole file
+            return detectKeyStoreType(file.readAll());
+        }
+
+        long end = outer[1] + outer[2];
+        if (end != file.size()) {
+            return null;
+        }
+
+        long[] first = null;
+        long[] second = null;
+        int components = 0;
+
+        for (long offset = outer[1]; offset < end; components++) {
+            long[] component = readDerHeader(file, offset);
+
+            if (component == null) {
+                return detectKeyStoreType(file.readAll());
+            }
+
+            if (first == null) {
+                first = component;
+            } else if (second == null) {
+                second = component;
+            }
+
+            offset = component[1] + component[2];
+
+            if (offset > end || components >= 3) {
+                return null;
+            }
+        }
+
+        if ((components != 2 && components != 3) || first == null) {
+            return null;
+        }
+
+        if (first[0] == DER_INTEGER_TAG && first[2] > 0 && first[2] <= 4) {
+            byte[] version = file.read(first[1], (int) first[2]);
+
+            if (new BigInteger(version).intValue() == 3 && second[0] == DER_SEQUENCE_TAG &&
+                isAuthSafeContentType(file.read(second[1], PKCS7_DATA_OID.length), 0)) {
+                return PKCS12;
+            }
+        } else if (first[0] == DER_SEQUENCE_TAG) {
+            return BCFKS;
+        }
+
+        // KeyStore type not recognised
+        return null;
+    }
+
+    /**
+     * Read the tag and the definite length of a DER element.
+     *
+     * @return Tag, offset of the content and length of the content or null if
+     *         the element uses a high tag number, an indefinite length or a
+     *         length that does not fit into the file
+     */
+    private static long[] readDerHeader(SniffedFile file, long offset) throws IOException {
+        return parseDerHeader(file.read(offset, 6), offset, file.size());
+    }
+
+    /**
+     * Read the tag and the definite length of a DER element in a byte array.
+     *
+     * @return Same as {@link #readDerHeader(SniffedFile, long)}
+     */
+    private static long[] readDerHeader(byte[] data, long offset) {
+        if (offset < 0 || offset >= data.length) {
+            return null;
+        }
+        int from = (int) offset;
+        return parseDerHeader(Arrays.copyOfRange(data, from, Math.min(from + 6, data.length)), offset, data.length);
+    }
+
+    private static long[] parseDerHeader(byte[] header, long offset, long size) {
+        if (header.length < 2 || (header[0] & 0x1f) == 0x1f) {
+            return null;
+        }
+
+        int lengthByte = header[1] & 0xff;
+        long length;
+        int headerLength;
+
+        if (lengthByte < 0x80) {
+            length = lengthByte;
+            headerLength = 2;
+        } else {
+            int lengthBytes = lengthByte & 0x7f;
+
+            if (lengthBytes == 0 || lengthBytes > 4 || header.length < 2 + lengthBytes) {
+                return null;
+            }
+
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (header[2 + i] & 0xff);
+            }
+            headerLength = 2 + lengthBytes;
+        }
+
+        if (offset + headerLength + length > size) {
+            return null;
+        }
+
+        return new long[] { header[0] & 0xff, offset + headerLength, length };
+    }
+
+    private static boolean hasKeyStoreMagicNumber(byte[] head) {
+        if (head.length < 4) {
+            return false;
+        }
+
+        int i1 = readInt(head);
+        return i1 == JKS_MAGIC_NUMBER || i1 == JCEKS_MAGIC_NUMBER || i1 == 0 || i1 == 1 || i1 == 2;
+    }
+
+    private static int readInt(byte[] data) {
+        return (data[0] << 24) & 0xff000000 | (data[1] << 16) & 0x00ff0000 | (data[2] << 8) & 0x0000ff00 |
+               (data[3]) & 0x000000ff;
     }
 
     /**
@@ -373,7 +974,8 @@ public class CryptoFileUtil {
                 if (firstComponent instanceof ASN1Integer) {
                     ASN1Integer version = (ASN1Integer) firstComponent;
 
-                    if (version.getValue().intValue() == 3) {
+                    // ...and the second a content info of type data or signedData
+                    if (version.getValue().intValue() == 3 && isAuthSafe(sequence.getObjectAt(1))) {
                         return PKCS12;
                     }
                 } else if (firstComponent instanceof DLSequence) {
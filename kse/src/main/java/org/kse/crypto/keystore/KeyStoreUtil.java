@@ -32,6 +32,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.NoSuchFileException;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
@@ -52,6 +53,7 @@ import org.kse.crypto.keypair.KeyPairType;
 import org.kse.gui.passwordmanager.Password;
 import org.kse.crypto.filetype.CryptoFileUtil;
 import org.kse.gui.preferences.PreferencesManager;
+import org.kse.utilities.io.SniffedFile;
 
 /**
  * Provides utility methods for loading/saving KeyStores. The BouncyCastle
@@ -110,21 +112,20 @@ public final class KeyStoreUtil {
      */
     public static KeyStore load(File keyStoreFile, Password password)
             throws CryptoException, FileNotFoundException, NoSuchFileException {
-        KeyStoreType keyStoreType = null;
+        try (SniffedFile sniffedFile = SniffedFile.open(keyStoreFile)) {
+            KeyStoreType keyStoreType = CryptoFileUtil.detectKeyStoreType(sniffedFile);
 
-        try {
-            keyStoreType = CryptoFileUtil.detectKeyStoreType(keyStoreFile);
+            if (keyStoreType == null) {
+                return null;
+            }
+
+            // continue reading after the sniffed head instead of opening the file again
+            return load(sniffedFile.getInputStream(), password, keyStoreType);
         } catch (FileNotFoundException | NoSuchFileException ex) {
             throw ex;
         } catch (IOException ex) {
             throw new CryptoException(res.getString("NoLoadKeyStore.exception.message"), ex);
         }
-
-        if (keyStoreType == null) {
-            return null;
-        }
-
-        return load(keyStoreFile, password, keyStoreType);
     }
 
     /**
@@ -151,23 +152,47 @@ public final class KeyStoreUtil {
                     MessageFormat.format(res.getString("NoLoadKeyStoreNotFile.exception.message"), keyStoreType.jce()));
         }
 
+        try (FileInputStream fis = new FileInputStream(keyStoreFile)) {
+            return load(fis, password, keyStoreType);
+        } catch (FileNotFoundException | NoSuchFileException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new KeyStoreLoadException(
+                    MessageFormat.format(res.getString("NoLoadKeyStoreType.exception.message"), keyStoreType), ex,
+                    keyStoreType);
+        }
+    }
+
+    /**
+     * Load a KeyStore from a stream accessed by a password. The stream is not
+     * closed.
+     *
+     * @param is           Stream to load KeyStore from
+     * @param password     Password of the KeyStore
+     * @param keyStoreType The type of the KeyStore to open
+     * @return The KeyStore
+     * @throws KeyStoreLoadException Problem encountered loading the KeyStore as the specified
+     *                               type
+     * @throws CryptoException       Problem encountered loading the KeyStore
+     */
+    public static KeyStore load(InputStream is, Password password, KeyStoreType keyStoreType)
+            throws CryptoException {
+        if (!keyStoreType.isFileBased()) {
+            throw new CryptoException(
+                    MessageFormat.format(res.getString("NoLoadKeyStoreNotFile.exception.message"), keyStoreType.jce()));
+        }
+
         KeyStore keyStore = getKeyStoreInstance(keyStoreType);
 
-        try (FileInputStream fis = new FileInputStream(keyStoreFile)) {
+        try {
             if (password.isEmpty() && (keyStoreType == KeyStoreType.JKS || keyStoreType == KeyStoreType.JCEKS)) {
                 // allow JKS and JCEKS files to be opened without providing a password
                 password.nullPassword();
-                keyStore.load(fis, null);
+                keyStore.load(is, null);
             } else {
-                keyStore.load(fis, password.toCharArray());
+                keyStore.load(is, password.toCharArray());
             }
-        } catch (CertificateException | NoSuchAlgorithmException ex) {
-            throw new KeyStoreLoadException(
-                    MessageFormat.format(res.getString("NoLoadKeyStoreType.exception.message"), keyStoreType), ex,
-                    keyStoreType);
-        } catch (FileNotFoundException | NoSuchFileException ex) {
-            throw ex;
-        } catch (IOException ex) {
+        } catch (CertificateException | NoSuchAlgorithmException | IOException ex) {
             throw new KeyStoreLoadException(
                     MessageFormat.format(res.getString("NoLoadKeyStoreType.exception.message"), keyStoreType), ex,
                     keyStoreType);
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.cert.CRLReason;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
+import org.bouncycastle.asn1.ocsp.RevokedInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.cert.ocsp.jcajce.JcaRespID;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Lightweight OCSP responder for test environments. The responses are signed
+ * by the CA itself and the revocation status is taken from the entries of a
+ * CRL. Any other serial number of the CA is reported as good.
+ * <p>
+ * Responses for a single certificate are signed once and served from memory
+ * until shortly before their next update, while a background thread signs
+ * them again. As in the lightweight profile of RFC 5019, nonces in requests
+ * are ignored, so that the responses can be reused.
+ * </p>
+ * <p>
+ * The responder listens on the loopback address only and accepts requests
+ * with HTTP POST and GET as described in RFC 6960.
+ * </p>
+ */
+public class OcspResponder {
+    private static final String OCSP_RESPONSE_TYPE = "application/ocsp-response";
+    private static final int MAX_REQUEST_SIZE = 16 * 1024;
+    private static final int MAX_CACHED_RESPONSES = 100_000;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/ocsp/resources");
+
+    private final PrivateKey caPrivateKey;
+    private final SignatureType signatureType;
+    private final Provider provider;
+    private final X509CertificateHolder caCert;
+    private final X509CrlEntryIndex revokedEntries;
+    private final long validityMs;
+
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final RespID respId;
+    private final byte[] malformedRequestResponse;
+    private final byte[] internalErrorResponse;
+
+    private final Map<CertificateID, CachedResponse> cache = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Construct a new OcspResponder.
+     *
+     * @param caCert         CA certificate
+     * @param caPrivateKey   Private key of the CA
+     * @param signatureType  Signature type of the responses
+     * @param provider       Provider for the signatures or null for the default
+     * @param revokedEntries Entries of the CRL of the CA or null if no
+     *                       certificate has been revoked
+     * @param validityMs     Validity of the responses in milliseconds
+     * @throws CryptoException If the responder could not be created
+     */
+    public OcspResponder(X509Certificate caCert, PrivateKey caPrivateKey, SignatureType signatureType,
+                         Provider provider, X509CrlEntryIndex revokedEntries, long validityMs)
+            throws CryptoException {
+        this.caPrivateKey = caPrivateKey;
+        this.signatureType = signatureType;
+        this.provider = provider == null ? KSE.BC : provider;
+        this.revokedEntries = revokedEntries;
+        this.validityMs = validityMs;
+
+        try {
+            this.caCert = new JcaX509CertificateHolder(caCert);
+            this.digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build();
+            this.respId = new JcaRespID(caCert.getPublicKey(), digestCalculatorProvider.get(CertificateID.HASH_SHA1));
+            this.malformedRequestResponse = encodeErrorResponse(OCSPResponseStatus.MALFORMED_REQUEST);
+            this.internalErrorResponse = encodeErrorResponse(OCSPResponseStatus.INTERNAL_ERROR);
+        } catch (CertificateEncodingException | OperatorCreationException | OCSPException | IOException ex) {
+            throw new CryptoException(res.getString("NoCreateOcspResponder.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Start answering requests. The responses that have been cached are
+     * signed again in the background before they expire.
+     *
+     * @param port Port to listen on or 0 for any free port
+     * @throws CryptoException If the responder could not be started
+     */
+    public synchronized void start(int port) throws CryptoException {
+        if (server != null) {
+            return;
+        }
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException ex) {
+            throw new CryptoException(res.getString("NoStartOcspResponder.exception.message"), ex);
+        }
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        long refreshMs = Math.max(validityMs / 2, 1000);
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads());
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop answering requests.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+
+        server.stop(0);
+        executor.shutdown();
+        scheduler.shutdownNow();
+        server = null;
+    }
+
+    /**
+     * Is the responder answering requests?
+     *
+     * @return True if it is
+     */
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Get the URL of the responder.
+     *
+     * @return URL or null if the responder is not running
+     */
+    public synchronized String getUrl() {
+        if (server == null) {
+            return null;
+        }
+
+        InetSocketAddress address = server.getAddress();
+        try {
+            return new URI("http", null, address.getAddress().getHostAddress(), address.getPort(), "/", null,
+                           null).toString();
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Answer a DER encoded OCSP request.
+     *
+     * @param encodedRequest DER encoded OCSP request
+     * @return DER encoded OCSP response, which is an error response if the
+     *         request could not be answered
+     */
+    public byte[] respond(byte[] encodedRequest) {
+        try {
+            Req[] requests = new OCSPReq(encodedRequest).getRequestList();
+
+            if (requests.length == 0) {
+                return malformedRequestResponse;
+            }
+
+            if (requests.length == 1) {
+                return getResponse(requests[0].getCertID());
+            }
+
+            CertificateID[] certIds = new CertificateID[requests.length];
+            for (int i = 0; i < requests.length; i++) {
+                certIds[i] = requests[i].getCertID();
+            }
+            return sign(certIds, new Date());
+        } catch (IOException | IllegalArgumentException ex) {
+            return malformedRequestResponse;
+        } catch (OCSPException | OperatorCreationException ex) {
+            return internalErrorResponse;
+        }
+    }
+
+    private byte[] getResponse(CertificateID certId) throws OCSPException, OperatorCreationException, IOException {
+        CachedResponse cached = cache.get(certId);
+
+        long now = System.currentTimeMillis();
+        if (cached != null && now < cached.nextUpdate) {
+            return cached.encoded;
+        }
+
+        byte[] encoded = sign(new CertificateID[] { certId }, new Date(now));
+
+        // the cache only holds responses for the certificates that have been asked for
+        if (cached != null || cache.size() < MAX_CACHED_RESPONSES) {
+            cache.put(certId, new CachedResponse(encoded, now + validityMs));
+        }
+        return encoded;
+    }
+
+    private void refresh() {
+        for (CertificateID certId : cache.keySet()) {
+            long now = System.currentTimeMillis();
+            try {
+                cache.put(certId, new CachedResponse(sign(new CertificateID[] { certId }, new Date(now)),
+                                                     now + validityMs));
+            } catch (OCSPException | OperatorCreationException | IOException ex) {
+                // the response is signed again when it is requested after it expired
+            }
+        }
+    }
+
+    private byte[] sign(CertificateID[] certIds, Date now)
+            throws OCSPException, OperatorCreationException, IOException {
+        Date nextUpdate = new Date(now.getTime() + validityMs);
+
+        BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(respId);
+        for (CertificateID certId : certIds) {
+            builder.addResponse(certId, getStatus(certId), now, nextUpdate, null);
+        }
+
+        // content signers are not thread safe
+        ContentSigner signer = new JcaContentSignerBuilder(signatureType.jce()).setProvider(provider)
+                                                                              .build(caPrivateKey);
+        BasicOCSPResp basicResponse = builder.build(signer, null, now);
+
+        return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResponse).getEncoded();
+    }
+
+    private CertificateStatus getStatus(CertificateID certId) throws OCSPException {
+        if (!certId.matchesIssuer(caCert, digestCalculatorProvider)) {
+            return new UnknownStatus();
+        }
+
+        int index = revokedEntries == null ? -1 : revokedEntries.indexOf(certId.getSerialNumber());
+        if (index == -1) {
+            return CertificateStatus.GOOD;
+        }
+
+        Date revocationDate = revokedEntries.getRevocationDate(index);
+        CRLReason reason = revokedEntries.getRevocationReason(index);
+        if (reason == null) {
+            return new RevokedStatus(new RevokedInfo(new ASN1GeneralizedTime(revocationDate), null));
+        }
+        return new RevokedStatus(revocationDate, reason.ordinal());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] request;
+
+            if ("POST".equals(exchange.getRequestMethod())) {
+                try (InputStream is = exchange.getRequestBody()) {
+                    request = is.readNBytes(MAX_REQUEST_SIZE);
+                }
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                request = decodeGetRequest(exchange.getRequestURI().getRawPath());
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] response = request == null ? malformedRequestResponse : respond(request);
+
+            exchange.getResponseHeaders().set("Content-Type", OCSP_RESPONSE_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] decodeGetRequest(String path) {
+        // GET requests carry the URL encoded base64 of the request in the path, where a '+' stands for itself
+        String encoded = path.substring(path.lastIndexOf('/') + 1).replace("+", "%2B");
+        try {
+            return Base64.getDecoder().decode(URLDecoder.decode(encoded, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] encodeErrorResponse(int status) throws IOException {
+        return new OCSPResponse(new OCSPResponseStatus(status), null).getEncoded(ASN1Encoding.DER);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "OCSP responder");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class CachedResponse {
+        private final byte[] encoded;
+        private final long nextUpdate;
+
+        private CachedResponse(byte[] encoded, long nextUpdate) {
+            this.encoded = encoded;
+            this.nextUpdate = nextUpdate;
+        }
+    }
+}
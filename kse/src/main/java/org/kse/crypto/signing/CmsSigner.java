@@ -27,8 +27,15 @@ import static org.kse.crypto.digest.DigestType.SHA512;
 import static org.kse.crypto.digest.DigestType.SHAKE128;
 import static org.kse.crypto.digest.DigestType.SHAKE256;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.CertificateEncodingException;
@@ -36,7 +43,11 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Primitive;
@@ -45,11 +56,15 @@ import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSAttributeTableGenerationException;
+import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableFile;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.CMSSignedDataStreamGenerator;
 import org.bouncycastle.cms.CMSTypedData;
+import org.bouncycastle.cms.SignerInfoGenerator;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
@@ -58,6 +73,7 @@ import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.digest.DigestType;
+import org.kse.utilities.io.ProgressInputStream;
 
 /**
  * Class provides functionality to sign files using PKCS #7 Cryptographic
@@ -66,6 +82,8 @@ import org.kse.crypto.digest.DigestType;
 public class CmsSigner {
     private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/signing/resources");
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private CmsSigner() {
     }
 
@@ -116,6 +134,92 @@ public class CmsSigner {
         }
     }
 
+    /**
+     * Signs a file using PKCS #7 CMS and writes the signature to a file. Unlike
+     * {@link #sign(File, PrivateKey, X509Certificate[], boolean, SignatureType, String, Provider)}
+     * the content is streamed in fixed-size chunks from the input file to the
+     * output file, so that memory usage does not depend on the size of the
+     * file, even if the content is encapsulated. The signature is written in
+     * BER with indefinite lengths.
+     * <p>
+     * The signature is written to a temporary file next to the output file,
+     * which replaces the output file only after signing has succeeded. An
+     * existing output file is therefore left unchanged if signing fails.
+     *
+     * @param inputFile         The file to sign.
+     * @param outputFile        The file to write the signature to.
+     * @param privateKey        The private key to use for signing.
+     * @param certificateChain  The certificate chain for the private key.
+     * @param detachedSignature True if the signature is to be detached. False,
+     *                          encapsulate the file into the signature.
+     * @param outputPem         True if the signature is to be PEM encoded.
+     * @param signatureType     The signature type to use for signing.
+     * @param tsaUrl            An optional TSA URL for adding a time stamp token to
+     *                          the signature.
+     * @param provider          The security provider to use.
+     * @param progressListener  Receives the number of bytes of the input file
+     *                          that have been signed so far.
+     * @throws CryptoException If an error occurs when signing the file.
+     */
+    public static void sign(File inputFile, File outputFile, PrivateKey privateKey,
+            X509Certificate[] certificateChain, boolean detachedSignature, boolean outputPem,
+            SignatureType signatureType, String tsaUrl, Provider provider, LongConsumer progressListener)
+            throws CryptoException {
+        File tempFile = null;
+        try {
+            JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder(signatureType.jce());
+            JcaDigestCalculatorProviderBuilder digestCalculatorProviderBuilder = new JcaDigestCalculatorProviderBuilder();
+            if (provider != null) {
+                contentSignerBuilder.setProvider(provider);
+                digestCalculatorProviderBuilder.setProvider(provider);
+            }
+
+            SignerInfoGenerator signerInfoGenerator = new JcaSignerInfoGeneratorBuilder(
+                    digestCalculatorProviderBuilder.build()).build(contentSignerBuilder.build(privateKey),
+                                                                   certificateChain[0]);
+
+            // The signature is not known before the content has been streamed, so the time stamp is
+            // requested while the signer info is generated.
+            if (tsaUrl != null) {
+                signerInfoGenerator = new SignerInfoGenerator(signerInfoGenerator,
+                        signerInfoGenerator.getSignedAttributeTableGenerator(),
+                        timeStampAttributes(tsaUrl, signatureType.digestType()));
+            }
+
+            CMSSignedDataStreamGenerator generator = new CMSSignedDataStreamGenerator();
+            generator.setBufferSize(BUFFER_SIZE);
+            generator.addSignerInfoGenerator(signerInfoGenerator);
+            generator.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
+
+            // same directory, so that the move cannot cross file systems
+            tempFile = File.createTempFile("kse", ".tmp", outputFile.getAbsoluteFile().getParentFile());
+
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE);
+                 InputStream is = new ProgressInputStream(new FileInputStream(inputFile), progressListener)) {
+                OutputStream signatureOs = outputPem ? CmsUtil.getPemOutputStream(os) : os;
+
+                try (OutputStream contentOs = generator.open(signatureOs, !detachedSignature)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = is.read(buffer)) != -1) {
+                        contentOs.write(buffer, 0, read);
+                    }
+                }
+
+                signatureOs.close();
+            }
+
+            Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            // do not leave an incomplete signature behind
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            throw new CryptoException(res.getString("CmsSignatureFailed.exception.message"), e);
+        }
+    }
+
     /**
      * Counter signs a signature using PKCS #7 CMS.
      *
@@ -176,7 +280,8 @@ public class CmsSigner {
     /**
      * Adds a timestamp to a PKCS #7 signature.
      *
-     * @param tsaUrl      The URL of the time stamp authority.
+     * @param tsaUrl      The URL of the time stamp authority, or several URLs
+     *                    separated by whitespace or commas that are asked in turn.
      * @param signerInfos The signer information to time stamp.
      * @param digestType  The digest type to use for the time stamp.
      * @return <b>SignerInformation</b> with time stamp token.
@@ -185,20 +290,24 @@ public class CmsSigner {
     public static SignerInformationStore addTimestamp(String tsaUrl, SignerInformationStore signerInfos,
             DigestType digestType) throws IOException {
 
-        Collection<SignerInformation> newSignerInfos = new ArrayList<>();
+        Collection<SignerInformation> signers = signerInfos.getSigners();
+        List<String> tsaUrls = TimeStampingClient.splitTsaUrls(tsaUrl);
+        List<CompletableFuture<byte[]>> tokens = new ArrayList<>();
 
-        for (SignerInformation si : signerInfos.getSigners()) {
+        // request the time stamps of all signers at once
+        for (SignerInformation si : signers) {
             byte[] signature = si.getSignature();
 
-            // Some signatures use SHAKE or GOST3411, which are not currently supported by the TSAs.
-            if (SHAKE128 == digestType || GOST3411 == digestType || GOST3411_2012_256 == digestType) {
-                digestType = SHA256;
-            } else  if (SHAKE256 == digestType || GOST3411_2012_512 == digestType) {
-                digestType = SHA512;
-            }
-
             // send request to TSA
-            byte[] token = TimeStampingClient.getTimeStampToken(tsaUrl, signature, digestType);
+            tokens.add(TimeStampingClient.getTimeStampTokenAsync(tsaUrls, signature,
+                                                                 getTimeStampDigestType(digestType)));
+        }
+
+        Collection<SignerInformation> newSignerInfos = new ArrayList<>();
+        Iterator<CompletableFuture<byte[]>> tokenIterator = tokens.iterator();
+
+        for (SignerInformation si : signers) {
+            byte[] token = TimeStampingClient.await(tokenIterator.next());
 
             // create new SignerInformation with TS attribute
             Attribute tokenAttr = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
@@ -212,4 +321,32 @@ public class CmsSigner {
 
         return new SignerInformationStore(newSignerInfos);
     }
+
+    private static CMSAttributeTableGenerator timeStampAttributes(String tsaUrl, DigestType digestType) {
+        List<String> tsaUrls = TimeStampingClient.splitTsaUrls(tsaUrl);
+
+        return parameters -> {
+            byte[] signature = (byte[]) parameters.get(CMSAttributeTableGenerator.SIGNATURE);
+
+            try {
+                byte[] token = TimeStampingClient.getTimeStampToken(tsaUrls, signature,
+                                                                    getTimeStampDigestType(digestType));
+
+                return new AttributeTable(new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                                                        new DERSet(ASN1Primitive.fromByteArray(token))));
+            } catch (IOException e) {
+                throw new CMSAttributeTableGenerationException(e.getMessage(), e);
+            }
+        };
+    }
+
+    private static DigestType getTimeStampDigestType(DigestType digestType) {
+        // Some signatures use SHAKE or GOST3411, which are not currently supported by the TSAs.
+        if (SHAKE128 == digestType || GOST3411 == digestType || GOST3411_2012_256 == digestType) {
+            return SHA256;
+        } else if (SHAKE256 == digestType || GOST3411_2012_512 == digestType) {
+            return SHA512;
+        }
+        return digestType;
+    }
 }
@@ -19,23 +19,40 @@
  */
 package org.kse.crypto.signing;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSAbsentContent;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableFile;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.CMSSignedDataParser;
+import org.bouncycastle.cms.CMSTypedStream;
 import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.util.Store;
+import org.kse.KSE;
 import org.kse.crypto.CryptoException;
+import org.kse.utilities.io.ProgressInputStream;
 import org.kse.utilities.pem.PemInfo;
 import org.kse.utilities.pem.PemUtil;
 
@@ -48,6 +65,14 @@ public class CmsUtil {
     private static final String CMS_PEM_TYPE = "CMS";
     private static final String PKCS7_PEM_TYPE = "PKCS7";
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Files of at least this size are signed and loaded by streaming their
+     * content instead of holding it in memory.
+     */
+    public static final long STREAMING_THRESHOLD = 64L * 1024 * 1024;
+
     private CmsUtil() {
     }
 
@@ -88,6 +113,81 @@ public class CmsUtil {
         }
     }
 
+    /**
+     * Loads a signature like {@link #loadSignature(File, Supplier)}, but streams
+     * large signatures with encapsulated content instead of reading them into
+     * memory. PEM encoded signatures are decoded while they are streamed. The
+     * content is digested while it is streamed and then dropped, so the
+     * returned CMSSignedData has no signed content, but its signer infos carry
+     * the content digests and can still be verified. Smaller and detached
+     * signatures are loaded completely.
+     *
+     * @param signatureFile    The signature file.
+     * @param chooser          The file chooser to use for choosing the content file.
+     * @param progressListener Receives the number of bytes of the signature
+     *                         file that have been read so far.
+     * @return The CMSSignedData including any detached content, if available.
+     * @throws CryptoException If an exception occurs reading the signature or content.
+     */
+    public static CMSSignedData loadSignature(File signatureFile, Supplier<File> chooser,
+            LongConsumer progressListener) throws CryptoException {
+        return loadSignature(signatureFile, chooser, progressListener, STREAMING_THRESHOLD);
+    }
+
+    /**
+     * Loads a signature, streaming it if the signature file has at least the
+     * supplied size.
+     */
+    static CMSSignedData loadSignature(File signatureFile, Supplier<File> chooser, LongConsumer progressListener,
+            long streamingThreshold) throws CryptoException {
+
+        if (signatureFile.length() < streamingThreshold) {
+            return loadSignature(signatureFile, chooser);
+        }
+
+        try (InputStream is = new BufferedInputStream(
+                new ProgressInputStream(new FileInputStream(signatureFile), progressListener), BUFFER_SIZE)) {
+
+            is.mark(PemUtil.PEM_BEGIN_MARKER.length());
+            byte[] head = is.readNBytes(PemUtil.PEM_BEGIN_MARKER.length());
+            is.reset();
+
+            // the base64 body of a PEM encoded signature is decoded while it is parsed
+            InputStream derIs = PemUtil.isPemFormat(head) ? PemUtil.decode(is) : is;
+
+            CMSSignedDataParser parser = new CMSSignedDataParser(
+                    new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build(), derIs);
+            CMSTypedStream content = parser.getSignedContent();
+
+            if (content == null) {
+                // detached signatures are small, the content is streamed when verifying
+                return loadSignature(signatureFile, chooser);
+            }
+
+            content.drain();
+
+            SignerInformationStore signerInfos = parser.getSignerInfos();
+
+            Map<ASN1ObjectIdentifier, byte[]> hashes = new HashMap<>();
+            for (SignerInformation signerInfo : signerInfos) {
+                hashes.put(new ASN1ObjectIdentifier(signerInfo.getDigestAlgOID()), signerInfo.getContentDigest());
+            }
+
+            // rebuild the signature without its content
+            CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+            generator.addCertificates(parser.getCertificates());
+            generator.addCRLs(parser.getCRLs());
+            generator.addAttributeCertificates(parser.getAttributeCertificates());
+            generator.addSigners(signerInfos);
+
+            CMSSignedData signedData = generator.generate(new CMSAbsentContent(content.getContentType()), false);
+
+            return new CMSSignedData(hashes, signedData.getEncoded());
+        } catch (IOException | CMSException | OperatorCreationException e) {
+            throw new CryptoException(res.getString("NoReadCms.exception.message"), e);
+        }
+    }
+
     private static CMSProcessableFile loadDetachedContent(File signatureFile, Supplier<File> chooser) {
 
         // Look for the content file. if not present, prompt for it.
@@ -106,9 +206,10 @@ public class CmsUtil {
         // No file - ask for one (if chooser is available)
         if (contentFile == null && chooser != null) {
             contentFile = chooser.get();
-            if (contentFile == null) {
-                return null;
-            }
+        }
+
+        if (contentFile == null) {
+            return null;
         }
 
         return new CMSProcessableFile(contentFile);
@@ -141,6 +242,18 @@ public class CmsUtil {
         }
     }
 
+    /**
+     * Get a stream that PEM encodes a CMS signature written to it.
+     *
+     * @param out Stream to write the PEM encoding to
+     * @return Stream for the encoded CMS signature
+     * @throws IOException If an I/O problem occurred
+     */
+    static OutputStream getPemOutputStream(OutputStream out) throws IOException {
+        // Same PEM header as getPem
+        return PemUtil.encode(PKCS7_PEM_TYPE, out);
+    }
+
     /**
      * Converts a collection of SignerInformation objects into a collection of KseSignerInformation objects.
      *
@@ -22,13 +22,24 @@ package org.kse.crypto.signing;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.security.CodeSigner;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -50,36 +61,156 @@ public class JarParser {
      * @throws IOException if an I/O error has occurred
      */
     public X509Certificate[] getSignerCertificates() throws IOException {
+        return verify().getSignerCertificates();
+    }
+
+    /**
+     * Read every entry of this jar file once, which verifies the digests of the
+     * entries against the manifest and populates their code signers. The
+     * signature files and signature blocks are kept while they are read.
+     * Large jar files are read concurrently by the digest pool of
+     * {@link JarSigner}, every worker thread through its own JarFile.
+     *
+     * @return The verified entries, signature files, signature blocks and
+     *         signer certificates
+     * @throws IOException if an I/O error has occurred
+     * @throws SecurityException if an entry does not match its digest in the manifest
+     */
+    public VerifiedJar verify() throws IOException {
+        List<JarEntry> entries;
+        Map<String, byte[]> signatureFiles = new HashMap<>();
+        Map<String, byte[]> signatureBlocks = new HashMap<>();
+        List<Integer> contentEntries = new ArrayList<>();
+
         try (JarFile jf = new JarFile(jarFile, true)) {
-            Set<Certificate> allSignerCerts = new HashSet<>();
-            Enumeration<JarEntry> entries = jf.entries();
+            entries = new ArrayList<>(Collections.list(jf.entries()));
 
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                // reading entry completely is required for calling getCodeSigners()/getCertificates()
-                readEntry(jf, entry);
+            for (int i = 0; i < entries.size(); i++) {
+                JarEntry entry = entries.get(i);
+                String uname = entry.getName().toUpperCase(Locale.ENGLISH);
 
-                if (entry.isDirectory()) {
-                    continue;
+                if (isSignatureFile(uname)) {
+                    signatureFiles.put(entry.getName(), readEntry(jf, entry));
+                } else if (isSignatureBlock(uname)) {
+                    signatureBlocks.put(entry.getName(), readEntry(jf, entry));
+                } else {
+                    contentEntries.add(i);
                 }
-                CodeSigner[] codeSigners = entry.getCodeSigners();
-                if (codeSigners != null) {
-                    for (CodeSigner cs : entry.getCodeSigners()) {
-                        allSignerCerts.addAll(cs.getSignerCertPath().getCertificates());
-                    }
+            }
+
+            if (JarSigner.getThreads() < 2 || contentEntries.size() < JarSigner.MIN_PARALLEL_ENTRIES) {
+                for (int i : contentEntries) {
+                    drainEntry(jf, entries.get(i));
                 }
+            } else {
+                verifyConcurrently(entries, contentEntries);
+            }
+        }
 
-                Certificate[] certificates = entry.getCertificates();
-                if (certificates != null) {
-                    allSignerCerts.addAll(Arrays.asList(certificates));
+        // collect the signers from the same pass
+        Set<Certificate> allSignerCerts = new LinkedHashSet<>();
+        for (JarEntry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            CodeSigner[] codeSigners = entry.getCodeSigners();
+            if (codeSigners != null) {
+                for (CodeSigner cs : codeSigners) {
+                    allSignerCerts.addAll(cs.getSignerCertPath().getCertificates());
                 }
             }
 
-            return allSignerCerts.stream().map(X509Certificate.class::cast).toArray(X509Certificate[]::new);
+            Certificate[] certificates = entry.getCertificates();
+            if (certificates != null) {
+                allSignerCerts.addAll(Arrays.asList(certificates));
+            }
+        }
+
+        return new VerifiedJar(entries, signatureFiles, signatureBlocks,
+                               allSignerCerts.stream().map(X509Certificate.class::cast)
+                                             .toArray(X509Certificate[]::new));
+    }
+
+    private void verifyConcurrently(List<JarEntry> entries, List<Integer> contentEntries) throws IOException {
+        ForkJoinPool pool = JarSigner.getDigestPool();
+        List<Future<Void>> tasks = new ArrayList<>();
+
+        // Batches of entries are handed out to one worker per thread
+        int batches = (contentEntries.size() + JarSigner.ENTRIES_PER_TASK - 1) / JarSigner.ENTRIES_PER_TASK;
+        int workers = Math.min(JarSigner.getThreads(), batches);
+        AtomicInteger nextBatch = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+
+        for (int worker = 0; worker < workers; worker++) {
+            tasks.add(pool.submit(() -> {
+                // Every worker verifies through its own JarFile, so the signature files are processed once per worker
+                try (JarFile workerJar = new JarFile(jarFile, true)) {
+                    int batch;
+
+                    while (!stop.get() && (batch = nextBatch.getAndIncrement()) < batches) {
+                        int start = batch * JarSigner.ENTRIES_PER_TASK;
+                        int end = Math.min(start + JarSigner.ENTRIES_PER_TASK, contentEntries.size());
+
+                        for (int i : contentEntries.subList(start, end)) {
+                            JarEntry entry = workerJar.getJarEntry(entries.get(i).getName());
+                            drainEntry(workerJar, entry);
+
+                            // the signers are looked up while the JarFile is still open
+                            entry.getCodeSigners();
+                            entries.set(i, entry);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // Do not keep on reading if one of the entries failed
+            stop.set(true);
+            for (Future<Void> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static boolean isSignatureFile(String uname) {
+        return uname.startsWith("META-INF/") && uname.endsWith("." + JarSigner.SIGNATURE_EXT);
+    }
+
+    private static boolean isSignatureBlock(String uname) {
+        return uname.startsWith("META-INF/") //
+               && (uname.endsWith(JarSigner.RSA_SIG_BLOCK_EXT) //
+                   || uname.endsWith(JarSigner.EC_SIG_BLOCK_EXT) //
+                   || uname.endsWith(JarSigner.DSA_SIG_BLOCK_EXT));
+    }
+
+    private static byte[] readEntry(JarFile jf, JarEntry je) throws IOException {
+        try (InputStream is = jf.getInputStream(je)) {
+            return is.readAllBytes();
         }
     }
 
-    private static void readEntry(JarFile jf, JarEntry je) throws IOException {
+    private static void drainEntry(JarFile jf, JarEntry je) throws IOException {
+        // reading entry completely is required for calling getCodeSigners()/getCertificates()
         try (InputStream is = jf.getInputStream(je)) {
             byte[] buffer = new byte[8192];
             while ((is.read(buffer, 0, buffer.length)) != -1) {
@@ -19,15 +19,20 @@
  */
 package org.kse.crypto.signing;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.security.PrivateKey;
 import java.security.Provider;
+import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -35,9 +40,15 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -54,8 +65,10 @@ import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.cms.CMSAttributes;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.cms.CMSAttributeTableGenerator;
+import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
@@ -64,10 +77,14 @@ import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
 import org.bouncycastle.cms.SignerInfoGenerator;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.cms.SignerInformationVerifier;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Store;
 import org.bouncycastle.util.encoders.Base64;
 import org.kse.KSE;
 import org.kse.crypto.CryptoException;
@@ -103,6 +120,12 @@ public class JarSigner {
     // Name attribute
     private static final String NAME_ATTR = "Name";
 
+    // CRC-32 and size of the signed JAR entry in the signature file. The manifest and the signature file only
+    // hold digests of the entry's content, these bind the digest to the entry in the central directory, so that
+    // an unchanged entry can be re-signed without reading it. Verifiers ignore unknown attributes.
+    private static final String ENTRY_CRC_ATTR = "X-KSE-Entry-CRC-32";
+    private static final String ENTRY_SIZE_ATTR = "X-KSE-Entry-Size";
+
     // Digest Manifest attribute
     private static final String DIGEST_MANIFEST_ATTR = "{0}-Digest-Manifest";
 
@@ -130,9 +153,47 @@ public class JarSigner {
     // Meta inf file location
     private static final String METAINF_FILE_LOC = "META-INF/{0}.{1}";
 
+    // Smaller JARs are digested on the calling thread
+    static final int MIN_PARALLEL_ENTRIES = 256;
+
+    // Number of entries digested by each task of the digest pool
+    static final int ENTRIES_PER_TASK = 64;
+
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool digestPool;
+
     private JarSigner() {
     }
 
+    /**
+     * Set the number of threads used for digesting the entries of large JAR
+     * files, when signing as well as when verifying them. By default one
+     * thread per available processor is used; the tests force a single
+     * thread to compare the parallel output with the sequential output.
+     *
+     * @param threads Number of threads, 0 for one per available processor
+     */
+    static synchronized void setThreads(int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        if (digestPool != null && digestPool.getParallelism() != parallelism) {
+            digestPool.shutdown();
+            digestPool = null;
+        }
+        JarSigner.parallelism = parallelism;
+    }
+
+    static synchronized int getThreads() {
+        return parallelism;
+    }
+
+    static synchronized ForkJoinPool getDigestPool() {
+        if (digestPool == null) {
+            digestPool = new ForkJoinPool(parallelism);
+        }
+        return digestPool;
+    }
+
     /**
      * Sign a JAR file overwriting it with the signed JAR.
      *
@@ -143,7 +204,7 @@ public class JarSigner {
      * @param signatureName    Signature name
      * @param signer           Signer
      * @param digestType       Digest type
-     * @param tsaUrl           TSA URL
+     * @param tsaUrl           TSA URL, or several separated by whitespace or commas to fail over
      * @throws IOException     If an I/O problem occurs while signing the JAR file
      * @throws CryptoException If a crypto problem occurs while signing the JAR file
      */
@@ -172,7 +233,7 @@ public class JarSigner {
      * @param signatureName    Signature name
      * @param signer           Signer
      * @param digestType       Digest type
-     * @param tsaUrl           TSA URL
+     * @param tsaUrl           TSA URL, or several separated by whitespace or commas to fail over
      * @throws IOException     If an I/O problem occurs while signing the JAR file
      * @throws CryptoException If a crypto problem occurs while signing the JAR file
      */
@@ -180,11 +241,13 @@ public class JarSigner {
                             SignatureType signatureType, String signatureName, String signer, DigestType digestType,
                             String tsaUrl, Provider provider) throws IOException, CryptoException {
 
-        try (JarFile jar = new JarFile(jarFile);
-             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(signedJarFile.toPath()))) {
+        // Replace illegal characters in signature name
+        String sigName = convertSignatureName(signatureName);
 
-            // Replace illegal characters in signature name
-            signatureName = convertSignatureName(signatureName);
+        // Manifest, signature file and signature block to add to the signed JAR in this order
+        Map<String, byte[]> signatureEntries = new LinkedHashMap<>();
+
+        try (JarFile jar = new JarFile(jarFile)) {
 
             // Write manifest content to here
             StringBuilder sbManifest = new StringBuilder();
@@ -205,34 +268,10 @@ public class JarSigner {
             // Write signature file to here
             StringBuilder sbSf = new StringBuilder();
 
-            // Write out digests to manifest and signature file
-
-            // Sign each JAR entry...
-            for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
-                JarEntry jarEntry = jarEntries.nextElement();
-
-                if (!jarEntry.isDirectory()) { // Ignore directories
-
-                    if (!ignoreJarEntry(jarEntry)) { // Ignore some entries (existing signature files)
-                        // Get the digest of the entry as manifest attributes
-                        String manifestEntry = getDigestManifestAttrs(jar, jarEntry, digestType);
-
-                        // Add it to the manifest string buffer
-                        sbManifest.append(manifestEntry);
-
-                        // Get the digest of manifest entries created above
-                        byte[] mdSf = DigestUtil.getMessageDigest(manifestEntry.getBytes(), digestType);
-                        String mdSf64Str = Base64.toBase64String(mdSf);
-
-                        // Write this digest as entries in signature file
-                        sbSf.append(createAttributeText(NAME_ATTR, jarEntry.getName()));
-                        sbSf.append(CRLF);
-                        sbSf.append(
-                                createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), mdSf64Str));
-                        sbSf.append(CRLF);
-                        sbSf.append(CRLF);
-                    }
-                }
+            // Write out digests to manifest and signature file in the order of the JAR entries
+            for (EntryDigest entryDigest : digestJarEntries(jarFile, jar, digestType)) {
+                sbManifest.append(entryDigest.manifestEntry);
+                sbSf.append(entryDigest.sfEntry);
             }
 
             // Manifest file complete - get base 64 encoded digest of its content for inclusion in signature file
@@ -264,18 +303,31 @@ public class JarSigner {
             // Signature file complete
             byte[] sf = sbSf.toString().getBytes();
 
-            // Write manifest to signed JAR
-            writeManifest(manifest, jos);
+            // Create signature block
+            byte[] sigBlock = createSignatureBlock(sf, privateKey, certificateChain, signatureType, tsaUrl, provider);
 
-            // Write signature file to signed JAR
-            writeSignatureFile(sf, signatureName, jos);
+            signatureEntries.put(JarFile.MANIFEST_NAME, manifest);
+            signatureEntries.put(getSignatureFileName(sigName), sf);
+            signatureEntries.put(getSignatureBlockName(sigName, signatureType), sigBlock);
+        }
 
-            // Create signature block and write it out to signed JAR
-            byte[] sigBlock = createSignatureBlock(sf, privateKey, certificateChain, signatureType, tsaUrl, provider);
-            writeSignatureBlock(sigBlock, signatureType, signatureName, jos);
+        // Copy the JAR entries to the signed JAR as they are, the signer never changes their content
+        if (ZipRewriter.rewrite(jarFile, signedJarFile, signatureEntries,
+                                entryName -> isReplacedJarEntry(entryName, sigName))) {
+            return;
+        }
+
+        // Not a plain ZIP file (e.g. ZIP64) - inflate and deflate all entries again
+        try (JarFile jar = new JarFile(jarFile);
+             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(signedJarFile.toPath()))) {
+
+            // Write manifest, signature file and signature block to signed JAR
+            for (Map.Entry<String, byte[]> signatureEntry : signatureEntries.entrySet()) {
+                writeJarEntry(signatureEntry.getKey(), signatureEntry.getValue(), jos);
+            }
 
             // Write JAR files from JAR to be signed to signed JAR
-            writeJarEntries(jar, jos, signatureName);
+            writeJarEntries(jar, jos, sigName);
         }
     }
 
@@ -415,10 +467,307 @@ public class JarSigner {
     }
 
     /*
-     *  Get the digest of the supplied JAR entry as manifest attributes
-     *  "Name" and "<digestType> Digest"
+     * Get the digests of all JAR entries that are to be signed as manifest and
+     * signature file sections in the order of the entries. Entries whose
+     * digests an existing signature of this JAR covers are not read again.
+     * The others of large JARs are inflated and digested in parallel, which
+     * does not change the result.
+     */
+    private static EntryDigest[] digestJarEntries(File jarFile, JarFile jar, DigestType digestType)
+            throws IOException, CryptoException {
+
+        List<JarEntry> jarEntries = new ArrayList<>();
+
+        for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+            JarEntry jarEntry = entries.nextElement();
+
+            // Ignore directories and some entries (existing signature files)
+            if (!jarEntry.isDirectory() && !ignoreJarEntry(jarEntry)) {
+                jarEntries.add(jarEntry);
+            }
+        }
+
+        EntryDigest[] digests = new EntryDigest[jarEntries.size()];
+        List<Integer> undigested = new ArrayList<>();
+
+        Map<String, String> signedDigests = getSignedDigests(jar, digestType);
+
+        for (int i = 0; i < digests.length; i++) {
+            JarEntry jarEntry = jarEntries.get(i);
+            String md64Str = signedDigests.get(jarEntry.getName());
+
+            if (md64Str != null) {
+                digests[i] = createEntryDigest(jarEntry, md64Str, digestType);
+            } else {
+                undigested.add(i);
+            }
+        }
+
+        int threads = getThreads();
+        if (threads < 2 || undigested.size() < MIN_PARALLEL_ENTRIES) {
+            for (int i : undigested) {
+                digests[i] = digestJarEntry(jar, jarEntries.get(i), digestType);
+            }
+            return digests;
+        }
+
+        ForkJoinPool pool = getDigestPool();
+        List<Future<Void>> tasks = new ArrayList<>();
+
+        for (int start = 0; start < undigested.size(); start += ENTRIES_PER_TASK) {
+            List<Integer> batch = undigested.subList(start, Math.min(start + ENTRIES_PER_TASK, undigested.size()));
+
+            tasks.add(pool.submit(() -> {
+                // Every task reads through its own JarFile, the JDK shares the central directory between them
+                try (JarFile taskJar = new JarFile(jarFile)) {
+                    for (int i : batch) {
+                        JarEntry jarEntry = taskJar.getJarEntry(jarEntries.get(i).getName());
+                        digests[i] = digestJarEntry(taskJar, jarEntry, digestType);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof CryptoException) {
+                throw (CryptoException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CryptoException(res.getString("JarDigestSignatureFailed.exception.message"), cause);
+        } finally {
+            // Do not keep on digesting if one of the entries failed or the signing was cancelled
+            for (Future<Void> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        return digests;
+    }
+
+    /*
+     * Get the digests of the supplied type from the JAR's manifest for the
+     * entries that are already signed, keyed by entry name. Any signer is
+     * accepted, e.g. when a second signature is added. A digest is only taken
+     * over if a signature file of the JAR verifies with the certificate in its
+     * signature block, its digest of the entry's manifest section still
+     * matches and the CRC-32 and size it recorded for the entry are those of
+     * the entry in the central directory. An entry whose content has changed
+     * is therefore digested again whatever its modification time. Signature
+     * files without CRC-32 and size, e.g. from jarsigner, cannot tell whether
+     * an entry has changed and are not used.
+     */
+    static Map<String, String> getSignedDigests(JarFile jar, DigestType digestType)
+            throws IOException, CryptoException {
+
+        Map<String, String> signedDigests = new HashMap<>();
+
+        JarEntry manifestEntry = jar.getJarEntry(JarFile.MANIFEST_NAME);
+
+        if (manifestEntry == null) {
+            return signedDigests;
+        }
+
+        byte[] manifestContent = readJarEntry(jar, manifestEntry);
+        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestContent));
+        Map<String, byte[]> manifestSections = getManifestSections(manifestContent);
+
+        String digestAttr = MessageFormat.format(DIGEST_ATTR, digestType.jce());
+
+        for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+            JarEntry sfEntry = entries.nextElement();
+
+            if (!isSignatureFile(sfEntry.getName())) {
+                continue;
+            }
+
+            byte[] sf = readJarEntry(jar, sfEntry);
+
+            if (!isVerified(jar, sfEntry.getName(), sf)) {
+                continue;
+            }
+
+            for (Map.Entry<String, Attributes> sfSection : new Manifest(
+                    new ByteArrayInputStream(sf)).getEntries().entrySet()) {
+                String entryName = sfSection.getKey();
+                String sectionDigest = sfSection.getValue().getValue(digestAttr);
+                byte[] manifestSection = manifestSections.get(entryName);
+                Attributes entryAttrs = manifest.getAttributes(entryName);
+                JarEntry jarEntry = jar.getJarEntry(entryName);
+
+                if (sectionDigest == null || manifestSection == null || entryAttrs == null
+                        || entryAttrs.getValue(digestAttr) == null || jarEntry == null
+                        || !isUnchanged(jarEntry, sfSection.getValue())) {
+                    continue;
+                }
+
+                byte[] mdSection = DigestUtil.getMessageDigest(manifestSection, digestType);
+
+                if (sectionDigest.equals(Base64.toBase64String(mdSection))) {
+                    signedDigests.put(entryName, entryAttrs.getValue(digestAttr));
+                }
+            }
+        }
+
+        return signedDigests;
+    }
+
+    /*
+     * Does the JAR entry still have the CRC-32 and size recorded in its
+     * signature file section? Sections without them, e.g. from other signing
+     * tools, never match.
+     */
+    private static boolean isUnchanged(JarEntry jarEntry, Attributes sfAttrs) {
+
+        String crc = sfAttrs.getValue(ENTRY_CRC_ATTR);
+        String size = sfAttrs.getValue(ENTRY_SIZE_ATTR);
+
+        if (crc == null || size == null || jarEntry.getCrc() == -1 || jarEntry.getSize() == -1) {
+            return false;
+        }
+
+        return crc.equals(Long.toHexString(jarEntry.getCrc())) && size.equals(Long.toString(jarEntry.getSize()));
+    }
+
+    /*
+     * Does the supplied signature file of the JAR verify with the certificate
+     * of its signer in the signature block? The signature block is the entry
+     * of the same name with one of the signature block extensions. Whether
+     * the certificate is trusted does not matter here, the signature only
+     * shows that the signature file is intact.
+     */
+    private static boolean isVerified(JarFile jar, String sfName, byte[] sf) throws IOException {
+
+        String baseName = sfName.substring(0, sfName.length() - SIGNATURE_EXT.length());
+
+        for (String blockExt : new String[] { RSA_SIG_BLOCK_EXT, EC_SIG_BLOCK_EXT, DSA_SIG_BLOCK_EXT }) {
+            JarEntry blockEntry = jar.getJarEntry(baseName + blockExt);
+
+            if (blockEntry == null) {
+                blockEntry = jar.getJarEntry(baseName + blockExt.toLowerCase(Locale.ENGLISH));
+            }
+
+            if (blockEntry == null) {
+                continue;
+            }
+
+            try {
+                CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(sf),
+                                                             readJarEntry(jar, blockEntry));
+                Store<X509CertificateHolder> certificates = signedData.getCertificates();
+
+                for (SignerInformation signerInfo : signedData.getSignerInfos().getSigners()) {
+                    for (X509CertificateHolder certificateHolder : certificates.getMatches(signerInfo.getSID())) {
+                        SignerInformationVerifier verifier = new JcaSimpleSignerInfoVerifierBuilder().setProvider(
+                                KSE.BC).build(certificateHolder);
+
+                        if (signerInfo.verify(verifier)) {
+                            return true;
+                        }
+                    }
+                }
+            } catch (CMSException | OperatorCreationException | CertificateException ex) {
+                // Not a valid signature, so none of its digests are taken over
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Is the supplied JAR entry name a signature file?
+     */
+    private static boolean isSignatureFile(String entryName) {
+        return entryName.startsWith("META-INF/") && entryName.indexOf('/', "META-INF/".length()) < 0
+               && entryName.toUpperCase(Locale.ENGLISH).endsWith("." + SIGNATURE_EXT);
+    }
+
+    /*
+     * Split the raw content of a manifest into the sections of its entries,
+     * keyed by entry name. Every section includes the empty line that ends it,
+     * as it does when its digest is put into a signature file.
      */
-    private static String getDigestManifestAttrs(JarFile jar, JarEntry jarEntry, DigestType digestType)
+    private static Map<String, byte[]> getManifestSections(byte[] manifest) {
+
+        Map<String, byte[]> sections = new HashMap<>();
+        byte[] namePrefix = (NAME_ATTR + ": ").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream entryName = null;
+        boolean inEntryName = false;
+        int sectionStart = 0;
+        int lineStart = 0;
+
+        while (lineStart < manifest.length) {
+            int lineEnd = lineStart;
+
+            while (lineEnd < manifest.length && manifest[lineEnd] != '\r' && manifest[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            int nextLine = lineEnd;
+
+            if (nextLine < manifest.length && manifest[nextLine] == '\r') {
+                nextLine++;
+            }
+            if (nextLine < manifest.length && manifest[nextLine] == '\n') {
+                nextLine++;
+            }
+
+            if (lineEnd == lineStart) {
+                // An empty line ends the section
+                if (entryName != null) {
+                    sections.put(entryName.toString(StandardCharsets.UTF_8),
+                                 Arrays.copyOfRange(manifest, sectionStart, nextLine));
+                }
+                entryName = null;
+                inEntryName = false;
+                sectionStart = nextLine;
+            } else if (lineStart == sectionStart && startsWith(manifest, lineStart, lineEnd, namePrefix)) {
+                entryName = new ByteArrayOutputStream();
+                entryName.write(manifest, lineStart + namePrefix.length, lineEnd - lineStart - namePrefix.length);
+                inEntryName = true;
+            } else if (inEntryName && manifest[lineStart] == ' ') {
+                // Continuation of a name longer than a line
+                entryName.write(manifest, lineStart + 1, lineEnd - lineStart - 1);
+            } else {
+                inEntryName = false;
+            }
+
+            lineStart = nextLine;
+        }
+
+        return sections;
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        return end - start >= prefix.length
+               && Arrays.equals(bytes, start, start + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static byte[] readJarEntry(JarFile jar, JarEntry jarEntry) throws IOException {
+        try (InputStream jis = jar.getInputStream(jarEntry)) {
+            return jis.readAllBytes();
+        }
+    }
+
+    /*
+     * Get the digest of the supplied JAR entry as manifest section and the
+     * digest of that section as signature file section
+     */
+    private static EntryDigest digestJarEntry(JarFile jar, JarEntry jarEntry, DigestType digestType)
             throws IOException, CryptoException {
 
         // Get input stream to JAR entry's content
@@ -428,15 +777,58 @@ public class JarSigner {
             byte[] md = DigestUtil.getMessageDigest(jis, digestType);
             String md64Str = Base64.toBase64String(md);
 
-            // Write manifest entries for JARs digest
-            String sbManifestEntry = createAttributeText(NAME_ATTR, jarEntry.getName()) +
-                    CRLF +
-                    createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), md64Str) +
-                    CRLF +
-                    CRLF;
+            return createEntryDigest(jarEntry, md64Str, digestType);
+        }
+    }
+
+    /*
+     * Create the manifest section for the supplied digest of a JAR entry and
+     * the signature file section with the digest of the manifest section. The
+     * signature file section also records the CRC-32 and size of the entry, so
+     * that the digest can be reused while the entry's content is unchanged.
+     */
+    private static EntryDigest createEntryDigest(JarEntry jarEntry, String md64Str, DigestType digestType)
+            throws CryptoException {
+
+        String entryName = jarEntry.getName();
 
-            return sbManifestEntry;
+        // Get the digest of the entry as manifest attributes
+        String manifestEntry = getDigestManifestAttrs(entryName, md64Str, digestType);
+
+        // Get the digest of manifest entries created above
+        byte[] mdSf = DigestUtil.getMessageDigest(manifestEntry.getBytes(), digestType);
+        String mdSf64Str = Base64.toBase64String(mdSf);
+
+        // Write this digest as entries in signature file
+        StringBuilder sbSfEntry = new StringBuilder();
+        sbSfEntry.append(createAttributeText(NAME_ATTR, entryName));
+        sbSfEntry.append(CRLF);
+        sbSfEntry.append(createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), mdSf64Str));
+        sbSfEntry.append(CRLF);
+
+        if (jarEntry.getCrc() != -1 && jarEntry.getSize() != -1) {
+            sbSfEntry.append(createAttributeText(ENTRY_CRC_ATTR, Long.toHexString(jarEntry.getCrc())));
+            sbSfEntry.append(CRLF);
+            sbSfEntry.append(createAttributeText(ENTRY_SIZE_ATTR, Long.toString(jarEntry.getSize())));
+            sbSfEntry.append(CRLF);
         }
+        sbSfEntry.append(CRLF);
+
+        return new EntryDigest(manifestEntry, sbSfEntry.toString());
+    }
+
+    /*
+     *  Get the digest of a JAR entry as manifest attributes
+     *  "Name" and "<digestType> Digest"
+     */
+    private static String getDigestManifestAttrs(String entryName, String md64Str, DigestType digestType) {
+
+        // Write manifest entries for JARs digest
+        return createAttributeText(NAME_ATTR, entryName) +
+               CRLF +
+               createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), md64Str) +
+               CRLF +
+               CRLF;
     }
 
     /*
@@ -533,35 +925,37 @@ public class JarSigner {
      * manifest and existing signature files for the supplied signature name
      */
     private static void writeJarEntries(JarFile jar, JarOutputStream jos, String signatureName) throws IOException {
-        signatureName = signatureName.toUpperCase();
-
         for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
             JarEntry jarEntry = jarEntries.nextElement();
-            if (!jarEntry.isDirectory()) {
-                String entryName = jarEntry.getName();
-
-                // Signature files not to write across
-                String sigFileLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT);
-                String dsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, DSA_SIG_BLOCK_EXT);
-                String rsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, RSA_SIG_BLOCK_EXT);
-                String ecSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, EC_SIG_BLOCK_EXT);
-
-                // Do not write across existing manifest or matching signature files
-                if ((!entryName.equals(JarFile.MANIFEST_NAME)) &&
-                    (!entryName.equals(sigFileLocation)) &&
-                    (!entryName.equals(dsaSigBlockLocation)) &&
-                    (!entryName.equals(ecSigBlockLocation)) &&
-                    (!entryName.equals(rsaSigBlockLocation))) {
-                    // New JAR entry based on original
-                    transferJarEntry(jar, jos, jarEntry);
-                }
-            } else {
-                // simply transfer directory
+
+            // Do not write across existing manifest or matching signature files, simply transfer directories
+            if (jarEntry.isDirectory() || !isReplacedJarEntry(jarEntry.getName(), signatureName)) {
+                // New JAR entry based on original
                 transferJarEntry(jar, jos, jarEntry);
             }
         }
     }
 
+    /*
+     * Is the JAR entry replaced by the signing, i.e. is it the manifest or an
+     * existing signature file for the supplied signature name?
+     */
+    private static boolean isReplacedJarEntry(String entryName, String signatureName) {
+        signatureName = signatureName.toUpperCase();
+
+        // Signature files not to write across
+        String sigFileLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT);
+        String dsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, DSA_SIG_BLOCK_EXT);
+        String rsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, RSA_SIG_BLOCK_EXT);
+        String ecSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, EC_SIG_BLOCK_EXT);
+
+        return entryName.equals(JarFile.MANIFEST_NAME) ||
+               entryName.equals(sigFileLocation) ||
+               entryName.equals(dsaSigBlockLocation) ||
+               entryName.equals(ecSigBlockLocation) ||
+               entryName.equals(rsaSigBlockLocation);
+    }
+
     private static void transferJarEntry(JarFile jar, JarOutputStream jos, JarEntry jarEntry) throws IOException {
         JarEntry newJarEntry = new JarEntry(jarEntry.getName());
         newJarEntry.setMethod(jarEntry.getMethod());
@@ -581,37 +975,28 @@ public class JarSigner {
     }
 
     /*
-     *  Write manifest content to output stream
+     *  Write manifest, signature file or signature block content to output stream
      */
-    private static void writeManifest(byte[] manifest, JarOutputStream jos) throws IOException {
+    private static void writeJarEntry(String entryName, byte[] content, JarOutputStream jos) throws IOException {
 
-        // Manifest file entry
-        JarEntry mfJarEntry = new JarEntry(JarFile.MANIFEST_NAME);
-        jos.putNextEntry(mfJarEntry);
+        JarEntry jarEntry = new JarEntry(entryName);
+        jos.putNextEntry(jarEntry);
 
-        jos.write(manifest);
+        jos.write(content);
         jos.closeEntry();
     }
 
     /*
-     *  Write signature file content to output stream
+     *  Get the name of the signature file entry
      */
-    private static void writeSignatureFile(byte[] sf, String signatureName, JarOutputStream jos) throws IOException {
-
-        // Signature file entry
-        JarEntry sfJarEntry = new JarEntry(
-                MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT).toUpperCase());
-        jos.putNextEntry(sfJarEntry);
-
-        jos.write(sf);
-        jos.closeEntry();
+    private static String getSignatureFileName(String signatureName) {
+        return MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT).toUpperCase();
     }
 
     /*
-     *  Write signature block to output stream
+     *  Get the name of the signature block entry
      */
-    private static void writeSignatureBlock(byte[] sigBlock, SignatureType signatureType, String signatureName,
-                                            JarOutputStream jos) throws IOException {
+    private static String getSignatureBlockName(String signatureName, SignatureType signatureType) {
 
         // Block's extension depends on signature type
         String extension = null;
@@ -630,13 +1015,7 @@ public class JarSigner {
             extension = DSA_SIG_BLOCK_EXT;
         }
 
-        // Signature block entry
-        JarEntry bkJarEntry = new JarEntry(
-                MessageFormat.format(METAINF_FILE_LOC, signatureName, extension).toUpperCase());
-        jos.putNextEntry(bkJarEntry);
-
-        jos.write(sigBlock);
-        jos.closeEntry();
+        return MessageFormat.format(METAINF_FILE_LOC, signatureName, extension).toUpperCase();
     }
 
     /*
@@ -747,7 +1126,8 @@ public class JarSigner {
         byte[] signature = si.getSignature();
 
         // send request to TSA
-        byte[] token = TimeStampingClient.getTimeStampToken(tsaUrl, signature, DigestType.SHA256);
+        byte[] token = TimeStampingClient.getTimeStampToken(TimeStampingClient.splitTsaUrls(tsaUrl), signature,
+                                                            DigestType.SHA256);
 
         // create new SignerInformation with TS attribute
         Attribute tokenAttr = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
@@ -785,4 +1165,13 @@ public class JarSigner {
         return sb.toString();
     }
 
+    private static class EntryDigest {
+        private final String manifestEntry;
+        private final String sfEntry;
+
+        private EntryDigest(String manifestEntry, String sfEntry) {
+            this.manifestEntry = manifestEntry;
+            this.sfEntry = sfEntry;
+        }
+    }
 }
@@ -92,6 +92,23 @@ public class KseSignerInformation extends SignerInformation {
         return signedData;
     }
 
+    /**
+     * @return True if the signed content, or at least its digest, is available
+     *         for verifying the signature
+     */
+    public boolean isContentAvailable() {
+        if (signedData.getSignedContent() != null) {
+            return true;
+        }
+
+        try {
+            // signatures loaded by streaming only keep the digest of the content
+            return getContentDigest() != null;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
     /**
      * @return the trustedCerts
      */
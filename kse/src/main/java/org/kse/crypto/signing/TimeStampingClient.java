@@ -20,19 +20,31 @@
 package org.kse.crypto.signing;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.security.KeyManagementException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -47,8 +59,21 @@ import org.bouncycastle.util.encoders.Base64;
 import org.kse.crypto.digest.DigestType;
 import org.kse.utilities.rng.RNG;
 
+/**
+ * RFC 3161 time stamping client. All requests share one HTTP client, which
+ * keeps connections to the TSAs alive and can be used by several threads at
+ * once. If a list of TSA URLs is given, the next TSA is asked when a TSA
+ * cannot be reached or does not return a valid time stamp token.
+ */
 public class TimeStampingClient {
 
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String TIMESTAMP_QUERY_TYPE = "application/timestamp-query";
+
+    private static HttpClient httpClient;
+
     private TimeStampingClient() {
     }
 
@@ -62,26 +87,134 @@ public class TimeStampingClient {
      * @throws IOException when request to TSA server fails
      */
     public static byte[] getTimeStampToken(String tsaUrl, byte[] data, DigestType hashAlg) throws IOException {
+        return getTimeStampToken(Collections.singletonList(tsaUrl), data, hashAlg);
+    }
+
+    /**
+     * Get RFC 3161 timeStampToken from the first TSA that returns one.
+     *
+     * @param tsaUrls Locations of TSAs in the order in which they are asked
+     * @param data    The data to be time-stamped
+     * @param hashAlg The algorithm used for generating a hash value of the data to be time-stamped
+     * @return encoded, TSA signed data of the timeStampToken
+     * @throws IOException when the requests to all TSA servers fail
+     */
+    public static byte[] getTimeStampToken(List<String> tsaUrls, byte[] data, DigestType hashAlg)
+            throws IOException {
+
+        return await(getTimeStampTokenAsync(tsaUrls, data, hashAlg));
+    }
+
+    /**
+     * Split the TSA URLs entered by the user into a list. Several URLs are
+     * separated by whitespace or commas and asked in the order they are given.
+     *
+     * @param tsaUrls One or more TSA URLs
+     * @return TSA URLs, empty if none are given
+     */
+    public static List<String> splitTsaUrls(String tsaUrls) {
+        List<String> urls = new ArrayList<>();
 
-        TimeStampResponse response = null;
+        if (tsaUrls != null) {
+            for (String tsaUrl : tsaUrls.split("[\\s,]+")) {
+                if (!tsaUrl.isEmpty()) {
+                    urls.add(tsaUrl);
+                }
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Wait for a requested timeStampToken.
+     *
+     * @param token The requested token
+     * @return encoded, TSA signed data of the timeStampToken
+     * @throws IOException when the requests to all TSA servers failed
+     */
+    static byte[] await(CompletableFuture<byte[]> token) throws IOException {
         try {
+            return token.get();
+        } catch (InterruptedException e) {
+            token.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Time stamp request interrupted");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
 
+    /**
+     * Request an RFC 3161 timeStampToken without waiting for the response, so
+     * that many signatures can be time-stamped at once.
+     *
+     * @param tsaUrls Locations of TSAs in the order in which they are asked
+     * @param data    The data to be time-stamped
+     * @param hashAlg The algorithm used for generating a hash value of the data to be time-stamped
+     * @return encoded, TSA signed data of the timeStampToken once available. Completes
+     *         exceptionally with an IOException when the requests to all TSA servers fail.
+     */
+    public static CompletableFuture<byte[]> getTimeStampTokenAsync(List<String> tsaUrls, byte[] data,
+                                                                   DigestType hashAlg) {
+        if (tsaUrls.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("No TSA URL"));
+        }
+
+        try {
             // calculate hash value
             MessageDigest digest = MessageDigest.getInstance(hashAlg.jce());
             byte[] hashValue = digest.digest(data);
 
-            // Set up the time stamp request
+            // Set up the time stamp request, with a random nonce as requests may be sent at the same time
             TimeStampRequestGenerator tsqGenerator = new TimeStampRequestGenerator();
             tsqGenerator.setCertReq(true);
-            BigInteger nonce = BigInteger.valueOf(System.currentTimeMillis());
+            BigInteger nonce = new BigInteger(63, RNG.newInstanceDefault());
             TimeStampRequest request = tsqGenerator.generate(new ASN1ObjectIdentifier(hashAlg.oid()), hashValue, nonce);
-            byte[] requestBytes = request.getEncoded();
 
-            // send http request
-            byte[] respBytes = queryServer(tsaUrl, requestBytes);
+            return queryServers(tsaUrls, 0, request, request.getEncoded(), null);
+        } catch (NoSuchAlgorithmException | IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e instanceof IOException ? e : new IOException(e));
+        }
+    }
+
+    /*
+     * Send the request to the TSA with the supplied index and to the following
+     * TSAs if it fails
+     */
+    private static CompletableFuture<byte[]> queryServers(List<String> tsaUrls, int index, TimeStampRequest request,
+                                                          byte[] requestBytes, IOException previousFailure) {
+        String tsaUrl = tsaUrls.get(index);
+
+        CompletableFuture<byte[]> token = queryServer(tsaUrl, requestBytes).thenApply(
+                respBytes -> getToken(respBytes, request));
+
+        CompletableFuture<CompletableFuture<byte[]>> attempt = token.handle((tokenBytes, failure) -> {
+            if (failure == null) {
+                return CompletableFuture.completedFuture(tokenBytes);
+            }
+
+            IOException ex = toIOException(failure);
+            if (previousFailure != null) {
+                ex.addSuppressed(previousFailure);
+            }
+
+            // Try the next TSA
+            if (index + 1 < tsaUrls.size()) {
+                return queryServers(tsaUrls, index + 1, request, requestBytes, ex);
+            }
+            return CompletableFuture.failedFuture(ex);
+        });
+
+        return attempt.thenCompose(Function.identity());
+    }
 
+    /*
+     * Validate the TSA response and extract the time stamp token
+     */
+    private static byte[] getToken(byte[] respBytes, TimeStampRequest request) {
+        try {
             // process response
-            response = new TimeStampResponse(respBytes);
+            TimeStampResponse response = new TimeStampResponse(respBytes);
 
             // validate communication level attributes (RFC 3161 PKIStatus)
             response.validate(request);
@@ -90,35 +223,87 @@ public class TimeStampingClient {
             if (value != 0) {
                 throw new IOException("Server returned error code: " + value);
             }
-        } catch (NoSuchAlgorithmException | TSPException e) {
-            throw new IOException(e);
-        }
 
-        // extract the time stamp token
-        TimeStampToken tsToken = response.getTimeStampToken();
-        if (tsToken == null) {
-            throw new IOException("TSA returned no time stamp token: " + response.getStatusString());
-        }
+            // extract the time stamp token
+            TimeStampToken tsToken = response.getTimeStampToken();
+            if (tsToken == null) {
+                throw new IOException("TSA returned no time stamp token: " + response.getStatusString());
+            }
 
-        return tsToken.getEncoded();
+            return tsToken.getEncoded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (TSPException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
     }
 
     /**
      * Get timestamp token (HTTP communication)
      *
      * @return TSA response, raw bytes (RFC 3161 encoded)
-     * @throws IOException when request to TSA server fails
      */
-    private static byte[] queryServer(String tsaUrl, byte[] requestBytes) throws IOException {
+    private static CompletableFuture<byte[]> queryServer(String tsaUrl, byte[] requestBytes) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(new URI(tsaUrl))
+                                     .timeout(REQUEST_TIMEOUT)
+                                     .header("Content-Type", TIMESTAMP_QUERY_TYPE)
+                                     .header("Content-Transfer-Encoding", "binary")
+                                     .POST(HttpRequest.BodyPublishers.ofByteArray(requestBytes))
+                                     .build();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid TSA URL: " + tsaUrl, e));
+        }
 
-        // Install the all-trusting trust manager
-        SSLContext sc;
+        return getHttpClient().sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() >= 400) {
+                throw new UncheckedIOException(
+                        new IOException("Server returned HTTP response code: " + response.statusCode() + " for URL: " +
+                                        tsaUrl));
+            }
+
+            byte[] respBytes = response.body();
+            String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+            if (encoding != null && encoding.equalsIgnoreCase("base64")) {
+                respBytes = Base64.decode(new String(respBytes));
+            }
+            return respBytes;
+        });
+    }
+
+    private static IOException toIOException(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException ||
+                failure instanceof UncheckedIOException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure instanceof IOException ? (IOException) failure : new IOException(failure);
+    }
+
+    private static synchronized HttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = HttpClient.newBuilder()
+                                   .version(HttpClient.Version.HTTP_1_1)
+                                   .connectTimeout(CONNECT_TIMEOUT)
+                                   .followRedirects(HttpClient.Redirect.NORMAL)
+                                   .proxy(new DefaultProxySelector())
+                                   .sslContext(createTrustAllContext())
+                                   .build();
+        }
+        return httpClient;
+    }
+
+    /*
+     * The TSA server certificate is not checked, the time stamp token is
+     * signed by the TSA anyway. The context is only used by this client.
+     */
+    private static SSLContext createTrustAllContext() {
         try {
-            sc = SSLContext.getInstance("SSL");
+            SSLContext sc = SSLContext.getInstance("TLS");
             sc.init(null, new TrustManager[] { new X509TrustManager() {
                 @Override
-                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                    return null;
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
                 }
 
                 @Override
@@ -129,38 +314,29 @@ public class TimeStampingClient {
                 public void checkServerTrusted(X509Certificate[] certs, String authType) {
                 }
             } }, RNG.newInstanceDefault());
+            return sc;
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new IOException(e);
+            throw new IllegalStateException(e);
         }
-        SSLSocketFactory defaultSSLSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+    }
 
-        try {
-            URL url = new URL(tsaUrl);
-            URLConnection con = url.openConnection();
-            con.setDoInput(true);
-            con.setDoOutput(true);
-            con.setUseCaches(false);
-            con.setRequestProperty("Content-Type", "application/timestamp-query");
-            con.setRequestProperty("Content-Transfer-Encoding", "binary");
-
-            try (OutputStream out = con.getOutputStream()) {
-                out.write(requestBytes);
-                out.close();
-            }
+    /*
+     * Asks the current default proxy selector, which changes with the proxy
+     * settings of the application
+     */
+    private static class DefaultProxySelector extends ProxySelector {
+        @Override
+        public List<Proxy> select(URI uri) {
+            ProxySelector proxySelector = ProxySelector.getDefault();
+            return proxySelector == null ? List.of(Proxy.NO_PROXY) : proxySelector.select(uri);
+        }
 
-            try (InputStream is = con.getInputStream()) {
-                byte[] respBytes = is.readAllBytes();
-                String encoding = con.getContentEncoding();
-                if (encoding != null && encoding.equalsIgnoreCase("base64")) {
-                    respBytes = Base64.decode(new String(respBytes));
-                }
-                return respBytes;
+        @Override
+        public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+            ProxySelector proxySelector = ProxySelector.getDefault();
+            if (proxySelector != null) {
+                proxySelector.connectFailed(uri, sa, ioe);
             }
-
-        } finally {
-            // restore default trust manager
-            HttpsURLConnection.setDefaultSSLSocketFactory(defaultSSLSocketFactory);
         }
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+/**
+ * The result of reading and verifying all entries of a JAR file in a single
+ * pass by {@link JarParser#verify()}.
+ */
+public class VerifiedJar {
+    private final List<JarEntry> entries;
+    private final Map<String, byte[]> signatureFiles;
+    private final Map<String, byte[]> signatureBlocks;
+    private final X509Certificate[] signerCertificates;
+
+    VerifiedJar(List<JarEntry> entries, Map<String, byte[]> signatureFiles, Map<String, byte[]> signatureBlocks,
+                X509Certificate[] signerCertificates) {
+        this.entries = entries;
+        this.signatureFiles = signatureFiles;
+        this.signatureBlocks = signatureBlocks;
+        this.signerCertificates = signerCertificates;
+    }
+
+    /**
+     * Get all entries in the order of the JAR. The entries have been read
+     * completely, so that their code signers and certificates are available.
+     *
+     * @return JAR entries
+     */
+    public List<JarEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the content of the signature files (META-INF/*.SF).
+     *
+     * @return Signature file content by entry name
+     */
+    public Map<String, byte[]> getSignatureFiles() {
+        return signatureFiles;
+    }
+
+    /**
+     * Get the content of the signature blocks (META-INF/*.RSA, *.DSA, *.EC).
+     *
+     * @return Signature block content by entry name
+     */
+    public Map<String, byte[]> getSignatureBlocks() {
+        return signatureBlocks;
+    }
+
+    /**
+     * Get the signature file that belongs to a signature block. Their names
+     * are matched ignoring case, as the JDK does when verifying.
+     *
+     * @param signatureBlockName Entry name of the signature block
+     * @return Content of the signature file or null if there is none
+     */
+    public byte[] getSignatureFile(String signatureBlockName) {
+        String signatureFileName = signatureBlockName.substring(0, signatureBlockName.lastIndexOf('.') + 1)
+                                   + JarSigner.SIGNATURE_EXT;
+
+        for (Map.Entry<String, byte[]> signatureFile : signatureFiles.entrySet()) {
+            if (signatureFile.getKey().equalsIgnoreCase(signatureFileName)) {
+                return signatureFile.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the certificates of all signers of the entries.
+     *
+     * @return Unordered array with signer certificates
+     */
+    public X509Certificate[] getSignerCertificates() {
+        return signerCertificates;
+    }
+}
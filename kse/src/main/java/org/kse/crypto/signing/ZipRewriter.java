@@ -0,0 +1,409 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Rewrites a ZIP file with some entries added or replaced. All other entries
+ * are copied verbatim, i.e. their compressed content and headers are not
+ * inflated and deflated again. Only plain ZIP files are rewritten, ZIP64
+ * files and files with data in front of the first entry (e.g. a launcher
+ * script) are left to the caller.
+ */
+final class ZipRewriter {
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_HEADER_SIG = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    // Offset of the local header offset in a central directory header
+    private static final int CENTRAL_HEADER_OFFSET_FIELD = 42;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int VERSION_DEFLATED = 20;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    // Extra field that marks a JAR file, added to the first entry like JarOutputStream does
+    private static final byte[] JAR_MAGIC_EXTRA = { (byte) 0xFE, (byte) 0xCA, 0, 0 };
+
+    private ZipRewriter() {
+    }
+
+    /**
+     * Write a ZIP file consisting of the new entries followed by the entries of
+     * the source ZIP file that are not skipped.
+     *
+     * @param source     Source ZIP file
+     * @param target     Target ZIP file, must not be the source file
+     * @param newEntries Names and contents of the entries to add in order
+     * @param skip       Tells which entries of the source ZIP file not to copy
+     * @return False if the source ZIP file cannot be rewritten without inflating
+     *         its entries, the target file has not been written completely then
+     * @throws IOException If an I/O problem occurred
+     */
+    static boolean rewrite(File source, File target, Map<String, byte[]> newEntries, Predicate<String> skip)
+            throws IOException {
+
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer centralDirectory = readCentralDirectory(in);
+
+            if (centralDirectory == null) {
+                return false;
+            }
+
+            try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                return write(in, out, centralDirectory, newEntries, skip);
+            }
+        }
+    }
+
+    /*
+     * Read the central directory including the end of central directory record
+     * or return null if the ZIP file is not supported
+     */
+    private static ByteBuffer readCentralDirectory(FileChannel in) throws IOException {
+        long size = in.size();
+
+        if (size < END_HEADER_SIZE) {
+            return null;
+        }
+
+        // The end of central directory record is followed by the ZIP comment
+        int tailSize = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(in, size - tailSize, tailSize);
+
+        int endPos = -1;
+        for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+            int commentLength = tail.getShort(i + 20) & 0xFFFF;
+            if (tail.getInt(i) == END_HEADER_SIG && i + END_HEADER_SIZE + commentLength == tailSize) {
+                endPos = i;
+                break;
+            }
+        }
+
+        if (endPos < 0) {
+            return null;
+        }
+
+        int disk = tail.getShort(endPos + 4) & 0xFFFF;
+        int cdDisk = tail.getShort(endPos + 6) & 0xFFFF;
+        int count = tail.getShort(endPos + 10) & 0xFFFF;
+        long cdSize = tail.getInt(endPos + 12) & 0xFFFFFFFFL;
+        long cdOffset = tail.getInt(endPos + 16) & 0xFFFFFFFFL;
+        long endOffset = size - tailSize + endPos;
+
+        // No multi-volume or ZIP64 files, the central directory must directly precede its end record
+        if (disk != 0 || cdDisk != 0 || count == ZIP64_MAGIC_COUNT || cdSize == ZIP64_MAGIC ||
+            cdOffset == ZIP64_MAGIC || cdOffset + cdSize != endOffset || cdSize > Integer.MAX_VALUE - tailSize) {
+            return null;
+        }
+
+        ByteBuffer centralDirectory = read(in, cdOffset, (int) (size - cdOffset));
+
+        // Data in front of the first entry, e.g. a launcher script, would be lost
+        if (getFirstLocalOffset(centralDirectory, cdOffset) != 0) {
+            return null;
+        }
+
+        return centralDirectory;
+    }
+
+    /*
+     * Get the lowest local header offset of the entries in the central
+     * directory, which is where the central directory starts if there are none
+     */
+    private static long getFirstLocalOffset(ByteBuffer centralDirectory, long cdOffset) {
+        long firstOffset = cdOffset;
+
+        int pos = 0;
+        while (pos + CENTRAL_HEADER_SIZE <= centralDirectory.limit() &&
+               centralDirectory.getInt(pos) == CENTRAL_HEADER_SIG) {
+            int nameLength = centralDirectory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(pos + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(pos + 32) & 0xFFFF;
+            long localOffset = centralDirectory.getInt(pos + CENTRAL_HEADER_OFFSET_FIELD) & 0xFFFFFFFFL;
+
+            firstOffset = Math.min(firstOffset, localOffset);
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return firstOffset;
+    }
+
+    private static boolean write(FileChannel in, FileChannel out, ByteBuffer centralDirectory,
+                                 Map<String, byte[]> newEntries, Predicate<String> skip) throws IOException {
+
+        ByteArrayOutputStream newCentralDirectory = new ByteArrayOutputStream();
+        int count = 0;
+        boolean firstEntry = true;
+
+        // Add the new entries
+        for (Map.Entry<String, byte[]> newEntry : newEntries.entrySet()) {
+            byte[] extra = firstEntry ? JAR_MAGIC_EXTRA : new byte[0];
+            writeNewEntry(out, newCentralDirectory, newEntry.getKey(), newEntry.getValue(), extra);
+            firstEntry = false;
+            count++;
+        }
+
+        // Copy the entries of the source file
+        int pos = 0;
+        while (pos + CENTRAL_HEADER_SIZE <= centralDirectory.limit() &&
+               centralDirectory.getInt(pos) == CENTRAL_HEADER_SIG) {
+            int flags = centralDirectory.getShort(pos + 8) & 0xFFFF;
+            long compressedSize = centralDirectory.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = centralDirectory.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = centralDirectory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(pos + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(pos + 32) & 0xFFFF;
+            long localOffset = centralDirectory.getInt(pos + CENTRAL_HEADER_OFFSET_FIELD) & 0xFFFFFFFFL;
+            int headerLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if (pos + headerLength > centralDirectory.limit() ||
+                compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localOffset == ZIP64_MAGIC) {
+                return false;
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            centralDirectory.get(pos + CENTRAL_HEADER_SIZE, nameBytes);
+            String name = new String(nameBytes, (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 :
+                                                StandardCharsets.ISO_8859_1);
+
+            if (!skip.test(name)) {
+                long newOffset = out.position();
+
+                if (!copyLocalEntry(in, out, localOffset, compressedSize, flags)) {
+                    return false;
+                }
+
+                // Copy the central directory header with the new offset of the local header
+                ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+                centralDirectory.get(pos, header.array());
+                if (!putOffset(header, CENTRAL_HEADER_OFFSET_FIELD, newOffset)) {
+                    return false;
+                }
+                newCentralDirectory.write(header.array());
+                count++;
+            }
+
+            pos += headerLength;
+        }
+
+        if (count >= ZIP64_MAGIC_COUNT) {
+            return false;
+        }
+
+        // Write the central directory followed by the original end record with updated values
+        long cdOffset = out.position();
+        byte[] cdBytes = newCentralDirectory.toByteArray();
+
+        ByteBuffer end = ByteBuffer.allocate(centralDirectory.limit() - pos).order(ByteOrder.LITTLE_ENDIAN);
+        centralDirectory.get(pos, end.array());
+
+        if (end.limit() < END_HEADER_SIZE || end.getInt(0) != END_HEADER_SIG) {
+            return false;
+        }
+
+        end.putShort(8, (short) count);
+        end.putShort(10, (short) count);
+        end.putInt(12, cdBytes.length);
+        if (!putOffset(end, 16, cdOffset)) {
+            return false;
+        }
+
+        writeFully(out, ByteBuffer.wrap(cdBytes));
+        writeFully(out, end);
+
+        return true;
+    }
+
+    /*
+     * Copy local header, compressed content and data descriptor of an entry
+     */
+    private static boolean copyLocalEntry(FileChannel in, FileChannel out, long localOffset, long compressedSize,
+                                          int flags) throws IOException {
+
+        ByteBuffer localHeader = read(in, localOffset, LOCAL_HEADER_SIZE);
+
+        if (localHeader.limit() < LOCAL_HEADER_SIZE || localHeader.getInt(0) != LOCAL_HEADER_SIG) {
+            return false;
+        }
+
+        int nameLength = localHeader.getShort(26) & 0xFFFF;
+        int extraLength = localHeader.getShort(28) & 0xFFFF;
+        long length = LOCAL_HEADER_SIZE + nameLength + extraLength + compressedSize;
+
+        if ((flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            // The signature of the data descriptor is optional
+            ByteBuffer descriptor = read(in, localOffset + length, 4);
+            boolean signed = descriptor.limit() == 4 && descriptor.getInt(0) == DATA_DESCRIPTOR_SIG;
+            length += signed ? 16 : 12;
+        }
+
+        if (localOffset + length > in.size()) {
+            return false;
+        }
+
+        long copied = 0;
+        while (copied < length) {
+            copied += in.transferTo(localOffset + copied, length - copied, out);
+        }
+
+        return true;
+    }
+
+    private static void writeNewEntry(FileChannel out, ByteArrayOutputStream centralDirectory, String name,
+                                      byte[] content, byte[] extra) throws IOException {
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(content);
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        int dosTime = javaToDosTime(LocalDateTime.now());
+        long offset = out.position();
+
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length + extra.length)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(LOCAL_HEADER_SIG);
+        local.putShort((short) VERSION_DEFLATED);
+        local.putShort((short) FLAG_UTF8);
+        local.putShort((short) Deflater.DEFLATED);
+        local.putInt(dosTime);
+        local.putInt((int) crc.getValue());
+        local.putInt(compressed.length);
+        local.putInt(content.length);
+        local.putShort((short) nameBytes.length);
+        local.putShort((short) extra.length);
+        local.put(nameBytes);
+        local.put(extra);
+        local.flip();
+
+        writeFully(out, local);
+        writeFully(out, ByteBuffer.wrap(compressed));
+
+        ByteBuffer central = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + nameBytes.length + extra.length)
+                                       .order(ByteOrder.LITTLE_ENDIAN);
+        central.putInt(CENTRAL_HEADER_SIG);
+        central.putShort((short) VERSION_DEFLATED);
+        central.putShort((short) VERSION_DEFLATED);
+        central.putShort((short) FLAG_UTF8);
+        central.putShort((short) Deflater.DEFLATED);
+        central.putInt(dosTime);
+        central.putInt((int) crc.getValue());
+        central.putInt(compressed.length);
+        central.putInt(content.length);
+        central.putShort((short) nameBytes.length);
+        central.putShort((short) extra.length);
+        central.putShort((short) 0); // comment length
+        central.putShort((short) 0); // disk number
+        central.putShort((short) 0); // internal attributes
+        central.putInt(0); // external attributes
+        central.putInt((int) offset);
+        central.put(nameBytes);
+        central.put(extra);
+
+        centralDirectory.write(central.array());
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                baos.write(buffer, 0, len);
+            }
+            return baos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /*
+     * Convert a local date and time to MS-DOS format with the date in the
+     * upper and the time in the lower 16 bits
+     */
+    private static int javaToDosTime(LocalDateTime time) {
+        int year = time.getYear();
+
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (year - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16 |
+               time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static boolean putOffset(ByteBuffer buffer, int index, long offset) {
+        if (offset >= ZIP64_MAGIC) {
+            return false;
+        }
+        buffer.putInt(index, (int) offset);
+        return true;
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the tags and lengths of DER encoded structures in a file without
+ * decoding their content or reading the whole file into memory. The file is
+ * read through a buffer, so that structures that follow each other are read
+ * with few reads of the file. An encoding that is already in memory is read
+ * the same way.
+ */
+class DerFileReader implements Closeable {
+    private static final int TAG_INTEGER = 0x02;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer buffer;
+    private long bufferStart;
+    long pos;
+
+    DerFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.limit(0);
+    }
+
+    DerFileReader(byte[] data) {
+        this.channel = null;
+        this.size = data.length;
+        this.buffer = ByteBuffer.wrap(data);
+    }
+
+    int peekTag() throws IOException {
+        return byteAt(pos);
+    }
+
+    /**
+     * Read the tag and length of a structure, which must have the expected
+     * tag, and continue reading with its content.
+     *
+     * @return Position after the end of the structure
+     */
+    long enter(int expectedTag) throws IOException {
+        int tag = peekTag();
+        if (tag != expectedTag) {
+            throw new IOException("Unexpected tag " + tag + " at offset " + pos);
+        }
+        pos++;
+
+        long length = readLength();
+        return pos + length;
+    }
+
+    /**
+     * Skip a complete structure.
+     */
+    void skip() throws IOException {
+        peekTag();
+        pos++;
+
+        long length = readLength();
+        pos += length;
+    }
+
+    /**
+     * Read a complete structure including its tag and length.
+     *
+     * @return Copy of the DER encoding of the structure
+     */
+    byte[] read() throws IOException {
+        long start = pos;
+        skip();
+
+        if (pos - start > Integer.MAX_VALUE) {
+            throw new IOException("Structure too large at offset " + start);
+        }
+        byte[] data = new byte[(int) (pos - start)];
+        copy(start, data.length, data, null);
+        return data;
+    }
+
+    /**
+     * Read the value of an INTEGER.
+     *
+     * @return The value
+     */
+    BigInteger readInteger() throws IOException {
+        long end = enter(TAG_INTEGER);
+        if (end - pos > Integer.MAX_VALUE) {
+            throw new IOException("Integer too large at offset " + pos);
+        }
+        byte[] value = new byte[(int) (end - pos)];
+        copy(pos, value.length, value, null);
+        pos = end;
+        return new BigInteger(value);
+    }
+
+    /**
+     * Write the encoding from the current position up to an end position and
+     * continue reading there.
+     *
+     * @param end End of the encoding to write
+     * @param out Stream to write to
+     */
+    void write(long end, OutputStream out) throws IOException {
+        copy(pos, end - pos, null, out);
+        pos = end;
+    }
+
+    private void copy(long start, long length, byte[] data, OutputStream out) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long position = start + copied;
+            fill(position);
+
+            int offset = (int) (position - bufferStart);
+            int count = (int) Math.min(buffer.limit() - offset, length - copied);
+            if (data != null) {
+                buffer.get(offset, data, (int) copied, count);
+            } else {
+                out.write(buffer.array(), offset, count);
+            }
+            copied += count;
+        }
+    }
+
+    private long readLength() throws IOException {
+        long length = readByte();
+
+        if (length > 0x7f) {
+            int lengthSize = (int) (length & 0x7f);
+
+            // indefinite lengths are not allowed in DER
+            if (lengthSize == 0 || lengthSize > 7) {
+                throw new IOException("Unsupported length encoding at offset " + (pos - 1));
+            }
+
+            length = 0;
+            for (int i = 0; i < lengthSize; i++) {
+                length = (length << 8) | readByte();
+            }
+        }
+
+        if (length > size - pos) {
+            throw new EOFException();
+        }
+        return length;
+    }
+
+    private int readByte() throws IOException {
+        return byteAt(pos++);
+    }
+
+    private int byteAt(long position) throws IOException {
+        fill(position);
+        return buffer.get((int) (position - bufferStart)) & 0xff;
+    }
+
+    /**
+     * Make sure that the buffer contains the byte at a position.
+     */
+    private void fill(long position) throws IOException {
+        if (position >= size) {
+            throw new EOFException();
+        }
+
+        if (position >= bufferStart && position < bufferStart + buffer.limit()) {
+            return;
+        }
+
+        buffer.clear();
+        bufferStart = position;
+        while (buffer.hasRemaining() && channel.read(buffer, bufferStart + buffer.position()) > 0) {
+            // read until the buffer is full or the end of the file is reached
+        }
+        buffer.flip();
+
+        // the file was truncated since its size was read
+        if (!buffer.hasRemaining()) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
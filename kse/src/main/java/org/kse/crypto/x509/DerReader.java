@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the tags and lengths of DER encoded structures without decoding
+ * their content.
+ */
+class DerReader {
+    private final byte[] data;
+    int pos;
+
+    DerReader(byte[] data) {
+        this.data = data;
+    }
+
+    int peekTag() throws IOException {
+        if (pos >= data.length) {
+            throw new EOFException();
+        }
+        return data[pos] & 0xff;
+    }
+
+    /**
+     * Read the tag and length of a structure, which must have the expected
+     * tag, and continue reading with its content.
+     *
+     * @return Position after the end of the structure
+     */
+    int enter(int expectedTag) throws IOException {
+        int tag = peekTag();
+        if (tag != expectedTag) {
+            throw new IOException("Unexpected tag " + tag + " at offset " + pos);
+        }
+        pos++;
+
+        int length = readLength();
+        return pos + length;
+    }
+
+    /**
+     * Skip a complete structure.
+     */
+    void skip() throws IOException {
+        peekTag();
+        pos++;
+
+        int length = readLength();
+        pos += length;
+    }
+
+    /**
+     * Read a complete structure including its tag and length.
+     *
+     * @return Copy of the DER encoding of the structure
+     */
+    byte[] read() throws IOException {
+        int start = pos;
+        skip();
+        return Arrays.copyOfRange(data, start, pos);
+    }
+
+    private int readLength() throws IOException {
+        int length = readByte();
+
+        if (length > 0x7f) {
+            int size = length & 0x7f;
+
+            // indefinite lengths are not allowed in DER
+            if (size == 0 || size > 4) {
+                throw new IOException("Unsupported length encoding at offset " + (pos - 1));
+            }
+
+            length = 0;
+            for (int i = 0; i < size; i++) {
+                length = (length << 8) | readByte();
+            }
+        }
+
+        if (length < 0 || length > data.length - pos) {
+            throw new EOFException();
+        }
+        return length;
+    }
+
+    private int readByte() throws IOException {
+        if (pos >= data.length) {
+            throw new EOFException();
+        }
+        return data[pos++] & 0xff;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.math.BigInteger;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.selector.X509CertificateHolderSelector;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.util.Selector;
+import org.bouncycastle.util.Store;
+import org.kse.utilities.io.HexUtil;
+
+/**
+ * A certificate store for resolving the certificates of CMS and JAR signers.
+ * Unlike JcaCertStore, which compares every certificate with the selector,
+ * the certificates are indexed by issuer and serial number and by subject key
+ * identifier, so that looking up the certificate of a signer ID takes constant
+ * time however many trusted certificates there are. Other selectors fall back
+ * to comparing every certificate.
+ * <p>
+ * The store is immutable and therefore safe to share between threads.
+ * </p>
+ */
+public class IndexedCertStore implements Store<X509CertificateHolder> {
+    private final List<X509CertificateHolder> certificates = new ArrayList<>();
+    private final Map<IssuerSerial, List<X509CertificateHolder>> byIssuerSerial = new HashMap<>();
+    private final Map<String, List<X509CertificateHolder>> bySki = new HashMap<>();
+    private final List<X509CertificateHolder> withoutSki = new ArrayList<>();
+
+    /**
+     * Construct an IndexedCertStore containing the supplied certificates.
+     *
+     * @param certs Certificates to index
+     * @throws CertificateEncodingException If a certificate could not be encoded
+     */
+    public IndexedCertStore(Collection<X509Certificate> certs) throws CertificateEncodingException {
+        for (X509Certificate cert : certs) {
+            add(new JcaX509CertificateHolder(cert));
+        }
+    }
+
+    private void add(X509CertificateHolder cert) {
+        certificates.add(cert);
+
+        byIssuerSerial.computeIfAbsent(new IssuerSerial(cert.getIssuer(), cert.getSerialNumber()),
+                                       k -> new ArrayList<>(1)).add(cert);
+
+        SubjectKeyIdentifier ski = SubjectKeyIdentifier.fromExtensions(cert.getExtensions());
+        if (ski != null) {
+            bySki.computeIfAbsent(HexUtil.getHexString(ski.getKeyIdentifier()), k -> new ArrayList<>(1)).add(cert);
+        } else {
+            // the selector derives a key identifier from the public key of these
+            withoutSki.add(cert);
+        }
+    }
+
+    /**
+     * Get the number of certificates in the store.
+     *
+     * @return Number of certificates
+     */
+    public int size() {
+        return certificates.size();
+    }
+
+    @Override
+    public Collection<X509CertificateHolder> getMatches(Selector<X509CertificateHolder> selector) {
+        if (selector == null) {
+            return new ArrayList<>(certificates);
+        }
+
+        List<X509CertificateHolder> candidates = certificates;
+
+        X500Name issuer = null;
+        BigInteger serialNumber = null;
+        byte[] subjectKeyIdentifier = null;
+
+        if (selector instanceof SignerId) {
+            SignerId signerId = (SignerId) selector;
+            issuer = signerId.getIssuer();
+            serialNumber = signerId.getSerialNumber();
+            subjectKeyIdentifier = signerId.getSubjectKeyIdentifier();
+        } else if (selector instanceof X509CertificateHolderSelector) {
+            X509CertificateHolderSelector holderSelector = (X509CertificateHolderSelector) selector;
+            issuer = holderSelector.getIssuer();
+            serialNumber = holderSelector.getSerialNumber();
+            subjectKeyIdentifier = holderSelector.getSubjectKeyIdentifier();
+        }
+
+        if (issuer != null && serialNumber != null) {
+            candidates = byIssuerSerial.getOrDefault(new IssuerSerial(issuer, serialNumber),
+                                                     Collections.emptyList());
+        } else if (subjectKeyIdentifier != null) {
+            candidates = new ArrayList<>(withoutSki);
+            candidates.addAll(bySki.getOrDefault(HexUtil.getHexString(subjectKeyIdentifier),
+                                                 Collections.emptyList()));
+        }
+
+        // the selector has the final say, e.g. if it requires both issuer and serial number and key identifier
+        List<X509CertificateHolder> matches = new ArrayList<>();
+        for (X509CertificateHolder candidate : candidates) {
+            if (selector.match(candidate)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    private static class IssuerSerial {
+        private final X500Name issuer;
+        private final BigInteger serialNumber;
+
+        private IssuerSerial(X500Name issuer, BigInteger serialNumber) {
+            this.issuer = issuer;
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(issuer, serialNumber);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IssuerSerial)) {
+                return false;
+            }
+            IssuerSerial other = (IssuerSerial) obj;
+            return serialNumber.equals(other.serialNumber) && issuer.equals(other.issuer);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.cert.ocsp.jcajce.JcaCertificateID;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+
+/**
+ * Cache for the revocation data of certificates. OCSP responses are cached by
+ * issuer and serial number and CRLs by the URL of their distribution point.
+ * Both are kept until their next update and are stored DER encoded in a
+ * directory, so that they are reused between sessions.
+ * <p>
+ * The cached data is meant to be given to a PKIX revocation checker, either as
+ * OCSP responses of the checker or as CRLs in a cert store. It is not
+ * validated here, as this is done by the checker.
+ * </p>
+ * <p>
+ * Data without a next update is not cached. OCSP requests are sent without a
+ * nonce, because the responses are reused.
+ * </p>
+ * <p>
+ * Only the most recently used data is kept in memory. Expired files are
+ * deleted when they are read or when the directory is pruned. The directory
+ * should be used by a single instance per application, so that files are not
+ * loaded or stored twice.
+ * </p>
+ */
+public class RevocationCache {
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+    private static final int READ_TIMEOUT = 30 * 1000;
+
+    static final int MAX_ENTRIES = 100;
+
+    // a temporary file of a store that is still running must not be deleted
+    static final long MIN_TEMP_FILE_AGE = 60 * 60 * 1000;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/x509/resources");
+
+    private final File cacheDir;
+    private final Map<String, CachedData> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedData> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Construct a new RevocationCache.
+     *
+     * @param cacheDir Directory to store the cached data in or null to keep it
+     *                 in memory only
+     */
+    public RevocationCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Delete the expired and unreadable files from the cache directory,
+     * including temporary files that were left over by an aborted store. Recent
+     * temporary files are kept, as they may belong to a store in progress.
+     */
+    public void prune() {
+        File[] files = cacheDir == null ? null : cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                if (System.currentTimeMillis() - file.lastModified() >= MIN_TEMP_FILE_AGE) {
+                    delete(file);
+                }
+            } else if (name.startsWith("ocsp-") || name.startsWith("crl-")) {
+                load(name);
+            }
+        }
+    }
+
+    /**
+     * Get the OCSP response for a certificate from the responder in its
+     * authority information access extension.
+     * <p>
+     * If no successful response could be obtained, null is returned and
+     * nothing is cached. The revocation checker then queries the responder
+     * itself, so that its own fallback and error reporting apply.
+     * </p>
+     *
+     * @param cert   Certificate
+     * @param issuer Issuer of the certificate
+     * @return DER encoded OCSP response or null if the certificate has no OCSP
+     *         responder or the responder did not respond successfully
+     */
+    public byte[] getOcspResponse(X509Certificate cert, X509Certificate issuer) {
+        URI responderUri = getOcspResponderUri(cert);
+        if (responderUri == null) {
+            return null;
+        }
+
+        try {
+            CertificateID certId = new JcaCertificateID(
+                    new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build().get(CertificateID.HASH_SHA1),
+                    issuer, cert.getSerialNumber());
+
+            String key = "ocsp-" + hash(certId.toASN1Primitive().getEncoded());
+
+            CachedData cached = getCached(key);
+            if (cached != null) {
+                return cached.encoded;
+            }
+
+            byte[] request = new OCSPReqBuilder().addRequest(certId).build().getEncoded();
+            byte[] response = post(responderUri, "application/ocsp-request", "application/ocsp-response", request);
+
+            OCSPResp ocspResp = new OCSPResp(response);
+            if (ocspResp.getStatus() != OCSPResp.SUCCESSFUL) {
+                return null;
+            }
+
+            Date nextUpdate = getNextUpdate(ocspResp, certId);
+            if (nextUpdate != null) {
+                putCached(key, response, nextUpdate.getTime());
+            }
+            return response;
+        } catch (IOException | OCSPException | OperatorCreationException | CertificateEncodingException ex) {
+            // left to the revocation checker
+            return null;
+        }
+    }
+
+    /**
+     * Get the CRLs from the distribution points of a certificate. Only HTTP
+     * distribution points are used.
+     *
+     * @param cert Certificate
+     * @return CRLs, which are empty if the certificate has no HTTP distribution
+     *         point
+     * @throws CryptoException If none of the CRLs could be downloaded
+     */
+    public List<X509CRL> getCrls(X509Certificate cert) throws CryptoException {
+        List<X509CRL> crls = new ArrayList<>();
+        CryptoException lastException = null;
+
+        for (URI crlUri : getCrlDistributionPointUris(cert)) {
+            try {
+                crls.add(getCrl(crlUri));
+            } catch (CryptoException ex) {
+                lastException = ex;
+            }
+        }
+
+        if (crls.isEmpty() && lastException != null) {
+            throw lastException;
+        }
+        return crls;
+    }
+
+    private X509CRL getCrl(URI crlUri) throws CryptoException {
+        String key = "crl-" + hash(crlUri.toString().getBytes(StandardCharsets.UTF_8));
+
+        CachedData cached = getCached(key);
+        if (cached != null) {
+            return X509CertUtil.loadCRL(cached.encoded);
+        }
+
+        byte[] encoded;
+        try {
+            encoded = get(crlUri);
+        } catch (IOException ex) {
+            throw new CryptoException(MessageFormat.format(res.getString("NoFetchCrl.exception.message"), crlUri),
+                                      ex);
+        }
+
+        X509CRL crl = X509CertUtil.loadCRL(encoded);
+        if (crl.getNextUpdate() != null) {
+            putCached(key, encoded, crl.getNextUpdate().getTime());
+        }
+        return crl;
+    }
+
+    private CachedData getCached(String key) {
+        CachedData cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+
+        if (cached == null && cacheDir != null) {
+            cached = load(key);
+            if (cached != null) {
+                synchronized (cache) {
+                    cache.put(key, cached);
+                }
+            }
+        }
+
+        if (cached != null && System.currentTimeMillis() < cached.nextUpdate) {
+            return cached;
+        }
+        return null;
+    }
+
+    private void putCached(String key, byte[] encoded, long nextUpdate) {
+        if (System.currentTimeMillis() >= nextUpdate) {
+            return;
+        }
+
+        synchronized (cache) {
+            cache.put(key, new CachedData(encoded, nextUpdate));
+        }
+
+        if (cacheDir != null) {
+            store(key, encoded);
+        }
+    }
+
+    private CachedData load(String key) {
+        File file = new File(cacheDir, key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        // the next update is taken from the cached data itself
+        Date nextUpdate;
+        byte[] encoded;
+        try {
+            encoded = Files.readAllBytes(file.toPath());
+
+            if (key.startsWith("ocsp-")) {
+                nextUpdate = getNextUpdate(new OCSPResp(encoded), null);
+            } else {
+                nextUpdate = X509CrlHeader.create(encoded).getNextUpdate();
+            }
+        } catch (IOException | OCSPException | CryptoException | IllegalArgumentException ex) {
+            nextUpdate = null;
+            encoded = null;
+        }
+
+        // expired data is never used again
+        if (nextUpdate == null || System.currentTimeMillis() >= nextUpdate.getTime()) {
+            delete(file);
+            return null;
+        }
+        return new CachedData(encoded, nextUpdate.getTime());
+    }
+
+    private void store(String key, byte[] encoded) {
+        try {
+            Files.createDirectories(cacheDir.toPath());
+
+            File tempFile = File.createTempFile(key, ".tmp", cacheDir);
+            Files.write(tempFile.toPath(), encoded);
+            Files.move(tempFile.toPath(), new File(cacheDir, key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            // the data is still cached in memory
+        }
+    }
+
+    private static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ex) {
+            // deleted by the next prune
+        }
+    }
+
+    /**
+     * Get the next update of the response for a certificate, or of the first
+     * response if no certificate is given.
+     */
+    private static Date getNextUpdate(OCSPResp response, CertificateID certId) throws OCSPException {
+        if (response.getStatus() != OCSPResp.SUCCESSFUL) {
+            return null;
+        }
+
+        BasicOCSPResp basicResponse = (BasicOCSPResp) response.getResponseObject();
+        for (SingleResp singleResponse : basicResponse.getResponses()) {
+            if (certId == null || certId.equals(singleResponse.getCertID())) {
+                return singleResponse.getNextUpdate();
+            }
+        }
+        return null;
+    }
+
+    private static URI getOcspResponderUri(X509Certificate cert) {
+        byte[] aiaEnc = cert.getExtensionValue(Extension.authorityInfoAccess.getId());
+        if (aiaEnc == null) {
+            return null;
+        }
+
+        try {
+            ASN1Primitive primitive = JcaX509ExtensionUtils.parseExtensionValue(aiaEnc);
+            for (AccessDescription accessDescription : AuthorityInformationAccess.getInstance(primitive)
+                                                                                 .getAccessDescriptions()) {
+                if (AccessDescription.id_ad_ocsp.equals(accessDescription.getAccessMethod())) {
+                    URI uri = getHttpUri(accessDescription.getAccessLocation());
+                    if (uri != null) {
+                        return uri;
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // no usable responder
+        }
+        return null;
+    }
+
+    private static List<URI> getCrlDistributionPointUris(X509Certificate cert) {
+        List<URI> uris = new ArrayList<>();
+
+        byte[] crlDpEnc = cert.getExtensionValue(Extension.cRLDistributionPoints.getId());
+        if (crlDpEnc == null) {
+            return uris;
+        }
+
+        try {
+            ASN1Primitive primitive = JcaX509ExtensionUtils.parseExtensionValue(crlDpEnc);
+            for (DistributionPoint distributionPoint : CRLDistPoint.getInstance(primitive).getDistributionPoints()) {
+                DistributionPointName name = distributionPoint.getDistributionPoint();
+                if (name != null && name.getType() == DistributionPointName.FULL_NAME) {
+                    for (GeneralName generalName : GeneralNames.getInstance(name.getName()).getNames()) {
+                        URI uri = getHttpUri(generalName);
+                        if (uri != null) {
+                            uris.add(uri);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // no usable distribution point
+        }
+        return uris;
+    }
+
+    private static URI getHttpUri(GeneralName generalName) {
+        if (generalName.getTagNo() != GeneralName.uniformResourceIdentifier) {
+            return null;
+        }
+
+        try {
+            URI uri = new URI(generalName.getName().toString());
+            if ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) {
+                return uri;
+            }
+        } catch (URISyntaxException ex) {
+            // not a valid URI
+        }
+        return null;
+    }
+
+    private static byte[] get(URI uri) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setReadTimeout(READ_TIMEOUT);
+            try (InputStream is = con.getInputStream()) {
+                return is.readAllBytes();
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private static byte[] post(URI uri, String contentType, String accept, byte[] content) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setReadTimeout(READ_TIMEOUT);
+            con.setRequestProperty("Content-Type", contentType);
+            con.setRequestProperty("Accept", accept);
+            con.setDoOutput(true);
+            con.setUseCaches(false);
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(content);
+            }
+            try (InputStream is = con.getInputStream()) {
+                return is.readAllBytes();
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class CachedData {
+        private final byte[] encoded;
+        private final long nextUpdate;
+
+        private CachedData(byte[] encoded, long nextUpdate) {
+            this.encoded = encoded;
+            this.nextUpdate = nextUpdate;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
+
+/**
+ * Remembers the results of certificate signature verifications, so that the
+ * same certificate and issuer key are only verified once while chains are
+ * ordered and trust is established over and over again. Results are keyed by
+ * the fingerprints of the certificate and of the public key, and the least
+ * recently used results are dropped once the cache is full.
+ * <p>
+ * Only definite results are cached. Verifications that fail for technical
+ * reasons are repeated on the next attempt.
+ * </p>
+ */
+public final class SignatureVerificationCache {
+    static final int MAX_ENTRIES = 10000;
+
+    private static final Map<Key, Boolean> results = new LinkedHashMap<>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private SignatureVerificationCache() {
+    }
+
+    /**
+     * Get the cached result of verifying a certificate's signature with a
+     * public key or perform the verification and cache its result.
+     *
+     * @param signedCert   The signed certificate
+     * @param publicKey    The public key of the possible signer
+     * @param verification Performs the actual verification
+     * @return True if the signature was verified successfully
+     * @throws CryptoException If there was a problem verifying the signature
+     */
+    static boolean verify(X509Certificate signedCert, PublicKey publicKey, Verification verification)
+            throws CryptoException {
+        Key key = Key.of(signedCert, publicKey);
+
+        if (key == null) {
+            return verification.verify();
+        }
+
+        Boolean result;
+        synchronized (results) {
+            result = results.get(key);
+        }
+
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        // verify without holding the lock, concurrent verifications of the same pair are harmless
+        misses.incrementAndGet();
+        boolean verified = verification.verify();
+
+        synchronized (results) {
+            results.put(key, verified);
+        }
+
+        return verified;
+    }
+
+    /**
+     * Get the number of verifications answered from the cache.
+     *
+     * @return Number of hits
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of verifications that had to be performed.
+     *
+     * @return Number of misses
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return Number of cached results
+     */
+    public static int getSize() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * Drop all cached results and reset the counters.
+     */
+    public static void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @FunctionalInterface
+    interface Verification {
+        boolean verify() throws CryptoException;
+    }
+
+    private static class Key {
+        private final byte[] certFingerprint;
+        private final byte[] keyFingerprint;
+        private final int hashCode;
+
+        private Key(byte[] certFingerprint, byte[] keyFingerprint) {
+            this.certFingerprint = certFingerprint;
+            this.keyFingerprint = keyFingerprint;
+            this.hashCode = 31 * Arrays.hashCode(certFingerprint) + Arrays.hashCode(keyFingerprint);
+        }
+
+        private static Key of(X509Certificate signedCert, PublicKey publicKey) {
+            byte[] keyEncoding = publicKey.getEncoded();
+            if (keyEncoding == null) {
+                return null;
+            }
+
+            try {
+                return new Key(DigestUtil.getMessageDigest(signedCert.getEncoded(), DigestType.SHA256),
+                               DigestUtil.getMessageDigest(keyEncoding, DigestType.SHA256));
+            } catch (CertificateEncodingException | CryptoException e) {
+                // not cacheable, verify every time
+                return null;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Arrays.equals(certFingerprint, other.certFingerprint) &&
+                   Arrays.equals(keyFingerprint, other.keyFingerprint);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import static org.kse.crypto.filetype.CryptoFileUtil.decodeIfBase64sanitizeIfPem
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.security.InvalidKeyException;
@@ -30,6 +31,7 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.PublicKey;
 import java.security.SignatureException;
 import java.security.cert.CRLException;
 import java.security.cert.CertPath;
@@ -40,12 +42,16 @@ import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -336,40 +342,78 @@ public final class X509CertUtil {
             return certs;
         }
 
-        // Put together each possible certificate path...
-        ArrayList<ArrayList<X509Certificate>> paths = new ArrayList<>();
+        X509CertificateIndex index = new X509CertificateIndex(Arrays.asList(certs));
 
-        // For each possible path...
+        /*
+         * Each possible path assumes a different certificate is the root issuer and is extended by
+         * repeatedly adding the first certificate issued by the current one. As the next certificate
+         * only depends on the current one, it is looked up once per certificate and the path lengths
+         * are derived from each other instead of building every path separately.
+         */
+        Map<X509Certificate, X509Certificate> issued = new IdentityHashMap<>();
         for (X509Certificate cert : certs) {
-            // Each possible path assumes a different certificate is the root issuer
-            ArrayList<X509Certificate> path = new ArrayList<>();
-            X509Certificate issuerCert = cert;
-            path.add(issuerCert);
+            issued.put(cert, findIssuedCert(cert, index));
+        }
 
-            X509Certificate newIssuer = null;
+        Map<X509Certificate, Integer> pathLengths = new IdentityHashMap<>();
+        X509Certificate longestPathRoot = certs[0];
+        int longestPathLength = 0;
 
-            // Recursively build that path by finding the next issued certificate
-            while ((newIssuer = findIssuedCert(issuerCert, certs)) != null) {
-                // Found an issued cert, now attempt to find its issued certificate
-                issuerCert = newIssuer;
-                path.add(0, newIssuer);
+        for (X509Certificate cert : certs) {
+            int pathLength = getPathLength(cert, issued, pathLengths);
+            if (pathLength > longestPathLength) {
+                longestPathRoot = cert;
+                longestPathLength = pathLength;
             }
+        }
 
-            // Path complete
-            paths.add(path);
+        // Build the longest path - this will be the ordered path
+        ArrayList<X509Certificate> longestPath = new ArrayList<>(longestPathLength);
+        Set<X509Certificate> onPath = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (X509Certificate cert = longestPathRoot; cert != null && onPath.add(cert); cert = issued.get(cert)) {
+            longestPath.add(0, cert);
         }
 
-        // Get longest path - this will be the ordered path
-        ArrayList<X509Certificate> longestPath = paths.get(0);
-        for (int i = 1; i < paths.size(); i++) {
-            ArrayList<X509Certificate> path = paths.get(i);
-            if (path.size() > longestPath.size()) {
-                longestPath = path;
+        return longestPath.toArray(X509Certificate[]::new);
+    }
+
+    private static int getPathLength(X509Certificate root, Map<X509Certificate, X509Certificate> issued,
+                                     Map<X509Certificate, Integer> pathLengths) {
+        // Follow the path until reaching a certificate whose path length is already known
+        List<X509Certificate> walked = new ArrayList<>();
+        Map<X509Certificate, Integer> walkedIndex = new IdentityHashMap<>();
+        X509Certificate cert = root;
+        int knownLength = 0;
+
+        while (cert != null) {
+            Integer length = pathLengths.get(cert);
+            if (length != null) {
+                knownLength = length;
+                break;
+            }
+
+            Integer cycleStart = walkedIndex.get(cert);
+            if (cycleStart != null) {
+                // Certificates that issued each other: a path through them ends before repeating a certificate
+                int cycleLength = walked.size() - cycleStart;
+                for (int i = cycleStart; i < walked.size(); i++) {
+                    pathLengths.put(walked.get(i), cycleLength);
+                }
+                walked.subList(cycleStart, walked.size()).clear();
+                knownLength = cycleLength;
+                break;
             }
+
+            walkedIndex.put(cert, walked.size());
+            walked.add(cert);
+            cert = issued.get(cert);
         }
 
-        // Return longest path
-        return longestPath.toArray(X509Certificate[]::new);
+        for (int i = walked.size() - 1; i >= 0; i--) {
+            pathLengths.put(walked.get(i), ++knownLength);
+        }
+
+        return pathLengths.get(root);
     }
 
     /**
@@ -449,12 +493,10 @@ public final class X509CertUtil {
                 && cert1.getSerialNumber().equals(cert2.getSerialNumber());
     }
 
-    private static X509Certificate findIssuedCert(X509Certificate issuerCert, X509Certificate[] certs) {
+    private static X509Certificate findIssuedCert(X509Certificate issuerCert, X509CertificateIndex index) {
         // Find a certificate issued by the supplied certificate
-        for (X509Certificate cert : certs) {
-            if (issuerCert.getSubjectX500Principal().equals(cert.getSubjectX500Principal()) &&
-                issuerCert.getIssuerX500Principal().equals(cert.getIssuerX500Principal()) &&
-                issuerCert.getSerialNumber().equals(cert.getSerialNumber())) {
+        for (X509Certificate cert : index.getIssuedCandidates(issuerCert)) {
+            if (certificatesEquals(issuerCert, cert)) {
                 // Checked certificate is issuer - ignore it
                 continue;
             }
@@ -650,9 +692,32 @@ public final class X509CertUtil {
         return PemUtil.encode(pemInfo);
     }
 
+    /**
+     * PEM the DER encoding of a CRL.
+     *
+     * @param crl The CRL
+     * @return The PEM'd encoding
+     */
+    public static String getCrlEncodedX509Pem(X509CrlHeader crl) {
+        PemInfo pemInfo = new PemInfo(CRL_PEM_TYPE, null, crl.getEncoded());
+        return PemUtil.encode(pemInfo);
+    }
+
+    /**
+     * Get a stream that PEM encodes a DER encoded CRL written to it.
+     *
+     * @param out Stream to write the PEM encoding to, it is not closed
+     * @return Stream for the DER encoded CRL
+     * @throws IOException If an I/O problem occurred
+     */
+    public static OutputStream getCrlPemOutputStream(OutputStream out) throws IOException {
+        return PemUtil.encode(CRL_PEM_TYPE, out);
+    }
+
     /**
      * Verify that one X.509 certificate was signed using the private key that
-     * corresponds to the public key of a second certificate.
+     * corresponds to the public key of a second certificate. The result is
+     * remembered by the {@link SignatureVerificationCache}.
      *
      * @param signedCert  The signed certificate
      * @param signingCert The signing certificate
@@ -662,8 +727,13 @@ public final class X509CertUtil {
      */
     public static boolean verifyCertificate(X509Certificate signedCert, X509Certificate signingCert)
             throws CryptoException {
+        PublicKey signingKey = signingCert.getPublicKey();
+        return SignatureVerificationCache.verify(signedCert, signingKey, () -> verify(signedCert, signingKey));
+    }
+
+    private static boolean verify(X509Certificate signedCert, PublicKey signingKey) throws CryptoException {
         try {
-            signedCert.verify(signingCert.getPublicKey(), KSE.BC);
+            signedCert.verify(signingKey, KSE.BC);
             return true;
         } catch (InvalidKeyException | SignatureException ex) {
             // Verification failed
@@ -687,7 +757,7 @@ public final class X509CertUtil {
      * @throws CryptoException If there is a problem establishing trust
      */
     public static X509Certificate[] establishTrust(X509Certificate cert, KeyStore[] keyStores) throws CryptoException {
-        ArrayList<X509Certificate> ksCerts = new ArrayList<>();
+        X509CertificateIndex ksCerts = new X509CertificateIndex();
 
         for (KeyStore keyStore : keyStores) {
             ksCerts.addAll(extractCertificates(keyStore));
@@ -709,38 +779,64 @@ public final class X509CertUtil {
      */
     public static X509Certificate[] establishTrust(X509Certificate cert, List<X509Certificate> trustedCerts)
             throws CryptoException {
+        return establishTrust(cert, new X509CertificateIndex(trustedCerts));
+    }
 
-        for (int i = 0; i < trustedCerts.size(); i++) {
-            X509Certificate compCert = trustedCerts.get(i);
+    /**
+     * Check whether or not a trust path exists between the supplied X.509
+     * certificate and the supplied indexed certificates, ie that a chain of
+     * trust exists between the supplied certificate and a self-signed trusted
+     * certificate in the index. Reusing an index is faster when establishing
+     * trust for several certificates against the same trusted certificates.
+     *
+     * @param cert         The certificate
+     * @param trustedCerts The index of trusted certificates.
+     * @return The trust chain, or null if trust could not be established
+     * @throws CryptoException If there is a problem establishing trust
+     */
+    public static X509Certificate[] establishTrust(X509Certificate cert, X509CertificateIndex trustedCerts)
+            throws CryptoException {
+        List<X509Certificate> trustChain = new ArrayList<>();
+        trustChain.add(cert);
 
-            // Verify of certificate issuer is sam as comparison certificate's subject
-            if (cert.getIssuerX500Principal().equals(compCert.getSubjectX500Principal())) {
-                // Verify if the comparison certificate's private key was used to sign the certificate
-                if (X509CertUtil.verifyCertificate(cert, compCert)) {
-                    // If the comparision certificate is self-signed then a chain of trust exists
-                    if (compCert.getSubjectX500Principal().equals(compCert.getIssuerX500Principal())) {
-                        return new X509Certificate[] { cert, compCert };
-                    }
+        Set<X509Certificate> visited = Collections.newSetFromMap(new IdentityHashMap<>());
 
-                    /*
-                     * Otherwise try and establish a chain of trust from the
-                     * comparison certificate against the other comparison certificates
-                     */
-                    X509Certificate[] tmpChain = establishTrust(compCert, trustedCerts);
-                    if (tmpChain != null) {
-                        X509Certificate[] trustChain = new X509Certificate[tmpChain.length + 1];
+        if (establishTrust(trustChain, trustedCerts, visited)) {
+            return trustChain.toArray(X509Certificate[]::new);
+        }
 
-                        trustChain[0] = cert;
+        return null; // No chain of trust
+    }
 
-                        System.arraycopy(tmpChain, 0, trustChain, 1, tmpChain.length);
+    private static boolean establishTrust(List<X509Certificate> trustChain, X509CertificateIndex trustedCerts,
+                                          Set<X509Certificate> visited) throws CryptoException {
+        X509Certificate cert = trustChain.get(trustChain.size() - 1);
 
-                        return trustChain;
-                    }
+        // Comparison certificates whose subject is the same as the certificate's issuer
+        for (X509Certificate compCert : trustedCerts.getIssuerCandidates(cert)) {
+            // Verify if the comparison certificate's private key was used to sign the certificate
+            if (X509CertUtil.verifyCertificate(cert, compCert)) {
+                trustChain.add(compCert);
+
+                // If the comparision certificate is self-signed then a chain of trust exists
+                if (compCert.getSubjectX500Principal().equals(compCert.getIssuerX500Principal())) {
+                    return true;
                 }
+
+                /*
+                 * Otherwise try and establish a chain of trust from the comparison certificate
+                 * against the other comparison certificates. A certificate from which no chain
+                 * could be established before will not lead to one this time either.
+                 */
+                if (visited.add(compCert) && establishTrust(trustChain, trustedCerts, visited)) {
+                    return true;
+                }
+
+                trustChain.remove(trustChain.size() - 1);
             }
         }
 
-        return null; // No chain of trust
+        return false;
     }
 
     /**
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.kse.utilities.io.HexUtil;
+
+/**
+ * Index of X.509 certificates by subject DN, issuer DN, subject key identifier
+ * and authority key identifier. Used for building certificate chains without
+ * comparing every certificate with every other certificate.
+ * <p>
+ * Lookups only return candidates whose names match. Certificates whose key
+ * identifiers match as well are returned first, so that usually only a single
+ * signature has to be verified even if several CA certificates share the same
+ * DN, e.g. after a CA key rollover. Candidates are otherwise returned in the
+ * order in which they were added to the index.
+ * </p>
+ */
+public class X509CertificateIndex {
+    private final List<X509Certificate> certificates = new ArrayList<>();
+    private final Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<>();
+    private final Map<X500Principal, List<X509Certificate>> byIssuer = new HashMap<>();
+    private final Map<String, List<X509Certificate>> bySki = new HashMap<>();
+    private final Map<String, List<X509Certificate>> byAki = new HashMap<>();
+
+    /**
+     * Construct an empty X509CertificateIndex.
+     */
+    public X509CertificateIndex() {
+    }
+
+    /**
+     * Construct an X509CertificateIndex containing the supplied certificates.
+     *
+     * @param certs Certificates to index
+     */
+    public X509CertificateIndex(Collection<X509Certificate> certs) {
+        addAll(certs);
+    }
+
+    /**
+     * Add a certificate to the index.
+     *
+     * @param cert Certificate
+     */
+    public void add(X509Certificate cert) {
+        certificates.add(cert);
+        put(bySubject, cert.getSubjectX500Principal(), cert);
+        put(byIssuer, cert.getIssuerX500Principal(), cert);
+
+        String ski = getSubjectKeyIdentifier(cert);
+        if (ski != null) {
+            put(bySki, ski, cert);
+        }
+
+        String aki = getAuthorityKeyIdentifier(cert);
+        if (aki != null) {
+            put(byAki, aki, cert);
+        }
+    }
+
+    /**
+     * Add certificates to the index.
+     *
+     * @param certs Certificates
+     */
+    public void addAll(Collection<X509Certificate> certs) {
+        for (X509Certificate cert : certs) {
+            add(cert);
+        }
+    }
+
+    /**
+     * Get all indexed certificates in the order in which they were added.
+     *
+     * @return Certificates
+     */
+    public List<X509Certificate> getCertificates() {
+        return Collections.unmodifiableList(certificates);
+    }
+
+    /**
+     * Get the indexed certificates with the supplied subject DN.
+     *
+     * @param subject Subject DN
+     * @return Certificates, possibly empty
+     */
+    public List<X509Certificate> getBySubject(X500Principal subject) {
+        return Collections.unmodifiableList(bySubject.getOrDefault(subject, Collections.emptyList()));
+    }
+
+    /**
+     * Get the candidates for the issuer of a certificate, i.e. the indexed
+     * certificates whose subject DN matches the certificate's issuer DN. The
+     * signature of the certificate is not verified.
+     *
+     * @param cert Issued certificate
+     * @return Possible issuers, possibly empty
+     */
+    public List<X509Certificate> getIssuerCandidates(X509Certificate cert) {
+        List<X509Certificate> candidates = bySubject.get(cert.getIssuerX500Principal());
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        String aki = getAuthorityKeyIdentifier(cert);
+        if (aki == null || candidates.size() == 1) {
+            return Collections.unmodifiableList(candidates);
+        }
+
+        return preferred(bySki.get(aki), candidates, c -> c.getSubjectX500Principal()
+                                                          .equals(cert.getIssuerX500Principal()));
+    }
+
+    /**
+     * Get the candidates for certificates issued by a certificate, i.e. the
+     * indexed certificates whose issuer DN matches the certificate's subject
+     * DN. Signatures are not verified.
+     *
+     * @param issuerCert Issuer certificate
+     * @return Possibly issued certificates, possibly empty
+     */
+    public List<X509Certificate> getIssuedCandidates(X509Certificate issuerCert) {
+        List<X509Certificate> candidates = byIssuer.get(issuerCert.getSubjectX500Principal());
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        String ski = getSubjectKeyIdentifier(issuerCert);
+        if (ski == null || candidates.size() == 1) {
+            return Collections.unmodifiableList(candidates);
+        }
+
+        return preferred(byAki.get(ski), candidates, c -> c.getIssuerX500Principal()
+                                                           .equals(issuerCert.getSubjectX500Principal()));
+    }
+
+    /**
+     * Find the issuer of a certificate amongst the indexed certificates.
+     *
+     * @param cert Issued certificate
+     * @return The issuer or null if none was found
+     * @see X509CertUtil#isIssuedBy(X509Certificate, X509Certificate)
+     */
+    public X509Certificate findIssuer(X509Certificate cert) {
+        for (X509Certificate candidate : getIssuerCandidates(cert)) {
+            if (X509CertUtil.isIssuedBy(cert, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static List<X509Certificate> preferred(List<X509Certificate> keyIdMatches,
+                                                   List<X509Certificate> nameMatches,
+                                                   Predicate<X509Certificate> sameName) {
+        if (keyIdMatches == null) {
+            return Collections.unmodifiableList(nameMatches);
+        }
+
+        Set<X509Certificate> ordered = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<X509Certificate> result = new ArrayList<>(nameMatches.size());
+
+        for (X509Certificate cert : keyIdMatches) {
+            if (sameName.test(cert) && ordered.add(cert)) {
+                result.add(cert);
+            }
+        }
+        for (X509Certificate cert : nameMatches) {
+            if (ordered.add(cert)) {
+                result.add(cert);
+            }
+        }
+        return result;
+    }
+
+    private static <K> void put(Map<K, List<X509Certificate>> map, K key, X509Certificate cert) {
+        map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(cert);
+    }
+
+    /**
+     * Get the subject key identifier of a certificate as hex string.
+     *
+     * @param cert Certificate
+     * @return Key identifier or null if the certificate has none
+     */
+    static String getSubjectKeyIdentifier(X509Certificate cert) {
+        byte[] skiValue = cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (skiValue == null) {
+            return null;
+        }
+
+        try {
+            byte[] octets = DEROctetString.getInstance(skiValue).getOctets();
+            return HexUtil.getHexString(SubjectKeyIdentifier.getInstance(octets).getKeyIdentifier());
+        } catch (RuntimeException e) {
+            // malformed extension, the certificate can still be found by its name
+            return null;
+        }
+    }
+
+    /**
+     * Get the key identifier of the authority key identifier extension of a
+     * certificate as hex string.
+     *
+     * @param cert Certificate
+     * @return Key identifier or null if the certificate has none
+     */
+    static String getAuthorityKeyIdentifier(X509Certificate cert) {
+        byte[] akiValue = cert.getExtensionValue(Extension.authorityKeyIdentifier.getId());
+        if (akiValue == null) {
+            return null;
+        }
+
+        try {
+            byte[] octets = DEROctetString.getInstance(akiValue).getOctets();
+            byte[] keyIdentifier = AuthorityKeyIdentifier.getInstance(octets).getKeyIdentifier();
+            return keyIdentifier == null ? null : HexUtil.getHexString(keyIdentifier);
+        } catch (RuntimeException e) {
+            // malformed extension, the issuer can still be found by its name
+            return null;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.kse.crypto.CryptoException;
+
+/**
+ * Index of the entries of an X.509 CRL by serial number. Only the serial
+ * numbers and the positions of the entries within the DER encoding of the CRL
+ * are read when the index is created, so that even CRLs with millions of
+ * entries can be displayed without decoding every entry. The index holds the
+ * complete encoding of the CRL plus a serial number and a position per entry.
+ * Revocation dates and reasons are decoded when they are first requested,
+ * complete entries including their extensions whenever they are requested.
+ * <p>
+ * Entries are ordered by serial number. The indexes of several CRLs can be
+ * merged, e.g. to issue a CRL that contains the entries of previous CRLs. The
+ * index is thread-safe, e.g. for answering OCSP requests from several threads.
+ * </p>
+ */
+public class X509CrlEntryIndex {
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_UTC_TIME = 0x17;
+    private static final int TAG_GENERALIZED_TIME = 0x18;
+    private static final int TAG_SEQUENCE = 0x30;
+
+    private static final byte NOT_DECODED = -2;
+    private static final byte NO_REASON = -1;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/x509/resources");
+
+    private final byte[][] encodings;
+    private final int[] sources;
+    private final int[] offsets;
+    private final BigInteger[] serialNumbers;
+    private final Date[] revocationDates;
+    private final byte[] reasons;
+
+    private X509CrlEntryIndex(byte[] encoded, int[] offsets, BigInteger[] serialNumbers) {
+        this(new byte[][] { encoded }, null, offsets, serialNumbers);
+    }
+
+    private X509CrlEntryIndex(byte[][] encodings, int[] sources, int[] offsets, BigInteger[] serialNumbers) {
+        this.encodings = encodings;
+        this.sources = sources;
+        this.offsets = offsets;
+        this.serialNumbers = serialNumbers;
+        this.revocationDates = new Date[offsets.length];
+        this.reasons = new byte[offsets.length];
+        Arrays.fill(reasons, NOT_DECODED);
+    }
+
+    /**
+     * Create an index of the entries of a CRL.
+     *
+     * @param crl The CRL
+     * @return The index
+     * @throws CryptoException If the CRL could not be encoded or its entries
+     *                         could not be read
+     */
+    public static X509CrlEntryIndex create(X509CRL crl) throws CryptoException {
+        try {
+            return create(crl.getEncoded());
+        } catch (CRLException ex) {
+            throw new CryptoException(res.getString("NoIndexCrl.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Create an index of the entries of a DER encoded CRL.
+     *
+     * @param encodedCrl The DER encoded CRL
+     * @return The index
+     * @throws CryptoException If the entries of the CRL could not be read
+     */
+    public static X509CrlEntryIndex create(byte[] encodedCrl) throws CryptoException {
+        try {
+            return parse(encodedCrl);
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new CryptoException(res.getString("NoIndexCrl.exception.message"), ex);
+        }
+    }
+
+    private static X509CrlEntryIndex parse(byte[] encoded) throws IOException {
+        DerReader der = new DerReader(encoded);
+
+        der.enter(TAG_SEQUENCE); // CertificateList
+        int tbsEnd = der.enter(TAG_SEQUENCE);
+
+        if (der.peekTag() == TAG_INTEGER) {
+            der.skip(); // version
+        }
+        der.skip(); // signature
+        der.skip(); // issuer
+        der.skip(); // thisUpdate
+
+        if (der.pos < tbsEnd && isTime(der.peekTag())) {
+            der.skip(); // nextUpdate
+        }
+
+        int[] offsets = new int[1024];
+        BigInteger[] serialNumbers = new BigInteger[offsets.length];
+        int count = 0;
+
+        // revokedCertificates, absent if there are none
+        if (der.pos < tbsEnd && der.peekTag() == TAG_SEQUENCE) {
+            int revokedCertsEnd = der.enter(TAG_SEQUENCE);
+
+            while (der.pos < revokedCertsEnd) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    serialNumbers = Arrays.copyOf(serialNumbers, count * 2);
+                }
+
+                offsets[count] = der.pos;
+                int entryEnd = der.enter(TAG_SEQUENCE);
+                int serialNumberEnd = der.enter(TAG_INTEGER);
+                serialNumbers[count] = new BigInteger(encoded, der.pos, serialNumberEnd - der.pos);
+                count++;
+
+                der.pos = entryEnd;
+            }
+        }
+
+        return sort(encoded, Arrays.copyOf(offsets, count), Arrays.copyOf(serialNumbers, count));
+    }
+
+    private static X509CrlEntryIndex sort(byte[] encoded, int[] offsets, BigInteger[] serialNumbers) {
+        boolean sorted = true;
+        for (int i = 1; i < serialNumbers.length && sorted; i++) {
+            sorted = serialNumbers[i - 1].compareTo(serialNumbers[i]) <= 0;
+        }
+
+        if (sorted) {
+            return new X509CrlEntryIndex(encoded, offsets, serialNumbers);
+        }
+
+        Integer[] order = new Integer[serialNumbers.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.parallelSort(order, (i1, i2) -> serialNumbers[i1].compareTo(serialNumbers[i2]));
+
+        int[] sortedOffsets = new int[offsets.length];
+        BigInteger[] sortedSerialNumbers = new BigInteger[serialNumbers.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedOffsets[i] = offsets[order[i]];
+            sortedSerialNumbers[i] = serialNumbers[order[i]];
+        }
+
+        return new X509CrlEntryIndex(encoded, sortedOffsets, sortedSerialNumbers);
+    }
+
+    private static boolean isTime(int tag) {
+        return tag == TAG_UTC_TIME || tag == TAG_GENERALIZED_TIME;
+    }
+
+    /**
+     * Merge the entries of another CRL into the entries of this CRL. Entries of
+     * the other CRL with a serial number that is already contained in this CRL
+     * are ignored.
+     *
+     * @param other Index of the other CRL
+     * @return A new index containing the entries of both CRLs
+     */
+    public X509CrlEntryIndex merge(X509CrlEntryIndex other) {
+        byte[][] mergedEncodings = Arrays.copyOf(encodings, encodings.length + other.encodings.length);
+        System.arraycopy(other.encodings, 0, mergedEncodings, encodings.length, other.encodings.length);
+
+        int[] mergedSources = new int[size() + other.size()];
+        int[] mergedOffsets = new int[mergedSources.length];
+        BigInteger[] mergedSerialNumbers = new BigInteger[mergedSources.length];
+
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < size() || j < other.size()) {
+            int cmp;
+            if (i == size()) {
+                cmp = 1;
+            } else if (j == other.size()) {
+                cmp = -1;
+            } else {
+                cmp = serialNumbers[i].compareTo(other.serialNumbers[j]);
+            }
+
+            if (cmp <= 0) {
+                mergedSources[count] = getSource(i);
+                mergedOffsets[count] = offsets[i];
+                mergedSerialNumbers[count] = serialNumbers[i];
+                i++;
+
+                if (cmp == 0) {
+                    j++;
+                }
+            } else {
+                mergedSources[count] = encodings.length + other.getSource(j);
+                mergedOffsets[count] = other.offsets[j];
+                mergedSerialNumbers[count] = other.serialNumbers[j];
+                j++;
+            }
+            count++;
+        }
+
+        return new X509CrlEntryIndex(mergedEncodings, Arrays.copyOf(mergedSources, count),
+                                     Arrays.copyOf(mergedOffsets, count), Arrays.copyOf(mergedSerialNumbers, count));
+    }
+
+    /**
+     * Get the entries of this CRL whose serial numbers are not contained in
+     * another CRL, e.g. the entries of a delta CRL for a base CRL.
+     *
+     * @param other Index of the other CRL
+     * @return A new index containing the entries that are only in this CRL
+     */
+    public X509CrlEntryIndex difference(X509CrlEntryIndex other) {
+        int[] diffSources = new int[size()];
+        int[] diffOffsets = new int[size()];
+        BigInteger[] diffSerialNumbers = new BigInteger[size()];
+
+        int j = 0;
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            while (j < other.size() && other.serialNumbers[j].compareTo(serialNumbers[i]) < 0) {
+                j++;
+            }
+
+            if (j == other.size() || !other.serialNumbers[j].equals(serialNumbers[i])) {
+                diffSources[count] = getSource(i);
+                diffOffsets[count] = offsets[i];
+                diffSerialNumbers[count] = serialNumbers[i];
+                count++;
+            }
+        }
+
+        return new X509CrlEntryIndex(encodings, Arrays.copyOf(diffSources, count), Arrays.copyOf(diffOffsets, count),
+                                     Arrays.copyOf(diffSerialNumbers, count));
+    }
+
+    private int getSource(int index) {
+        return sources == null ? 0 : sources[index];
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return Number of entries
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Get the position of the entry with the supplied serial number.
+     *
+     * @param serialNumber Serial number
+     * @return Position of the entry or -1 if the CRL has no such entry
+     */
+    public int indexOf(BigInteger serialNumber) {
+        int index = Arrays.binarySearch(serialNumbers, serialNumber);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Get the serial number of an entry.
+     *
+     * @param index Position of the entry
+     * @return Serial number
+     */
+    public BigInteger getSerialNumber(int index) {
+        return serialNumbers[index];
+    }
+
+    /**
+     * Get the revocation date of an entry.
+     *
+     * @param index Position of the entry
+     * @return Revocation date
+     */
+    public synchronized Date getRevocationDate(int index) {
+        decodeDateAndReason(index);
+        return revocationDates[index];
+    }
+
+    /**
+     * Get the revocation reason of an entry.
+     *
+     * @param index Position of the entry
+     * @return Revocation reason or null if the entry has no reason code
+     */
+    public synchronized CRLReason getRevocationReason(int index) {
+        decodeDateAndReason(index);
+        return reasons[index] == NO_REASON ? null : CRLReason.values()[reasons[index]];
+    }
+
+    /**
+     * Get an entry. The entry is decoded again on every call.
+     *
+     * @param index Position of the entry
+     * @return The entry
+     */
+    public X509CRLEntry getEntry(int index) {
+        return new IndexedCrlEntry(decodeEntry(index));
+    }
+
+    // Only called while holding the lock of the index, so that a date is never read before its reason
+    private void decodeDateAndReason(int index) {
+        if (reasons[index] != NOT_DECODED) {
+            return;
+        }
+
+        TBSCertList.CRLEntry entry = decodeEntry(index);
+
+        byte reason = NO_REASON;
+        Extensions extensions = entry.getExtensions();
+        if (extensions != null) {
+            Extension reasonCode = extensions.getExtension(Extension.reasonCode);
+            if (reasonCode != null) {
+                int value = org.bouncycastle.asn1.x509.CRLReason.getInstance(reasonCode.getParsedValue())
+                                                                .getValue().intValue();
+                if (value >= 0 && value < CRLReason.values().length) {
+                    reason = (byte) value;
+                }
+            }
+        }
+
+        revocationDates[index] = entry.getRevocationDate().getDate();
+        reasons[index] = reason;
+    }
+
+    /**
+     * Get the length of the DER encoding of an entry.
+     *
+     * @param index Position of the entry
+     * @return Length in bytes
+     */
+    int getEncodedLength(int index) {
+        return getEnd(index) - offsets[index];
+    }
+
+    /**
+     * Write the DER encoding of an entry as it is contained in its CRL.
+     *
+     * @param index Position of the entry
+     * @param out   Stream to write to
+     * @throws IOException If an I/O problem occurred
+     */
+    void writeEntry(int index, OutputStream out) throws IOException {
+        out.write(encodings[getSource(index)], offsets[index], getEncodedLength(index));
+    }
+
+    private TBSCertList.CRLEntry decodeEntry(int index) {
+        byte[] entry = Arrays.copyOfRange(encodings[getSource(index)], offsets[index], getEnd(index));
+
+        try {
+            return TBSCertList.CRLEntry.getInstance(ASN1Primitive.fromByteArray(entry));
+        } catch (IOException ex) {
+            // cannot happen, the entry has already been read when the index was created
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private int getEnd(int index) {
+        try {
+            DerReader der = new DerReader(encodings[getSource(index)]);
+            der.pos = offsets[index];
+            return der.enter(TAG_SEQUENCE);
+        } catch (IOException ex) {
+            // cannot happen, the entry has already been read when the index was created
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * A CRL entry decoded from the index.
+     */
+    private static class IndexedCrlEntry extends X509CRLEntry {
+        private final TBSCertList.CRLEntry entry;
+
+        private IndexedCrlEntry(TBSCertList.CRLEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public byte[] getEncoded() throws CRLException {
+            try {
+                return entry.getEncoded(ASN1Encoding.DER);
+            } catch (IOException ex) {
+                throw new CRLException(ex.toString());
+            }
+        }
+
+        @Override
+        public BigInteger getSerialNumber() {
+            return entry.getUserCertificate().getValue();
+        }
+
+        @Override
+        public Date getRevocationDate() {
+            return entry.getRevocationDate().getDate();
+        }
+
+        @Override
+        public boolean hasExtensions() {
+            return entry.getExtensions() != null;
+        }
+
+        @Override
+        public boolean hasUnsupportedCriticalExtension() {
+            return false;
+        }
+
+        @Override
+        public Set<String> getCriticalExtensionOIDs() {
+            return getExtensionOIDs(true);
+        }
+
+        @Override
+        public Set<String> getNonCriticalExtensionOIDs() {
+            return getExtensionOIDs(false);
+        }
+
+        private Set<String> getExtensionOIDs(boolean critical) {
+            Extensions extensions = entry.getExtensions();
+            if (extensions == null) {
+                return null;
+            }
+
+            Set<String> oids = new HashSet<>();
+            ASN1ObjectIdentifier[] extensionOids = critical ? extensions.getCriticalExtensionOIDs()
+                                                            : extensions.getNonCriticalExtensionOIDs();
+            for (ASN1ObjectIdentifier oid : extensionOids) {
+                oids.add(oid.getId());
+            }
+            return oids;
+        }
+
+        @Override
+        public byte[] getExtensionValue(String oid) {
+            Extensions extensions = entry.getExtensions();
+            if (extensions == null) {
+                return null;
+            }
+
+            Extension extension = extensions.getExtension(new ASN1ObjectIdentifier(oid));
+            if (extension == null) {
+                return null;
+            }
+
+            try {
+                return extension.getExtnValue().getEncoded();
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getSerialNumber().toString(16) + " " + getRevocationDate();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+
+import org.kse.crypto.CryptoException;
+
+/**
+ * Reads the entries of a CRL one after the other, e.g. for copying them into
+ * a new CRL. The entries are read straight from the file or the encoding of
+ * the CRL, only the current entry is looked at. If the entries turn out not
+ * to be ordered by serial number, they are read from an
+ * {@link X509CrlEntryIndex} of the CRL once the reader is rewound.
+ */
+class X509CrlEntryReader implements Closeable {
+    private static final int TAG_SEQUENCE = 0x30;
+
+    private final X509CrlHeader crl;
+    private final DerFileReader der;
+    private final long entriesStart;
+    private final long entriesEnd;
+    private X509CrlEntryIndex index;
+    private boolean ordered = true;
+    private int position;
+    private long entryStart;
+    private long entryEnd;
+    private BigInteger serialNumber;
+
+    /**
+     * Construct a new X509CrlEntryReader.
+     *
+     * @param crl          The CRL
+     * @param der          Reader of the file or encoding of the CRL
+     * @param entriesStart Position of the first entry
+     * @param entriesEnd   Position after the last entry
+     */
+    X509CrlEntryReader(X509CrlHeader crl, DerFileReader der, long entriesStart, long entriesEnd) {
+        this.crl = crl;
+        this.der = der;
+        this.entriesStart = entriesStart;
+        this.entriesEnd = entriesEnd;
+        reset();
+    }
+
+    /**
+     * Start reading with the first entry again.
+     *
+     * @throws CryptoException If the entries are not ordered and no index of
+     *                         the CRL could be created
+     */
+    void rewind() throws CryptoException {
+        if (!ordered && index == null) {
+            index = crl.getEntries();
+        }
+        reset();
+    }
+
+    private void reset() {
+        position = -1;
+        entryEnd = entriesStart;
+        serialNumber = null;
+    }
+
+    /**
+     * Continue with the next entry.
+     *
+     * @return False if there are no more entries
+     * @throws IOException If the entry could not be read
+     */
+    boolean next() throws IOException {
+        if (index != null) {
+            position++;
+            serialNumber = position < index.size() ? index.getSerialNumber(position) : null;
+            return serialNumber != null;
+        }
+
+        if (entryEnd >= entriesEnd) {
+            serialNumber = null;
+            return false;
+        }
+
+        der.pos = entryEnd;
+        entryStart = der.pos;
+        entryEnd = der.enter(TAG_SEQUENCE);
+
+        BigInteger previousSerialNumber = serialNumber;
+        serialNumber = der.readInteger();
+        if (previousSerialNumber != null && previousSerialNumber.compareTo(serialNumber) > 0) {
+            ordered = false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the serial number of the current entry.
+     *
+     * @return Serial number or null if there are no more entries
+     */
+    BigInteger getSerialNumber() {
+        return serialNumber;
+    }
+
+    /**
+     * Have the entries read so far been ordered by serial number?
+     *
+     * @return True if they have been or they are read from an index
+     */
+    boolean isOrdered() {
+        return ordered || index != null;
+    }
+
+    /**
+     * Write the DER encoding of the current entry as it is contained in its
+     * CRL.
+     *
+     * @param out Stream to write to
+     * @return Number of bytes written
+     * @throws IOException If the entry could not be read or written
+     */
+    long writeEntry(OutputStream out) throws IOException {
+        if (index != null) {
+            index.writeEntry(position, out);
+            return index.getEncodedLength(position);
+        }
+
+        der.pos = entryStart;
+        der.write(entryEnd, out);
+        return entryEnd - entryStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        der.close();
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.cert.CRLReason;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.signing.SignatureType;
+
+/**
+ * Generates version 2 X.509 CRLs. The DER encoding of the CRL is written
+ * directly to a stream while it is signed, without building the CRL in memory.
+ * The entries of previous CRLs are copied verbatim from their encoding instead
+ * of being decoded. They are read one after the other straight from the files
+ * of the previous CRLs, so memory use does not grow with the number of their
+ * entries as long as the entries are ordered by serial number, like in the CRLs
+ * of this generator. Previous CRLs with unordered entries are read from an
+ * {@link X509CrlEntryIndex} instead.
+ * <p>
+ * The entries of the CRL are ordered by serial number.
+ * </p>
+ */
+public class X509CrlGenerator {
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/x509/resources");
+
+    private final X500Name issuer;
+    private final Date thisUpdate;
+    private Date nextUpdate;
+    private final List<X509CrlHeader> previousCrls = new ArrayList<>();
+    private X509CrlHeader baseCrl;
+    private final Map<BigInteger, byte[]> entries = new TreeMap<>();
+    private final ExtensionsGenerator extensions = new ExtensionsGenerator();
+
+    /**
+     * Construct a new X509CrlGenerator.
+     *
+     * @param issuer     Issuer of the CRL
+     * @param thisUpdate Effective date of the CRL
+     */
+    public X509CrlGenerator(X500Name issuer, Date thisUpdate) {
+        this.issuer = issuer;
+        this.thisUpdate = thisUpdate;
+    }
+
+    /**
+     * Set the date of the next update of the CRL.
+     *
+     * @param nextUpdate Next update or null if there is none
+     */
+    public void setNextUpdate(Date nextUpdate) {
+        this.nextUpdate = nextUpdate;
+    }
+
+    /**
+     * Add a previous CRL whose entries are to be included in the CRL. Entries
+     * that are added with the same serial number replace them, as do the
+     * entries of previous CRLs that were added before. The entries are read
+     * from the previous CRL while the CRL is generated.
+     *
+     * @param previousCrl The previous CRL
+     */
+    public void addPreviousCrl(X509CrlHeader previousCrl) {
+        previousCrls.add(previousCrl);
+    }
+
+    /**
+     * Make the CRL a delta CRL of a base CRL. The entries of the base CRL are
+     * left out of the entries of the previous CRLs, the Delta CRL Indicator is set to the
+     * CRL number of the base CRL and its Issuing Distribution Point is copied,
+     * because a delta CRL must have the same scope as its base CRL. A Freshest
+     * CRL extension is not included in a delta CRL.
+     *
+     * @param baseCrl The base CRL
+     * @throws CryptoException If the base CRL has no CRL number
+     */
+    public void setBaseCrl(X509CrlHeader baseCrl) throws CryptoException {
+        Extensions baseExtensions = baseCrl.getExtensions();
+        Extension crlNumber = baseExtensions == null ? null : baseExtensions.getExtension(Extension.cRLNumber);
+        if (crlNumber == null) {
+            throw new CryptoException(res.getString("NoBaseCrlNumber.exception.message"));
+        }
+
+        try {
+            extensions.addExtension(Extension.deltaCRLIndicator, true,
+                                    CRLNumber.getInstance(crlNumber.getParsedValue()));
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new CryptoException(res.getString("NoBaseCrlNumber.exception.message"), ex);
+        }
+
+        Extension issuingDistributionPoint = baseExtensions.getExtension(Extension.issuingDistributionPoint);
+        if (issuingDistributionPoint != null) {
+            extensions.addExtension(issuingDistributionPoint);
+        }
+
+        this.baseCrl = baseCrl;
+    }
+
+    /**
+     * Add an entry to the CRL.
+     *
+     * @param serialNumber   Serial number of the revoked certificate
+     * @param revocationDate Revocation date
+     * @param reason         Revocation reason, no reason code extension is
+     *                       added for an unspecified reason
+     * @throws CryptoException If the entry could not be encoded
+     */
+    public void addEntry(BigInteger serialNumber, Date revocationDate, CRLReason reason) throws CryptoException {
+        ASN1EncodableVector entry = new ASN1EncodableVector();
+        entry.add(new ASN1Integer(serialNumber));
+        entry.add(new Time(revocationDate));
+
+        try {
+            if (reason != null && reason != CRLReason.UNSPECIFIED) {
+                ExtensionsGenerator entryExtensions = new ExtensionsGenerator();
+                entryExtensions.addExtension(Extension.reasonCode, false,
+                                             org.bouncycastle.asn1.x509.CRLReason.lookup(reason.ordinal()));
+                entry.add(entryExtensions.generate());
+            }
+
+            entries.put(serialNumber, new DERSequence(entry).getEncoded(ASN1Encoding.DER));
+        } catch (IOException ex) {
+            throw new CryptoException(res.getString("CrlGenFailed.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Add an extension to the CRL.
+     *
+     * @param oid      Extension OID
+     * @param critical Is the extension critical?
+     * @param value    Extension value
+     * @throws CryptoException If the extension could not be encoded
+     */
+    public void addExtension(ASN1ObjectIdentifier oid, boolean critical, ASN1Encodable value)
+            throws CryptoException {
+        try {
+            extensions.addExtension(oid, critical, value);
+        } catch (IOException ex) {
+            throw new CryptoException(res.getString("CrlGenFailed.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Generate the DER encoded CRL. The entries of the previous CRLs are read
+     * three times: for the length of the CRL, for signing and for writing it.
+     *
+     * @param privateKey    Private key of the issuer
+     * @param signatureType Signature type
+     * @param provider      Provider for the signature or null for the default
+     * @param out           Stream to write the CRL to, it is not closed
+     * @throws CryptoException If the CRL could not be signed or written
+     */
+    public void generate(PrivateKey privateKey, SignatureType signatureType, Provider provider, OutputStream out)
+            throws CryptoException {
+        List<X509CrlEntryReader> previousEntries = new ArrayList<>();
+        X509CrlEntryReader baseEntries = null;
+        try {
+            ContentSigner signer = new JcaContentSignerBuilder(signatureType.jce())
+                    .setProvider(provider == null ? KSE.BC : provider).build(privateKey);
+
+            for (X509CrlHeader previousCrl : previousCrls) {
+                previousEntries.add(previousCrl.readEntries());
+            }
+            if (baseCrl != null && !previousEntries.isEmpty()) {
+                baseEntries = baseCrl.readEntries();
+            }
+
+            byte[] tbsHead = encodeTbsHead(signer.getAlgorithmIdentifier());
+            byte[] tbsTail = encodeTbsTail();
+            long entriesLength = writeEntries(OutputStream.nullOutputStream(), previousEntries, baseEntries);
+
+            // unordered entries are read from an index of their CRL from now on
+            if (!isOrdered(previousEntries, baseEntries)) {
+                entriesLength = writeEntries(OutputStream.nullOutputStream(), previousEntries, baseEntries);
+            }
+
+            long tbsLength = tbsHead.length + tbsTail.length;
+            if (entriesLength > 0) {
+                tbsLength += headerLength(entriesLength) + entriesLength;
+            }
+
+            try (OutputStream signerOut = new BufferedOutputStream(signer.getOutputStream(), BUFFER_SIZE)) {
+                writeTbs(signerOut, tbsLength, tbsHead, previousEntries, baseEntries, entriesLength, tbsTail);
+            }
+
+            byte[] signatureAlgorithm = signer.getAlgorithmIdentifier().getEncoded(ASN1Encoding.DER);
+            byte[] signature = new DERBitString(signer.getSignature()).getEncoded(ASN1Encoding.DER);
+
+            writeHeader(out, TAG_SEQUENCE,
+                        headerLength(tbsLength) + tbsLength + signatureAlgorithm.length + signature.length);
+            writeTbs(out, tbsLength, tbsHead, previousEntries, baseEntries, entriesLength, tbsTail);
+            out.write(signatureAlgorithm);
+            out.write(signature);
+            out.flush();
+        } catch (IOException | IllegalStateException | OperatorCreationException ex) {
+            throw new CryptoException(res.getString("CrlGenFailed.exception.message"), ex);
+        } finally {
+            for (X509CrlEntryReader reader : previousEntries) {
+                close(reader);
+            }
+            if (baseEntries != null) {
+                close(baseEntries);
+            }
+        }
+    }
+
+    private static boolean isOrdered(List<X509CrlEntryReader> previousEntries, X509CrlEntryReader baseEntries) {
+        for (X509CrlEntryReader reader : previousEntries) {
+            if (!reader.isOrdered()) {
+                return false;
+            }
+        }
+        return baseEntries == null || baseEntries.isOrdered();
+    }
+
+    private static void close(X509CrlEntryReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private byte[] encodeTbsHead(AlgorithmIdentifier signatureAlgorithm) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        baos.write(new ASN1Integer(1).getEncoded(ASN1Encoding.DER)); // v2
+        baos.write(signatureAlgorithm.getEncoded(ASN1Encoding.DER));
+        baos.write(issuer.getEncoded(ASN1Encoding.DER));
+        baos.write(new Time(thisUpdate).getEncoded(ASN1Encoding.DER));
+
+        if (nextUpdate != null) {
+            baos.write(new Time(nextUpdate).getEncoded(ASN1Encoding.DER));
+        }
+
+        return baos.toByteArray();
+    }
+
+    private byte[] encodeTbsTail() throws IOException {
+        // delta CRLs must not point to a delta CRL
+        if (baseCrl != null && extensions.hasExtension(Extension.freshestCRL)) {
+            extensions.removeExtension(Extension.freshestCRL);
+        }
+
+        if (extensions.isEmpty()) {
+            return new byte[0];
+        }
+
+        Extensions crlExtensions = extensions.generate();
+        return new DERTaggedObject(true, 0, crlExtensions).getEncoded(ASN1Encoding.DER);
+    }
+
+    private void writeTbs(OutputStream out, long tbsLength, byte[] tbsHead,
+                          List<X509CrlEntryReader> previousEntries, X509CrlEntryReader baseEntries,
+                          long entriesLength, byte[] tbsTail) throws IOException, CryptoException {
+        writeHeader(out, TAG_SEQUENCE, tbsLength);
+        out.write(tbsHead);
+
+        // revokedCertificates must be absent if there are none
+        if (entriesLength > 0) {
+            writeHeader(out, TAG_SEQUENCE, entriesLength);
+            writeEntries(out, previousEntries, baseEntries);
+        }
+
+        out.write(tbsTail);
+    }
+
+    /**
+     * Write the entries of the previous CRLs merged with the added entries.
+     * The entries of the base CRL of a delta CRL are left out of the entries
+     * of the previous CRLs.
+     *
+     * @return Number of bytes written
+     */
+    private long writeEntries(OutputStream out, List<X509CrlEntryReader> previousEntries,
+                              X509CrlEntryReader baseEntries) throws IOException, CryptoException {
+        for (X509CrlEntryReader reader : previousEntries) {
+            reader.rewind();
+            reader.next();
+        }
+        if (baseEntries != null) {
+            baseEntries.rewind();
+            baseEntries.next();
+        }
+
+        long length = 0;
+
+        Iterator<Map.Entry<BigInteger, byte[]>> itr = entries.entrySet().iterator();
+        Map.Entry<BigInteger, byte[]> entry = itr.hasNext() ? itr.next() : null;
+
+        X509CrlEntryReader previous = getLowest(previousEntries);
+        while (previous != null || entry != null) {
+            int cmp;
+            if (entry == null) {
+                cmp = -1;
+            } else if (previous == null) {
+                cmp = 1;
+            } else {
+                cmp = previous.getSerialNumber().compareTo(entry.getKey());
+            }
+
+            if (cmp < 0) {
+                BigInteger serialNumber = previous.getSerialNumber();
+                if (!contains(baseEntries, serialNumber)) {
+                    length += previous.writeEntry(out);
+                }
+                skip(previousEntries, serialNumber);
+            } else {
+                if (cmp == 0) {
+                    skip(previousEntries, entry.getKey()); // replaced by the added entry
+                }
+
+                out.write(entry.getValue());
+                length += entry.getValue().length;
+                entry = itr.hasNext() ? itr.next() : null;
+            }
+
+            previous = getLowest(previousEntries);
+        }
+
+        return length;
+    }
+
+    /**
+     * Get the reader of the previous CRLs whose current entry has the lowest
+     * serial number, the one that was added first if there are several.
+     */
+    private static X509CrlEntryReader getLowest(List<X509CrlEntryReader> previousEntries) {
+        X509CrlEntryReader lowest = null;
+        for (X509CrlEntryReader reader : previousEntries) {
+            if (reader.getSerialNumber() != null &&
+                (lowest == null || reader.getSerialNumber().compareTo(lowest.getSerialNumber()) < 0)) {
+                lowest = reader;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Continue with the next entry of the previous CRLs whose current entry has
+     * the serial number.
+     */
+    private static void skip(List<X509CrlEntryReader> previousEntries, BigInteger serialNumber)
+            throws IOException {
+        for (X509CrlEntryReader reader : previousEntries) {
+            if (serialNumber.equals(reader.getSerialNumber())) {
+                reader.next();
+            }
+        }
+    }
+
+    private static boolean contains(X509CrlEntryReader baseEntries, BigInteger serialNumber) throws IOException {
+        if (baseEntries == null) {
+            return false;
+        }
+
+        while (baseEntries.getSerialNumber() != null && baseEntries.getSerialNumber().compareTo(serialNumber) < 0) {
+            baseEntries.next();
+        }
+        return serialNumber.equals(baseEntries.getSerialNumber());
+    }
+
+    private static void writeHeader(OutputStream out, int tag, long length) throws IOException {
+        out.write(tag);
+
+        if (length < 0x80) {
+            out.write((int) length);
+        } else {
+            int size = (headerLength(length) - 2);
+            out.write(0x80 | size);
+            for (int i = size - 1; i >= 0; i--) {
+                out.write((int) (length >>> (i * 8)));
+            }
+        }
+    }
+
+    private static int headerLength(long length) {
+        if (length < 0x80) {
+            return 2;
+        }
+
+        int size = 1;
+        while ((length >>> (size * 8)) != 0) {
+            size++;
+        }
+        return 2 + size;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.PublicKey;
+import java.security.cert.X509Extension;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.bouncycastle.asn1.ASN1BitString;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.operator.ContentVerifier;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.utilities.pem.PemUtil;
+
+/**
+ * The fields of an X.509 CRL apart from its entries, read from the DER
+ * encoding of the CRL. Unlike an X509CRL, the entries are not decoded, so that
+ * CRLs with millions of entries can be loaded, verified and displayed quickly.
+ * The entries are read with an {@link X509CrlEntryIndex}. A CRL that is loaded
+ * from a DER encoded file is not read into memory, its entries are read from
+ * the file whenever they are needed.
+ */
+public class X509CrlHeader implements X509Extension {
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_UTC_TIME = 0x17;
+    private static final int TAG_GENERALIZED_TIME = 0x18;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_CRL_EXTENSIONS = 0xa0;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/x509/resources");
+
+    private final byte[] encoded;
+    private final File file;
+    private long tbsStart;
+    private long tbsEnd;
+    private long entriesStart;
+    private long entriesEnd;
+    private int version = 1;
+    private X500Name issuer;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private Extensions extensions;
+    private AlgorithmIdentifier signatureAlgorithm;
+    private byte[] signature;
+
+    private X509CrlHeader(byte[] encoded, File file) {
+        this.encoded = encoded;
+        this.file = file;
+    }
+
+    /**
+     * Load a CRL.
+     *
+     * @param crlData DER, PEM or Base64 encoded CRL
+     * @return The CRL
+     * @throws CryptoException Problem encountered while loading the CRL
+     */
+    public static X509CrlHeader create(byte[] crlData) throws CryptoException {
+        if (crlData == null || crlData.length == 0) {
+            throw new CryptoException(res.getString("NoLoadCrl.exception.message"),
+                                      new IllegalArgumentException("CRL data is empty"));
+        }
+
+        try {
+            X509CrlHeader crl = new X509CrlHeader(decode(crlData), null);
+            try (DerFileReader der = crl.openReader()) {
+                crl.parse(der);
+            }
+            return crl;
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new CryptoException(res.getString("NoLoadCrl.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Load a CRL from a file. Only the fields apart from the entries are read
+     * from a DER encoded file, the entries are read from the file whenever they
+     * are needed, so the file must not be changed while the CRL is in use. A
+     * PEM or Base64 encoded file is read into memory.
+     *
+     * @param crlFile File of a DER, PEM or Base64 encoded CRL
+     * @return The CRL
+     * @throws CryptoException Problem encountered while loading the CRL
+     */
+    public static X509CrlHeader create(File crlFile) throws CryptoException {
+        try {
+            X509CrlHeader crl = new X509CrlHeader(null, crlFile);
+            try (DerFileReader der = crl.openReader()) {
+                if (der.peekTag() != TAG_SEQUENCE) {
+                    return create(Files.readAllBytes(crlFile.toPath()));
+                }
+                crl.parse(der);
+            }
+            return crl;
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new CryptoException(res.getString("NoLoadCrl.exception.message"), ex);
+        }
+    }
+
+    private static byte[] decode(byte[] crlData) throws IOException {
+        if ((crlData[0] & 0xff) == TAG_SEQUENCE) {
+            return crlData;
+        }
+
+        if (PemUtil.isPemFormat(crlData)) {
+            return PemUtil.decode(crlData).getContent();
+        }
+
+        return Base64.getMimeDecoder().decode(crlData);
+    }
+
+    private DerFileReader openReader() throws IOException {
+        if (file == null) {
+            return new DerFileReader(encoded);
+        }
+        return new DerFileReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    private void parse(DerFileReader der) throws IOException {
+        der.enter(TAG_SEQUENCE); // CertificateList
+        tbsStart = der.pos;
+        tbsEnd = der.enter(TAG_SEQUENCE);
+
+        if (der.peekTag() == TAG_INTEGER) {
+            version = ASN1Integer.getInstance(der.read()).intValueExact() + 1;
+        }
+        der.skip(); // signature
+        issuer = X500Name.getInstance(der.read());
+        thisUpdate = Time.getInstance(ASN1Primitive.fromByteArray(der.read())).getDate();
+
+        if (der.pos < tbsEnd && isTime(der.peekTag())) {
+            nextUpdate = Time.getInstance(ASN1Primitive.fromByteArray(der.read())).getDate();
+        }
+
+        // revokedCertificates, absent if there are none
+        if (der.pos < tbsEnd && der.peekTag() == TAG_SEQUENCE) {
+            entriesEnd = der.enter(TAG_SEQUENCE);
+            entriesStart = der.pos;
+            der.pos = entriesEnd;
+        }
+
+        if (der.pos < tbsEnd && der.peekTag() == TAG_CRL_EXTENSIONS) {
+            der.enter(TAG_CRL_EXTENSIONS);
+            extensions = Extensions.getInstance(der.read());
+        }
+
+        der.pos = tbsEnd;
+        signatureAlgorithm = AlgorithmIdentifier.getInstance(der.read());
+        signature = ASN1BitString.getInstance(ASN1Primitive.fromByteArray(der.read())).getOctets();
+    }
+
+    private static boolean isTime(int tag) {
+        return tag == TAG_UTC_TIME || tag == TAG_GENERALIZED_TIME;
+    }
+
+    /**
+     * Verify that the CRL was signed using the private key that corresponds
+     * to a public key. The signature is verified over the TBSCertList as it is
+     * contained in the encoding of the CRL, which is read from the file of a
+     * CRL loaded from a file.
+     *
+     * @param publicKey The public key
+     * @return True if the signature is valid
+     * @throws CryptoException If there was a problem verifying the signature
+     */
+    public boolean verify(PublicKey publicKey) throws CryptoException {
+        try {
+            ContentVerifier verifier = new JcaContentVerifierProviderBuilder().setProvider(KSE.BC)
+                                                                              .build(publicKey)
+                                                                              .get(signatureAlgorithm);
+            try (OutputStream os = verifier.getOutputStream();
+                 DerFileReader der = openReader()) {
+                der.pos = tbsStart;
+                der.write(tbsEnd, os);
+            }
+            return verifier.verify(signature);
+        } catch (OperatorCreationException | IOException | IllegalArgumentException ex) {
+            throw new CryptoException(res.getString("NoVerifyCrl.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Create an index of the entries of the CRL.
+     *
+     * @return The index
+     * @throws CryptoException If the entries of the CRL could not be read
+     */
+    public X509CrlEntryIndex getEntries() throws CryptoException {
+        try {
+            return X509CrlEntryIndex.create(readEncoded());
+        } catch (IOException ex) {
+            throw new CryptoException(res.getString("NoIndexCrl.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Open a reader for the entries of the CRL, which reads them straight
+     * from the file or the encoding of the CRL.
+     *
+     * @return The reader, which must be closed
+     * @throws IOException If the file of the CRL could not be opened
+     */
+    X509CrlEntryReader readEntries() throws IOException {
+        return new X509CrlEntryReader(this, openReader(), entriesStart, entriesEnd);
+    }
+
+    /**
+     * Get the DER encoding of the CRL. The encoding of a CRL loaded from a DER
+     * encoded file is read from the file on every call, otherwise it is not
+     * copied and must not be modified.
+     *
+     * @return The encoding
+     */
+    public byte[] getEncoded() {
+        try {
+            return readEncoded();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private byte[] readEncoded() throws IOException {
+        return file == null ? encoded : Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * Get the version of the CRL.
+     *
+     * @return 1 or 2
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the issuer of the CRL.
+     *
+     * @return The issuer
+     */
+    public X500Name getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Get the date from which the CRL is effective.
+     *
+     * @return The date
+     */
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * Get the date by which the next CRL will be issued.
+     *
+     * @return The date or null if the CRL has no next update
+     */
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * Get the OID of the algorithm the CRL was signed with.
+     *
+     * @return The OID
+     */
+    public String getSigAlgOID() {
+        return signatureAlgorithm.getAlgorithm().getId();
+    }
+
+    /**
+     * Get the DER encoded parameters of the algorithm the CRL was signed with.
+     *
+     * @return The parameters or null if the algorithm has none
+     */
+    public byte[] getSigAlgParams() {
+        if (signatureAlgorithm.getParameters() == null) {
+            return null;
+        }
+
+        try {
+            return signatureAlgorithm.getParameters().toASN1Primitive().getEncoded(ASN1Encoding.DER);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Get the extensions of the CRL.
+     *
+     * @return The extensions or null if the CRL has none
+     */
+    public Extensions getExtensions() {
+        return extensions;
+    }
+
+    @Override
+    public boolean hasUnsupportedCriticalExtension() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getCriticalExtensionOIDs() {
+        return getExtensionOIDs(true);
+    }
+
+    @Override
+    public Set<String> getNonCriticalExtensionOIDs() {
+        return getExtensionOIDs(false);
+    }
+
+    private Set<String> getExtensionOIDs(boolean critical) {
+        if (extensions == null) {
+            return null;
+        }
+
+        Set<String> oids = new HashSet<>();
+        ASN1ObjectIdentifier[] extensionOids = critical ? extensions.getCriticalExtensionOIDs()
+                                                        : extensions.getNonCriticalExtensionOIDs();
+        for (ASN1ObjectIdentifier oid : extensionOids) {
+            oids.add(oid.getId());
+        }
+        return oids;
+    }
+
+    @Override
+    public byte[] getExtensionValue(String oid) {
+        if (extensions == null) {
+            return null;
+        }
+
+        Extension extension = extensions.getExtension(new ASN1ObjectIdentifier(oid));
+        if (extension == null) {
+            return null;
+        }
+
+        try {
+            return extension.getExtnValue().getEncoded();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import javax.swing.SwingUtilities;
 import org.kse.AuthorityCertificates;
 import org.kse.KSE;
 import org.kse.gui.actions.CheckUpdateAction;
+import org.kse.gui.actions.VerifyCertificateAction;
 import org.kse.gui.dnd.DroppedFileHandler;
 import org.kse.gui.error.DError;
 import org.kse.gui.preferences.data.KsePreferences;
@@ -98,6 +99,9 @@ public class CreateApplicationGui implements Runnable {
             if (!Boolean.getBoolean(KseFrame.KSE_UPDATE_CHECK_DISABLED)) {
                 checkForUpdates(kseFrame);
             }
+
+            // delete expired OCSP responses and CRLs in background
+            pruneRevocationCache();
         } catch (Throwable t) {
             DError dError = new DError(new JFrame(), t);
             dError.setLocationRelativeTo(null);
@@ -142,6 +146,14 @@ public class CreateApplicationGui implements Runnable {
         }).start();
     }
 
+    private static void pruneRevocationCache() {
+        // the cache of the verifications, so that a running verification does not lose its files
+        Thread pruner = new Thread(() -> VerifyCertificateAction.getRevocationCache().prune(),
+                                   "KSE-PruneRevocationCache");
+        pruner.setDaemon(true);
+        pruner.start();
+    }
+
     private static void initLookAndFeel(KsePreferences applicationSettings) {
         LnfUtil.installLnfs();
 
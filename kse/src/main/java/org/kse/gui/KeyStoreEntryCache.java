@@ -0,0 +1,292 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.KeyInfo;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.x509.KseX500NameStyle;
+import org.kse.crypto.x509.X500NameUtils;
+import org.kse.crypto.x509.X509CertUtil;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.io.HexUtil;
+
+/**
+ * Cache of the decoded certificates of a KeyStore's entries and the column
+ * values derived from them. An entry is only decoded again if its encoded
+ * certificates have changed, so that reloading the KeyStore table after an
+ * edit or after showing other columns is cheap for large KeyStores.
+ */
+class KeyStoreEntryCache {
+    private final Map<String, CachedEntry> entries = new HashMap<>();
+    private KeyStoreHistory history;
+
+    /**
+     * Prepare the cache for loading the current state of a KeyStore history.
+     * Everything cached for a different history is discarded.
+     *
+     * @param history KeyStore history
+     */
+    void setHistory(KeyStoreHistory history) {
+        if (this.history != history) {
+            entries.clear();
+            this.history = history;
+        }
+    }
+
+    /**
+     * Get the cached data for an entry that holds certificates. The entry is
+     * decoded again if its certificates differ from the cached ones.
+     *
+     * @param alias    Alias of the entry
+     * @param keyStore KeyStore containing the entry
+     * @return Cached data or null if the entry is a key entry without
+     *         certificates
+     * @throws GeneralSecurityException If the KeyStore could not be accessed
+     */
+    CachedEntry get(String alias, KeyStore keyStore) throws GeneralSecurityException {
+        boolean trustedCertificate = KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore);
+
+        Certificate[] certificates;
+        if (trustedCertificate) {
+            certificates = new Certificate[] { keyStore.getCertificate(alias) };
+        } else {
+            certificates = keyStore.getCertificateChain(alias);
+        }
+
+        if (certificates == null || certificates.length == 0 || certificates[0] == null) {
+            entries.remove(alias);
+            return null;
+        }
+
+        CachedEntry entry = entries.get(alias);
+
+        if (entry == null || !entry.matches(trustedCertificate, certificates)) {
+            entry = new CachedEntry(trustedCertificate, certificates);
+            entries.put(alias, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Drop the cached data of all entries that no longer exist.
+     *
+     * @param aliases Aliases of the existing entries
+     */
+    void retainAll(Collection<String> aliases) {
+        entries.keySet().retainAll(aliases);
+    }
+
+    /**
+     * Decoded certificates of a single entry plus lazily derived column values.
+     * The certificates are only decoded on first access, which may happen on a
+     * different thread than the one that looked up the entry.
+     */
+    static class CachedEntry {
+        private static final Object NO_VALUE = new Object();
+
+        private final boolean trustedCertificate;
+        private final Certificate[] certificates;
+        private final byte[][] encodings;
+        private final Map<String, Object> values = new HashMap<>();
+        private X509Certificate[] x509Chain;
+
+        private CachedEntry(boolean trustedCertificate, Certificate[] certificates) throws GeneralSecurityException {
+            this.trustedCertificate = trustedCertificate;
+            this.certificates = certificates.clone();
+            this.encodings = encode(certificates);
+        }
+
+        private boolean matches(boolean trustedCertificate, Certificate[] certificates)
+                throws GeneralSecurityException {
+            if (this.trustedCertificate != trustedCertificate || this.certificates.length != certificates.length) {
+                return false;
+            }
+
+            // unchanged entries of a history state usually return the very same certificate objects
+            boolean identical = true;
+            for (int i = 0; i < certificates.length && identical; i++) {
+                identical = this.certificates[i] == certificates[i];
+            }
+
+            return identical || Arrays.deepEquals(encodings, encode(certificates));
+        }
+
+        private static byte[][] encode(Certificate[] certificates) throws GeneralSecurityException {
+            byte[][] encodings = new byte[certificates.length][];
+            for (int i = 0; i < certificates.length; i++) {
+                encodings[i] = certificates[i].getEncoded();
+            }
+            return encodings;
+        }
+
+        /**
+         * Get the certificate of the entry, i.e. the trusted certificate or the
+         * end entity certificate of a key pair.
+         *
+         * @return Certificate
+         * @throws CryptoException If the certificates could not be decoded
+         */
+        X509Certificate getCertificate() throws CryptoException {
+            return getChain()[0];
+        }
+
+        private synchronized X509Certificate[] getChain() throws CryptoException {
+            if (x509Chain == null) {
+                if (trustedCertificate) {
+                    x509Chain = new X509Certificate[] { X509CertUtil.convertCertificate(certificates[0]) };
+                } else {
+                    // Key pair - first certificate in chain will be for the private key
+                    x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(certificates));
+                }
+            }
+            return x509Chain;
+        }
+
+        Date getValidityStart() throws CryptoException {
+            return getCertificate().getNotBefore();
+        }
+
+        Date getExpiry() throws CryptoException {
+            return getCertificate().getNotAfter();
+        }
+
+        Date getEarliestExpiry() throws CryptoException {
+            X509Certificate[] x509Chain = getChain();
+            Date earliest = x509Chain[0].getNotAfter();
+            for (X509Certificate x509Certificate : x509Chain) {
+                if (x509Certificate.getNotAfter().before(earliest)) {
+                    earliest = x509Certificate.getNotAfter();
+                }
+            }
+            return earliest;
+        }
+
+        KeyInfo getKeyInfo() throws CryptoException {
+            return value("keyInfo", () -> KeyPairUtil.getKeyInfo(getCertificate().getPublicKey()));
+        }
+
+        String getSubjectDN() throws CryptoException {
+            return value("subjectDN", () -> X500NameUtils.x500PrincipalToX500Name(
+                    getCertificate().getSubjectX500Principal()).toString());
+        }
+
+        String getIssuerDN() throws CryptoException {
+            return value("issuerDN", () -> X500NameUtils.x500PrincipalToX500Name(
+                    getCertificate().getIssuerX500Principal()).toString());
+        }
+
+        String getSubjectCN() throws CryptoException {
+            return value("subjectCN", () -> X500NameUtils.extractCN(getCertificate().getSubjectX500Principal()));
+        }
+
+        String getIssuerCN() throws CryptoException {
+            return value("issuerCN", () -> X500NameUtils.extractCN(getCertificate().getIssuerX500Principal()));
+        }
+
+        String getSubjectO() throws CryptoException {
+            return value("subjectO", () -> {
+                X500Name subject = X500NameUtils.x500PrincipalToX500Name(getCertificate().getSubjectX500Principal());
+                return X500NameUtils.getRdn(subject, KseX500NameStyle.O);
+            });
+        }
+
+        String getIssuerO() throws CryptoException {
+            return value("issuerO", () -> {
+                X500Name issuer = X500NameUtils.x500PrincipalToX500Name(getCertificate().getIssuerX500Principal());
+                return X500NameUtils.getRdn(issuer, KseX500NameStyle.O);
+            });
+        }
+
+        String getSerialNumberHex() throws CryptoException {
+            return value("serialNumberHex", () -> X509CertUtil.getSerialNumberAsHex(getCertificate()));
+        }
+
+        String getSerialNumberDec() throws CryptoException {
+            return value("serialNumberDec", () -> X509CertUtil.getSerialNumberAsDec(getCertificate()));
+        }
+
+        String getSKI() throws CryptoException {
+            return value("ski", () -> {
+                try {
+                    byte[] skiValue = getCertificate().getExtensionValue(Extension.subjectKeyIdentifier.getId());
+                    byte[] octets = DEROctetString.getInstance(skiValue).getOctets();
+                    byte[] skiBytes = SubjectKeyIdentifier.getInstance(octets).getKeyIdentifier();
+                    return HexUtil.getHexString(skiBytes);
+                } catch (Exception e) {
+                    return "-";
+                }
+            });
+        }
+
+        String getAKI() throws CryptoException {
+            return value("aki", () -> {
+                try {
+                    byte[] akiValue = getCertificate().getExtensionValue(Extension.authorityKeyIdentifier.getId());
+                    byte[] octets = DEROctetString.getInstance(akiValue).getOctets();
+                    byte[] akiBytes = AuthorityKeyIdentifier.getInstance(octets).getKeyIdentifier();
+                    return HexUtil.getHexString(akiBytes);
+                } catch (Exception e) {
+                    return "-";
+                }
+            });
+        }
+
+        String getFingerprint(DigestType fingerprintAlg) throws CryptoException {
+            return value("fingerprint." + fingerprintAlg.name(),
+                         () -> X509CertUtil.getFingerprint(getCertificate(), fingerprintAlg));
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized <T> T value(String key, ValueSupplier<T> supplier) throws CryptoException {
+            Object value = values.get(key);
+
+            if (value == null) {
+                value = supplier.get();
+                values.put(key, value == null ? NO_VALUE : value);
+            }
+
+            return value == NO_VALUE ? null : (T) value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueSupplier<T> {
+        T get() throws CryptoException;
+    }
+}
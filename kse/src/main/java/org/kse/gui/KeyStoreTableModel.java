@@ -24,44 +24,45 @@ import static org.kse.crypto.KeyType.SYMMETRIC;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyStore;
-import java.security.KeyStoreException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.time.Clock;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.ResourceBundle;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.crypto.SecretKey;
+import javax.swing.SwingUtilities;
 
-import org.bouncycastle.asn1.DEROctetString;
-import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
-import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.KeyInfo;
-import org.kse.crypto.digest.DigestType;
 import org.kse.crypto.keypair.KeyPairUtil;
 import org.kse.crypto.keystore.KeyStoreType;
 import org.kse.crypto.keystore.KeyStoreUtil;
 import org.kse.crypto.secretkey.SecretKeyType;
 import org.kse.crypto.secretkey.SecretKeyUtil;
-import org.kse.crypto.x509.KseX500NameStyle;
-import org.kse.crypto.x509.X500NameUtils;
-import org.kse.crypto.x509.X509CertUtil;
+import org.kse.gui.KeyStoreEntryCache.CachedEntry;
 import org.kse.gui.table.ToolTipTableModel;
 import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.history.KeyStoreState;
-import org.kse.utilities.io.HexUtil;
 
 /**
  * The table model used to display a KeyStore's entries sorted by alias name.
@@ -71,8 +72,11 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/resources");
     private String[] columnNames;
     private Class<?>[] columnTypes;
-    private Object[][] data = new Object[0][0];
+    private List<Row> rows = new ArrayList<>();
+    private List<String> rowAliases = new ArrayList<>();
     private KeyStoreHistory history;
+    private final KeyStoreEntryCache entryCache;
+    private transient Consumer<CryptoException> failureHandler;
 
     // This array of nulls is used by the constructor to initialize the
     // ToolTipTableModel that manages the tool tips. This reference must
@@ -82,6 +86,29 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     // of array elements must always match the total number of columns.
     private static final String[] COLUMN_TOOL_TIPS = new String[21];
 
+    /**
+     * Maximum number of inserted and deleted rows for which row level events
+     * are fired. More changes than this rebuild the whole table, which is
+     * cheaper for the table's row sorter.
+     */
+    private static final int MAX_ROW_EVENTS = 100;
+
+    /**
+     * Column values of fewer rows than this are not worth computing in parallel
+     */
+    private static final int MIN_PARALLEL_ROWS = 256;
+    private static final int ROWS_PER_TASK = 64;
+
+    /**
+     * From this number of rows on, only the alias and type related columns are
+     * filled in when loading. All other columns are computed when they are
+     * first displayed or by a background prefetch, whichever comes first.
+     */
+    private static final int MIN_LAZY_ROWS = 1000;
+
+    private static volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool columnPool;
+
     enum EntryType {
         /**
          * Type column value for a key pair entry
@@ -153,6 +180,13 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     private int iSerialNumberDecColumn = -1;
     private int iFingerprintColumn = -1;
 
+    // explicitly define a clock for overriding the current time in unit tests
+    private Clock clock = Clock.systemDefaultZone();
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
     /**
      * Construct a new KeyStoreTableModel with a variable layout.
      *
@@ -160,9 +194,29 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      * @param expiryWarnDays       The number of days for expiration warning from preferences.
      */
     public KeyStoreTableModel(KeyStoreTableColumns keyStoreTableColumns, int expiryWarnDays) {
+        this(keyStoreTableColumns, expiryWarnDays, new KeyStoreEntryCache());
+    }
+
+    /**
+     * Construct a new KeyStoreTableModel with a variable layout that reuses the
+     * decoded entries of another model, e.g. after the displayed columns have
+     * been changed.
+     *
+     * @param keyStoreTableColumns The key store table columns to display from preferences.
+     * @param expiryWarnDays       The number of days for expiration warning from preferences.
+     * @param previousModel        The model that displayed the KeyStore so far.
+     */
+    public KeyStoreTableModel(KeyStoreTableColumns keyStoreTableColumns, int expiryWarnDays,
+                              KeyStoreTableModel previousModel) {
+        this(keyStoreTableColumns, expiryWarnDays, previousModel.entryCache);
+    }
+
+    private KeyStoreTableModel(KeyStoreTableColumns keyStoreTableColumns, int expiryWarnDays,
+                               KeyStoreEntryCache entryCache) {
         super(res, COLUMN_TOOL_TIPS);
         this.keyStoreTableColumns = keyStoreTableColumns;
         this.expiryWarnDays = expiryWarnDays;
+        this.entryCache = entryCache;
         adjustColumns();
     }
 
@@ -176,7 +230,6 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      *                                  entries
      */
     public void load(KeyStoreHistory history) throws GeneralSecurityException, CryptoException {
-        this.history = history;
         KeyStoreState currentState = history.getCurrentState();
 
         KeyStore keyStore = currentState.getKeyStore();
@@ -184,371 +237,514 @@ public class KeyStoreTableModel extends ToolTipTableModel {
 
         Enumeration<String> aliases = keyStore.aliases();
 
-        TreeMap<String, String> sortedAliases = new TreeMap<>(type.getAliasComparator());
+        Set<String> supportedAliases = new HashSet<>();
 
         while (aliases.hasMoreElements()) {
             String alias = aliases.nextElement();
             if (!KeyStoreUtil.isSupportedEntryType(alias, keyStore)) {
                 continue;
             }
-            sortedAliases.put(alias, alias);
+            supportedAliases.add(alias);
         }
 
-        data = new Object[sortedAliases.size()][nofColumns];
+        entryCache.setHistory(history);
+        entryCache.retainAll(supportedAliases);
 
-        int i = 0;
-        for (Iterator<Entry<String, String>> itr = sortedAliases.entrySet().iterator(); itr.hasNext(); i++) {
-            String alias = itr.next().getKey();
+        if (this.history == history && updateRows(supportedAliases, keyStore, type, currentState)) {
+            return;
+        }
 
-            EntryType entryType = null;
+        this.history = history;
 
-            // Type column
-            if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-                entryType = EntryType.TRUST_CERT;
-            } else if (KeyStoreUtil.isKeyPairEntry(alias, keyStore)) {
-                entryType = EntryType.KEY_PAIR;
-            } else {
-                entryType = EntryType.KEY;
-            }
+        List<String> sortedAliases = new ArrayList<>(supportedAliases);
+        sortedAliases.sort(type.getAliasComparator());
 
-            data[i][0] = entryType;
+        List<Row> newRows = createRows(sortedAliases, keyStore, type, currentState);
+        completeRows(newRows, newRows.size() >= MIN_LAZY_ROWS);
 
-            // Lock column - only applies to KeyStores types that actually support passwords for entries
-            if ((entryType == EntryType.KEY_PAIR || entryType == EntryType.KEY) && type.hasEntryPasswords()) {
-                if (currentState.getEntryPassword(alias) != null) {
-                    data[i][1] = Boolean.FALSE; // Unlocked
-                } else {
-                    data[i][1] = Boolean.TRUE; // Locked
-                }
-            } else {
-                data[i][1] = null; // Lock status does not apply
-            }
+        rows = newRows;
+        rowAliases = sortedAliases;
 
-            Expiration expiration;
+        fireTableDataChanged();
+    }
 
-            // Expiry status column
-            Date expiry = getCertificateExpiry(alias, keyStore);
-            ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
-            ZonedDateTime nowPlusExpiryWarnDays = now.plusDays(expiryWarnDays);
-            if (expiry == null) {
-                expiration = null; // No certExpiration - must be a key entry
-            } else {
-                ZonedDateTime expiryDateTime = expiry.toInstant().atZone(ZoneId.systemDefault());
-                if (now.isAfter(expiryDateTime)) {
-                    expiration = Expiration.EXPIRED;
-                } else {
-                    if (nowPlusExpiryWarnDays.isAfter(expiryDateTime)) {
-                        expiration = Expiration.ALMOST_EXPIRED;
-                    } else {
-                        expiration = Expiration.NOT_EXPIRED;
-                    }
-                }
-            }
+    /**
+     * Set the number of threads used for computing the column values of large
+     * KeyStores.
+     *
+     * @param threads Number of threads, 0 for one per available processor
+     */
+    public static synchronized void setThreads(int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
 
-            data[i][2] = expiration;
+        if (columnPool != null && columnPool.getParallelism() != parallelism) {
+            columnPool.shutdown();
+            columnPool = null;
+        }
+        KeyStoreTableModel.parallelism = parallelism;
+    }
 
-            if (iNameColumn > 0) {
-                // Alias column
-                data[i][iNameColumn] = alias;
-            }
+    /**
+     * Set the handler that is told about entries whose column values could not
+     * be computed in the background. Failures while loading small KeyStores are
+     * thrown by load instead.
+     *
+     * @param failureHandler Receives the first failure of each background
+     *                       computation on the event dispatch thread
+     */
+    public void setFailureHandler(Consumer<CryptoException> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
 
-            KeyInfo keyInfo = getKeyInfo(alias, keyStore, currentState);
+    /**
+     * Wait until the column values of all rows have been computed in the
+     * background.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return True if all rows are complete, false if the timeout elapsed
+     */
+    static boolean awaitPrefetch(long timeout, TimeUnit unit) {
+        return getColumnPool().awaitQuiescence(timeout, unit);
+    }
 
-            if (keyInfo != null) {
-                // Algorithm column
-                if (iAlgorithmColumn > 0) {
-                    data[i][iAlgorithmColumn] = getAlgorithmName(keyInfo);
-                }
+    private static synchronized ForkJoinPool getColumnPool() {
+        if (columnPool == null) {
+            columnPool = new ForkJoinPool(parallelism);
+        }
+        return columnPool;
+    }
 
-                // Key Size column
-                if (iKeySizeColumn > 0) {
-                    data[i][iKeySizeColumn] = keyInfo.getSize();
-                }
-                // EC curve column
-                if (keyStoreTableColumns.getEnableCurve()) {
-                    data[i][iCurveColumn] = keyInfo.getDetailedAlgorithm();
-                }
-            }
-            if (iCertValidityStartColumn > 0) {
-                data[i][iCertValidityStartColumn] = getCertificateValidityStart(alias, keyStore);
-            }
-            if (iCertExpiryColumn > 0) {
-                data[i][iCertExpiryColumn] = expiry;
-            }
-            if (iLastModifiedColumn > 0) {
-                // Modified date column - only applies to non-PKCS #11/#12 KeyStores
-                if (!keyStore.getType().equals(KeyStoreType.PKCS12.jce()) &&
-                    !keyStore.getType().equals(KeyStoreType.PKCS11.jce())) {
-                    data[i][iLastModifiedColumn] = keyStore.getCreationDate(alias);
-                } else {
-                    data[i][iLastModifiedColumn] = null;
-                }
-            }
-            if (iSubjectDNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectDNColumn] = getCertificateSubjectDN(alias, keyStore);
-                } else {
-                    data[i][iSubjectDNColumn] = null;
-                }
-            }
-            if (iIssuerDNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerDNColumn] = getCertificateIssuerDN(alias, keyStore);
-                } else {
-                    data[i][iIssuerDNColumn] = null;
-                }
-            }
-            if (iSerialNumberHexColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSerialNumberHexColumn] = getCertificateSerialNumberHex(alias, keyStore);
-                } else {
-                    data[i][iSerialNumberHexColumn] = null;
-                }
-            }
-            if (iSerialNumberDecColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSerialNumberDecColumn] = getCertificateSerialNumberDec(alias, keyStore);
-                } else {
-                    data[i][iSerialNumberDecColumn] = null;
-                }
-            }
-            if (iSubjectCNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectCNColumn] = getCertificateSubjectCN(alias, keyStore);
-                } else {
-                    data[i][iSubjectCNColumn] = null;
-                }
-            }
-            if (iIssuerCNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerCNColumn] = getCertificateIssuerCN(alias, keyStore);
-                } else {
-                    data[i][iIssuerCNColumn] = null;
-                }
-            }
-            if (iSubjectOColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectOColumn] = getCertificateSubjectO(alias, keyStore);
-                } else {
-                    data[i][iSubjectOColumn] = null;
-                }
-            }
-            if (iIssuerOColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerOColumn] = getCertificateIssuerO(alias, keyStore);
-                } else {
-                    data[i][iIssuerOColumn] = null;
-                }
+    /**
+     * Bring the rows up to date with another state of the same KeyStore history.
+     * Only rows whose content differs are replaced and row level events are fired
+     * for them, so that small edits of a large KeyStore do not rebuild the table.
+     * The expiry status of the kept rows is brought up to date as well.
+     *
+     * @return False if there are too many changes and the table should be
+     *         rebuilt instead
+     */
+    private boolean updateRows(Set<String> supportedAliases, KeyStore keyStore, KeyStoreType type,
+                               KeyStoreState currentState) throws GeneralSecurityException, CryptoException {
+        List<String> oldAliases = new ArrayList<>(rowAliases);
+        Comparator<String> comparator = type.getAliasComparator();
+
+        // the previous rows are already sorted, only the added aliases need sorting
+        Set<String> addedAliasesSet = new HashSet<>(supportedAliases);
+        oldAliases.forEach(addedAliasesSet::remove);
+        List<String> addedAliases = new ArrayList<>(addedAliasesSet);
+        addedAliases.sort(comparator);
+
+        int removed = oldAliases.size() - (supportedAliases.size() - addedAliases.size());
+        if (removed + addedAliases.size() > MAX_ROW_EVENTS) {
+            return false;
+        }
+
+        List<String> newAliases = new ArrayList<>(supportedAliases.size());
+        int addedIndex = 0;
+        for (String oldAlias : oldAliases) {
+            if (!supportedAliases.contains(oldAlias)) {
+                continue;
             }
-            if (iAKIColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iAKIColumn] = getCertificateAKI(alias, keyStore);
-                } else {
-                    data[i][iAKIColumn] = null;
-                }
+            while (addedIndex < addedAliases.size() && comparator.compare(addedAliases.get(addedIndex), oldAlias) < 0) {
+                newAliases.add(addedAliases.get(addedIndex++));
             }
-            if (iSKIColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSKIColumn] = getCertificateSKI(alias, keyStore);
-                } else {
-                    data[i][iSKIColumn] = null;
+            newAliases.add(oldAlias);
+        }
+        newAliases.addAll(addedAliases.subList(addedIndex, addedAliases.size()));
+
+        List<Row> newRows = createRows(newAliases, keyStore, type, currentState);
+
+        // keep the old row, including any column values computed for it, if nothing has changed
+        Map<String, Row> oldRows = new HashMap<>();
+        for (int i = 0; i < oldAliases.size(); i++) {
+            oldRows.put(oldAliases.get(i), rows.get(i));
+        }
+
+        List<Row> changedRows = new ArrayList<>();
+        Set<Row> refreshedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < newRows.size(); i++) {
+            Row oldRow = oldRows.get(newAliases.get(i));
+            if (oldRow != null && isUnchanged(oldRow, newRows.get(i))) {
+                newRows.set(i, oldRow);
+                if (refreshExpiration(oldRow)) {
+                    refreshedRows.add(oldRow);
                 }
+            } else {
+                changedRows.add(newRows.get(i));
             }
-            if (iFingerprintColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iFingerprintColumn] = getCertificateFingerprint(alias, keyStore,
-                                                                            keyStoreTableColumns.getFingerprintAlg());
-                } else {
-                    data[i][iFingerprintColumn] = null;
+        }
+
+        completeRows(changedRows, newRows.size() >= MIN_LAZY_ROWS);
+
+        int row = 0;
+        int oldIndex = 0;
+        int newIndex = 0;
+
+        while (oldIndex < oldAliases.size() || newIndex < newAliases.size()) {
+            String oldAlias = oldIndex < oldAliases.size() ? oldAliases.get(oldIndex) : null;
+            String newAlias = newIndex < newAliases.size() ? newAliases.get(newIndex) : null;
+
+            if (oldAlias != null && !supportedAliases.contains(oldAlias)) {
+                rows.remove(row);
+                rowAliases.remove(row);
+                fireTableRowsDeleted(row, row);
+                oldIndex++;
+            } else if (oldAlias == null || !oldAlias.equals(newAlias)) {
+                // kept aliases keep their order, so anything else in between has been added
+                rows.add(row, newRows.get(newIndex));
+                rowAliases.add(row, newAlias);
+                fireTableRowsInserted(row, row);
+                row++;
+                newIndex++;
+            } else {
+                if (rows.get(row) != newRows.get(newIndex)) {
+                    rows.set(row, newRows.get(newIndex));
+                    fireTableRowsUpdated(row, row);
+                } else if (refreshedRows.contains(rows.get(row))) {
+                    fireTableRowsUpdated(row, row);
                 }
+                row++;
+                oldIndex++;
+                newIndex++;
             }
         }
 
-        fireTableDataChanged();
+        return true;
     }
 
-    private Date getCertificateValidityStart(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            return X509CertUtil.convertCertificate(keyStore.getCertificate(alias)).getNotBefore();
-        } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+    /**
+     * Create the rows for the supplied aliases with all values that need access
+     * to the KeyStore. These are read in order on the calling thread, as
+     * KeyStore implementations are not required to be thread-safe. The column
+     * values derived from the certificates are still missing.
+     */
+    private List<Row> createRows(List<String> aliases, KeyStore keyStore, KeyStoreType type,
+                                 KeyStoreState currentState) throws GeneralSecurityException, CryptoException {
+        List<Row> newRows = new ArrayList<>(aliases.size());
+        for (String alias : aliases) {
+            newRows.add(readRow(alias, keyStore, type, currentState));
+        }
+        return newRows;
+    }
 
-            if (chain == null) {
-                return null; // Key entry - no validity start date
-            }
+    /**
+     * Compute the column values derived from the certificates. They do not
+     * depend on each other and are computed in parallel for large KeyStores.
+     * A row whose values cannot be computed does not keep the other rows from
+     * being completed, the first failure is thrown afterwards or, for lazy
+     * completion, passed to the failure handler.
+     *
+     * @param rowsToComplete Rows to complete
+     * @param lazy           Return immediately and complete the rows in the
+     *                       background
+     */
+    private void completeRows(List<Row> rowsToComplete, boolean lazy) throws CryptoException {
+        if (rowsToComplete.isEmpty()) {
+            return;
+        }
 
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            return x509Chain[0].getNotBefore();
+        Row[] rowArray = rowsToComplete.toArray(new Row[0]);
+        CompleteRows completeRows = new CompleteRows(rowArray, 0, rowArray.length);
+
+        if (lazy) {
+            // prefetch the remaining values, the sorter must be told about them afterwards
+            getColumnPool().execute(() -> {
+                completeRows.invoke();
+                CryptoException failure = getFailure(rowArray);
+                SwingUtilities.invokeLater(() -> {
+                    if (!rows.isEmpty()) {
+                        fireTableRowsUpdated(0, rows.size() - 1);
+                    }
+                    if (failure != null && failureHandler != null) {
+                        failureHandler.accept(failure);
+                    }
+                });
+            });
+            return;
         }
-    }
 
-    private Date getCertificateExpiry(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            return X509CertUtil.convertCertificate(keyStore.getCertificate(alias)).getNotAfter();
+        if (parallelism < 2 || rowArray.length < MIN_PARALLEL_ROWS) {
+            for (Row row : rowArray) {
+                completeRow(row);
+            }
         } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+            getColumnPool().invoke(completeRows);
+        }
 
-            if (chain == null) {
-                // Key entry - no expiry date
-                return null;
+        CryptoException failure = getFailure(rowArray);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static CryptoException getFailure(Row[] completedRows) {
+        for (Row row : completedRows) {
+            if (row.failure != null) {
+                return row.failure;
             }
+        }
+        return null;
+    }
 
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            if (expiryWarnDays < 1) {
-                return x509Chain[0].getNotAfter();
-            } else {
-                Calendar cal = Calendar.getInstance();
-                cal.set(9999, Calendar.FEBRUARY, 1);
-                Date earliest = cal.getTime();
-                for (X509Certificate x509Certificate : x509Chain) {
-                    if (x509Certificate.getNotAfter().before(earliest)) {
-                        earliest = x509Certificate.getNotAfter();
-                    }
-                }
-                return earliest;
+    /**
+     * Is the newly read row equal to the old one? If both share the same cached
+     * entry, the derived column values are the same, so only the values read
+     * from the KeyStore need to be compared.
+     */
+    private boolean isUnchanged(Row oldRow, Row newRow) {
+        if (oldRow.cachedEntry != newRow.cachedEntry) {
+            return false;
+        }
+
+        if (newRow.cachedEntry == null) {
+            // key entries are cheap to complete
+            completeRow(oldRow);
+            completeRow(newRow);
+            return Arrays.equals(oldRow.values, newRow.values);
+        }
+
+        for (int col = 0; col < nofColumns; col++) {
+            if (isKeyStoreColumn(col) && !Objects.equals(oldRow.values[col], newRow.values[col])) {
+                return false;
             }
         }
+        return true;
     }
 
-    private KeyInfo getKeyInfo(String alias, KeyStore keyStore, KeyStoreState currentState)
-            throws CryptoException, GeneralSecurityException {
+    private boolean isKeyStoreColumn(int col) {
+        return col == 0 || col == 1 || col == iNameColumn || col == iLastModifiedColumn;
+    }
+
+    private Row readRow(String alias, KeyStore keyStore, KeyStoreType type, KeyStoreState currentState)
+            throws GeneralSecurityException, CryptoException {
+        Row tableRow = new Row(nofColumns);
+        Object[] row = tableRow.values;
+
+        EntryType entryType = null;
+
+        // Type column
         if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            // Get key info from certificate
-            X509Certificate cert = X509CertUtil.convertCertificate(keyStore.getCertificate(alias));
-            return KeyPairUtil.getKeyInfo(cert.getPublicKey());
+            entryType = EntryType.TRUST_CERT;
+        } else if (KeyStoreUtil.isKeyPairEntry(alias, keyStore)) {
+            entryType = EntryType.KEY_PAIR;
         } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+            entryType = EntryType.KEY;
+        }
 
-            if (chain != null) {
-                // Key pair - first certificate in chain will be for the private key
-                X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
+        row[0] = entryType;
+        tableRow.entryType = entryType;
 
-                return KeyPairUtil.getKeyInfo(x509Chain[0].getPublicKey());
+        // Decoded certificates are only available for trusted certificate and key pair entries
+        if (entryType != EntryType.KEY) {
+            tableRow.cachedEntry = entryCache.get(alias, keyStore);
+        } else {
+            tableRow.keyInfo = getKeyInfo(alias, keyStore, currentState);
+        }
+
+        // Lock column - only applies to KeyStores types that actually support passwords for entries
+        if ((entryType == EntryType.KEY_PAIR || entryType == EntryType.KEY) && type.hasEntryPasswords()) {
+            if (currentState.getEntryPassword(alias) != null) {
+                row[1] = Boolean.FALSE; // Unlocked
             } else {
-                // Key entry - get key info if entry is unlocked
-                if (currentState.getEntryPassword(alias) != null) {
-                    char[] keyPassword = null;
-
-                    keyPassword = currentState.getEntryPassword(alias).toCharArray();
-
-                    Key key = keyStore.getKey(alias, keyPassword);
-                    if (key instanceof SecretKey) {
-                        return SecretKeyUtil.getKeyInfo((SecretKey) key);
-                    } else if (key instanceof PrivateKey) {
-                        return KeyPairUtil.getKeyInfo((PrivateKey) key);
-                    } else if (key instanceof PublicKey) {
-                        return KeyPairUtil.getKeyInfo((PublicKey) key);
-                    }
-                }
+                row[1] = Boolean.TRUE; // Locked
             }
+        } else {
+            row[1] = null; // Lock status does not apply
         }
 
-        return null;
-    }
-
-    private String getAlgorithmName(KeyInfo keyInfo) {
-        String algorithm = keyInfo.getAlgorithm();
-
-        if (keyInfo.getKeyType() == SYMMETRIC) {
-            // Try and get friendly algorithm name for secret key
-            SecretKeyType secretKeyType = SecretKeyType.resolveJce(algorithm);
+        if (iNameColumn > 0) {
+            // Alias column
+            row[iNameColumn] = alias;
+        }
 
-            if (secretKeyType != null) {
-                algorithm = secretKeyType.friendly();
+        if (iLastModifiedColumn > 0) {
+            // Modified date column - only applies to non-PKCS #11/#12 KeyStores
+            if (!keyStore.getType().equals(KeyStoreType.PKCS12.jce()) &&
+                !keyStore.getType().equals(KeyStoreType.PKCS11.jce())) {
+                row[iLastModifiedColumn] = keyStore.getCreationDate(alias);
+            } else {
+                row[iLastModifiedColumn] = null;
             }
         }
 
-        return algorithm;
+        return tableRow;
     }
 
-    private String getCertificateSubjectDN(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.x500PrincipalToX500Name(x509Cert.getSubjectX500Principal()).toString();
+    /**
+     * Compute the missing column values of a row. A failure is recorded in the
+     * row and leaves the values that could not be computed empty.
+     */
+    private void completeRow(Row tableRow) {
+        synchronized (tableRow) {
+            if (!tableRow.complete) {
+                try {
+                    computeColumns(tableRow);
+                } catch (CryptoException ex) {
+                    tableRow.failure = ex;
+                }
+                tableRow.complete = true;
+            }
+        }
     }
 
-    private String getCertificateIssuerDN(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.x500PrincipalToX500Name(x509Cert.getIssuerX500Principal()).toString();
-    }
+    private void computeColumns(Row tableRow) throws CryptoException {
+        Object[] row = tableRow.values;
+        CachedEntry cachedEntry = tableRow.cachedEntry;
 
-    private String getCertificateSerialNumberHex(String alias, KeyStore ks) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getSerialNumberAsHex(x509Cert);
-    }
+        // Expiry status column
+        Date expiry = getCertificateExpiry(tableRow.entryType, cachedEntry);
+        tableRow.expiry = expiry;
+        row[2] = getExpiration(expiry);
 
-    private String getCertificateSerialNumberDec(String alias, KeyStore ks) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getSerialNumberAsDec(x509Cert);
-    }
+        // Trusted certificate or key pair - get key info from certificate
+        KeyInfo keyInfo = cachedEntry != null ? cachedEntry.getKeyInfo() : tableRow.keyInfo;
 
-    private String getCertificateFingerprint(String alias, KeyStore ks, DigestType fingerprintAlg)
-            throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getFingerprint(x509Cert, fingerprintAlg);
-    }
+        if (keyInfo != null) {
+            // Algorithm column
+            if (iAlgorithmColumn > 0) {
+                row[iAlgorithmColumn] = getAlgorithmName(keyInfo);
+            }
 
-    private String getCertificateSubjectCN(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.extractCN(x509Cert.getSubjectX500Principal());
+            // Key Size column
+            if (iKeySizeColumn > 0) {
+                row[iKeySizeColumn] = keyInfo.getSize();
+            }
+            // EC curve column
+            if (keyStoreTableColumns.getEnableCurve()) {
+                row[iCurveColumn] = keyInfo.getDetailedAlgorithm();
+            }
+        }
+        if (iCertValidityStartColumn > 0) {
+            row[iCertValidityStartColumn] = cachedEntry != null ? cachedEntry.getValidityStart() : null;
+        }
+        if (iCertExpiryColumn > 0) {
+            row[iCertExpiryColumn] = expiry;
+        }
+        if (iSubjectDNColumn > 0) {
+            row[iSubjectDNColumn] = cachedEntry != null ? cachedEntry.getSubjectDN() : null;
+        }
+        if (iIssuerDNColumn > 0) {
+            row[iIssuerDNColumn] = cachedEntry != null ? cachedEntry.getIssuerDN() : null;
+        }
+        if (iSerialNumberHexColumn > 0) {
+            row[iSerialNumberHexColumn] = cachedEntry != null ? cachedEntry.getSerialNumberHex() : null;
+        }
+        if (iSerialNumberDecColumn > 0) {
+            row[iSerialNumberDecColumn] = cachedEntry != null ? cachedEntry.getSerialNumberDec() : null;
+        }
+        if (iSubjectCNColumn > 0) {
+            row[iSubjectCNColumn] = cachedEntry != null ? cachedEntry.getSubjectCN() : null;
+        }
+        if (iIssuerCNColumn > 0) {
+            row[iIssuerCNColumn] = cachedEntry != null ? cachedEntry.getIssuerCN() : null;
+        }
+        if (iSubjectOColumn > 0) {
+            row[iSubjectOColumn] = cachedEntry != null ? cachedEntry.getSubjectO() : null;
+        }
+        if (iIssuerOColumn > 0) {
+            row[iIssuerOColumn] = cachedEntry != null ? cachedEntry.getIssuerO() : null;
+        }
+        if (iAKIColumn > 0) {
+            row[iAKIColumn] = cachedEntry != null ? cachedEntry.getAKI() : null;
+        }
+        if (iSKIColumn > 0) {
+            row[iSKIColumn] = cachedEntry != null ? cachedEntry.getSKI() : null;
+        }
+        if (iFingerprintColumn > 0) {
+            if (cachedEntry != null) {
+                row[iFingerprintColumn] = cachedEntry.getFingerprint(keyStoreTableColumns.getFingerprintAlg());
+            } else {
+                row[iFingerprintColumn] = null;
+            }
+        }
     }
 
-    private String getCertificateIssuerCN(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.extractCN(x509Cert.getIssuerX500Principal());
+    /**
+     * Bring the expiry status column of a complete row up to date, it changes
+     * with the passing of time and not only with the entry.
+     *
+     * @return True if the expiry status has changed
+     */
+    private boolean refreshExpiration(Row tableRow) {
+        synchronized (tableRow) {
+            if (!tableRow.complete) {
+                return false;
+            }
+            Expiration expiration = getExpiration(tableRow.expiry);
+            if (tableRow.values[2] == expiration) {
+                return false;
+            }
+            tableRow.values[2] = expiration;
+            return true;
+        }
     }
 
-    private String getCertificateSKI(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        try {
-            byte[] skiValue = x509Cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
-            byte[] octets = DEROctetString.getInstance(skiValue).getOctets();
-            byte[] skiBytes = SubjectKeyIdentifier.getInstance(octets).getKeyIdentifier();
-            return HexUtil.getHexString(skiBytes);
-        } catch (Exception e) {
-            return "-";
+    private Expiration getExpiration(Date expiry) {
+        if (expiry == null) {
+            return null; // No certExpiration - must be a key entry
         }
-    }
 
-    private String getCertificateAKI(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        try {
-            byte[] akiValue = x509Cert.getExtensionValue(Extension.authorityKeyIdentifier.getId());
-            byte[] octets = DEROctetString.getInstance(akiValue).getOctets();
-            byte[] akiBytes = AuthorityKeyIdentifier.getInstance(octets).getKeyIdentifier();
-            return HexUtil.getHexString(akiBytes);
-        } catch (Exception e) {
-            return "-";
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime nowPlusExpiryWarnDays = now.plusDays(expiryWarnDays);
+        ZonedDateTime expiryDateTime = expiry.toInstant().atZone(ZoneId.systemDefault());
+        if (now.isAfter(expiryDateTime)) {
+            return Expiration.EXPIRED;
+        } else if (nowPlusExpiryWarnDays.isAfter(expiryDateTime)) {
+            return Expiration.ALMOST_EXPIRED;
+        } else {
+            return Expiration.NOT_EXPIRED;
         }
     }
 
-    private String getCertificateSubjectO(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        X500Name subject = X500NameUtils.x500PrincipalToX500Name(x509Cert.getSubjectX500Principal());
-        return X500NameUtils.getRdn(subject, KseX500NameStyle.O);
+    private Date getCertificateExpiry(EntryType entryType, CachedEntry cachedEntry) throws CryptoException {
+        if (cachedEntry == null) {
+            // Key entry - no expiry date
+            return null;
+        }
+
+        if (entryType == EntryType.TRUST_CERT || expiryWarnDays < 1) {
+            return cachedEntry.getExpiry();
+        } else {
+            // Key pair - warn about the earliest expiry in the chain
+            return cachedEntry.getEarliestExpiry();
+        }
     }
 
-    private String getCertificateIssuerO(String alias, KeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        X500Name issuer = X500NameUtils.x500PrincipalToX500Name(x509Cert.getIssuerX500Principal());
-        return X500NameUtils.getRdn(issuer, KseX500NameStyle.O);
+    private KeyInfo getKeyInfo(String alias, KeyStore keyStore, KeyStoreState currentState)
+            throws CryptoException, GeneralSecurityException {
+        // Key entry - get key info if entry is unlocked
+        if (currentState.getEntryPassword(alias) != null) {
+            char[] keyPassword = null;
+
+            keyPassword = currentState.getEntryPassword(alias).toCharArray();
+
+            Key key = keyStore.getKey(alias, keyPassword);
+            if (key instanceof SecretKey) {
+                return SecretKeyUtil.getKeyInfo((SecretKey) key);
+            } else if (key instanceof PrivateKey) {
+                return KeyPairUtil.getKeyInfo((PrivateKey) key);
+            } else if (key instanceof PublicKey) {
+                return KeyPairUtil.getKeyInfo((PublicKey) key);
+            }
+        }
+
+        return null;
     }
 
-    private X509Certificate getCertificate(String alias, KeyStore keyStore) throws KeyStoreException, CryptoException {
-        X509Certificate x509Cert = null;
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            x509Cert = X509CertUtil.convertCertificate(keyStore.getCertificate(alias));
-        } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
-            if (chain == null) {
-                return null;
+    private String getAlgorithmName(KeyInfo keyInfo) {
+        String algorithm = keyInfo.getAlgorithm();
+
+        if (keyInfo.getKeyType() == SYMMETRIC) {
+            // Try and get friendly algorithm name for secret key
+            SecretKeyType secretKeyType = SecretKeyType.resolveJce(algorithm);
+
+            if (secretKeyType != null) {
+                algorithm = secretKeyType.friendly();
             }
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            x509Cert = x509Chain[0];
         }
-        return x509Cert;
+
+        return algorithm;
     }
 
     private void adjustColumns() {
@@ -698,7 +894,7 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      */
     @Override
     public int getRowCount() {
-        return data.length;
+        return rows.size();
     }
 
     /**
@@ -721,7 +917,14 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      */
     @Override
     public Object getValueAt(int row, int col) {
-        return data[row][col];
+        Row tableRow = rows.get(row);
+
+        if (!tableRow.complete && !isKeyStoreColumn(col)) {
+            // a failure leaves the cell empty, it is reported once the background completion has finished
+            completeRow(tableRow);
+        }
+
+        return tableRow.values[col];
     }
 
     /**
@@ -750,4 +953,53 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     KeyStoreHistory getHistory() {
         return history;
     }
+
+    /**
+     * Values of a table row. The values read from the KeyStore are always
+     * present, the column values derived from the certificates only once the
+     * row is complete. Their failure is kept with the row.
+     */
+    private static class Row {
+        private final Object[] values;
+        private EntryType entryType;
+        private CachedEntry cachedEntry;
+        private KeyInfo keyInfo;
+        private Date expiry;
+        private CryptoException failure;
+        private volatile boolean complete;
+
+        private Row(int nofColumns) {
+            values = new Object[nofColumns];
+        }
+    }
+
+    /**
+     * Completes a range of rows by splitting it up until it is small enough.
+     */
+    private class CompleteRows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Row[] rowsToComplete;
+        private final int from;
+        private final int to;
+
+        private CompleteRows(Row[] rowsToComplete, int from, int to) {
+            this.rowsToComplete = rowsToComplete;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ROWS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    completeRow(rowsToComplete[i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CompleteRows(rowsToComplete, from, middle),
+                          new CompleteRows(rowsToComplete, middle, to));
+            }
+        }
+    }
 }
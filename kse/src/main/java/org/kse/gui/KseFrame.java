@@ -144,6 +144,7 @@ import org.kse.gui.actions.KeyPairCertificateChainDetailsAction;
 import org.kse.gui.actions.KeyPairPrivateKeyDetailsAction;
 import org.kse.gui.actions.KeyPairPublicKeyDetailsAction;
 import org.kse.gui.actions.NewAction;
+import org.kse.gui.actions.OcspResponderAction;
 import org.kse.gui.actions.OpenAction;
 import org.kse.gui.actions.OpenCaCertificatesAction;
 import org.kse.gui.actions.OpenDefaultAction;
@@ -195,6 +196,7 @@ import org.kse.gui.dnd.KeyStoreEntryDragGestureListener;
 import org.kse.gui.error.DError;
 import org.kse.gui.passwordmanager.Password;
 import org.kse.gui.preferences.PreferencesManager;
+import org.kse.gui.preferences.data.HistorySettings;
 import org.kse.gui.preferences.data.KsePreferences;
 import org.kse.gui.quickstart.JQuickStartPane;
 import org.kse.gui.statusbar.StatusBar;
@@ -386,6 +388,7 @@ public final class KseFrame implements StatusBar {
     private JMenuItem jmiKeyPairSignJar;
     private JMenuItem jmiKeyPairSignMidlet;
     private JMenuItem jmiKeyPairSignCrl;
+    private JMenuItem jmiKeyPairOcspResponder;
     private JMenuItem jmiKeyPairSignJwt;
     private JMenuItem jmiKeyPairSignNewKeyPair;
     private JMenuItem jmiKeyPairSignFile;
@@ -552,6 +555,7 @@ public final class KseFrame implements StatusBar {
     private final SignJarAction signJarAction = new SignJarAction(this);
     private final SignMidletAction signMidletAction = new SignMidletAction(this);
     private final SignCrlAction signCrlAction = new SignCrlAction(this);
+    private final OcspResponderAction ocspResponderAction = new OcspResponderAction(this);
     private final SignJwtAction signJwtAction = new SignJwtAction(this);
     private final SignFileAction signFileAction = new SignFileAction(this);
     private final SignNewKeyPairAction signNewKeyPairAction = new SignNewKeyPairAction(this);
@@ -1705,6 +1709,7 @@ public final class KseFrame implements StatusBar {
 
     private JTable createEmptyKeyStoreTable() {
         KeyStoreTableModel ksModel = new KeyStoreTableModel(keyStoreTableColumns, preferences.getExpiryWarnDays());
+        ksModel.setFailureHandler(ex -> DError.displayError(frame, ex));
         final JTable jtKeyStore = new ToolTipTable(ksModel);
 
         RowSorter<KeyStoreTableModel> sorter = new TableRowSorter<>(ksModel);
@@ -2230,6 +2235,11 @@ public final class KseFrame implements StatusBar {
         jmiKeyPairSignCrl.setToolTipText(null);
         new StatusBarChangeHandler(jmiKeyPairSignCrl, (String) signCrlAction.getValue(Action.LONG_DESCRIPTION), this);
 
+        jmiKeyPairOcspResponder = new JMenuItem(ocspResponderAction);
+        jmiKeyPairOcspResponder.setToolTipText(null);
+        new StatusBarChangeHandler(jmiKeyPairOcspResponder,
+                                   (String) ocspResponderAction.getValue(Action.LONG_DESCRIPTION), this);
+
         jmiKeyPairSignJwt = new JMenuItem(signJwtAction);
         jmiKeyPairSignJwt.setToolTipText(null);
         new StatusBarChangeHandler(jmiKeyPairSignJwt, (String) signJwtAction.getValue(Action.LONG_DESCRIPTION), this);
@@ -2291,6 +2301,7 @@ public final class KseFrame implements StatusBar {
         jmKeyPairSign.add(jmiKeyPairSignJar);
         jmKeyPairSign.add(jmiKeyPairSignMidlet);
         jmKeyPairSign.add(jmiKeyPairSignCrl);
+        jmKeyPairSign.add(jmiKeyPairOcspResponder);
         jmKeyPairSign.add(jmiKeyPairSignJwt);
         jmKeyPairSign.add(jmiKeyPairSignFile);
         jpmKeyPair.addSeparator();
@@ -2725,6 +2736,10 @@ public final class KseFrame implements StatusBar {
      * @param history KeyStore history
      */
     public void addKeyStoreHistory(KeyStoreHistory history) {
+        HistorySettings historySettings = preferences.getHistorySettings();
+        history.setBudget(historySettings.getMaxStatesInMemory(),
+                          historySettings.getMaxMemoryInMegabytes() * 1024L * 1024L);
+
         histories.add(history);
 
         JTable jtKeyStore = createEmptyKeyStoreTable();
@@ -2740,7 +2755,8 @@ public final class KseFrame implements StatusBar {
 
         updateControls(true);
 
-        new TableColumnAdjuster(jtKeyStore, keyStoreTableColumns).adjustColumns();
+        new TableColumnAdjuster(jtKeyStore, keyStoreTableColumns,
+                                TableColumnAdjuster.MAX_MEASURED_ROWS).adjustColumns();
 
         // If KeyStore is backed up by a file add it to the recent files menu
         if (history.getFile() != null) {
@@ -2758,7 +2774,7 @@ public final class KseFrame implements StatusBar {
 
         if (index >= 0) {
             keyStoreTables.remove(index);
-            histories.remove(index).nullPasswords();
+            histories.remove(index).close();
             jkstpKeyStores.remove(index);
         }
     }
@@ -2777,8 +2793,11 @@ public final class KseFrame implements StatusBar {
             int expiryWarnDays = preferences.getExpiryWarnDays();
 
             for (JTable keyStoreTable : keyStoreTables) {
-                KeyStoreHistory history = ((KeyStoreTableModel) keyStoreTable.getModel()).getHistory();
-                KeyStoreTableModel ksModel = new KeyStoreTableModel(keyStoreTableColumns, expiryWarnDays);
+                KeyStoreTableModel previousModel = (KeyStoreTableModel) keyStoreTable.getModel();
+                KeyStoreHistory history = previousModel.getHistory();
+                KeyStoreTableModel ksModel = new KeyStoreTableModel(keyStoreTableColumns, expiryWarnDays,
+                                                                    previousModel);
+                ksModel.setFailureHandler(ex -> DError.displayError(frame, ex));
                 try {
                     ksModel.load(history);
                     keyStoreTable.setModel(ksModel);
@@ -2787,7 +2806,8 @@ public final class KseFrame implements StatusBar {
                     TableUtil.setColumnsToIconSize(keyStoreTable, 0, 1, 2);
                     TableUtil.addCustomRenderers(keyStoreTable, keyStoreTableColumns);
 
-                    new TableColumnAdjuster(keyStoreTable, keyStoreTableColumns).adjustColumns();
+                    new TableColumnAdjuster(keyStoreTable, keyStoreTableColumns,
+                                           TableColumnAdjuster.MAX_MEASURED_ROWS).adjustColumns();
                 } catch (GeneralSecurityException | CryptoException e) {
                     DError.displayError(frame, e);
                 }
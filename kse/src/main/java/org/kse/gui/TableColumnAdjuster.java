@@ -46,6 +46,12 @@ import javax.swing.table.TableModel;
 public class TableColumnAdjuster implements PropertyChangeListener, TableModelListener {
     private static final ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/resources");
 
+    /**
+     * Number of rows measured for KeyStore tables, so that the column values of
+     * large KeyStores are not all computed at once.
+     */
+    public static final int MAX_MEASURED_ROWS = 200;
+
     private final JTable table;
     private final KeyStoreTableColumns keyStoreTableColumns;
 
@@ -64,14 +70,25 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
     // Indicates whether changes to the model should cause the width to be dynamically recalculated.
     private final boolean isDynamicAdjustment = true;
 
+    // Only the first rows are measured
+    private final int maxMeasuredRows;
+
     private final Map<TableColumn, Integer> columnSizes = new HashMap<>();
 
     /*
      * Specify the table and use default spacing
      */
     public TableColumnAdjuster(JTable table, KeyStoreTableColumns keyStoreTableColumns) {
+        this(table, keyStoreTableColumns, Integer.MAX_VALUE);
+    }
+
+    /*
+     * Specify the table and the maximum number of rows to measure
+     */
+    public TableColumnAdjuster(JTable table, KeyStoreTableColumns keyStoreTableColumns, int maxMeasuredRows) {
         this.table = table;
         this.keyStoreTableColumns = keyStoreTableColumns;
+        this.maxMeasuredRows = maxMeasuredRows;
         setDynamicAdjustment(isDynamicAdjustment);
     }
 
@@ -140,7 +157,7 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
         int preferredWidth = 0;
         int maxWidth = table.getColumnModel().getColumn(column).getMaxWidth();
 
-        for (int row = 0; row < table.getRowCount(); row++) {
+        for (int row = 0; row < getMeasuredRowCount(); row++) {
             preferredWidth = Math.max(preferredWidth, getCellDataWidth(row, column));
 
             // We've exceeded the maximum width, no need to check other rows
@@ -152,6 +169,10 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
         return preferredWidth;
     }
 
+    private int getMeasuredRowCount() {
+        return Math.min(table.getRowCount(), maxMeasuredRows);
+    }
+
     /*
      * Get the preferred width for the specified cell
      */
@@ -197,7 +218,7 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
             TableColumn column = table.getColumnModel().getColumn(i);
 
             int width = 0;
-            for (int row = 0; row < table.getRowCount(); row++) {
+            for (int row = 0; row < getMeasuredRowCount(); row++) {
                 width = 0;
                 TableCellRenderer renderer = table.getCellRenderer(row, i);
                 Component comp = renderer.getTableCellRendererComponent(table, table.getValueAt(row, i),
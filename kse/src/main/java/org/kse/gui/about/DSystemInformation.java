@@ -44,6 +44,7 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.EtchedBorder;
 
+import org.kse.crypto.x509.SignatureVerificationCache;
 import org.kse.gui.CursorUtil;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.PlatformUtil;
@@ -51,7 +52,8 @@ import org.kse.utilities.net.IpAddress;
 
 /**
  * A dialog which displays general system information: OS, Locale, Java version,
- * Java vendor, Java vendor URL, JVM total memory and JVM free memory.
+ * Java vendor, Java vendor URL, JVM total memory, JVM free memory and the
+ * statistics of the signature verification cache.
  */
 public class DSystemInformation extends JEscDialog {
     private static final long serialVersionUID = 1L;
@@ -81,6 +83,8 @@ public class DSystemInformation extends JEscDialog {
     private JTextField jtfJvmFreeMemory;
     private JLabel jlAvailableProcessors;
     private JTextField jtfAvailableProcessors;
+    private JLabel jlVerificationCache;
+    private JTextField jtfVerificationCache;
     private JPanel jpButtons;
     private JButton jbEnvironmentVariables;
     private JButton jbSystemProperties;
@@ -280,6 +284,22 @@ public class DSystemInformation extends JEscDialog {
         gbc_jtfAvailableProcessors.gridy = 9;
         jpSystemInformation.add(jtfAvailableProcessors, gbc_jtfAvailableProcessors);
 
+        jlVerificationCache = new JLabel(res.getString("DSystemInformation.jlVerificationCache.text"),
+                                         SwingConstants.RIGHT);
+
+        GridBagConstraints gbc_jlVerificationCache = (GridBagConstraints) gbcLabel.clone();
+        gbc_jlVerificationCache.gridy = 10;
+        jpSystemInformation.add(jlVerificationCache, gbc_jlVerificationCache);
+
+        jtfVerificationCache = new JTextField(TEXT_FIELD_WIDTH);
+        jtfVerificationCache.setEditable(false);
+        jtfVerificationCache.setToolTipText(res.getString("DSystemInformation.jtfVerificationCache.tooltip"));
+        updateVerificationCacheField();
+
+        GridBagConstraints gbc_jtfVerificationCache = (GridBagConstraints) gbcTextField.clone();
+        gbc_jtfVerificationCache.gridy = 10;
+        jpSystemInformation.add(jtfVerificationCache, gbc_jtfVerificationCache);
+
         jbEnvironmentVariables = new JButton(res.getString("DSystemInformation.jbEnvironmentVariables.text"));
         PlatformUtil.setMnemonic(jbEnvironmentVariables,
                                  res.getString("DSystemInformation.jbEnvironmentVariables.mnemonic").charAt(0));
@@ -313,7 +333,7 @@ public class DSystemInformation extends JEscDialog {
 
         GridBagConstraints gbc_jpButtons = new GridBagConstraints();
         gbc_jpButtons.gridx = 0;
-        gbc_jpButtons.gridy = 10;
+        gbc_jpButtons.gridy = 11;
         gbc_jpButtons.gridwidth = 6;
         gbc_jpButtons.gridheight = 1;
         gbc_jpButtons.anchor = GridBagConstraints.EAST;
@@ -400,6 +420,14 @@ public class DSystemInformation extends JEscDialog {
         jtfJvmFreeMemory.setCaretPosition(0);
     }
 
+    private void updateVerificationCacheField() {
+        jtfVerificationCache.setText(MessageFormat.format(res.getString("DSystemInformation.jtfVerificationCache.text"),
+                                                          SignatureVerificationCache.getHits(),
+                                                          SignatureVerificationCache.getMisses(),
+                                                          SignatureVerificationCache.getSize()));
+        jtfVerificationCache.setCaretPosition(0);
+    }
+
     private void okPressed() {
         closeDialog();
     }
@@ -420,6 +448,7 @@ public class DSystemInformation extends JEscDialog {
                     Runtime runtime = Runtime.getRuntime();
 
                     updateMemoryFields(runtime);
+                    updateVerificationCacheField();
                 });
 
                 try {
@@ -20,20 +20,24 @@
 
 package org.kse.gui.actions;
 
+import java.lang.ref.WeakReference;
 import java.security.KeyStore;
 import java.security.Security;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.util.Store;
 import org.kse.AuthorityCertificates;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.SecurityProvider;
+import org.kse.crypto.x509.IndexedCertStore;
 import org.kse.crypto.x509.X509CertUtil;
 import org.kse.gui.KseFrame;
 import org.kse.utilities.history.KeyStoreHistory;
@@ -47,6 +51,10 @@ public abstract class AuthorityCertificatesVerifyAction extends AuthorityCertifi
 
     private static final long serialVersionUID = 1L;
 
+    // Built once per change of the trust sources and shared by all verify actions
+    private static TrustedCertificates trustedCertificates;
+    private static TrustedCertificates trustedCertificatesNoPrefs;
+
     /**
      * Construct action.
      *
@@ -64,36 +72,59 @@ public abstract class AuthorityCertificatesVerifyAction extends AuthorityCertifi
      * @throws CryptoException If there was a problem getting the trusted certificates.
      */
     protected Set<X509Certificate> getTrustedCertificates() throws CryptoException {
+        return getTrusted().certificates;
+    }
+
+    /**
+     * Get the complete set of trusted certificates for establishing trust during signature
+     * verification as a store that is indexed for looking up signers.
+     *
+     * @return Store<X509CertificateHolder>
+     * @throws CryptoException If there was a problem getting the trusted certificates.
+     */
+    protected Store<X509CertificateHolder> getTrustedCertStore() throws CryptoException {
+        return getTrusted().store;
+    }
+
+    private TrustedCertificates getTrusted() throws CryptoException {
         KeyStoreHistory history = kseFrame.getActiveKeyStoreHistory();
 
+        // When a key store is NOT loaded, use the CA certs regardless of the users preferences.
+        if (history == null) {
+            return getTrustedNoPrefs();
+        }
+
         // When a key store is loaded, use the key store for the trusted certs, and
         // include the CA certs if the user has enabled the CA certs in the preferences.
-        if (history != null) {
-            KeyStoreState currentState = history.getCurrentState();
-            KeyStore keyStore = currentState.getKeyStore();
+        KeyStoreState currentState = history.getCurrentState();
+        KeyStore keyStore = currentState.getKeyStore();
 
-            KeyStore caCertificates = getCaCertificates();
-            KeyStore windowsTrustedRootCertificates = getWindowsTrustedRootCertificates();
+        KeyStore caCertificates = getCaCertificates();
+        KeyStore windowsTrustedRootCertificates = getWindowsTrustedRootCertificates();
 
-            // Perform cert lookup against current KeyStore
-            Set<X509Certificate> trustedCerts = new HashSet<>();
-            trustedCerts.addAll(extractCertificates(keyStore));
+        // Every change of the key store creates a new state. The class decides how certificates are extracted.
+        Object[] sources = { getClass(), currentState, keyStore, caCertificates, windowsTrustedRootCertificates };
 
-            if (caCertificates != null) {
-                // Perform cert lookup against CA Certificates KeyStore
-                trustedCerts.addAll(extractCertificates(caCertificates));
-            }
+        synchronized (AuthorityCertificatesVerifyAction.class) {
+            if (trustedCertificates == null || !trustedCertificates.isBuiltFrom(sources)) {
+                // Perform cert lookup against current KeyStore
+                Set<X509Certificate> trustedCerts = new HashSet<>();
+                trustedCerts.addAll(extractCertificates(keyStore));
 
-            if (windowsTrustedRootCertificates != null) {
-                // Perform cert lookup against Windows Trusted Root Certificates KeyStore
-                trustedCerts.addAll(extractCertificates(windowsTrustedRootCertificates));
-            }
+                if (caCertificates != null) {
+                    // Perform cert lookup against CA Certificates KeyStore
+                    trustedCerts.addAll(extractCertificates(caCertificates));
+                }
 
-            return trustedCerts;
-        }
+                if (windowsTrustedRootCertificates != null) {
+                    // Perform cert lookup against Windows Trusted Root Certificates KeyStore
+                    trustedCerts.addAll(extractCertificates(windowsTrustedRootCertificates));
+                }
 
-        // When a key store is NOT loaded, use the CA certs regardless of the users preferences.
-        return getTrustedCertsNoPrefsAsSet();
+                trustedCertificates = new TrustedCertificates(sources, trustedCerts);
+            }
+            return trustedCertificates;
+        }
     }
 
     protected Collection<X509Certificate> extractCertificates(KeyStore keystore) throws CryptoException {
@@ -115,33 +146,37 @@ public abstract class AuthorityCertificatesVerifyAction extends AuthorityCertifi
      */
     protected Store<X509CertificateHolder> getTrustedCertsNoPrefs()
             throws CryptoException, CertificateEncodingException {
-
-        @SuppressWarnings("unchecked")
-        Store<X509CertificateHolder> trustedCerts = new JcaCertStore(getTrustedCertsNoPrefsAsSet());
-        return trustedCerts;
+        return getTrustedNoPrefs().store;
     }
 
     /*
-     * A private method for getting the CA trusted certs (no user preferences) as a Set.
+     * A private method for getting the CA trusted certs (no user preferences).
      */
-    private Set<X509Certificate> getTrustedCertsNoPrefsAsSet() throws CryptoException {
+    private TrustedCertificates getTrustedNoPrefs() throws CryptoException {
         KeyStore caCertificates = getCaCertificatesNoPrefCheck();
         KeyStore windowsTrustedRootCertificates = getWindowsTrustedRootCertificatesNoPrefCheck();
 
-        // Perform cert lookup against current KeyStore
-        Set<X509Certificate> allCerts = new HashSet<>();
+        Object[] sources = { caCertificates, windowsTrustedRootCertificates };
 
-        if (caCertificates != null) {
-            // Perform cert lookup against CA Certificates KeyStore
-            allCerts.addAll(X509CertUtil.extractCertificates(caCertificates));
-        }
+        synchronized (AuthorityCertificatesVerifyAction.class) {
+            if (trustedCertificatesNoPrefs == null || !trustedCertificatesNoPrefs.isBuiltFrom(sources)) {
+                // Perform cert lookup against current KeyStore
+                Set<X509Certificate> allCerts = new HashSet<>();
 
-        if (windowsTrustedRootCertificates != null) {
-            // Perform cert lookup against Windows Trusted Root Certificates KeyStore
-            allCerts.addAll(X509CertUtil.extractCertificates(windowsTrustedRootCertificates));
-        }
+                if (caCertificates != null) {
+                    // Perform cert lookup against CA Certificates KeyStore
+                    allCerts.addAll(X509CertUtil.extractCertificates(caCertificates));
+                }
+
+                if (windowsTrustedRootCertificates != null) {
+                    // Perform cert lookup against Windows Trusted Root Certificates KeyStore
+                    allCerts.addAll(X509CertUtil.extractCertificates(windowsTrustedRootCertificates));
+                }
 
-        return allCerts;
+                trustedCertificatesNoPrefs = new TrustedCertificates(sources, allCerts);
+            }
+            return trustedCertificatesNoPrefs;
+        }
     }
 
     /**
@@ -183,4 +218,40 @@ public abstract class AuthorityCertificatesVerifyAction extends AuthorityCertifi
         return windowsTrustedRootCertificates;
     }
 
+    /**
+     * Trusted certificates together with the sources they have been extracted
+     * from. The sources are only referenced weakly, so that the cache does not
+     * keep closed key stores alive.
+     */
+    private static class TrustedCertificates {
+        private final List<WeakReference<Object>> sources = new ArrayList<>();
+        private final Set<X509Certificate> certificates;
+        private final IndexedCertStore store;
+
+        private TrustedCertificates(Object[] sources, Set<X509Certificate> certificates) throws CryptoException {
+            for (Object source : sources) {
+                this.sources.add(source != null ? new WeakReference<>(source) : null);
+            }
+            this.certificates = Collections.unmodifiableSet(certificates);
+
+            try {
+                this.store = new IndexedCertStore(certificates);
+            } catch (CertificateEncodingException e) {
+                throw new CryptoException(e.getMessage(), e);
+            }
+        }
+
+        private boolean isBuiltFrom(Object[] sources) {
+            for (int i = 0; i < sources.length; i++) {
+                WeakReference<Object> source = this.sources.get(i);
+                Object builtFrom = source != null ? source.get() : null;
+
+                // identity, a reloaded or changed key store is a different object
+                if (builtFrom != sources[i] || (source != null && builtFrom == null)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -32,7 +32,6 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.*;
@@ -54,6 +53,7 @@ import org.kse.crypto.privatekey.Pkcs8Util;
 import org.kse.crypto.privatekey.PrivateKeyFormat;
 import org.kse.crypto.publickey.OpenSslPubUtil;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.DViewCertificate;
 import org.kse.gui.dialogs.DViewCrl;
@@ -218,7 +218,7 @@ public class ExamineClipboardAction extends KeyStoreExplorerAction {
             urlConn = (HttpURLConnection) url.openConnection();
         }
         try (InputStream is = urlConn.getInputStream()) {
-            X509CRL crl = X509CertUtil.loadCRL(is.readAllBytes());
+            X509CrlHeader crl = X509CrlHeader.create(is.readAllBytes());
             if (crl != null) {
                 DViewCrl dViewCrl = new DViewCrl(frame,
                                                  MessageFormat.format(resExt.getString("DViewExtensions.ViewCrl.Title"),
@@ -355,9 +355,9 @@ public class ExamineClipboardAction extends KeyStoreExplorerAction {
             return;
         }
 
-        X509CRL crl = null;
+        X509CrlHeader crl = null;
         try {
-            crl = X509CertUtil.loadCRL(data);
+            crl = X509CrlHeader.create(data);
         } catch (Exception ex) {
             String problemStr = res.getString("ExamineClipboardAction.NoOpenCrl.Problem");
 
@@ -28,7 +28,6 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.Base64;
@@ -52,7 +51,7 @@ import org.kse.crypto.privatekey.Pkcs8Util;
 import org.kse.crypto.privatekey.PrivateKeyFormat;
 import org.kse.crypto.publickey.OpenSslPubUtil;
 import org.kse.crypto.signing.JarParser;
-import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
@@ -224,10 +223,10 @@ public class ExamineFileAction extends KeyStoreExplorerAction {
             return;
         }
 
-        X509CRL crl = null;
+        X509CrlHeader crl = null;
         try {
             byte[] data = Files.readAllBytes(file.toPath());
-            crl = X509CertUtil.loadCRL(data);
+            crl = X509CrlHeader.create(data);
         } catch (Exception ex) {
             String problemStr = MessageFormat.format(res.getString("ExamineFileAction.NoOpenCrl.Problem"),
                                                      file.getName());
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kse.gui.actions;
+
+import java.awt.Toolkit;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.text.MessageFormat;
+
+import javax.swing.ImageIcon;
+import javax.swing.JOptionPane;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.keypair.KeyPairType;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.ocsp.OcspResponder;
+import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+import org.kse.crypto.x509.X509CrlHeader;
+import org.kse.gui.KseFrame;
+import org.kse.gui.dialogs.sign.DOcspResponder;
+import org.kse.gui.error.DError;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.history.KeyStoreState;
+
+/**
+ * Action to answer OCSP requests on localhost for the selected CA key pair.
+ * Invoking the action while the responder is running stops it.
+ */
+public class OcspResponderAction extends KeyStoreExplorerAction {
+    private static final long serialVersionUID = 1L;
+
+    private transient OcspResponder ocspResponder;
+
+    /**
+     * Construct action.
+     *
+     * @param kseFrame KeyStore Explorer frame
+     */
+    public OcspResponderAction(KseFrame kseFrame) {
+        super(kseFrame);
+
+        putValue(LONG_DESCRIPTION, res.getString("OcspResponderAction.statusbar"));
+        putValue(NAME, res.getString("OcspResponderAction.text"));
+        putValue(SHORT_DESCRIPTION, res.getString("OcspResponderAction.tooltip"));
+        putValue(SMALL_ICON,
+                 new ImageIcon(Toolkit.getDefaultToolkit().createImage(getClass().getResource("images/signcrl.png"))));
+    }
+
+    @Override
+    protected void doAction() {
+        try {
+            if (ocspResponder != null && ocspResponder.isRunning()) {
+                stopResponder();
+                return;
+            }
+
+            KeyStoreHistory history = kseFrame.getActiveKeyStoreHistory();
+            KeyStoreState currentState = history.getCurrentState();
+
+            String alias = kseFrame.getSelectedEntryAlias();
+
+            Password password = getEntryPassword(alias, currentState);
+
+            if (password == null) {
+                return;
+            }
+            KeyStore keyStore = currentState.getKeyStore();
+
+            PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, password.toCharArray());
+            X509Certificate[] certs = X509CertUtil.orderX509CertChain(
+                    X509CertUtil.convertCertificates(keyStore.getCertificateChain(alias)));
+
+            KeyPairType keyPairType = KeyPairUtil.getKeyPairType(privateKey);
+
+            // the CRL last issued with Sign CRL is the default source of the revoked certificates
+            File filePrevious = SignCrlAction.getFilePrevious(certs[0], history);
+
+            DOcspResponder dOcspResponder = new DOcspResponder(frame, keyPairType, privateKey, filePrevious);
+            dOcspResponder.setLocationRelativeTo(frame);
+            dOcspResponder.setVisible(true);
+
+            if (dOcspResponder.getPort() == -1) {
+                return;
+            }
+
+            X509CrlEntryIndex revokedEntries = null;
+            if (dOcspResponder.getCrlFile() != null) {
+                revokedEntries = loadRevokedEntries(dOcspResponder.getCrlFile(), certs[0]);
+            }
+
+            ocspResponder = new OcspResponder(certs[0], privateKey, dOcspResponder.getSignatureType(),
+                                              history.getExplicitProvider(), revokedEntries,
+                                              dOcspResponder.getValidityPeriodMs());
+            ocspResponder.start(dOcspResponder.getPort());
+
+            JOptionPane.showMessageDialog(frame, MessageFormat.format(
+                                                  res.getString("OcspResponderAction.ResponderStarted.message"),
+                                                  ocspResponder.getUrl()),
+                                          res.getString("OcspResponderAction.OcspResponder.Title"),
+                                          JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception ex) {
+            DError.displayError(frame, ex);
+        }
+    }
+
+    private void stopResponder() {
+        String message = MessageFormat.format(res.getString("OcspResponderAction.StopResponder.message"),
+                                              ocspResponder.getUrl());
+
+        int selected = JOptionPane.showConfirmDialog(frame, message,
+                                                     res.getString("OcspResponderAction.OcspResponder.Title"),
+                                                     JOptionPane.YES_NO_OPTION);
+        if (selected == JOptionPane.YES_OPTION) {
+            ocspResponder.stop();
+            ocspResponder = null;
+        }
+    }
+
+    /**
+     * Load the revoked certificates from a CRL of the CA and from the delta
+     * CRL that Sign CRL stored next to it for this CRL.
+     *
+     * @param crlFile File of the CRL
+     * @param caCert  CA certificate
+     * @return The revoked certificates
+     * @throws IOException     If the CRL could not be read
+     * @throws CryptoException If the CRL could not be loaded or was not
+     *                         issued by the CA
+     */
+    static X509CrlEntryIndex loadRevokedEntries(File crlFile, X509Certificate caCert)
+            throws IOException, CryptoException {
+        X509CrlHeader crl = X509CrlHeader.create(Files.readAllBytes(crlFile.toPath()));
+
+        if (!crl.verify(caCert.getPublicKey())) {
+            throw new CryptoException(res.getString("OcspResponderAction.CrlNotIssuedByCa.message"));
+        }
+
+        X509CrlEntryIndex revokedEntries = crl.getEntries();
+
+        X509CrlHeader deltaCrl = SignCrlAction.loadDeltaCrl(SignCrlAction.getFileDelta(caCert, crlFile), caCert,
+                                                            crl);
+        if (deltaCrl != null) {
+            revokedEntries = revokedEntries.merge(deltaCrl.getEntries());
+        }
+
+        return revokedEntries;
+    }
+}
@@ -33,10 +33,10 @@ import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 
 import org.kse.crypto.keystore.KeyStoreLoadException;
-import org.kse.crypto.keystore.KeyStoreUtil;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
+import org.kse.gui.dialogs.DLoadingKeyStore;
 import org.kse.gui.error.DError;
 import org.kse.gui.error.DProblem;
 import org.kse.gui.error.Problem;
@@ -134,6 +134,9 @@ public class OpenAction extends KeyStoreExplorerAction {
 
             KeyStore openedKeyStore;
             boolean firstTry = true;
+
+            // loading happens in the background and the file content is reused when another password is tried
+            DLoadingKeyStore dLoadingKeyStore = new DLoadingKeyStore(frame, keyStoreFile);
             while (true) {
                 boolean passwordManagerWanted = false;
 
@@ -159,7 +162,17 @@ public class OpenAction extends KeyStoreExplorerAction {
 
                 // try to load keystore
                 try {
-                    openedKeyStore = KeyStoreUtil.load(keyStoreFile, password);
+                    dLoadingKeyStore.loadKeyStore(password);
+
+                    if (dLoadingKeyStore.isCancelled()) {
+                        return;
+                    }
+
+                    if (dLoadingKeyStore.getLoadException() != null) {
+                        throw dLoadingKeyStore.getLoadException();
+                    }
+
+                    openedKeyStore = dLoadingKeyStore.getKeyStore();
 
                     // store password in password manager
                     if (passwordManagerWanted) {
@@ -32,8 +32,11 @@ import javax.swing.UIManager;
 
 import org.kse.AuthorityCertificates;
 import org.kse.crypto.csr.pkcs12.Pkcs12Util;
+import org.kse.gui.KeyStoreTableModel;
 import org.kse.gui.KseFrame;
 import org.kse.gui.preferences.DPreferences;
+import org.kse.gui.preferences.data.HistorySettings;
+import org.kse.utilities.history.KeyStoreHistory;
 
 import com.formdev.flatlaf.FlatLaf;
 import com.formdev.flatlaf.extras.FlatAnimatedLafChange;
@@ -132,6 +135,16 @@ public class PreferencesAction extends ExitAction {
             redraw = true;
         }
 
+        preferences.setTableLoadingThreads(dPreferences.getTableLoadingThreads());
+        KeyStoreTableModel.setThreads(preferences.getTableLoadingThreads());
+
+        HistorySettings historySettings = dPreferences.getHistorySettings();
+        preferences.setHistorySettings(historySettings);
+        for (KeyStoreHistory history : kseFrame.getKeyStoreHistories()) {
+            history.setBudget(historySettings.getMaxStatesInMemory(),
+                              historySettings.getMaxMemoryInMegabytes() * 1024L * 1024L);
+        }
+
         if (redraw) {
             kseFrame.redrawKeyStores(preferences);
         }
@@ -20,44 +20,45 @@
 
 package org.kse.gui.actions;
 
-import static org.kse.crypto.SecurityProvider.BOUNCY_CASTLE;
-
 import java.awt.Toolkit;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
-import java.security.InvalidKeyException;
+import java.nio.file.Files;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
-import java.security.SignatureException;
-import java.security.cert.CRLException;
-import java.security.cert.X509CRL;
+import java.security.Provider;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
 import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
 import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.cert.X509CRLHolder;
-import org.bouncycastle.cert.X509v2CRLBuilder;
-import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
-import org.bouncycastle.cert.jcajce.JcaX509v2CRLBuilder;
-import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.keypair.KeyPairType;
 import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X500NameUtils;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlGenerator;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.importexport.DExportCrl;
 import org.kse.gui.dialogs.sign.DSignCrl;
@@ -103,10 +104,7 @@ public class SignCrlAction extends KeyStoreExplorerAction {
             }
             KeyStore keyStore = currentState.getKeyStore();
 
-            String provider = BOUNCY_CASTLE.jce();
-            if (history.getExplicitProvider() != null) {
-                provider = history.getExplicitProvider().getName();
-            }
+            Provider provider = history.getExplicitProvider();
 
             PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, password.toCharArray());
             X509Certificate[] certs = X509CertUtil.orderX509CertChain(
@@ -115,31 +113,54 @@ public class SignCrlAction extends KeyStoreExplorerAction {
             KeyPairType keyPairType = KeyPairUtil.getKeyPairType(privateKey);
 
             File filePrevious = getFilePrevious(certs[0], history);
+            File fileDelta = getFileDelta(certs[0], history);
 
-            X509CRL x509CRL = loadPreviousCrl(filePrevious, certs[0]);
+            X509CrlHeader previousCrl = loadPreviousCrl(filePrevious, certs[0]);
+            X509CrlHeader deltaCrl = loadDeltaCrl(fileDelta, certs[0], previousCrl);
 
-            DSignCrl dSignCrl = new DSignCrl(frame, kseFrame, keyPairType, privateKey, certs[0], x509CRL);
+            DSignCrl dSignCrl = new DSignCrl(frame, kseFrame, keyPairType, privateKey, certs[0], previousCrl,
+                                             deltaCrl);
             dSignCrl.setLocationRelativeTo(frame);
             dSignCrl.setVisible(true);
             Date effectiveDate = dSignCrl.getEffectiveDate();
             if (effectiveDate != null) {
                 Date nextUpdate = dSignCrl.getNextUpdate();
                 BigInteger crlNumber = dSignCrl.getCrlNumber();
-                String signatureAlgorithm = dSignCrl.getSignatureType().jce();
+                SignatureType signatureType = dSignCrl.getSignatureType();
+                List<X509CrlHeader> previousCrls = dSignCrl.getPreviousCrls();
                 Map<BigInteger, RevokedEntry> mapRevoked = dSignCrl.getMapRevokedEntry();
+                boolean isDeltaCrl = dSignCrl.isDeltaCrl();
 
-                x509CRL = signCrl(crlNumber, effectiveDate, nextUpdate, certs[0], privateKey, signatureAlgorithm,
-                                  mapRevoked, provider);
-                String newFileName = X509CertUtil.getShortName(certs[0]).toLowerCase();
-                DExportCrl dExportCrl = new DExportCrl(frame, newFileName);
-                dExportCrl.setLocationRelativeTo(frame);
-                dExportCrl.setVisible(true);
-                if (dExportCrl.exportSelected()) {
-                    exportFile(x509CRL, filePrevious, false);// export CRL .db
-                    exportFile(x509CRL, dExportCrl.getExportFile(), dExportCrl.pemEncode());// export file .crl
-                    JOptionPane.showMessageDialog(frame, res.getString("SignCrlAction.SignCrlSuccessful.message"),
-                                                  res.getString("SignCrlAction.SignCrl.Title"),
-                                                  JOptionPane.INFORMATION_MESSAGE);
+                // the CRL is written to a file while it is signed instead of being built in memory
+                File crlFile = File.createTempFile("kse", ".crl");
+                try {
+                    signCrl(crlNumber, effectiveDate, nextUpdate, certs[0], privateKey, signatureType,
+                            previousCrls, mapRevoked, isDeltaCrl ? dSignCrl.getBaseCrl() : null,
+                            isDeltaCrl ? null : dSignCrl.getDeltaCrlUrl(), provider, crlFile);
+                    String newFileName = X509CertUtil.getShortName(certs[0]).toLowerCase();
+                    if (isDeltaCrl) {
+                        newFileName += "-delta";
+                    }
+                    DExportCrl dExportCrl = new DExportCrl(frame, newFileName);
+                    dExportCrl.setLocationRelativeTo(frame);
+                    dExportCrl.setVisible(true);
+                    if (dExportCrl.exportSelected()) {
+                        if (isDeltaCrl) {
+                            exportFile(crlFile, fileDelta, false);// export delta CRL .db
+                        } else {
+                            exportFile(crlFile, filePrevious, false);// export CRL .db
+                            // a new base CRL supersedes the previous delta CRL
+                            if (fileDelta != null) {
+                                Files.deleteIfExists(fileDelta.toPath());
+                            }
+                        }
+                        exportFile(crlFile, dExportCrl.getExportFile(), dExportCrl.pemEncode());// export file .crl
+                        JOptionPane.showMessageDialog(frame, res.getString("SignCrlAction.SignCrlSuccessful.message"),
+                                                      res.getString("SignCrlAction.SignCrl.Title"),
+                                                      JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } finally {
+                    Files.deleteIfExists(crlFile.toPath());
                 }
             }
         } catch (Exception ex) {
@@ -147,7 +168,7 @@ public class SignCrlAction extends KeyStoreExplorerAction {
         }
     }
 
-    private File getFilePrevious(X509Certificate caCert, KeyStoreHistory history) {
+    static File getFilePrevious(X509Certificate caCert, KeyStoreHistory history) {
         String serial = caCert.getSerialNumber().toString(16);
         String pathFile = history.getPath();
         File fileParent = new File(pathFile);
@@ -160,33 +181,98 @@ public class SignCrlAction extends KeyStoreExplorerAction {
         return filePrevious;
     }
 
-    private X509CRL loadPreviousCrl(File filePrevious, X509Certificate caCert) {
+    private File getFileDelta(X509Certificate caCert, KeyStoreHistory history) {
+        return getFileDelta(caCert, getFilePrevious(caCert, history));
+    }
+
+    /**
+     * Get the file of the delta CRL that is stored next to a base CRL.
+     *
+     * @param caCert  CA certificate
+     * @param baseCrl File of the base CRL or null if there is none
+     * @return File of the delta CRL or null if there is no base CRL
+     */
+    static File getFileDelta(X509Certificate caCert, File baseCrl) {
+        if (baseCrl == null) {
+            return null;
+        }
+        String serial = caCert.getSerialNumber().toString(16);
+        return new File(baseCrl.getAbsoluteFile().getParentFile(), serial + "-delta.db");
+    }
+
+    /**
+     * Load a delta CRL issued by a CA for a base CRL.
+     *
+     * @param fileDelta File of the delta CRL or null if there is none
+     * @param caCert    CA certificate
+     * @param baseCrl   Base CRL or null if there is none
+     * @return The delta CRL or null if there is none, it was not signed by the
+     *         CA or it was issued for another base CRL
+     */
+    static X509CrlHeader loadDeltaCrl(File fileDelta, X509Certificate caCert, X509CrlHeader baseCrl) {
+        if (baseCrl == null) {
+            return null;
+        }
+        X509CrlHeader deltaCrl = loadPreviousCrl(fileDelta, caCert);
+        if (deltaCrl == null) {
+            return null;
+        }
+
+        // the delta CRL is only used if it was issued for the current base CRL
+        BigInteger baseCrlNumber = getExtensionCrlNumber(baseCrl, Extension.cRLNumber);
+        BigInteger deltaBaseCrlNumber = getExtensionCrlNumber(deltaCrl, Extension.deltaCRLIndicator);
+        if (baseCrlNumber != null && baseCrlNumber.equals(deltaBaseCrlNumber)) {
+            return deltaCrl;
+        }
+        return null;
+    }
+
+    private static BigInteger getExtensionCrlNumber(X509CrlHeader crl, ASN1ObjectIdentifier oid) {
+        Extension extension = crl.getExtensions() == null ? null : crl.getExtensions().getExtension(oid);
+        if (extension == null) {
+            return null;
+        }
+        try {
+            return CRLNumber.getInstance(extension.getParsedValue()).getCRLNumber();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static X509CrlHeader loadPreviousCrl(File filePrevious, X509Certificate caCert) {
         if (filePrevious == null) {
             return null;
         }
-        try (FileInputStream is = new FileInputStream(filePrevious)) {
-            X509CRL crl = X509CertUtil.loadCRL(is.readAllBytes());
-            crl.verify(caCert.getPublicKey());
-            return crl;
-        } catch (InvalidKeyException | CRLException | NoSuchAlgorithmException | NoSuchProviderException | SignatureException | IOException | CryptoException e) {
+        try {
+            // the entries of the previous CRL are read from its file when they are needed
+            X509CrlHeader crl = X509CrlHeader.create(filePrevious);
+            if (crl.verify(caCert.getPublicKey())) {
+                return crl;
+            }
+        } catch (CryptoException e) {
             // ignore
         }
         return null;
     }
 
-    private X509CRL signCrl(BigInteger number, Date effectiveDate, Date nextUpdate, X509Certificate caCert,
-                            PrivateKey caPrivateKey, String signatureAlgorithm,
-                            Map<BigInteger, RevokedEntry> mapRevokedCertificate, String provider)
-            throws NoSuchAlgorithmException, OperatorCreationException, CRLException, IOException {
+    private void signCrl(BigInteger number, Date effectiveDate, Date nextUpdate, X509Certificate caCert,
+                         PrivateKey caPrivateKey, SignatureType signatureType, List<X509CrlHeader> previousCrls,
+                         Map<BigInteger, RevokedEntry> mapRevokedCertificate, X509CrlHeader baseCrl,
+                         String freshestCrlUrl, Provider provider, File crlFile)
+            throws NoSuchAlgorithmException, CryptoException, IOException {
 
-        X509v2CRLBuilder crlGen = new JcaX509v2CRLBuilder(caCert.getSubjectX500Principal(), effectiveDate);
+        X509CrlGenerator crlGen = new X509CrlGenerator(
+                X500NameUtils.x500PrincipalToX500Name(caCert.getSubjectX500Principal()), effectiveDate);
         crlGen.setNextUpdate(nextUpdate);
+        for (X509CrlHeader previousCrl : previousCrls) {
+            crlGen.addPreviousCrl(previousCrl);
+        }
 
         if (mapRevokedCertificate != null) {
 
             for (Map.Entry<BigInteger, RevokedEntry> pair : mapRevokedCertificate.entrySet()) {
                 RevokedEntry entry = pair.getValue();
-                crlGen.addCRLEntry(entry.getUserCertificateSerial(), entry.getRevocationDate(), entry.getReason().ordinal());
+                crlGen.addEntry(entry.getUserCertificateSerial(), entry.getRevocationDate(), entry.getReason());
             }
         }
         JcaX509ExtensionUtils extUtils = new JcaX509ExtensionUtils();
@@ -196,25 +282,38 @@ public class SignCrlAction extends KeyStoreExplorerAction {
 
         crlGen.addExtension(Extension.cRLNumber, false, new CRLNumber(number));
 
-        X509CRLHolder crl = crlGen.build(
-                new JcaContentSignerBuilder(signatureAlgorithm).setProvider(provider).build(caPrivateKey));
-        return new JcaX509CRLConverter().setProvider(KSE.BC).getCRL(crl);
+        if (baseCrl != null) {
+            crlGen.setBaseCrl(baseCrl);
+        }
+
+        if (freshestCrlUrl != null && !freshestCrlUrl.isEmpty()) {
+            GeneralNames fullName = new GeneralNames(
+                    new GeneralName(GeneralName.uniformResourceIdentifier, freshestCrlUrl));
+            DistributionPoint distributionPoint = new DistributionPoint(new DistributionPointName(fullName), null,
+                                                                        null);
+            crlGen.addExtension(Extension.freshestCRL, false,
+                                new CRLDistPoint(new DistributionPoint[] { distributionPoint }));
+        }
+
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(crlFile))) {
+            crlGen.generate(caPrivateKey, signatureType, provider, os);
+        }
     }
 
-    private void exportFile(X509CRL x509CRL, File fileExported, boolean pemEncode)
-            throws FileNotFoundException, IOException, CryptoException {
+    private void exportFile(File crlFile, File fileExported, boolean pemEncode) throws IOException {
 
         if (fileExported == null) {
             return;
         }
-        byte[] data = null;
-        if (pemEncode) {
-            data = X509CertUtil.getCrlEncodedX509Pem(x509CRL).getBytes();
-        } else {
-            data = X509CertUtil.getCrlEncodedX509(x509CRL);
-        }
-        try (FileOutputStream fileOutputStream = new FileOutputStream(fileExported)) {
-            fileOutputStream.write(data);
+        try (InputStream is = new FileInputStream(crlFile);
+             OutputStream os = new BufferedOutputStream(new FileOutputStream(fileExported))) {
+            if (pemEncode) {
+                try (OutputStream pem = X509CertUtil.getCrlPemOutputStream(os)) {
+                    is.transferTo(pem);
+                }
+            } else {
+                is.transferTo(os);
+            }
         }
     }
 }
@@ -28,6 +28,8 @@ import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
@@ -43,8 +45,11 @@ import org.kse.crypto.x509.X509CertUtil;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
+import org.kse.gui.dialogs.sign.DProcessingFile;
 import org.kse.gui.dialogs.sign.DSignFile;
+import org.kse.gui.dialogs.sign.DSignFileSigning;
 import org.kse.gui.error.DError;
+import org.kse.gui.error.DErrorCollection;
 import org.kse.gui.passwordmanager.Password;
 import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.history.KeyStoreState;
@@ -55,6 +60,9 @@ import org.kse.utilities.history.KeyStoreState;
 public class SignFileAction extends KeyStoreExplorerAction {
     private static final long serialVersionUID = 6227240459189308322L;
 
+    // the remaining failed files are shown by the error collection dialog
+    private static final int MAX_LISTED_ERRORS = 10;
+
     /**
      * Construct action.
      *
@@ -113,12 +121,43 @@ public class SignFileAction extends KeyStoreExplorerAction {
                 return;
             }
 
+            if (dSignFile.isBatchSigning()) {
+                signFiles(dSignFile, privateKey, certs, provider);
+                return;
+            }
+
             boolean detachedSignature = dSignFile.isDetachedSignature();
             SignatureType signatureType = dSignFile.getSignatureType();
             File inputFile = dSignFile.getInputFile();
             File outputFile = dSignFile.getOutputFile();
             String tsaUrl = dSignFile.getTimestampingServerUrl();
 
+            // large files are streamed to the signature file in the background instead of being signed in memory
+            if (!dSignFile.isCounterSign() && inputFile.length() >= CmsUtil.STREAMING_THRESHOLD) {
+                DProcessingFile dProcessingFile = new DProcessingFile(frame,
+                        res.getString("SignFileAction.SignFile.Title"),
+                        MessageFormat.format(res.getString("SignFileAction.Signing.text"), inputFile.getName()),
+                        inputFile);
+                Boolean signed = dProcessingFile.process(progressListener -> {
+                    CmsSigner.sign(inputFile, outputFile, privateKey, certs, detachedSignature,
+                                   dSignFile.isOutputPem(), signatureType, tsaUrl, provider, progressListener);
+                    return Boolean.TRUE;
+                });
+
+                if (dProcessingFile.getException() != null) {
+                    DError.displayError(frame, dProcessingFile.getException());
+                    return;
+                }
+                if (signed == null) {
+                    return;
+                }
+
+                JOptionPane.showMessageDialog(frame, res.getString("SignFileAction.SignFileSuccessful.message"),
+                                              res.getString("SignFileAction.SignFile.Title"),
+                                              JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
             CMSSignedData signedData;
             if (!dSignFile.isCounterSign()) {
                 signedData = CmsSigner.sign(inputFile, privateKey, certs, detachedSignature, signatureType, tsaUrl,
@@ -167,6 +206,63 @@ public class SignFileAction extends KeyStoreExplorerAction {
         }
     }
 
+    private void signFiles(DSignFile dSignFile, PrivateKey privateKey, X509Certificate[] certs, Provider provider) {
+        File[] inputFiles = dSignFile.getInputFiles();
+
+        // the key has been unlocked once and is shared by all signing threads
+        DSignFileSigning dSignFileSigning = new DSignFileSigning(frame, inputFiles, dSignFile.getOutputFiles(),
+                                                                 privateKey, certs, dSignFile.isDetachedSignature(),
+                                                                 dSignFile.isOutputPem(), dSignFile.getSignatureType(),
+                                                                 dSignFile.getTimestampingServerUrl(), provider);
+        dSignFileSigning.setLocationRelativeTo(frame);
+        dSignFileSigning.startDSignFileSigning();
+        dSignFileSigning.setVisible(true);
+
+        // check if file signing was successful
+        if (!dSignFileSigning.isSuccessful()) {
+            return;
+        }
+
+        double seconds = Math.max(dSignFileSigning.getElapsedMillis(), 1) / 1000.0;
+        double megabytes = dSignFileSigning.getSignedBytes() / (1024.0 * 1024.0);
+        String summary = MessageFormat.format(res.getString("SignFileAction.SignFilesSummary.message"),
+                                              dSignFileSigning.getSignedFiles(), inputFiles.length, megabytes,
+                                              seconds, megabytes / seconds);
+
+        // check if exceptions were caught during file signing
+        Map<String, String> fileExceptions = dSignFileSigning.getFileExceptions();
+        if (!fileExceptions.isEmpty()) {
+            String failedFiles = fileExceptions.keySet()
+                                               .stream()
+                                               .limit(MAX_LISTED_ERRORS)
+                                               .collect(Collectors.joining("\n"));
+            if (fileExceptions.size() > MAX_LISTED_ERRORS) {
+                failedFiles += "\n...";
+            }
+
+            String message = summary + "\n" + MessageFormat.format(
+                    res.getString("SignFileAction.SignFilesError.message"), fileExceptions.size(),
+                    inputFiles.length) + "\n" + failedFiles;
+
+            String viewButtonText = res.getString("SignFileAction.ButtonView.message");
+            String okButtonText = res.getString("SignFileAction.ButtonOK.message");
+            Object[] buttonTexts = { viewButtonText, okButtonText };
+
+            int selected = JOptionPane.showOptionDialog(frame, message, res.getString("SignFileAction.SignFile.Title"),
+                                                        JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE,
+                                                        null, buttonTexts, okButtonText);
+
+            // if view button pressed show error collection
+            if (selected == 0) {
+                DErrorCollection dError = new DErrorCollection(frame, fileExceptions);
+                dError.setVisible(true);
+            }
+        } else {
+            JOptionPane.showMessageDialog(frame, summary, res.getString("SignFileAction.SignFile.Title"),
+                                          JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
     private File chooseContentFile() {
         JFileChooser chooser = FileChooserFactory.getNoFileChooser();
         chooser.setCurrentDirectory(CurrentDirectory.get());
@@ -30,13 +30,9 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.file.Files;
 import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.Security;
-import java.security.SignatureException;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorException;
@@ -86,13 +82,16 @@ import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.ocsp.OcspDigestAlgorithm;
+import org.kse.crypto.x509.RevocationCache;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CertificateIndex;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.DVerifyCertificate;
 import org.kse.gui.dialogs.DVerifyCertificate.VerifyOptions;
 import org.kse.gui.error.DError;
 import org.kse.gui.error.DProblem;
 import org.kse.gui.error.Problem;
+import org.kse.gui.preferences.PreferencesManager;
 import org.kse.utilities.StringUtils;
 import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.rng.RNG;
@@ -100,6 +99,7 @@ import org.kse.utilities.rng.RNG;
 public class VerifyCertificateAction extends KeyStoreExplorerAction {
 
     private static final long serialVersionUID = 1L;
+    private static RevocationCache revocationCache;
     private X509Certificate certificateEval;
     private X509Certificate[] keyCertChain;
 
@@ -195,26 +195,7 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
                    InvalidAlgorithmParameterException, IllegalStateException, CryptoException {
 
         if (verify(false, false, keyStoreHistory, null, alias)) {
-            // search issuer
-            X509Certificate issuer = null;
-
-            if (keyCertChain == null || keyCertChain.length == 1) {
-                KeyStore trustStore = getKeyStore(keyStoreHistory);
-                Enumeration<String> enumeration = trustStore.aliases();
-                while (enumeration.hasMoreElements()) {
-                    String tempAlias = enumeration.nextElement();
-                    X509Certificate cert = (X509Certificate) trustStore.getCertificate(tempAlias);
-                    try {
-                        certificateEval.verify(cert.getPublicKey());
-                        issuer = cert;
-                        break;
-                    } catch (InvalidKeyException | CertificateException | NoSuchAlgorithmException | NoSuchProviderException | SignatureException e) {
-                        // ignore
-                    }
-                }
-            } else {
-                issuer = keyCertChain[1];
-            }
+            X509Certificate issuer = findIssuer(getKeyStore(keyStoreHistory));
             if (issuer == null) {
                 throw new CertPathValidatorException(res.getString("VerifyCertificateAction.trustStoreEmpty.message"));
             }
@@ -385,11 +366,6 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
         }
 
         boolean revocationEnabled = crl || ocsp;
-        // The CRL DP is not used unless requested by these properties
-        System.setProperty("com.sun.security.enableCRLDP", Boolean.toString(crl));
-        System.setProperty("org.bouncycastle.x509.enableCRLDP", Boolean.toString(crl));
-        // Used by both BC and SUN providers
-        Security.setProperty("ocsp.enable", Boolean.toString(ocsp));
 
         List<X509Certificate> listCertificates = new ArrayList<>();
         if (revocationEnabled) {
@@ -414,6 +390,10 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
         if (xCrl != null) {
             params.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(
                     Collections.singletonList(xCrl))));
+        } else if (crl) {
+            // the CRLs of the distribution points are fetched through the cache instead of by the checker
+            params.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(
+                    getRevocationCache().getCrls(certificateEval))));
         }
 
         // This block is not needed when using the SUN provider
@@ -426,6 +406,17 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
                 options.add(PKIXRevocationChecker.Option.PREFER_CRLS);
             }
             revocationChecker.setOptions(options);
+            if (ocsp) {
+                // the OCSP response is fetched through the cache, the checker only queries the responder
+                // itself if the cache could not get a response
+                X509Certificate issuer = findIssuer(trustStore);
+                if (issuer != null) {
+                    byte[] ocspResponse = getRevocationCache().getOcspResponse(certificateEval, issuer);
+                    if (ocspResponse != null) {
+                        revocationChecker.setOcspResponses(Collections.singletonMap(certificateEval, ocspResponse));
+                    }
+                }
+            }
             params.addCertPathChecker(revocationChecker);
         }
 
@@ -440,6 +431,39 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
         return true;
     }
 
+    private X509Certificate findIssuer(KeyStore trustStore) throws KeyStoreException {
+        if (keyCertChain != null && keyCertChain.length > 1) {
+            return keyCertChain[1];
+        }
+
+        X509CertificateIndex trustedCerts = new X509CertificateIndex();
+        Enumeration<String> enumeration = trustStore.aliases();
+        while (enumeration.hasMoreElements()) {
+            trustedCerts.add((X509Certificate) trustStore.getCertificate(enumeration.nextElement()));
+        }
+        // only certificates with a matching subject DN (and key identifier) need to be verified
+        return trustedCerts.findIssuer(certificateEval);
+    }
+
+    /**
+     * Get the revocation cache that is shared by all certificate verifications.
+     *
+     * @return The revocation cache
+     */
+    public static synchronized RevocationCache getRevocationCache() {
+        if (revocationCache == null) {
+            File cacheDir;
+            try {
+                cacheDir = PreferencesManager.getRevocationCacheDir();
+            } catch (IOException ex) {
+                // keep the revocation data in memory only
+                cacheDir = null;
+            }
+            revocationCache = new RevocationCache(cacheDir);
+        }
+        return revocationCache;
+    }
+
     private boolean isCA(X509Certificate cert) {
         int basicConstraints = cert.getBasicConstraints();
         if (basicConstraints != -1) {
@@ -23,23 +23,18 @@ package org.kse.gui.actions;
 import java.awt.Toolkit;
 import java.awt.event.InputEvent;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
@@ -47,16 +42,16 @@ import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Store;
 import org.kse.crypto.signing.CmsUtil;
-import org.kse.crypto.signing.JarSigner;
+import org.kse.crypto.signing.JarParser;
 import org.kse.crypto.signing.KseJarEntry;
 import org.kse.crypto.signing.KseSignerInformation;
+import org.kse.crypto.signing.VerifiedJar;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
@@ -96,75 +91,64 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
             Set<X509Certificate> allCerts = getTrustedCertificates();
 
             List<KseJarEntry> entries = new ArrayList<>();
-            Map<String, byte[]> signatureFiles = new HashMap<>();
             Map<String, CMSSignedData> signatureBlocks = new HashMap<>();
 
-            // Read the JAR using JarFile since JarInputStream skips MANIFEST.MF.
-            try (JarFile jarFile = new JarFile(file, true)) {
-
-                for (Enumeration<JarEntry> jarEntries = jarFile.entries(); jarEntries.hasMoreElements(); ) {
-                    JarEntry entry = jarEntries.nextElement();
-
-                    String name = entry.getName();
-                    String uname = entry.getName().toUpperCase(Locale.ENGLISH);
-                    StringBuilder flags = new StringBuilder();
+            // Every entry is read once, which also verifies the entries against the manifest
+            VerifiedJar verifiedJar;
+            try {
+                verifiedJar = new JarParser(file).verify();
+            } catch (SecurityException e) {
+                JOptionPane.showMessageDialog(frame,
+                        MessageFormat.format(res.getString("VerifyJarAction.Invalid.message"),
+                                e.toString()),
+                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.ERROR_MESSAGE);
 
-                    if (isSignatureBlock(uname)) {
-                        byte[] signature = readAllBytesAutoClose(jarFile.getInputStream(entry));
-                        CMSSignedData signatureBlock = new CMSSignedData(signature);
-                        if (signatureBlock.isDetachedSignature()) {
-                            byte[] sfFile = signatureFiles.get(name.substring(0, name.lastIndexOf('.')) + ".SF");
-                            signatureBlock = new CMSSignedData(new CMSProcessableByteArray(sfFile), signature);
-                        }
-                        signatureBlocks.put(name, signatureBlock);
-                    }
+                return;
+            }
 
-                    // signature file
-                    if (uname.startsWith("META-INF/") && uname.endsWith(".SF")) {
-                        signatureFiles.put(name, readAllBytesAutoClose(jarFile.getInputStream(entry)));
-                    }
+            for (Entry<String, byte[]> signatureBlock : verifiedJar.getSignatureBlocks().entrySet()) {
+                byte[] signature = signatureBlock.getValue();
+                CMSSignedData signedData = new CMSSignedData(signature);
+                if (signedData.isDetachedSignature()) {
+                    byte[] sfFile = verifiedJar.getSignatureFile(signatureBlock.getKey());
+                    signedData = new CMSSignedData(new CMSProcessableByteArray(sfFile), signature);
+                }
+                signatureBlocks.put(signatureBlock.getKey(), signedData);
+            }
 
-                    // Need to read all bytes to populate signers and certs.
-                    readAllBytesAutoClose(jarFile.getInputStream(entry));
+            for (JarEntry entry : verifiedJar.getEntries()) {
+                StringBuilder flags = new StringBuilder();
 
-                    // entry is signed
-                    if (!Arrays.isNullOrEmpty(entry.getCodeSigners())) {
-                        flags.append(KseJarEntry.FLAG_SIGNED);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
-                    }
+                // entry is signed
+                if (!Arrays.isNullOrEmpty(entry.getCodeSigners())) {
+                    flags.append(KseJarEntry.FLAG_SIGNED);
+                } else {
+                    flags.append(KseJarEntry.FLAG_BLANK);
+                }
 
-                    // entry is in the manifest
-                    Attributes attributes = entry.getAttributes();
-                    if (attributes != null) {
-                        flags.append(KseJarEntry.FLAG_MANIFEST);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
-                    }
+                // entry is in the manifest
+                Attributes attributes = entry.getAttributes();
+                if (attributes != null) {
+                    flags.append(KseJarEntry.FLAG_MANIFEST);
+                } else {
+                    flags.append(KseJarEntry.FLAG_BLANK);
+                }
 
-                    // entry has at least one certificate in the key store
-                    boolean containsCert = false;
-                    if (entry.getCertificates() != null) {
-                        for (Certificate cert : entry.getCertificates()) {
-                            // once true, always true
-                            containsCert |= allCerts.contains(cert);
-                        }
-                    }
-                    if (containsCert) {
-                        flags.append(KseJarEntry.FLAG_CERT);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
+                // entry has at least one certificate in the key store
+                boolean containsCert = false;
+                if (entry.getCertificates() != null) {
+                    for (Certificate cert : entry.getCertificates()) {
+                        // once true, always true
+                        containsCert |= allCerts.contains(cert);
                     }
-
-                    entries.add(new KseJarEntry(entry, flags.toString()));
                 }
-            } catch (SecurityException e) {
-                JOptionPane.showMessageDialog(frame,
-                        MessageFormat.format(res.getString("VerifyJarAction.Invalid.message"),
-                                e.toString()),
-                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.ERROR_MESSAGE);
+                if (containsCert) {
+                    flags.append(KseJarEntry.FLAG_CERT);
+                } else {
+                    flags.append(KseJarEntry.FLAG_BLANK);
+                }
 
-                return;
+                entries.add(new KseJarEntry(entry, flags.toString()));
             }
 
             if (signatureBlocks.isEmpty()) {
@@ -176,8 +160,7 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
                 return;
             }
 
-            @SuppressWarnings("unchecked")
-            Store<X509CertificateHolder> trustedCerts = new JcaCertStore(allCerts);
+            Store<X509CertificateHolder> trustedCerts = getTrustedCertStore();
 
             Map<String, Collection<KseSignerInformation>> jarSigners = new HashMap<>();
             for (Entry<String, CMSSignedData> signatureBlock : signatureBlocks.entrySet()) {
@@ -187,6 +170,9 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
                 jarSigners.put(signatureBlock.getKey(), signers);
             }
 
+            // verify the signer blocks concurrently, the dialog shows the cached status
+            jarSigners.values().parallelStream().flatMap(Collection::stream).forEach(KseSignerInformation::getStatus);
+
             DViewSignedJar dViewSignedJar = new DViewSignedJar(frame, MessageFormat
                     .format(res.getString("VerifyJarAction.SignatureDetailsFile.Title"), file.getName()),
                     entries, jarSigners, getTrustedCertsNoPrefs(), kseFrame);
@@ -197,19 +183,6 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
         }
     }
 
-    private byte[] readAllBytesAutoClose(InputStream stream) throws IOException {
-        try (InputStream is = stream) {
-            return is.readAllBytes();
-        }
-    }
-
-    private boolean isSignatureBlock(String entryName) {
-        return entryName.startsWith("META-INF/") //
-                && (entryName.endsWith(JarSigner.RSA_SIG_BLOCK_EXT) //
-                || entryName.endsWith(JarSigner.EC_SIG_BLOCK_EXT) //
-                || entryName.endsWith(JarSigner.DSA_SIG_BLOCK_EXT));
-    }
-
     private File chooseJarFile() {
         JFileChooser chooser = FileChooserFactory.getArchiveFileChooser();
         chooser.setCurrentDirectory(CurrentDirectory.get());
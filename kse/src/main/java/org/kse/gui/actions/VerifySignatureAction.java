@@ -39,7 +39,6 @@ import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.util.Store;
@@ -51,6 +50,7 @@ import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.DViewSignature;
+import org.kse.gui.dialogs.sign.DProcessingFile;
 import org.kse.gui.error.DError;
 
 /**
@@ -83,7 +83,27 @@ public class VerifySignatureAction extends AuthorityCertificatesVerifyAction {
                 return;
             }
 
-            CMSSignedData signedData = CmsUtil.loadSignature(signatureFile, this::chooseContentFile);
+            // large signatures are streamed in the background
+            DProcessingFile dProcessingFile = new DProcessingFile(frame,
+                    res.getString("VerifySignatureAction.VerifySignature.Title"),
+                    MessageFormat.format(res.getString("VerifySignatureAction.Reading.text"),
+                                         signatureFile.getName()), signatureFile);
+            CMSSignedData signedData = dProcessingFile.process(
+                    progressListener -> CmsUtil.loadSignature(signatureFile, null, progressListener));
+
+            if (dProcessingFile.getException() != null) {
+                DError.displayError(frame, dProcessingFile.getException());
+                return;
+            }
+            if (signedData == null) {
+                return;
+            }
+
+            if (signedData.isDetachedSignature() && signedData.getSignedContent() == null) {
+                // the content was not found next to the signature, so it is chosen here
+                signedData = CmsUtil.loadSignature(signatureFile, this::chooseContentFile);
+            }
+
             if (signedData.isCertificateManagementMessage()) {
                 JOptionPane.showMessageDialog(frame,
                         MessageFormat.format(res.getString("VerifySignatureAction.NoSignatures.message"),
@@ -93,8 +113,7 @@ public class VerifySignatureAction extends AuthorityCertificatesVerifyAction {
                 return;
             }
 
-            @SuppressWarnings("unchecked")
-            Store<X509CertificateHolder> trustedCerts = new JcaCertStore(getTrustedCertificates());
+            Store<X509CertificateHolder> trustedCerts = getTrustedCertStore();
 
             SignerInformationStore signerInfos = signedData.getSignerInfos();
             List<KseSignerInformation> signers = CmsUtil.convertSignerInformations(signerInfos.getSigners(),
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dialog;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.KeyStore;
+import java.text.MessageFormat;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.AbstractAction;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.border.EmptyBorder;
+
+import org.kse.crypto.filetype.CryptoFileUtil;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.gui.PlatformUtil;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.io.ProgressInputStream;
+import org.kse.utilities.io.SniffedFile;
+
+/**
+ * Reads and decodes a KeyStore file in a background thread while showing the
+ * progress. The user may cancel at any time by pressing the cancel button.
+ * The dialog is only shown if loading takes noticeably long.
+ * <p>
+ * The progress of reading the file is shown in percent. Decoding, which
+ * includes the expensive password based decryption, cannot report progress,
+ * so it is shown as indeterminate. Cancelling while decoding closes the dialog
+ * immediately and the result of the decoding is discarded.
+ * </p>
+ * <p>
+ * The file content is kept after the first attempt, so that a retry with a
+ * different password does not read the file again.
+ * </p>
+ */
+public class DLoadingKeyStore extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+
+    /**
+     * Loading that finishes within this time does not show the dialog at all
+     */
+    private static final long SHOW_DELAY_MILLIS = 300;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Largest initial capacity of the buffer for the file content
+     */
+    private static final int MAX_INITIAL_CAPACITY = 64 * 1024 * 1024;
+
+    private JPanel jpLoadingKeyStore;
+    private JLabel jlLoadingKeyStore;
+    private JPanel jpProgress;
+    private JProgressBar jpbLoadingKeyStore;
+    private JPanel jpCancel;
+    private JButton jbCancel;
+
+    private final File keyStoreFile;
+    private byte[] keyStoreData;
+    private Password password;
+    private KeyStore keyStore;
+    private KeyStoreType keyStoreType;
+    private Exception loadException;
+    private volatile boolean cancelled;
+    private Thread loader;
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+
+    /**
+     * Creates a new DLoadingKeyStore dialog.
+     *
+     * @param parent       The parent frame
+     * @param keyStoreFile The KeyStore file to load
+     */
+    public DLoadingKeyStore(JFrame parent, File keyStoreFile) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.keyStoreFile = keyStoreFile;
+        initComponents();
+    }
+
+    private void initComponents() {
+        jlLoadingKeyStore = new JLabel(MessageFormat.format(res.getString("DLoadingKeyStore.Reading.text"),
+                                                            keyStoreFile.getName()));
+        ImageIcon icon = new ImageIcon(getClass().getResource("images/open.png"));
+        jlLoadingKeyStore.setIcon(icon);
+        jlLoadingKeyStore.setHorizontalTextPosition(SwingConstants.LEADING);
+        jlLoadingKeyStore.setIconTextGap(15);
+
+        jpLoadingKeyStore = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        jpLoadingKeyStore.add(jlLoadingKeyStore);
+        jpLoadingKeyStore.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        jpbLoadingKeyStore = new JProgressBar(0, 100);
+        jpbLoadingKeyStore.setStringPainted(true);
+
+        jpProgress = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        jpProgress.add(jpbLoadingKeyStore);
+        jpProgress.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        jbCancel = new JButton(res.getString("DLoadingKeyStore.jbCancel.text"));
+        jbCancel.addActionListener(evt -> cancelPressed());
+        // Need to use WHEN_FOCUSED since the cancel button will always have focus.
+        jbCancel.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        jpCancel = PlatformUtil.createDialogButtonPanel(jbCancel);
+
+        getContentPane().add(jpLoadingKeyStore, BorderLayout.NORTH);
+        getContentPane().add(jpProgress, BorderLayout.CENTER);
+        getContentPane().add(jpCancel, BorderLayout.SOUTH);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setTitle(res.getString("DLoadingKeyStore.Title"));
+        setResizable(false);
+
+        pack();
+    }
+
+    /**
+     * Load the KeyStore with the supplied password. Blocks until loading has
+     * finished or has been cancelled, but keeps the UI responsive meanwhile.
+     * May be called again with a different password after a failed attempt.
+     *
+     * @param password Password of the KeyStore
+     */
+    public void loadKeyStore(Password password) {
+        this.password = password;
+        keyStore = null;
+        loadException = null;
+        cancelled = false;
+        lastPercent.set(-1);
+
+        loader = new Thread(new LoadKeyStore(), "KSE-LoadKeyStore");
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
+
+        try {
+            loader.join(SHOW_DELAY_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (loader.isAlive()) {
+            setLocationRelativeTo(getParent());
+            setVisible(true);
+        }
+    }
+
+    /**
+     * Get the loaded KeyStore.
+     *
+     * @return The KeyStore or null if loading failed, was cancelled or the
+     *         file is not a KeyStore of a recognised type
+     */
+    public KeyStore getKeyStore() {
+        return keyStore;
+    }
+
+    /**
+     * Get the problem that occurred while loading the KeyStore.
+     *
+     * @return The exception or null if none occurred
+     */
+    public Exception getLoadException() {
+        return loadException;
+    }
+
+    /**
+     * Did the user cancel loading?
+     *
+     * @return True if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void cancelPressed() {
+        cancelled = true;
+
+        if ((loader != null) && (loader.isAlive())) {
+            loader.interrupt();
+        }
+        closeDialog();
+    }
+
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    private void updateProgress(long done, long total) {
+        int percent = total > 0 ? (int) Math.min(100, done * 100 / total) : 0;
+
+        // only bother the event dispatch thread if there is something new to display
+        if (lastPercent.getAndSet(percent) != percent) {
+            SwingUtilities.invokeLater(() -> {
+                jlLoadingKeyStore.setText(MessageFormat.format(res.getString("DLoadingKeyStore.Reading.text"),
+                                                               keyStoreFile.getName()));
+                jpbLoadingKeyStore.setIndeterminate(false);
+                jpbLoadingKeyStore.setStringPainted(true);
+                jpbLoadingKeyStore.setValue(percent);
+            });
+        }
+    }
+
+    private void showDecoding() {
+        SwingUtilities.invokeLater(() -> {
+            jlLoadingKeyStore.setText(MessageFormat.format(res.getString("DLoadingKeyStore.Decoding.text"),
+                                                           keyStoreFile.getName()));
+            jpbLoadingKeyStore.setStringPainted(false);
+            jpbLoadingKeyStore.setIndeterminate(true);
+        });
+    }
+
+    private byte[] readKeyStoreFile(SniffedFile sniffedFile) throws IOException {
+        long fileSize = sniffedFile.size();
+
+        // the head that has been sniffed already is not read again
+        try (ProgressInputStream pis = new ProgressInputStream(sniffedFile.getInputStream(),
+                                                               read -> updateProgress(read, fileSize))) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int) Math.min(fileSize, MAX_INITIAL_CAPACITY));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+
+            while ((read = pis.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+
+            return baos.toByteArray();
+        }
+    }
+
+    private class LoadKeyStore implements Runnable {
+        @Override
+        public void run() {
+            try {
+                if (keyStoreData == null) {
+                    // the type is detected from the head and tail, a file of another type is not read completely
+                    try (SniffedFile sniffedFile = SniffedFile.open(keyStoreFile)) {
+                        keyStoreType = CryptoFileUtil.detectKeyStoreType(sniffedFile);
+
+                        if (keyStoreType != null) {
+                            keyStoreData = readKeyStoreFile(sniffedFile);
+                        }
+                    }
+                }
+
+                if (keyStoreType != null) {
+                    showDecoding();
+
+                    // decoding cannot be interrupted, a cancelled result is dropped
+                    KeyStore loaded = KeyStoreUtil.load(new ByteArrayInputStream(keyStoreData), password,
+                                                        keyStoreType);
+
+                    if (!cancelled) {
+                        keyStore = loaded;
+                    }
+                }
+            } catch (InterruptedIOException ex) {
+                cancelled = true;
+            } catch (Exception ex) {
+                if (!cancelled) {
+                    loadException = ex;
+                }
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    if (DLoadingKeyStore.this.isShowing()) {
+                        closeDialog();
+                    }
+                });
+            }
+        }
+    }
+}
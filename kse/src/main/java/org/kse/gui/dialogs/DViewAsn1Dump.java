@@ -30,7 +30,6 @@ import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.ResourceBundle;
 
@@ -47,6 +46,7 @@ import org.bouncycastle.asn1.cms.SignerInfo;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.kse.crypto.csr.spkac.Spkac;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.crypto.x509.X509Ext;
 import org.kse.gui.CursorUtil;
 import org.kse.gui.components.JEscFrame;
@@ -72,7 +72,7 @@ public class DViewAsn1Dump extends JEscFrame {
     private JTextArea jtaAsn1Dump;
 
     private X509Certificate certificate;
-    private X509CRL crl;
+    private X509CrlHeader crl;
     private X509Ext extension;
     private PrivateKey privateKey;
     private PublicKey publicKey;
@@ -104,7 +104,7 @@ public class DViewAsn1Dump extends JEscFrame {
      * @throws Asn1Exception A problem was encountered getting the extension's ASN.1 dump
      * @throws IOException   If an I/O problem occurred
      */
-    public DViewAsn1Dump(JDialog parent, X509CRL crl) throws Asn1Exception, IOException {
+    public DViewAsn1Dump(JDialog parent, X509CrlHeader crl) throws Asn1Exception, IOException {
         super(res.getString("DViewAsn1Dump.Crl.Title"));
         this.crl = crl;
         this.setIconImages(parent.getOwner().getIconImages());
@@ -247,7 +247,7 @@ public class DViewAsn1Dump extends JEscFrame {
         } else if (cms != null) {
             jtaAsn1Dump = new JTextArea(asn1Dump.dump(cms.getEncoded()));
         } else if (crl != null) {
-            jtaAsn1Dump = new JTextArea(asn1Dump.dump(crl));
+            jtaAsn1Dump = new JTextArea(asn1Dump.dump(crl.getEncoded()));
         } else if (extension != null) {
             jtaAsn1Dump = new JTextArea(asn1Dump.dump(extension));
         } else if (privateKey != null) {
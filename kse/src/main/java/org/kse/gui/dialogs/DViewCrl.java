@@ -30,11 +30,9 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.text.MessageFormat;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.ResourceBundle;
 import java.util.Set;
 
@@ -55,8 +53,8 @@ import javax.swing.table.TableRowSorter;
 
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.signing.SignatureType;
-import org.kse.crypto.x509.X500NameUtils;
-import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.CursorUtil;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.PlatformUtil;
@@ -99,7 +97,8 @@ public class DViewCrl extends JEscDialog {
     private JTable jtRevokedCerts;
     private JButton jbCrlEntryExtensions;
 
-    private X509CRL crl;
+    private X509CrlHeader crl;
+    private X509CrlEntryIndex crlEntries;
 
     /**
      * Creates a new DViewCrl dialog.
@@ -108,7 +107,7 @@ public class DViewCrl extends JEscDialog {
      * @param title  The dialog title
      * @param crl    CRL to display
      */
-    public DViewCrl(JFrame parent, String title, X509CRL crl) {
+    public DViewCrl(JFrame parent, String title, X509CrlHeader crl) {
         super(parent, title, Dialog.ModalityType.DOCUMENT_MODAL);
         this.crl = crl;
         initComponents();
@@ -122,13 +121,19 @@ public class DViewCrl extends JEscDialog {
      * @param modality Dialog modality
      * @param crl      CRL to display
      */
-    public DViewCrl(JDialog parent, String title, Dialog.ModalityType modality, X509CRL crl) {
+    public DViewCrl(JDialog parent, String title, Dialog.ModalityType modality, X509CrlHeader crl) {
         super(parent, title, modality);
         this.crl = crl;
         initComponents();
     }
 
     private void initComponents() {
+        try {
+            crlEntries = crl.getEntries();
+        } catch (CryptoException e) {
+            DError.displayError(this, e);
+        }
+
         jlVersion = new JLabel(res.getString("DViewCrl.jlVersion.text"));
 
         jtfVersion = new JTextField(TEXT_FIELD_WIDTH);
@@ -308,11 +313,10 @@ public class DViewCrl extends JEscDialog {
     }
 
     private int getCrlEntrySize() {
-        Set<? extends X509CRLEntry> revokedCertificates = crl.getRevokedCertificates();
-        if (revokedCertificates == null) {
+        if (crlEntries == null) {
             return 0;
         }
-        return revokedCertificates.size();
+        return crlEntries.size();
     }
 
     private void populateDialog() {
@@ -332,7 +336,7 @@ public class DViewCrl extends JEscDialog {
         jtfVersion.setText(Integer.toString(crl.getVersion()));
         jtfVersion.setCaretPosition(0);
 
-        jdnIssuer.setDistinguishedName(X500NameUtils.x500PrincipalToX500Name(crl.getIssuerX500Principal()));
+        jdnIssuer.setDistinguishedName(crl.getIssuer());
 
         jtfEffectiveDate.setText(StringUtils.formatDate(effectiveDate));
 
@@ -361,7 +365,7 @@ public class DViewCrl extends JEscDialog {
         jtfNextUpdate.setCaretPosition(0);
 
         SignatureType sigAlg = SignatureType.resolveOid(crl.getSigAlgOID(), crl.getSigAlgParams());
-        String sigAlgName = (sigAlg != null) ? sigAlg.friendly() : crl.getSigAlgName();
+        String sigAlgName = (sigAlg != null) ? sigAlg.friendly() : crl.getSigAlgOID();
 
         jtfSignatureAlgorithm.setText(sigAlgName);
         jtfSignatureAlgorithm.setCaretPosition(0);
@@ -372,13 +376,10 @@ public class DViewCrl extends JEscDialog {
         jbCrlExtensions.setEnabled(
                 (critExts != null && !critExts.isEmpty()) || (nonCritExts != null && !nonCritExts.isEmpty()));
 
-        Set<? extends X509CRLEntry> revokedCertsSet = crl.getRevokedCertificates();
-        if (revokedCertsSet == null) {
-            revokedCertsSet = new HashSet<>();
-        }
-        X509CRLEntry[] revokedCerts = revokedCertsSet.toArray(X509CRLEntry[]::new);
         RevokedCertsTableModel revokedCertsTableModel = (RevokedCertsTableModel) jtRevokedCerts.getModel();
-        revokedCertsTableModel.load(revokedCerts);
+        if (crlEntries != null) {
+            revokedCertsTableModel.load(crlEntries);
+        }
 
         if (revokedCertsTableModel.getRowCount() > 0) {
             jtRevokedCerts.changeSelection(0, 0, false, false);
@@ -391,17 +392,7 @@ public class DViewCrl extends JEscDialog {
         if (row != -1) {
             BigInteger serialNumber = (BigInteger) jtRevokedCerts.getValueAt(row, 0);
 
-            Set<?> revokedCertsSet = crl.getRevokedCertificates();
-
-            X509CRLEntry x509CrlEntry = null;
-
-            for (Object o : revokedCertsSet) {
-                X509CRLEntry entry = (X509CRLEntry) o;
-                if (serialNumber.equals(entry.getSerialNumber())) {
-                    x509CrlEntry = entry;
-                    break;
-                }
-            }
+            X509CRLEntry x509CrlEntry = getCrlEntry(serialNumber);
 
             if (x509CrlEntry != null && x509CrlEntry.hasExtensions()) {
                 jbCrlEntryExtensions.setEnabled(true);
@@ -412,6 +403,14 @@ public class DViewCrl extends JEscDialog {
         jbCrlEntryExtensions.setEnabled(false);
     }
 
+    private X509CRLEntry getCrlEntry(BigInteger serialNumber) {
+        int index = crlEntries.indexOf(serialNumber);
+        if (index == -1) {
+            return null;
+        }
+        return crlEntries.getEntry(index);
+    }
+
     private void crlExtensionsPressed() {
         DViewExtensions dViewExtensions = new DViewExtensions(this, res.getString("DViewCrl.Extensions.Title"), crl);
         dViewExtensions.setLocationRelativeTo(this);
@@ -465,17 +464,7 @@ public class DViewCrl extends JEscDialog {
         if (row != -1) {
             BigInteger serialNumber = (BigInteger) jtRevokedCerts.getValueAt(row, 0);
 
-            Set<?> revokedCertsSet = crl.getRevokedCertificates();
-
-            X509CRLEntry x509CrlEntry = null;
-
-            for (Object o : revokedCertsSet) {
-                X509CRLEntry entry = (X509CRLEntry) o;
-                if (serialNumber.equals(entry.getSerialNumber())) {
-                    x509CrlEntry = entry;
-                    break;
-                }
-            }
+            X509CRLEntry x509CrlEntry = getCrlEntry(serialNumber);
 
             if (x509CrlEntry != null && x509CrlEntry.hasExtensions()) {
                 DViewExtensions dViewExtensions = new DViewExtensions(this,
@@ -512,6 +501,6 @@ public class DViewCrl extends JEscDialog {
                 -----END X509 CRL-----
                                 """;
 
-        DialogViewer.run(new DViewCrl(new JFrame(), "CRL", X509CertUtil.loadCRL(crl.getBytes())));
+        DialogViewer.run(new DViewCrl(new JFrame(), "CRL", X509CrlHeader.create(crl.getBytes())));
     }
 }
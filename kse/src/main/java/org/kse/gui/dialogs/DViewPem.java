@@ -36,7 +36,6 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ResourceBundle;
@@ -65,6 +64,7 @@ import org.kse.crypto.privatekey.Pkcs8Util;
 import org.kse.crypto.publickey.OpenSslPubUtil;
 import org.kse.crypto.signing.CmsUtil;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.CursorUtil;
 import org.kse.gui.FileChooserFactory;
@@ -93,7 +93,7 @@ public class DViewPem extends JEscDialog {
     private JTextArea jtaPem;
 
     private X509Certificate cert;
-    private X509CRL crl;
+    private X509CrlHeader crl;
     private PKCS10CertificationRequest pkcs10Csr;
     private PrivateKey privKey;
     private PublicKey pubKey;
@@ -137,7 +137,7 @@ public class DViewPem extends JEscDialog {
      * @param crl    CRL to display encoding for
      * @throws CryptoException A problem was encountered getting the CRL's PEM'd DER encoding
      */
-    public DViewPem(JDialog parent, String title, X509CRL crl) throws CryptoException {
+    public DViewPem(JDialog parent, String title, X509CrlHeader crl) throws CryptoException {
         super(parent, title, ModalityType.DOCUMENT_MODAL);
         this.crl = crl;
         initComponents();
@@ -410,7 +410,7 @@ public class DViewSignature extends JEscDialog {
             // Don't verify the signature if there is no signed content. CmsUtil.loadSignature already
             // tried to find and load the detached content for verification purposes.
             CmsSignatureStatus status;
-            if (signedData.getSignedContent() != null) {
+            if (signerInfo.isContentAvailable()) {
                 status = signerInfo.getStatus();
             } else {
                 status = CmsSignatureStatus.NOT_VERIFIED;
@@ -22,20 +22,18 @@ package org.kse.gui.dialogs;
 
 import java.math.BigInteger;
 import java.security.cert.CRLReason;
-import java.security.cert.X509CRLEntry;
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.TreeMap;
 
+import org.kse.crypto.x509.X509CrlEntryIndex;
 import org.kse.gui.dialogs.sign.RevokedEntry;
 import org.kse.gui.table.ToolTipTableModel;
 
 /**
- * The table model used to display an array of X.509 CRL entries sorted by
- * serial number.
+ * The table model used to display X.509 CRL entries sorted by serial number.
  */
 public class RevokedCertsTableModel extends ToolTipTableModel {
     private static final long serialVersionUID = 1L;
@@ -56,6 +54,7 @@ public class RevokedCertsTableModel extends ToolTipTableModel {
 
     private String[] columnNames;
     private Object[][] data;
+    private X509CrlEntryIndex crlEntries;
 
     /**
      * Construct a new RevokedCertsTableModel.
@@ -71,29 +70,13 @@ public class RevokedCertsTableModel extends ToolTipTableModel {
     }
 
     /**
-     * Load the RevokedCertsTableModel with an array of X.509 CRL entries.
+     * Load the RevokedCertsTableModel with an index of X.509 CRL entries. The
+     * entries are only decoded when their rows are displayed.
      *
-     * @param revokedCerts The X.509 CRL entries
+     * @param crlEntries The X.509 CRL entries
      */
-    public void load(X509CRLEntry[] revokedCerts) {
-        TreeMap<BigInteger, X509CRLEntry> sortedRevokedCerts = new TreeMap<>();
-
-        for (X509CRLEntry revokedCert : revokedCerts) {
-            sortedRevokedCerts.put(revokedCert.getSerialNumber(), revokedCert);
-        }
-
-        data = new Object[sortedRevokedCerts.size()][COLUMN_COUNT];
-
-        int i = 0;
-        for (Iterator<?> itr = sortedRevokedCerts.entrySet().iterator(); itr.hasNext(); i++) {
-            X509CRLEntry x509CrlEntry = (X509CRLEntry) ((Map.Entry<?, ?>) itr.next()).getValue();
-
-            data[i][COL_SERIAL_NUMBER] = x509CrlEntry.getSerialNumber();
-            data[i][COL_REVOCATION_DATE] = x509CrlEntry.getRevocationDate();
-            data[i][COL_REASON] = getReasonString(x509CrlEntry.getRevocationReason());
-        }
-
-        fireTableDataChanged();
+    public void load(X509CrlEntryIndex crlEntries) {
+        load(crlEntries, Collections.emptyMap());
     }
 
     /**
@@ -102,6 +85,18 @@ public class RevokedCertsTableModel extends ToolTipTableModel {
      * @param mapRevokedEntry The X.509 CRL entries
      */
     public void load(Map<BigInteger, RevokedEntry> mapRevokedEntry) {
+        load(null, mapRevokedEntry);
+    }
+
+    /**
+     * Load the RevokedCertsTableModel with an index of X.509 CRL entries
+     * followed by a map of RevokedEntry.
+     *
+     * @param crlEntries      The X.509 CRL entries or null if there are none
+     * @param mapRevokedEntry The further X.509 CRL entries
+     */
+    public void load(X509CrlEntryIndex crlEntries, Map<BigInteger, RevokedEntry> mapRevokedEntry) {
+        this.crlEntries = crlEntries;
         data = new Object[mapRevokedEntry.size()][COLUMN_COUNT];
 
         int i = 0;
@@ -141,7 +136,7 @@ public class RevokedCertsTableModel extends ToolTipTableModel {
      */
     @Override
     public int getRowCount() {
-        return data.length;
+        return getCrlEntriesSize() + data.length;
     }
 
     /**
@@ -164,7 +159,22 @@ public class RevokedCertsTableModel extends ToolTipTableModel {
      */
     @Override
     public Object getValueAt(int row, int col) {
-        return data[row][col];
+        if (row < getCrlEntriesSize()) {
+            switch (col) {
+                case COL_SERIAL_NUMBER:
+                    return crlEntries.getSerialNumber(row);
+                case COL_REVOCATION_DATE:
+                    return crlEntries.getRevocationDate(row);
+                case COL_REASON:
+                    return getReasonString(crlEntries.getRevocationReason(row));
+            }
+            throw new IndexOutOfBoundsException(String.valueOf(col));
+        }
+        return data[row - getCrlEntriesSize()][col];
+    }
+
+    private int getCrlEntriesSize() {
+        return crlEntries == null ? 0 : crlEntries.size();
     }
 
     /**
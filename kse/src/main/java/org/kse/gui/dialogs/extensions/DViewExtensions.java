@@ -35,7 +35,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.security.cert.X509Extension;
 import java.text.MessageFormat;
@@ -64,6 +63,7 @@ import javax.swing.table.TableRowSorter;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.crypto.x509.X509Ext;
 import org.kse.crypto.x509.X509ExtensionSet;
 import org.kse.gui.CursorUtil;
@@ -432,7 +432,7 @@ public class DViewExtensions extends JEscDialog implements HyperlinkListener {
             urlConn = (HttpURLConnection) url.openConnection();
         }
         try (InputStream is = urlConn.getInputStream()) {
-            X509CRL crl = X509CertUtil.loadCRL(is.readAllBytes());
+            X509CrlHeader crl = X509CrlHeader.create(is.readAllBytes());
             if (crl != null) {
                 DViewCrl dViewCrl = new DViewCrl(this,
                                                  MessageFormat.format(res.getString("DViewExtensions.ViewCrl.Title"),
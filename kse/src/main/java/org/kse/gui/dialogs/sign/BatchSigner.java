@@ -0,0 +1,146 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kse.gui.dialogs.sign;
+
+import java.io.File;
+import java.security.Provider;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Signs a batch of files concurrently with a bounded number of threads that
+ * share the private key and certificate chain. Used by the JAR and the file
+ * signing dialogs.
+ * <p>
+ * A file that cannot be signed does not stop the others, its error is added
+ * to a map keyed by the absolute path of the file, so that files with the
+ * same name in different directories are told apart.
+ */
+class BatchSigner {
+
+    /**
+     * Signs a single file of the batch.
+     */
+    interface FileSigner {
+        /**
+         * Sign a file.
+         *
+         * @param inputFile  The file to sign
+         * @param outputFile The signed file or signature file to write
+         * @throws Exception If the file could not be signed
+         */
+        void sign(File inputFile, File outputFile) throws Exception;
+    }
+
+    private final String threadName;
+    private final Provider provider;
+
+    // sorted by path for displaying the errors
+    private final Map<String, String> fileExceptions = new ConcurrentSkipListMap<>();
+
+    /**
+     * Construct a new BatchSigner.
+     *
+     * @param threadName Name of the signing threads
+     * @param provider   The security provider of the private key or null for
+     *                   the default
+     */
+    BatchSigner(String threadName, Provider provider) {
+        this.threadName = threadName;
+        this.provider = provider;
+    }
+
+    /**
+     * Sign the files and wait until all of them are done.
+     *
+     * @param inputFiles  The files to sign
+     * @param outputFiles The file to write for each file to sign
+     * @param signer      Signs a single file
+     * @param progress    Told about the number of files done on the event
+     *                    dispatch thread
+     * @throws InterruptedException If the calling thread was interrupted, no
+     *                              more files are started then
+     */
+    void sign(File[] inputFiles, List<File> outputFiles, FileSigner signer, IntConsumer progress)
+            throws InterruptedException {
+
+        ExecutorService pool = Executors.newFixedThreadPool(getThreads(inputFiles.length), runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            AtomicInteger doneFiles = new AtomicInteger();
+
+            for (int i = 0; i < inputFiles.length; i++) {
+                File inputFile = inputFiles[i];
+                File outputFile = outputFiles.get(i);
+
+                pool.execute(() -> {
+                    try {
+                        signer.sign(inputFile, outputFile);
+                    }
+                    // Add any sign exceptions to the map
+                    catch (Exception e) {
+                        fileExceptions.put(inputFile.getAbsolutePath(), e.toString());
+                    }
+
+                    // update the progress bar
+                    int done = doneFiles.incrementAndGet();
+                    SwingUtilities.invokeLater(() -> progress.accept(done));
+                });
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            // do not start signing any more files if cancelled
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the errors of the files that could not be signed.
+     *
+     * @return Map of the error of each file path
+     */
+    Map<String, String> getFileExceptions() {
+        return fileExceptions;
+    }
+
+    private int getThreads(int files) {
+        // keys of external providers (e.g. smart cards) are not necessarily usable concurrently
+        if (provider != null) {
+            return 1;
+        }
+        return Math.max(1, Math.min(files, Runtime.getRuntime().availableProcessors()));
+    }
+}
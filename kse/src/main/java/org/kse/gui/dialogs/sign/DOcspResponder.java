@@ -0,0 +1,284 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.HeadlessException;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.Date;
+import java.util.ResourceBundle;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.UnsupportedLookAndFeelException;
+
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.keypair.KeyPairType;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.gui.CurrentDirectory;
+import org.kse.gui.FileChooserFactory;
+import org.kse.gui.PlatformUtil;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.crypto.JValidityPeriod;
+import org.kse.gui.dialogs.DialogHelper;
+import org.kse.gui.preferences.data.ValiditySettings.PeriodType;
+import org.kse.utilities.DialogViewer;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Dialog that displays the options to start an OCSP responder for a CA key
+ * pair.
+ */
+public class DOcspResponder extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+    private static final int DEFAULT_PORT = 8080;
+
+    private JLabel jlPort;
+    private JTextField jtfPort;
+    private JLabel jlValidityPeriod;
+    private JValidityPeriod jvpValidityPeriod;
+    private JLabel jlSignatureAlgorithm;
+    private JComboBox<SignatureType> jcbSignatureAlgorithm;
+    private JLabel jlCrlFile;
+    private JTextField jtfCrlFile;
+    private JLabel jlUnknownSerials;
+    private JButton jbBrowse;
+
+    private JButton jbOK;
+    private JButton jbCancel;
+
+    private KeyPairType signKeyPairType;
+    private PrivateKey signPrivateKey;
+    private File defaultCrlFile;
+
+    private int port = -1;
+    private long validityPeriodMs;
+    private SignatureType signatureType;
+    private File crlFile;
+
+    /**
+     * Creates a new DOcspResponder dialog.
+     *
+     * @param parent          The parent frame
+     * @param signKeyPairType Key pair type of the CA
+     * @param signPrivateKey  Private key of the CA
+     * @param defaultCrlFile  CRL of the CA to take the revoked certificates
+     *                        from or null if there is none
+     */
+    public DOcspResponder(JFrame parent, KeyPairType signKeyPairType, PrivateKey signPrivateKey, File defaultCrlFile) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.signKeyPairType = signKeyPairType;
+        this.signPrivateKey = signPrivateKey;
+        this.defaultCrlFile = defaultCrlFile;
+        setTitle(res.getString("DOcspResponder.Title"));
+        initComponents();
+    }
+
+    private void initComponents() {
+        jlPort = new JLabel(res.getString("DOcspResponder.jlPort.text"));
+        jtfPort = new JTextField(Integer.toString(DEFAULT_PORT), 5);
+        jtfPort.setToolTipText(res.getString("DOcspResponder.jtfPort.tooltip"));
+
+        jlValidityPeriod = new JLabel(res.getString("DOcspResponder.jlValidityPeriod.text"));
+        jvpValidityPeriod = new JValidityPeriod(1, PeriodType.DAYS);
+        jvpValidityPeriod.setToolTipText(res.getString("DOcspResponder.jvpValidityPeriod.tooltip"));
+
+        jlSignatureAlgorithm = new JLabel(res.getString("DOcspResponder.jlSignatureAlgorithm.text"));
+        jcbSignatureAlgorithm = new JComboBox<>();
+        jcbSignatureAlgorithm.setMaximumRowCount(10);
+        DialogHelper.populateSigAlgs(signKeyPairType, signPrivateKey, jcbSignatureAlgorithm);
+        jcbSignatureAlgorithm.setToolTipText(res.getString("DOcspResponder.jcbSignatureAlgorithm.tooltip"));
+
+        jlCrlFile = new JLabel(res.getString("DOcspResponder.jlCrlFile.text"));
+        jtfCrlFile = new JTextField(30);
+        jtfCrlFile.setToolTipText(res.getString("DOcspResponder.jtfCrlFile.tooltip"));
+        if (defaultCrlFile != null && defaultCrlFile.isFile()) {
+            jtfCrlFile.setText(defaultCrlFile.getPath());
+            jtfCrlFile.setCaretPosition(0);
+        }
+
+        jlUnknownSerials = new JLabel(res.getString("DOcspResponder.jlUnknownSerials.text"));
+
+        jbBrowse = new JButton(res.getString("DOcspResponder.jbBrowse.text"));
+        jbBrowse.setToolTipText(res.getString("DOcspResponder.jbBrowse.tooltip"));
+        PlatformUtil.setMnemonic(jbBrowse, res.getString("DOcspResponder.jbBrowse.mnemonic").charAt(0));
+
+        jbOK = new JButton(res.getString("DOcspResponder.jbOK.text"));
+        jbCancel = new JButton(res.getString("DOcspResponder.jbCancel.text"));
+        jbCancel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+
+        JPanel jpButtons = PlatformUtil.createDialogButtonPanel(jbOK, jbCancel, "insets 0");
+
+        Container pane = getContentPane();
+        pane.setLayout(new MigLayout("insets dialog, fill", "[right]unrel[]rel[]", "[]unrel[]"));
+
+        pane.add(jlPort, "");
+        pane.add(jtfPort, "wrap");
+        pane.add(jlValidityPeriod, "");
+        pane.add(jvpValidityPeriod, "spanx, wrap");
+        pane.add(jlSignatureAlgorithm, "");
+        pane.add(jcbSignatureAlgorithm, "spanx, wrap");
+        pane.add(jlCrlFile, "");
+        pane.add(jtfCrlFile, "growx");
+        pane.add(jbBrowse, "wrap");
+        pane.add(jlUnknownSerials, "skip, spanx, wrap unrel");
+        pane.add(jpButtons, "right, spanx");
+
+        jbBrowse.addActionListener(evt -> browsePressed());
+        jbOK.addActionListener(evt -> okPressed());
+        jbCancel.addActionListener(evt -> cancelPressed());
+
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setResizable(false);
+
+        getRootPane().setDefaultButton(jbOK);
+
+        pack();
+    }
+
+    private void browsePressed() {
+        JFileChooser chooser = FileChooserFactory.getCrlFileChooser();
+        chooser.setCurrentDirectory(CurrentDirectory.get());
+        chooser.setDialogTitle(res.getString("DOcspResponder.ChooseCrlFile.Title"));
+        chooser.setMultiSelectionEnabled(false);
+
+        int rtnValue = chooser.showOpenDialog(this);
+        if (rtnValue == JFileChooser.APPROVE_OPTION) {
+            File chosenFile = chooser.getSelectedFile();
+            CurrentDirectory.updateForFile(chosenFile);
+            jtfCrlFile.setText(chosenFile.toString());
+            jtfCrlFile.setCaretPosition(0);
+        }
+    }
+
+    private void okPressed() {
+        try {
+            port = Integer.parseInt(jtfPort.getText().trim());
+        } catch (NumberFormatException ex) {
+            port = -1;
+        }
+        if (port < 0 || port > 65535) {
+            JOptionPane.showMessageDialog(this, res.getString("DOcspResponder.PortInvalid.message"), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            port = -1;
+            return;
+        }
+
+        String crlFileStr = jtfCrlFile.getText().trim();
+        crlFile = crlFileStr.isEmpty() ? null : new File(crlFileStr);
+        if (crlFile != null && !crlFile.isFile()) {
+            JOptionPane.showMessageDialog(this, res.getString("DOcspResponder.CrlFileNotFound.message"), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            port = -1;
+            return;
+        }
+
+        validityPeriodMs = jvpValidityPeriod.getValidityPeriodMs(new Date());
+        signatureType = (SignatureType) jcbSignatureAlgorithm.getSelectedItem();
+
+        closeDialog();
+    }
+
+    private void cancelPressed() {
+        port = -1;
+        signatureType = null;
+        crlFile = null;
+        closeDialog();
+    }
+
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    /**
+     * @return The port to listen on, 0 for any free port or -1 if the dialog
+     *         was cancelled.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return The validity of the responses in milliseconds.
+     */
+    public long getValidityPeriodMs() {
+        return validityPeriodMs;
+    }
+
+    /**
+     * @return The signature type for signing the responses.
+     */
+    public SignatureType getSignatureType() {
+        return signatureType;
+    }
+
+    /**
+     * @return The CRL to take the revoked certificates from or null if no
+     *         certificate has been revoked.
+     */
+    public File getCrlFile() {
+        return crlFile;
+    }
+
+    public static void main(String[] args) throws HeadlessException, UnsupportedLookAndFeelException, CryptoException {
+        KeyPair keyPair = KeyPairUtil.generateKeyPair(KeyPairType.RSA, 1024, KSE.BC);
+        DialogViewer.run(new DOcspResponder(new JFrame(), KeyPairType.RSA, keyPair.getPrivate(), null));
+    }
+}
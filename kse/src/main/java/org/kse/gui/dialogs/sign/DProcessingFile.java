@@ -0,0 +1,250 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+
+import org.kse.gui.components.JEscDialog;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Processes a large file in a background thread while showing how much of it
+ * has been read. The user may cancel at any time by pressing the cancel
+ * button. The dialog is only shown if processing takes noticeably long.
+ */
+public class DProcessingFile extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+
+    /**
+     * Processing that finishes within this time does not show the dialog at all
+     */
+    private static final long SHOW_DELAY_MILLIS = 300;
+
+    private JLabel jlProcessingFile;
+    private JProgressBar jpbProcessingFile;
+    private JButton jbCancel;
+
+    private final String text;
+    private final File file;
+    private Object result;
+    private Exception exception;
+    private volatile boolean cancelled;
+    private Thread processor;
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+
+    /**
+     * Processing of a file that reports the number of bytes read so far.
+     *
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    public interface FileTask<T> {
+        /**
+         * Process the file.
+         *
+         * @param progressListener Receives the number of bytes of the file read so far
+         * @return The result
+         * @throws Exception If processing fails
+         */
+        T process(LongConsumer progressListener) throws Exception;
+    }
+
+    /**
+     * Creates a new DProcessingFile dialog.
+     *
+     * @param parent The parent frame
+     * @param title  The dialog title
+     * @param text   The text to display above the progress bar
+     * @param file   The file to process
+     */
+    public DProcessingFile(JFrame parent, String title, String text, File file) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.text = text;
+        this.file = file;
+        initComponents(title);
+    }
+
+    private void initComponents(String title) {
+        jlProcessingFile = new JLabel(text);
+
+        jpbProcessingFile = new JProgressBar(0, 100);
+        jpbProcessingFile.setStringPainted(true);
+
+        jbCancel = new JButton(res.getString("DProcessingFile.jbCancel.text"));
+        jbCancel.addActionListener(evt -> cancelPressed());
+        // Need to use WHEN_FOCUSED since the cancel button will always have focus.
+        jbCancel.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        Container pane = getContentPane();
+        pane.setLayout(new MigLayout("insets dialog, fill", "[]", "[]unrel"));
+        pane.add(jlProcessingFile, "wrap");
+        pane.add(jpbProcessingFile, "growx, wrap");
+        pane.add(jbCancel, "tag Cancel");
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setTitle(title);
+        setResizable(false);
+
+        pack();
+    }
+
+    /**
+     * Process the file with the supplied task. Blocks until processing has
+     * finished or has been cancelled, but keeps the UI responsive meanwhile.
+     *
+     * @param task The processing of the file
+     * @param <T>  Type of the result
+     * @return The result or null if processing failed or was cancelled
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T process(FileTask<T> task) {
+        result = null;
+        exception = null;
+        cancelled = false;
+        lastPercent.set(-1);
+
+        processor = new Thread(new ProcessFile(task), "KSE-ProcessFile");
+        processor.setPriority(Thread.MIN_PRIORITY);
+        processor.start();
+
+        try {
+            processor.join(SHOW_DELAY_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (processor.isAlive()) {
+            setLocationRelativeTo(getParent());
+            setVisible(true);
+        }
+
+        return cancelled ? null : (T) result;
+    }
+
+    /**
+     * Get the problem that occurred while processing the file.
+     *
+     * @return The exception or null if none occurred
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Did the user cancel processing?
+     *
+     * @return True if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void cancelPressed() {
+        cancelled = true;
+
+        if ((processor != null) && (processor.isAlive())) {
+            processor.interrupt();
+        }
+        closeDialog();
+    }
+
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    private void updateProgress(long done) {
+        long total = file.length();
+        int percent = total > 0 ? (int) Math.min(100, done * 100 / total) : 0;
+
+        // only bother the event dispatch thread if there is something new to display
+        if (lastPercent.getAndSet(percent) != percent) {
+            SwingUtilities.invokeLater(() -> jpbProcessingFile.setValue(percent));
+        }
+    }
+
+    private class ProcessFile implements Runnable {
+        private final FileTask<?> task;
+
+        private ProcessFile(FileTask<?> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object processed = task.process(DProcessingFile.this::updateProgress);
+
+                if (!cancelled) {
+                    result = processed;
+                }
+            } catch (Exception ex) {
+                // cancelling interrupts the reading, which fails the task
+                if (!cancelled) {
+                    exception = ex;
+                }
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    if (DProcessingFile.this.isShowing()) {
+                        closeDialog();
+                    }
+                });
+            }
+        }
+    }
+}
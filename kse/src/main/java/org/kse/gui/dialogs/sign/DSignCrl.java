@@ -29,17 +29,21 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.security.KeyPair;
 import java.security.PrivateKey;
-import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
+import java.text.MessageFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.concurrent.TimeUnit;
 
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -51,8 +55,13 @@ import javax.swing.KeyStroke;
 import javax.swing.UnsupportedLookAndFeelException;
 
 import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
 import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
 import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.kse.KSE;
 import org.kse.crypto.CryptoException;
@@ -60,6 +69,7 @@ import org.kse.crypto.keypair.KeyPairType;
 import org.kse.crypto.keypair.KeyPairUtil;
 import org.kse.crypto.signing.SignatureType;
 import org.kse.crypto.x509.X500NameUtils;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.KseFrame;
 import org.kse.gui.PlatformUtil;
@@ -98,6 +108,10 @@ public class DSignCrl extends JEscDialog {
     private JComboBox<SignatureType> jcbSignatureAlgorithm;
     private JLabel jlCrlNumber;
     private JTextField jtfCrlNumber;
+    private JLabel jlDeltaCrl;
+    private JCheckBox jcbDeltaCrl;
+    private JLabel jlDeltaCrlUrl;
+    private JTextField jtfDeltaCrlUrl;
 
     private JRevokedCerts jpRevokedCertsTable;
 
@@ -110,11 +124,15 @@ public class DSignCrl extends JEscDialog {
     private KeyPairType signKeyPairType;
     private PrivateKey signPrivateKey;
     private X509Certificate caCert;
-    private X509CRL crlOld;
+    private X509CrlHeader crlOld;
+    private X509CrlHeader crlDelta;
+    private BigInteger baseCrlNumber;
     private Date effectiveDate;
     private Date nextUpdate;
     private SignatureType signatureType;
     private BigInteger crlNumber;
+    private boolean deltaCrl;
+    private String deltaCrlUrl;
 
     private JFrame parent;
     private KseFrame kseFrame;
@@ -128,12 +146,14 @@ public class DSignCrl extends JEscDialog {
      * @param signPrivateKey  Private key certificate
      * @param caCert          Public key certificate
      * @param crlOld          An old crl to copy the information of the revoked
-     *                        certificates.
+     *                        certificates. It is the base CRL of delta CRLs.
+     * @param crlDelta        The delta CRL last issued for the old CRL or null
+     *                        if there is none
      * @throws CryptoException A problem was encountered with the supplied private
      *                         key
      */
     public DSignCrl(JFrame parent, KseFrame kseFrame, KeyPairType signKeyPairType, PrivateKey signPrivateKey,
-                    X509Certificate caCert, X509CRL crlOld) throws CryptoException {
+                    X509Certificate caCert, X509CrlHeader crlOld, X509CrlHeader crlDelta) throws CryptoException {
         super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
         this.parent = parent;
         this.kseFrame = kseFrame;
@@ -141,6 +161,7 @@ public class DSignCrl extends JEscDialog {
         this.signPrivateKey = signPrivateKey;
         this.caCert = caCert;
         this.crlOld = crlOld;
+        this.crlDelta = crlDelta;
         setTitle(res.getString("DSignCrl.Title"));
         initComponents();
     }
@@ -184,7 +205,15 @@ public class DSignCrl extends JEscDialog {
         jtfCrlNumber = new JTextField("1", 5);
         jtfCrlNumber.setToolTipText(res.getString("DSignCrl.jtfCrlNumber.tooltip"));
 
-        jpRevokedCertsTable = new JRevokedCerts(parent, kseFrame, caCert, crlOld);
+        jlDeltaCrl = new JLabel(res.getString("DSignCrl.jlDeltaCrl.text"));
+        jcbDeltaCrl = new JCheckBox();
+        jcbDeltaCrl.setToolTipText(res.getString("DSignCrl.jcbDeltaCrl.tooltip"));
+
+        jlDeltaCrlUrl = new JLabel(res.getString("DSignCrl.jlDeltaCrlUrl.text"));
+        jtfDeltaCrlUrl = new JTextField(30);
+        jtfDeltaCrlUrl.setToolTipText(res.getString("DSignCrl.jtfDeltaCrlUrl.tooltip"));
+
+        jpRevokedCertsTable = new JRevokedCerts(parent, kseFrame, caCert, crlOld, crlDelta);
 
         jbOK = new JButton(res.getString("DSignCrl.jbOK.text"));
         jbCancel = new JButton(res.getString("DSignCrl.jbCancel.text"));
@@ -210,11 +239,16 @@ public class DSignCrl extends JEscDialog {
         pane.add(jcbSignatureAlgorithm, "wrap");
         pane.add(jlCrlNumber, "");
         pane.add(jtfCrlNumber, "wrap");
+        pane.add(jlDeltaCrl, "");
+        pane.add(jcbDeltaCrl, "wrap");
+        pane.add(jlDeltaCrlUrl, "");
+        pane.add(jtfDeltaCrlUrl, "growx, wrap");
         pane.add(jpRevokedCertsTable, "spanx, growx, wrap unrel");
         pane.add(jpButtons, "right, spanx");
 
         populateFields();
 
+        jcbDeltaCrl.addItemListener(evt -> enableDisableElements());
         jbOK.addActionListener(evt -> okPressed());
         jbCancel.addActionListener(evt -> cancelPressed());
 
@@ -268,20 +302,80 @@ public class DSignCrl extends JEscDialog {
             Date startDate = jdtEffectiveDate.getDateTime();
             jdtNextUpdate.setDateTime(jvpValidityPeriod.getValidityEnd(startDate));
 
-            byte[] crlNumEnc = crlOld.getExtensionValue(Extension.cRLNumber.getId());
-            if (crlNumEnc != null) {
-                try {
-                    ASN1Primitive primitive = JcaX509ExtensionUtils.parseExtensionValue(crlNumEnc);
-                    BigInteger nextCrlNum = CRLNumber.getInstance(primitive).getCRLNumber().add(BigInteger.ONE);
-                    jtfCrlNumber.setText(nextCrlNum.toString());
-                } catch (IOException e) {
-                    // ignore
+            baseCrlNumber = getCrlNumber(crlOld);
+            if (baseCrlNumber != null) {
+                // base and delta CRLs share the sequence of CRL numbers
+                BigInteger lastCrlNum = baseCrlNumber;
+                BigInteger deltaCrlNumber = getCrlNumber(crlDelta);
+                if (deltaCrlNumber != null && deltaCrlNumber.compareTo(lastCrlNum) > 0) {
+                    lastCrlNum = deltaCrlNumber;
                 }
+                jtfCrlNumber.setText(lastCrlNum.add(BigInteger.ONE).toString());
+            }
+
+            jtfDeltaCrlUrl.setText(getFreshestCrlUrl(crlOld));
+        }
+
+        // delta CRLs require a base CRL with a CRL number whose entries could be read
+        jcbDeltaCrl.setEnabled(baseCrlNumber != null && jpRevokedCertsTable.getBaseCrl() != null);
+        enableDisableElements();
+    }
+
+    private static BigInteger getCrlNumber(X509CrlHeader crl) {
+        if (crl == null) {
+            return null;
+        }
+
+        byte[] crlNumEnc = crl.getExtensionValue(Extension.cRLNumber.getId());
+        if (crlNumEnc != null) {
+            try {
+                ASN1Primitive primitive = JcaX509ExtensionUtils.parseExtensionValue(crlNumEnc);
+                return CRLNumber.getInstance(primitive).getCRLNumber();
+            } catch (IOException | IllegalArgumentException e) {
+                // ignore
             }
         }
+        return null;
+    }
+
+    private static String getFreshestCrlUrl(X509CrlHeader crl) {
+        byte[] freshestCrlEnc = crl.getExtensionValue(Extension.freshestCRL.getId());
+        if (freshestCrlEnc != null) {
+            try {
+                ASN1Primitive primitive = JcaX509ExtensionUtils.parseExtensionValue(freshestCrlEnc);
+                for (DistributionPoint distributionPoint : CRLDistPoint.getInstance(primitive).getDistributionPoints()) {
+                    DistributionPointName name = distributionPoint.getDistributionPoint();
+                    if (name != null && name.getType() == DistributionPointName.FULL_NAME) {
+                        for (GeneralName generalName : GeneralNames.getInstance(name.getName()).getNames()) {
+                            if (generalName.getTagNo() == GeneralName.uniformResourceIdentifier) {
+                                return generalName.getName().toString();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // ignore
+            }
+        }
+        return "";
+    }
+
+    private void enableDisableElements() {
+        // the Freshest CRL extension must not be included in delta CRLs
+        jtfDeltaCrlUrl.setEnabled(!jcbDeltaCrl.isSelected());
+    }
+
+    private static boolean isAbsoluteUri(String uri) {
+        try {
+            return new URI(uri).isAbsolute();
+        } catch (URISyntaxException ex) {
+            return false;
+        }
     }
 
     private void cancelPressed() {
+        deltaCrl = false;
+        deltaCrlUrl = null;
         effectiveDate = null;
         nextUpdate = null;
         signatureType = null;
@@ -316,6 +410,21 @@ public class DSignCrl extends JEscDialog {
             return;
         }
 
+        deltaCrl = jcbDeltaCrl.isSelected();
+        if (deltaCrl && crlNumber.compareTo(baseCrlNumber) <= 0) {
+            JOptionPane.showMessageDialog(this, MessageFormat.format(
+                    res.getString("DSignCrl.CrlNumberNotAfterBase.message"), baseCrlNumber), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        deltaCrlUrl = jtfDeltaCrlUrl.getText().trim();
+        if (!deltaCrl && !deltaCrlUrl.isEmpty() && !isAbsoluteUri(deltaCrlUrl)) {
+            JOptionPane.showMessageDialog(this, res.getString("DSignCrl.DeltaCrlUrlInvalid.message"), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
         effectiveDate = jdtEffectiveDate.getDateTime();
         nextUpdate = jdtNextUpdate.getDateTime();
         signatureType = (SignatureType) jcbSignatureAlgorithm.getSelectedItem();
@@ -363,14 +472,43 @@ public class DSignCrl extends JEscDialog {
     }
 
     /**
-     * @return The map of revoked certificates in the CRL.
+     * @return The map of revoked certificates added to the previous CRLs.
      */
     public Map<BigInteger, RevokedEntry> getMapRevokedEntry() {
         return jpRevokedCertsTable.getMapRevokedEntry();
     }
 
+    /**
+     * @return The previous CRLs whose entries are included in the CRL.
+     */
+    public List<X509CrlHeader> getPreviousCrls() {
+        return jpRevokedCertsTable.getPreviousCrls();
+    }
+
+    /**
+     * @return The base CRL of a delta CRL or null if there is none.
+     */
+    public X509CrlHeader getBaseCrl() {
+        return jpRevokedCertsTable.getBaseCrl();
+    }
+
+    /**
+     * @return True if a delta CRL is to be issued for the base CRL.
+     */
+    public boolean isDeltaCrl() {
+        return deltaCrl;
+    }
+
+    /**
+     * @return The URL where delta CRLs are published, which is included in the
+     *         Freshest CRL extension of full CRLs. Empty if there is none.
+     */
+    public String getDeltaCrlUrl() {
+        return deltaCrlUrl;
+    }
+
     public static void main(String[] args) throws HeadlessException, UnsupportedLookAndFeelException, CryptoException {
         KeyPair keyPair = KeyPairUtil.generateKeyPair(KeyPairType.RSA, 1024, KSE.BC);
-        DialogViewer.run(new DSignCrl(new JFrame(), null, KeyPairType.RSA, keyPair.getPrivate(), null, null));
+        DialogViewer.run(new DSignCrl(new JFrame(), null, KeyPairType.RSA, keyPair.getPrivate(), null, null, null));
     }
 }
@@ -32,6 +32,9 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
 
 import javax.swing.AbstractAction;
@@ -61,7 +64,9 @@ import org.kse.gui.FileChooserFactory;
 import org.kse.gui.PlatformUtil;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.dialogs.DialogHelper;
+import org.kse.gui.error.DError;
 import org.kse.utilities.DialogViewer;
+import org.kse.utilities.io.FileNameUtil;
 import org.kse.utilities.net.URLs;
 import org.kse.utilities.pem.PemInfo;
 import org.kse.utilities.pem.PemUtil;
@@ -105,6 +110,10 @@ public class DSignFile extends JEscDialog {
     private KeyPairType signKeyPairType;
     private File inputFile;
     private File outputFile;
+    private File[] inputFiles;
+    private List<File> outputFiles;
+    private boolean batchSigning;
+    private String inputText = "";
     private CMSSignedData inputSignature;
     private boolean outputFileChosen;
     private boolean enableCounterSign;
@@ -296,6 +305,7 @@ public class DSignFile extends JEscDialog {
     }
 
     private void resetToDefault() {
+        batchSigning = false;
         inputSignature = null;
         enableCounterSign = false;
         detachedSignature = true;
@@ -311,6 +321,34 @@ public class DSignFile extends JEscDialog {
         return inputFile;
     }
 
+    /**
+     * Get chosen input files when signing a batch of files.
+     *
+     * @return <b>File[]</b> input files
+     */
+    public File[] getInputFiles() {
+        return inputFiles;
+    }
+
+    /**
+     * Get the output file for each input file when signing a batch of files.
+     *
+     * @return <b>List</b> output files
+     */
+    public List<File> getOutputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Check if a batch of files is to be signed, which happens if multiple
+     * files, a directory or a file name pattern have been chosen as input.
+     *
+     * @return <b>boolean</b> true if signing a batch of files
+     */
+    public boolean isBatchSigning() {
+        return batchSigning;
+    }
+
     /**
      * Get chosen output file.
      *
@@ -373,6 +411,20 @@ public class DSignFile extends JEscDialog {
      * - output file paths for overwriting files
      */
     private void okPressed() {
+        // resolve an input path or pattern typed by the user
+        String text = jtfInputFile.getText().trim();
+        if (text.isEmpty()) {
+            inputFile = null;
+            batchSigning = false;
+        } else if (!text.equals(inputText) && !inputTextEntered()) {
+            return;
+        }
+
+        if (batchSigning) {
+            batchOkPressed();
+            return;
+        }
+
         // check if any files selected
         if (inputFile == null) {
             JOptionPane.showMessageDialog(this, res.getString("DSignFile.InputFileRequired.message"), getTitle(),
@@ -416,6 +468,47 @@ public class DSignFile extends JEscDialog {
         closeDialog();
     }
 
+    private void batchOkPressed() {
+        if (inputFiles.length == 0) {
+            JOptionPane.showMessageDialog(this, MessageFormat.format(res.getString("DSignFile.NoInputFiles.message"),
+                                                                     inputText), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // check if time stamp URL is empty
+        if (jcbAddTimestamp.isSelected() && jcbTimestampServerUrl.getSelectedItem().toString().isEmpty()) {
+            JOptionPane.showMessageDialog(this, res.getString("DSignFile.EmptyTimestampUrl.message"), getTitle(),
+                                          JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // ask only once for all signature files that already exist
+        long existing = outputFiles.stream().filter(File::exists).count();
+        if (existing > 0) {
+            int selected = JOptionPane.showConfirmDialog(this,
+                    MessageFormat.format(res.getString("DSignFile.OverWriteOutputs.message"), existing), getTitle(),
+                    JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+
+            if (selected != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
+
+        detachedSignature = jcbDetachedSignature.isSelected();
+        outputPem = jcbOutputPem.isSelected();
+        signatureType = (SignatureType) jcbSignatureAlgorithm.getSelectedItem();
+
+        // check add time stamp is selected and assign value
+        if (jcbAddTimestamp.isSelected()) {
+            tsaUrl = jcbTimestampServerUrl.getSelectedItem().toString();
+        }
+
+        DialogHelper.rememberSigAlg(signKeyPairType, signPrivateKey, signatureType);
+
+        closeDialog();
+    }
+
     /**
      * Get input file
      */
@@ -425,19 +518,82 @@ public class DSignFile extends JEscDialog {
         chooser = FileChooserFactory.getAllFileChooser();
         chooser.setDialogTitle(res.getString("DSignFile.ChooseInputFile.Sign.Title"));
         chooser.setCurrentDirectory(CurrentDirectory.get());
-        chooser.setMultiSelectionEnabled(false);
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        chooser.setMultiSelectionEnabled(true);
         chooser.setApproveButtonText(res.getString("DSignFile.InputFileChooser.button"));
 
         int rtnValue = chooser.showOpenDialog(this);
         if (rtnValue == JFileChooser.APPROVE_OPTION) {
-            File chosenFile = chooser.getSelectedFile();
-            CurrentDirectory.updateForFile(chosenFile);
-            inputFile = chosenFile;
+            File[] chosenFiles = chooser.getSelectedFiles();
+            if (chosenFiles.length == 0) {
+                chosenFiles = new File[] { chooser.getSelectedFile() };
+            }
+            CurrentDirectory.updateForFile(chosenFiles[0]);
 
-            inputFileUpdated();
+            if (chosenFiles.length == 1 && !chosenFiles[0].isDirectory()) {
+                inputFile = chosenFiles[0];
+                inputFileUpdated();
+                return;
+            }
+
+            try {
+                List<File> files = new ArrayList<>();
+                StringBuilder sb = new StringBuilder();
+                for (File chosenFile : chosenFiles) {
+                    files.addAll(FileNameUtil.resolveFiles(chosenFile.getAbsolutePath()));
+                    sb.append(sb.length() > 0 ? " " : "").append('"').append(chosenFile.getName()).append('"');
+                }
+
+                batchInputUpdated(files, chosenFiles.length == 1 ? chosenFiles[0].getAbsolutePath() : sb.toString());
+            } catch (IOException e) {
+                DError.displayError(this, e);
+            }
         }
     }
 
+    /**
+     * Resolve the input typed by the user, which may be a file, a directory or
+     * a file name pattern.
+     *
+     * @return True if the input could be resolved
+     */
+    private boolean inputTextEntered() {
+        String text = jtfInputFile.getText().trim();
+
+        try {
+            List<File> files = FileNameUtil.resolveFiles(text);
+
+            if (files.size() == 1 && files.get(0).getPath().equals(new File(text).getPath())) {
+                inputFile = files.get(0);
+                inputFileUpdated();
+            } else {
+                batchInputUpdated(files, text);
+            }
+            return true;
+        } catch (IOException e) {
+            DError.displayError(this, e);
+            return false;
+        }
+    }
+
+    private void batchInputUpdated(List<File> files, String text) {
+        resetToDefault();
+        batchSigning = true;
+
+        // do not sign the signatures of an earlier run again
+        inputFiles = files.stream().filter(file -> !isSignatureFile(file)).toArray(File[]::new);
+
+        inputText = text;
+        jtfInputFile.setText(text);
+        jtfInputFile.setCaretPosition(0);
+        updateControls();
+    }
+
+    private static boolean isSignatureFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        return name.endsWith(".p7s") || name.endsWith(".p7m");
+    }
+
     /**
      * Get output file
      */
@@ -485,12 +641,34 @@ public class DSignFile extends JEscDialog {
             }
         }
 
-        jtfInputFile.setText(inputFile.getAbsolutePath());
+        inputText = inputFile.getAbsolutePath();
+        jtfInputFile.setText(inputText);
         jtfInputFile.setCaretPosition(0);
         updateControls();
     }
 
     private void updateOutputFile() {
+        jtfOutputFile.setEnabled(!batchSigning);
+        jbOutputFileBrowse.setEnabled(!batchSigning);
+
+        if (batchSigning) {
+            // the signatures are written next to the signed files
+            String extension = detachedSignature ? ".p7s" : ".p7m";
+            outputFiles = new ArrayList<>();
+            for (File file : inputFiles) {
+                outputFiles.add(new File(file.getAbsolutePath() + extension));
+            }
+
+            jtfOutputFile.setText(MessageFormat.format(res.getString("DSignFile.BatchOutputFiles.text"),
+                                                       outputFiles.size(), extension));
+            jtfOutputFile.setCaretPosition(0);
+            return;
+        }
+
+        if (inputFile == null) {
+            return;
+        }
+
         if (!outputFileChosen) {
             String addedExtension = "";
 
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.cert.X509Certificate;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+
+import org.kse.crypto.signing.CmsSigner;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.error.DError;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * <h1>File Signing</h1> The class signs a batch of files, each into its own
+ * CMS signature file.
+ * <p>
+ * The user may cancel at any time by pressing the cancel button.
+ */
+public class DSignFileSigning extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+
+    private JLabel jlSignFile;
+    private JProgressBar jpbSignFile;
+    private JButton jbCancel;
+
+    private Map<String, String> fileExceptions;
+    private File[] inputFiles;
+    private List<File> outputFiles;
+    private PrivateKey privateKey;
+    private X509Certificate[] certs;
+    private boolean detachedSignature;
+    private boolean outputPem;
+    private SignatureType signatureType;
+    private String tsaUrl;
+    private Provider provider;
+
+    private final AtomicInteger signedFiles = new AtomicInteger();
+    private final AtomicLong signedBytes = new AtomicLong();
+    private long elapsedMillis;
+
+    private Thread signerThread;
+    private boolean successStatus = true;
+
+    /**
+     * Creates a new DSignFileSigning dialog.
+     *
+     * @param parent            The parent frame
+     * @param inputFiles        The files to sign
+     * @param outputFiles       The signature file for each file to sign
+     * @param privateKey        The private key to use for signing
+     * @param certs             The certificate chain for the private key
+     * @param detachedSignature True if the signatures are to be detached
+     * @param outputPem         True if the signatures are to be PEM encoded
+     * @param signatureType     The signature type to use for signing
+     * @param tsaUrl            An optional TSA URL for adding time stamp tokens
+     * @param provider          The security provider to use
+     */
+    public DSignFileSigning(JFrame parent, File[] inputFiles, List<File> outputFiles, PrivateKey privateKey,
+                            X509Certificate[] certs, boolean detachedSignature, boolean outputPem,
+                            SignatureType signatureType, String tsaUrl, Provider provider) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.inputFiles = inputFiles;
+        this.outputFiles = outputFiles;
+        this.privateKey = privateKey;
+        this.certs = certs;
+        this.detachedSignature = detachedSignature;
+        this.outputPem = outputPem;
+        this.signatureType = signatureType;
+        this.tsaUrl = tsaUrl;
+        this.provider = provider;
+        initComponents();
+    }
+
+    /**
+     * Initializes the dialogue panel and associated elements
+     */
+    private void initComponents() {
+
+        jlSignFile = new JLabel();
+
+        jpbSignFile = new JProgressBar(0, inputFiles.length);
+        jpbSignFile.setIndeterminate(false);
+
+        updateProgress(0);
+
+        jbCancel = new JButton(res.getString("DSignFileSigning.jbCancel.text"));
+        jbCancel.addActionListener(evt -> cancelPressed());
+        // Need to use WHEN_FOCUSED since the cancel button will always have focus.
+        jbCancel.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        Container pane = getContentPane();
+        pane.setLayout(new MigLayout("insets dialog, fill", "[]", "[]unrel"));
+        pane.add(jlSignFile, "wrap");
+        pane.add(jpbSignFile, "growx, wrap");
+        pane.add(jbCancel, "tag Cancel");
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setTitle(res.getString("DSignFileSigning.Title"));
+        setResizable(false);
+
+        pack();
+    }
+
+    /**
+     * Start signing in a separate thread.
+     */
+    public void startDSignFileSigning() {
+        signerThread = new Thread(new SignFiles());
+        signerThread.setPriority(Thread.MIN_PRIORITY);
+        signerThread.start();
+    }
+
+    /**
+     * Returns the current success status
+     *
+     * @return successStatus The success status boolean
+     */
+    public boolean isSuccessful() {
+        return successStatus;
+    }
+
+    /**
+     * Calls the close dialogue, Sets the success value to false
+     */
+    private void cancelPressed() {
+        if ((signerThread != null) && (signerThread.isAlive())) {
+            signerThread.interrupt();
+        }
+        successStatus = false;
+        closeDialog();
+    }
+
+    /**
+     * Closes the dialogue
+     */
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    /**
+     * Get the generated errors during signing.
+     *
+     * @return Map of the generated signing errors.
+     */
+    public Map<String, String> getFileExceptions() {
+        return fileExceptions;
+    }
+
+    /**
+     * Get the number of files that have been signed successfully.
+     *
+     * @return Number of signed files
+     */
+    public int getSignedFiles() {
+        return signedFiles.get();
+    }
+
+    /**
+     * Get the total size of the files that have been signed successfully.
+     *
+     * @return Number of signed bytes
+     */
+    public long getSignedBytes() {
+        return signedBytes.get();
+    }
+
+    /**
+     * Get the time it took to sign all files.
+     *
+     * @return Elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Signs the files concurrently with a bounded number of threads that share
+     * the private key and certificate chain. The content of each file is
+     * streamed, so that large files do not have to fit into memory. Time stamp
+     * requests of all threads go through the shared connections of the
+     * time stamping client.
+     * <p>
+     * Errors generated during the signing are set to the map.
+     */
+    private class SignFiles implements Runnable {
+        @Override
+        public void run() {
+            BatchSigner batchSigner = new BatchSigner("KSE File Signing", provider);
+            fileExceptions = batchSigner.getFileExceptions();
+
+            long start = System.currentTimeMillis();
+
+            try {
+                batchSigner.sign(inputFiles, outputFiles, this::signFile, DSignFileSigning.this::updateProgress);
+
+                elapsedMillis = System.currentTimeMillis() - start;
+
+                SwingUtilities.invokeLater(() -> {
+                    if (DSignFileSigning.this.isShowing()) {
+                        closeDialog();
+                    }
+                });
+            } catch (InterruptedException ex) {
+                // cancelled, the dialog has already been closed
+                Thread.currentThread().interrupt();
+            } catch (final Exception ex) {
+                SwingUtilities.invokeLater(() -> {
+                    if (DSignFileSigning.this.isShowing()) {
+                        DError dError = new DError(DSignFileSigning.this, ex);
+                        dError.setLocationRelativeTo(DSignFileSigning.this);
+                        dError.setVisible(true);
+                        closeDialog();
+                    }
+                });
+            }
+        }
+
+        private void signFile(File inputFile, File outputFile) throws Exception {
+            long size = inputFile.length();
+
+            CmsSigner.sign(inputFile, outputFile, privateKey, certs, detachedSignature, outputPem, signatureType,
+                           tsaUrl, provider, bytes -> {
+                    });
+
+            signedFiles.incrementAndGet();
+            signedBytes.addAndGet(size);
+        }
+    }
+
+    private void updateProgress(int doneFiles) {
+        jpbSignFile.setValue(doneFiles);
+        jlSignFile.setText(MessageFormat.format(res.getString("DSignFileSigning.jlSignFile.text"), doneFiles,
+                                                inputFiles.length));
+    }
+}
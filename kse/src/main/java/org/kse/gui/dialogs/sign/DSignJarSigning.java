@@ -30,7 +30,7 @@ import java.io.File;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
+import java.text.MessageFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -110,11 +110,13 @@ public class DSignJarSigning extends JEscDialog {
      */
     private void initComponents() {
 
-        jlSignJar = new JLabel(res.getString("DSignJarSigning.jlSignJar.text"));
+        jlSignJar = new JLabel();
 
         jpbSignJar = new JProgressBar(0, inputJarFiles.length);
         jpbSignJar.setIndeterminate(false);
 
+        updateProgress(0);
+
         jbCancel = new JButton(res.getString("DSignJarSigning.jbCancel.text"));
         jbCancel.addActionListener(evt -> cancelPressed());
         // Need to use WHEN_FOCUSED since the cancel button will always have focus.
@@ -198,39 +200,28 @@ public class DSignJarSigning extends JEscDialog {
     /**
      * Generates the Jar signing
      * <p>
-     * Signs the jars.
+     * Signs the jars concurrently with a bounded number of threads that share
+     * the private key and certificate chain.
      * <p>
      * Errors generated during the signing are set to the map.
      */
     private class signJars implements Runnable {
         @Override
         public void run() {
+            BatchSigner batchSigner = new BatchSigner("KSE JAR Signing", provider);
+            fileExceptions = batchSigner.getFileExceptions();
+
             try {
-                // set new hashmap
-                fileExceptions = new HashMap<>();
-                for (int i = 0; i < inputJarFiles.length; i++) {
-                    try {
-                        if (inputJarFiles[i].equals(outputJarFiles.get(i))) {
-                            JarSigner.sign(inputJarFiles[i], privateKey, certs, signatureType, signatureName, signer,
-                                           digestType, tsaUrl, provider);
-                        } else {
-                            JarSigner.sign(inputJarFiles[i], outputJarFiles.get(i), privateKey, certs, signatureType,
-                                           signatureName, signer, digestType, tsaUrl, provider);
-                        }
-                    }
-                    // Add any jar sign exceptions to the map
-                    catch (Exception e) {
-                        fileExceptions.put(inputJarFiles[i].getName(), e.toString());
-                    }
-                    // update the progress bar
-                    jpbSignJar.setValue(i);
-                }
+                batchSigner.sign(inputJarFiles, outputJarFiles, this::signJar, DSignJarSigning.this::updateProgress);
 
                 SwingUtilities.invokeLater(() -> {
                     if (DSignJarSigning.this.isShowing()) {
                         closeDialog();
                     }
                 });
+            } catch (InterruptedException ex) {
+                // cancelled, the dialog has already been closed
+                Thread.currentThread().interrupt();
             } catch (final Exception ex) {
                 SwingUtilities.invokeLater(() -> {
                     if (DSignJarSigning.this.isShowing()) {
@@ -242,5 +233,21 @@ public class DSignJarSigning extends JEscDialog {
                 });
             }
         }
+
+        private void signJar(File inputJarFile, File outputJarFile) throws Exception {
+            if (inputJarFile.equals(outputJarFile)) {
+                JarSigner.sign(inputJarFile, privateKey, certs, signatureType, signatureName, signer, digestType,
+                               tsaUrl, provider);
+            } else {
+                JarSigner.sign(inputJarFile, outputJarFile, privateKey, certs, signatureType, signatureName, signer,
+                               digestType, tsaUrl, provider);
+            }
+        }
+    }
+
+    private void updateProgress(int signedJars) {
+        jpbSignJar.setValue(signedJars);
+        jlSignJar.setText(MessageFormat.format(res.getString("DSignJarSigning.jlSignJar.text"), signedJars,
+                                               inputJarFiles.length));
     }
 }
@@ -33,20 +33,17 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SignatureException;
-import java.security.cert.CRLException;
 import java.security.cert.CRLReason;
 import java.security.cert.CertificateException;
-import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.Set;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -71,12 +68,15 @@ import org.kse.crypto.CryptoException;
 import org.kse.crypto.filetype.CryptoFileType;
 import org.kse.crypto.filetype.CryptoFileUtil;
 import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+import org.kse.crypto.x509.X509CrlHeader;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
 import org.kse.gui.PlatformUtil;
 import org.kse.gui.dialogs.RevokedCertsTableCellRend;
 import org.kse.gui.dialogs.RevokedCertsTableModel;
+import org.kse.gui.error.DError;
 import org.kse.gui.error.DProblem;
 import org.kse.gui.error.Problem;
 import org.kse.gui.table.ToolTipTable;
@@ -102,8 +102,12 @@ public class JRevokedCerts extends JPanel {
     private KseFrame kseFrame;
 
     private Map<BigInteger, RevokedEntry> mapRevokedEntry;
+    private X509CrlEntryIndex previousEntries;
+    private List<X509CrlHeader> previousCrls = new ArrayList<>();
     private X509Certificate caCert;
-    private X509CRL crlOld;
+    private X509CrlHeader crlOld;
+    private X509CrlHeader crlDelta;
+    private X509CrlHeader baseCrl;
 
     /**
      * Creates a new JRevokedCerts
@@ -112,13 +116,16 @@ public class JRevokedCerts extends JPanel {
      * @param kseFrame KeyStore Explorer application frame
      * @param caCert   certificate signing the list of revoked certificates
      * @param crlOld   CRL old
+     * @param crlDelta Delta CRL issued for the old CRL or null if there is none
      */
-    public JRevokedCerts(JFrame parent, KseFrame kseFrame, X509Certificate caCert, X509CRL crlOld) {
+    public JRevokedCerts(JFrame parent, KseFrame kseFrame, X509Certificate caCert, X509CrlHeader crlOld,
+                         X509CrlHeader crlDelta) {
         super();
         this.parent = parent;
         this.kseFrame = kseFrame;
         this.caCert = caCert;
         this.crlOld = crlOld;
+        this.crlDelta = crlDelta;
         this.mapRevokedEntry = new HashMap<>();
         initComponents();
     }
@@ -182,7 +189,11 @@ public class JRevokedCerts extends JPanel {
         jbRevKeyStore.addActionListener(evt -> revKeyStorePressed());
         jbRevLoadCrl.addActionListener(evt -> revLoadCrlPressed());
 
-        populate();
+        populate(crlOld);
+        if (!previousCrls.isEmpty()) {
+            baseCrl = crlOld;
+        }
+        populate(crlDelta);
 
         this.setLayout(new BorderLayout(5, 5));
         this.setPreferredSize(new Dimension(100, 200));
@@ -192,26 +203,19 @@ public class JRevokedCerts extends JPanel {
         this.setBorder(new CompoundBorder(new EtchedBorder(), new EmptyBorder(5, 5, 5, 5)));
     }
 
-    private void populate() {
-        if (crlOld != null) {
-            Set<? extends X509CRLEntry> revokedCertsSet = crlOld.getRevokedCertificates();
-            if (revokedCertsSet == null) {
-                revokedCertsSet = new HashSet<>();
-            }
-            X509CRLEntry[] revokedCerts = revokedCertsSet.toArray(X509CRLEntry[]::new);
-            for (X509CRLEntry entry : revokedCerts) {
-                if (entry.getRevocationReason() == null) {
-                    mapRevokedEntry.put(entry.getSerialNumber(),
-                                        new RevokedEntry(entry.getSerialNumber(), entry.getRevocationDate(),
-                                                         CRLReason.UNSPECIFIED));
-                } else {
-                    mapRevokedEntry.put(entry.getSerialNumber(),
-                                        new RevokedEntry(entry.getSerialNumber(), entry.getRevocationDate(),
-                                                         entry.getRevocationReason()));
-                }
+    private void populate(X509CrlHeader crl) {
+        if (crl != null) {
+            try {
+                X509CrlEntryIndex crlEntries = crl.getEntries();
+                previousEntries = previousEntries == null ? crlEntries : previousEntries.merge(crlEntries);
+                previousCrls.add(crl);
+            } catch (CryptoException e) {
+                DError.displayError(parent, e);
+                return;
             }
+
             RevokedCertsTableModel revokedCertsTableModel = (RevokedCertsTableModel) jtRevokedCerts.getModel();
-            revokedCertsTableModel.load(mapRevokedEntry);
+            revokedCertsTableModel.load(previousEntries, mapRevokedEntry);
             if (revokedCertsTableModel.getRowCount() > 0) {
                 jtRevokedCerts.changeSelection(0, 0, false, false);
             }
@@ -232,7 +236,7 @@ public class JRevokedCerts extends JPanel {
 
         try {
             cerRev.verify(caCert.getPublicKey());
-            if (mapRevokedEntry.containsKey(cerRev.getSerialNumber())) {
+            if (isRevoked(cerRev.getSerialNumber())) {
                 JOptionPane.showMessageDialog(parent, res.getString("JRevokedCerts.certWasRevoked.message"),
                                               res.getString("DSignCrl.Title"), JOptionPane.WARNING_MESSAGE);
             } else {
@@ -245,7 +249,7 @@ public class JRevokedCerts extends JPanel {
                     mapRevokedEntry.put(cerRev.getSerialNumber(),
                                         new RevokedEntry(cerRev.getSerialNumber(), revocationDate, reason));
                     RevokedCertsTableModel revokedCertsTableModel = (RevokedCertsTableModel) jtRevokedCerts.getModel();
-                    revokedCertsTableModel.load(mapRevokedEntry);
+                    revokedCertsTableModel.load(previousEntries, mapRevokedEntry);
                 }
             }
         } catch (InvalidKeyException | CertificateException | NoSuchAlgorithmException | NoSuchProviderException | SignatureException e) {
@@ -254,6 +258,11 @@ public class JRevokedCerts extends JPanel {
         }
     }
 
+    private boolean isRevoked(BigInteger serialNumber) {
+        return mapRevokedEntry.containsKey(serialNumber) ||
+               (previousEntries != null && previousEntries.indexOf(serialNumber) != -1);
+    }
+
     private void revKeyStorePressed() {
         DListCertificatesKS dialog = new DListCertificatesKS(parent, kseFrame);
         dialog.setLocationRelativeTo(parent);
@@ -267,13 +276,11 @@ public class JRevokedCerts extends JPanel {
     private void revLoadCrlPressed() {
         File file = chooseFileCrl();
         if (file != null) {
-            X509CRL loadCrl = openFileCrl(file);
+            X509CrlHeader loadCrl = openFileCrl(file);
             if (loadCrl != null) {
-                try {
-                    loadCrl.verify(caCert.getPublicKey());
-                    crlOld = loadCrl;
-                    populate();
-                } catch (InvalidKeyException | CRLException | NoSuchAlgorithmException | NoSuchProviderException | SignatureException e) {
+                if (isIssuedByCa(loadCrl)) {
+                    populate(loadCrl);
+                } else {
                     JOptionPane.showMessageDialog(parent, res.getString("JRevokedCerts.crlNotSignedCA.message"),
                                                   res.getString("DSignCrl.Title"), JOptionPane.WARNING_MESSAGE);
                 }
@@ -281,11 +288,19 @@ public class JRevokedCerts extends JPanel {
         }
     }
 
-    private X509CRL openFileCrl(File file) {
+    private boolean isIssuedByCa(X509CrlHeader crl) {
+        try {
+            return crl.verify(caCert.getPublicKey());
+        } catch (CryptoException e) {
+            return false;
+        }
+    }
+
+    private X509CrlHeader openFileCrl(File file) {
         try {
             CryptoFileType fileType = CryptoFileUtil.detectFileType(file);
             if (fileType == CryptoFileType.CRL) {
-                return X509CertUtil.loadCRL(Files.readAllBytes(file.toPath()));
+                return X509CrlHeader.create(file);
             } else {
                 JOptionPane.showMessageDialog(parent, MessageFormat.format(
                                                       res.getString("JRevokedCerts.NotCrlFile.message"), file),
@@ -409,7 +424,9 @@ public class JRevokedCerts extends JPanel {
     }
 
     /**
-     * Exposes a read-only view of the revoked certificates map.
+     * Exposes a read-only view of the revoked certificates map. It only
+     * contains the certificates that have been revoked in addition to the
+     * entries of the previous CRLs.
      *
      * @return An unmodifiable map of revoked certificate.
      */
@@ -417,4 +434,24 @@ public class JRevokedCerts extends JPanel {
         return Collections.unmodifiableMap(mapRevokedEntry);
     }
 
+    /**
+     * Get the previous CRLs whose entries were loaded, in the order they were
+     * loaded.
+     *
+     * @return An unmodifiable list of the previous CRLs
+     */
+    public List<X509CrlHeader> getPreviousCrls() {
+        return Collections.unmodifiableList(previousCrls);
+    }
+
+    /**
+     * Get the old CRL, which is the base CRL for delta CRLs.
+     *
+     * @return The old CRL or null if there is none or its entries could not be
+     *         read
+     */
+    public X509CrlHeader getBaseCrl() {
+        return baseCrl;
+    }
+
 }
@@ -55,6 +55,7 @@ import org.kse.gui.KeyStoreTableColumns;
 import org.kse.gui.PlatformUtil;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.password.PasswordQualityConfig;
+import org.kse.gui.preferences.data.HistorySettings;
 import org.kse.gui.preferences.data.KsePreferences;
 import org.kse.gui.preferences.data.PasswordGeneratorSettings;
 import org.kse.gui.preferences.data.PasswordManagerSettings;
@@ -435,6 +436,14 @@ public class DPreferences extends JEscDialog {
         return ((Number) panelDisplayColumns.getJspExpirationWarnDays().getValue()).intValue();
     }
 
+    /**
+     * Get number of threads for computing the column values of the main table
+     * @return Number of threads, 0 for one per processor
+     */
+    public int getTableLoadingThreads() {
+        return ((Number) panelDisplayColumns.getJspTableLoadingThreads().getValue()).intValue();
+    }
+
     /**
      * Get PKCS12 encryption settings
      * @return P12 encryption settings
@@ -460,6 +469,20 @@ public class DPreferences extends JEscDialog {
         return ((Number) panelUserInterface.getJspSnRandomBytes().getValue()).intValue();
     }
 
+    /**
+     * Get the memory budget of the undo/redo history
+     *
+     * @return History settings
+     */
+    public HistorySettings getHistorySettings() {
+        HistorySettings historySettings = new HistorySettings();
+        historySettings.setMaxStatesInMemory(
+                ((Number) panelUserInterface.getJspHistoryMaxStates().getValue()).intValue());
+        historySettings.setMaxMemoryInMegabytes(
+                ((Number) panelUserInterface.getJspHistoryMaxMemory().getValue()).intValue());
+        return historySettings;
+    }
+
     /**
      * Check if columns have changed
      *
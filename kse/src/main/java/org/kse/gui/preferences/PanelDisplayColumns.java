@@ -61,6 +61,7 @@ class PanelDisplayColumns {
     private JCheckBox jcbEnableFingerprint;
     private JComboBox<DigestType> jcbFingerprintAlg;
     private JSpinner jspExpirationWarnDays;
+    private JSpinner jspTableLoadingThreads;
 
     PanelDisplayColumns(DPreferences parent, KsePreferences preferences) {
         this.parent = parent;
@@ -165,6 +166,10 @@ class PanelDisplayColumns {
         editor.getTextField().setEnabled(true);
         editor.getTextField().setEditable(false);
 
+        JLabel jlTableLoadingThreads = new JLabel(res.getString("DPreferences.jlTableLoadingThreads.text"));
+        jspTableLoadingThreads = new JSpinner(new SpinnerNumberModel(preferences.getTableLoadingThreads(), 0, 64, 1));
+        jspTableLoadingThreads.setToolTipText(res.getString("DPreferences.jspTableLoadingThreads.tooltip"));
+
         // layout
         JPanel jpDisplayColumns = new JPanel();
         jpDisplayColumns.setLayout(new MigLayout("insets dialog", "20lp[]20lp[]", "20lp[]rel[]"));
@@ -190,7 +195,10 @@ class PanelDisplayColumns {
         jpDisplayColumns.add(jcbFingerprintAlg, "wrap para");
         MiGUtil.addSeparator(jpDisplayColumns, res.getString("DPreferences.certificateExpiry.separator"));
         jpDisplayColumns.add(jlExpirationWarnDays, "left, spanx, split");
-        jpDisplayColumns.add(jspExpirationWarnDays, "wrap");
+        jpDisplayColumns.add(jspExpirationWarnDays, "wrap para");
+        MiGUtil.addSeparator(jpDisplayColumns, res.getString("DPreferences.tableLoading.separator"));
+        jpDisplayColumns.add(jlTableLoadingThreads, "left, spanx, split");
+        jpDisplayColumns.add(jspTableLoadingThreads, "wrap");
 
         return jpDisplayColumns;
     }
@@ -275,6 +283,10 @@ class PanelDisplayColumns {
         return jspExpirationWarnDays;
     }
 
+    JSpinner getJspTableLoadingThreads() {
+        return jspTableLoadingThreads;
+    }
+
     private void populateFingerprintAlgs(DigestType algorithm) {
         DigestType[] digestAlgs = DigestType.values();
         for (int i = 0; i < digestAlgs.length; i++) {
@@ -37,6 +37,7 @@ import javax.swing.UIManager;
 import org.kse.gui.MiGUtil;
 import org.kse.gui.PlatformUtil;
 import org.kse.gui.preferences.data.AutoUpdateCheckSettings;
+import org.kse.gui.preferences.data.HistorySettings;
 import org.kse.gui.preferences.data.KsePreferences;
 import org.kse.gui.preferences.data.LanguageItem;
 import org.kse.gui.preferences.data.Pkcs12EncryptionSetting;
@@ -64,6 +65,8 @@ class PanelUserInterface {
     private JComboBox<Pkcs12EncryptionSetting> jcbPkcs12Encryption;
     private JComboBox<RngTypeSetting> jcbRngType;
     private JSpinner jspSnRandomBytes;
+    private JSpinner jspHistoryMaxStates;
+    private JSpinner jspHistoryMaxMemory;
 
     private JCheckBox jcbEnableAutoUpdateChecks;
     private JSpinner jspAutoUpdateCheckInterval;
@@ -165,6 +168,17 @@ class PanelUserInterface {
         jspSnRandomBytes.setToolTipText(res.getString("DPreferences.jlSnRandomBytes.tooltip"));
         JLabel jlSnRandomBytesPostfix = new JLabel(res.getString("DPreferences.jlSnRandomBytesPostfix.text"));
 
+        JLabel jlHistory = new JLabel(res.getString("DPreferences.jlHistory.text"));
+        HistorySettings historySettings = preferences.getHistorySettings();
+        JLabel jlHistoryMaxStates = new JLabel(res.getString("DPreferences.jlHistoryMaxStates.text"));
+        jspHistoryMaxStates = new JSpinner(new SpinnerNumberModel(historySettings.getMaxStatesInMemory(), 0, 9999, 1));
+        jspHistoryMaxStates.setToolTipText(res.getString("DPreferences.jspHistoryMaxStates.tooltip"));
+        JLabel jlHistoryMaxMemory = new JLabel(res.getString("DPreferences.jlHistoryMaxMemory.text"));
+        jspHistoryMaxMemory = new JSpinner(
+                new SpinnerNumberModel(historySettings.getMaxMemoryInMegabytes(), 0, 99999, 16));
+        jspHistoryMaxMemory.setToolTipText(res.getString("DPreferences.jspHistoryMaxMemory.tooltip"));
+        JLabel jlHistoryMaxMemoryPostfix = new JLabel(res.getString("DPreferences.jlHistoryMaxMemoryPostfix.text"));
+
         // layout
         JPanel jpUI = new JPanel();
         jpUI.setLayout(new MigLayout("insets dialog", "20lp[][]", "20lp[][]"));
@@ -191,7 +205,13 @@ class PanelUserInterface {
         jpUI.add(jcbRngType, "gapx indent, spanx, wrap unrel");
         MiGUtil.addSeparator(jpUI, jlSnRandomBytes.getText());
         jpUI.add(jspSnRandomBytes, "gapx indent, split 2");
-        jpUI.add(jlSnRandomBytesPostfix, "");
+        jpUI.add(jlSnRandomBytesPostfix, "wrap unrel");
+        MiGUtil.addSeparator(jpUI, jlHistory.getText());
+        jpUI.add(jlHistoryMaxStates, "gapx indent, spanx, split 2");
+        jpUI.add(jspHistoryMaxStates, "wrap");
+        jpUI.add(jlHistoryMaxMemory, "gapx indent, spanx, split 3");
+        jpUI.add(jspHistoryMaxMemory, "");
+        jpUI.add(jlHistoryMaxMemoryPostfix, "");
 
         jcbEnableAutoUpdateChecks
                 .addItemListener(evt -> jspAutoUpdateCheckInterval.setEnabled(jcbEnableAutoUpdateChecks.isSelected()));
@@ -303,6 +323,14 @@ class PanelUserInterface {
         return jspSnRandomBytes;
     }
 
+    JSpinner getJspHistoryMaxStates() {
+        return jspHistoryMaxStates;
+    }
+
+    JSpinner getJspHistoryMaxMemory() {
+        return jspHistoryMaxMemory;
+    }
+
     JCheckBox getJcbEnableAutoUpdateChecks() {
         return jcbEnableAutoUpdateChecks;
     }
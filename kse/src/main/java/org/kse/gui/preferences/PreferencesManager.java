@@ -55,6 +55,7 @@ public class PreferencesManager {
     private static final String CONFIG_DOTTED_BASE_DIR = ".kse";
     private static final String CONFIG_FILE_NAME = "config.json";
     private static final String PASSWORDS_FILE_NAME = "keystore-passwords.json";
+    private static final String REVOCATION_CACHE_DIR_NAME = "revocation-cache";
     private static final String ENV_VAR_CONFIG_DIR = "KSE_CONFIG_DIR";
 
     private static KsePreferences ksePreferences;
@@ -144,6 +145,13 @@ public class PreferencesManager {
         return new File(determineConfigFilePath().getParentFile(), PASSWORDS_FILE_NAME).getCanonicalFile();
     }
 
+    /**
+     * Returns the directory for cached OCSP responses and CRLs, which is located next to the config file
+     */
+    public static File getRevocationCacheDir() throws IOException {
+        return new File(determineConfigFilePath().getParentFile(), REVOCATION_CACHE_DIR_NAME).getCanonicalFile();
+    }
+
     private static String getAppDataConfigDir() {
         String dir = System.getenv("APPDATA");
         if (dir == null || dir.trim().isEmpty()) {
@@ -67,6 +67,7 @@ public class KsePreferences {
     private String language = LanguageItem.SYSTEM_LANGUAGE;
     private KeyStoreTableColumns keyStoreTableColumns = new KeyStoreTableColumns();
     private int expiryWarnDays = 0;
+    private int tableLoadingThreads = 0;
     private boolean showHiddenFilesEnabled = true;
     private boolean nativeFileChooserEnabled = false;
     private Pkcs12EncryptionSetting pkcs12EncryptionSetting = Pkcs12EncryptionSetting.strong;
@@ -82,6 +83,7 @@ public class KsePreferences {
     // KeyPairType, but it does not work at runtime due to type erasure since the hashCodes
     // don't match. Use String since it matches jackson-jr and is convenient.
     private Map<String, SignatureType> signatureTypes = new HashMap<>();
+    private HistorySettings historySettings = new HistorySettings();
 
     // auto-generated getters/setters
 
@@ -237,6 +239,14 @@ public class KsePreferences {
         this.expiryWarnDays = expiryWarnDays;
     }
 
+    public int getTableLoadingThreads() {
+        return tableLoadingThreads;
+    }
+
+    public void setTableLoadingThreads(int tableLoadingThreads) {
+        this.tableLoadingThreads = tableLoadingThreads;
+    }
+
     public boolean isShowHiddenFilesEnabled() {
         return showHiddenFilesEnabled;
     }
@@ -384,4 +394,16 @@ public class KsePreferences {
     public void setPasswordManagerSettings(PasswordManagerSettings passwordManagerSettings) {
         this.passwordManagerSettings = passwordManagerSettings;
     }
+
+    public HistorySettings getHistorySettings() {
+        return historySettings;
+    }
+
+    public void setHistorySettings(HistorySettings historySettings) {
+        // Users upgrading from a previous version of KSE won't have these
+        // settings. Ignore the incoming null and use the defaults.
+        if (historySettings != null) {
+            this.historySettings = historySettings;
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import org.kse.crypto.CryptoException;
+
+/**
+ * KeyStore used for the states in the undo/redo history. Snapshots of it share
+ * all unchanged entries, so that creating the next state does not require
+ * serializing and re-loading the whole KeyStore.
+ */
+public class CopyOnWriteKeyStore extends KeyStore {
+    private final CopyOnWriteKeyStoreSpi spi;
+
+    private CopyOnWriteKeyStore(CopyOnWriteKeyStoreSpi spi, KeyStore base) {
+        super(spi, base.getProvider(), base.getType());
+        this.spi = spi;
+    }
+
+    /**
+     * Take a snapshot of a KeyStore. Subsequent changes to the snapshot do not
+     * affect the original and vice versa. If the supplied KeyStore is not a
+     * CopyOnWriteKeyStore it becomes the shared base of all further snapshots
+     * and must not be modified directly anymore.
+     *
+     * @param keyStore KeyStore to take snapshot of
+     * @return Snapshot
+     * @throws CryptoException If the snapshot could not be created
+     */
+    public static CopyOnWriteKeyStore snapshot(KeyStore keyStore) throws CryptoException {
+        try {
+            CopyOnWriteKeyStoreSpi spi;
+            KeyStore base;
+
+            if (keyStore instanceof CopyOnWriteKeyStore) {
+                CopyOnWriteKeyStore cowKeyStore = (CopyOnWriteKeyStore) keyStore;
+                spi = cowKeyStore.spi.fork();
+                base = cowKeyStore.spi.getBase();
+            } else {
+                spi = new CopyOnWriteKeyStoreSpi(keyStore);
+                base = keyStore;
+            }
+
+            CopyOnWriteKeyStore snapshot = new CopyOnWriteKeyStore(spi, base);
+            snapshot.load(null, null);
+            return snapshot;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoSnapshotKeyStore.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Recreate a snapshot from changes serialized with
+     * {@link #exportChanges()}. The snapshot shares the supplied base KeyStore
+     * with all other snapshots of it.
+     *
+     * @param base    Base KeyStore the changes were made to
+     * @param changes Serialized changes
+     * @return Snapshot
+     * @throws CryptoException If the snapshot could not be created
+     */
+    static CopyOnWriteKeyStore restore(KeyStore base, byte[] changes) throws CryptoException {
+        try {
+            CopyOnWriteKeyStore snapshot = new CopyOnWriteKeyStore(CopyOnWriteKeyStoreSpi.importChanges(base, changes),
+                                                                   base);
+            snapshot.load(null, null);
+            return snapshot;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoRestoreKeyStoreState.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Serialize the changes relative to the base KeyStore, i.e. the part of
+     * the snapshot that is not shared with other snapshots.
+     *
+     * @return Serialized changes, which include entry passwords in plain text
+     * @throws CryptoException If the changes could not be serialized
+     */
+    byte[] exportChanges() throws CryptoException {
+        return spi.exportChanges();
+    }
+
+    /**
+     * Get the number of entries that have been changed relative to the base
+     * KeyStore shared with other snapshots.
+     *
+     * @return Number of changed entries
+     */
+    public int getChangeCount() {
+        return spi.getChangeCount();
+    }
+
+    /**
+     * Get the KeyStore whose unchanged entries this snapshot shares.
+     *
+     * @return Base KeyStore
+     */
+    KeyStore getBase() {
+        return spi.getBase();
+    }
+
+    /**
+     * Overwrite the passwords of the changed entries, which are kept in memory
+     * to be able to materialize the KeyStore. Afterwards the snapshot and all
+     * snapshots sharing its changes cannot be materialized or stored anymore.
+     */
+    void nullPasswords() {
+        spi.nullPasswords();
+    }
+
+    /**
+     * Create a regular, standalone KeyStore with the same content. This costs
+     * a full store and load of the shared base KeyStore.
+     *
+     * @return KeyStore
+     * @throws CryptoException If the KeyStore could not be created
+     */
+    public KeyStore materialize() throws CryptoException {
+        return spi.materialize();
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.UnrecoverableEntryException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+
+/**
+ * KeyStoreSpi that layers a persistent map of changed entries on top of an
+ * immutable base KeyStore. Unchanged entries are read straight from the base,
+ * changed ones from a single-entry KeyStore of the same type that is created
+ * when the entry is set. Forking shares both the base and the change map, so
+ * creating the next history state and editing one entry in it is independent
+ * of the size of the KeyStore.
+ */
+class CopyOnWriteKeyStoreSpi extends KeyStoreSpi {
+    private static final char[] HOLDER_PASSWORD = new char[0];
+
+    private final KeyStore base;
+    private final KeyStoreType type;
+    private PersistentHashMap<String, EntryRecord> changes;
+    private int size;
+
+    /**
+     * Construct a spi without changes over the supplied base KeyStore.
+     *
+     * @param base Base KeyStore, must not be modified afterwards
+     * @throws KeyStoreException If the base KeyStore is not initialized
+     */
+    CopyOnWriteKeyStoreSpi(KeyStore base) throws KeyStoreException {
+        this(base, PersistentHashMap.empty(), base.size());
+    }
+
+    private CopyOnWriteKeyStoreSpi(KeyStore base, PersistentHashMap<String, EntryRecord> changes, int size) {
+        this.base = base;
+        this.type = KeyStoreType.resolveJce(base.getType());
+        this.changes = changes;
+        this.size = size;
+    }
+
+    /**
+     * Create an independent spi with the same content as this one.
+     *
+     * @return Fork
+     */
+    CopyOnWriteKeyStoreSpi fork() {
+        return new CopyOnWriteKeyStoreSpi(base, changes, size);
+    }
+
+    /**
+     * Get the number of entries that differ from the base KeyStore.
+     *
+     * @return Number of changed entries
+     */
+    int getChangeCount() {
+        return changes.size();
+    }
+
+    /**
+     * Get the base KeyStore.
+     *
+     * @return Base KeyStore
+     */
+    KeyStore getBase() {
+        return base;
+    }
+
+    /**
+     * Overwrite the entry passwords kept for the changed entries. The records
+     * are shared between forks, so this must only be called when none of them
+     * is going to be materialized or stored anymore.
+     */
+    void nullPasswords() {
+        changes.forEach((normalizedAlias, record) -> record.nullPassword());
+    }
+
+    /**
+     * Create a regular KeyStore of the same type with all changes applied.
+     * <p>
+     * This copies the base KeyStore with a full store and load, i.e. the same
+     * cost as writing and reading the KeyStore file. It is therefore only done
+     * when the KeyStore is saved and never when a history state is created.
+     * </p>
+     *
+     * @return Materialized KeyStore
+     * @throws CryptoException If the KeyStore could not be created
+     */
+    KeyStore materialize() throws CryptoException {
+        KeyStore keyStore = KeyStoreUtil.copy(base);
+
+        try {
+            List<EntryRecord> records = new ArrayList<>();
+            changes.forEach((normalizedAlias, record) -> records.add(record));
+
+            for (EntryRecord record : records) {
+                if (keyStore.containsAlias(record.alias)) {
+                    keyStore.deleteEntry(record.alias);
+                }
+
+                if (!record.isRemoved()) {
+                    record.copyTo(keyStore);
+                }
+            }
+
+            return keyStore;
+        } catch (GeneralSecurityException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoMaterializeKeyStore.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Serialize the changes relative to the base KeyStore. Only the changed
+     * entries are written, so the cost is independent of the size of the base
+     * KeyStore. The result contains the entry passwords in plain text and
+     * must be encrypted before it leaves memory.
+     *
+     * @return Serialized changes
+     * @throws CryptoException If the changes could not be serialized
+     */
+    byte[] exportChanges() throws CryptoException {
+        List<String> normalizedAliases = new ArrayList<>();
+        List<EntryRecord> records = new ArrayList<>();
+        changes.forEach((normalizedAlias, record) -> {
+            normalizedAliases.add(normalizedAlias);
+            records.add(record);
+        });
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeInt(size);
+            dos.writeInt(records.size());
+
+            for (int i = 0; i < records.size(); i++) {
+                EntryRecord record = records.get(i);
+
+                dos.writeUTF(normalizedAliases.get(i));
+                dos.writeUTF(record.alias);
+                dos.writeBoolean(record.isRemoved());
+
+                if (!record.isRemoved()) {
+                    ByteArrayOutputStream holder = new ByteArrayOutputStream();
+                    record.holder.store(holder, HOLDER_PASSWORD);
+                    writeBytes(dos, holder.toByteArray());
+                    writeChars(dos, record.password);
+                    writeBytes(dos, record.protectedKey);
+                }
+            }
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoSpillKeyStoreState.exception.message"), ex);
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Create a spi over the supplied base KeyStore from changes serialized
+     * with {@link #exportChanges()}.
+     *
+     * @param base    Base KeyStore the changes were made to
+     * @param changes Serialized changes
+     * @return Spi
+     * @throws CryptoException If the changes could not be deserialized
+     */
+    static CopyOnWriteKeyStoreSpi importChanges(KeyStore base, byte[] changes) throws CryptoException {
+        CopyOnWriteKeyStoreSpi spi = new CopyOnWriteKeyStoreSpi(base, PersistentHashMap.empty(), 0);
+
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(changes))) {
+            spi.size = dis.readInt();
+            int count = dis.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String normalizedAlias = dis.readUTF();
+                String alias = dis.readUTF();
+                EntryRecord record;
+
+                if (dis.readBoolean()) {
+                    record = EntryRecord.removed(alias);
+                } else {
+                    KeyStore holder = KeyStoreUtil.create(spi.type);
+                    holder.load(new ByteArrayInputStream(readBytes(dis)), HOLDER_PASSWORD);
+
+                    char[] password = readChars(dis);
+                    record = new EntryRecord(holder, password, readBytes(dis));
+                    record.alias = alias;
+
+                    if (password != null) {
+                        Arrays.fill(password, '\u0000');
+                    }
+                }
+
+                spi.changes = spi.changes.put(normalizedAlias, record);
+            }
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoRestoreKeyStoreState.exception.message"), ex);
+        }
+
+        return spi;
+    }
+
+    private static void writeBytes(DataOutputStream dos, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            dos.writeInt(-1);
+        } else {
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeChars(DataOutputStream dos, char[] chars) throws IOException {
+        if (chars == null) {
+            dos.writeInt(-1);
+        } else {
+            dos.writeInt(chars.length);
+            for (char c : chars) {
+                dos.writeChar(c);
+            }
+        }
+    }
+
+    private static char[] readChars(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = dis.readChar();
+        }
+        return chars;
+    }
+
+    private EntryRecord lookup(String alias) {
+        return changes.get(type.normalizeAlias(alias));
+    }
+
+    private static ProviderException baseFailure(KeyStoreException ex) {
+        // The base KeyStore is always initialized, so this cannot happen
+        return new ProviderException(ex);
+    }
+
+    @Override
+    public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmException, UnrecoverableKeyException {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.getKey(alias, password);
+            }
+
+            return record.isRemoved() ? null : record.holder.getKey(record.alias, password);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public Certificate[] engineGetCertificateChain(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.getCertificateChain(alias);
+            }
+
+            return record.isRemoved() ? null : record.holder.getCertificateChain(record.alias);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public Certificate engineGetCertificate(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.getCertificate(alias);
+            }
+
+            return record.isRemoved() ? null : record.holder.getCertificate(record.alias);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public Date engineGetCreationDate(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.getCreationDate(alias);
+            }
+
+            return record.isRemoved() ? null : record.holder.getCreationDate(record.alias);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public KeyStore.Entry engineGetEntry(String alias, KeyStore.ProtectionParameter protParam)
+            throws KeyStoreException, NoSuchAlgorithmException, UnrecoverableEntryException {
+        EntryRecord record = lookup(alias);
+
+        if (record == null) {
+            return base.getEntry(alias, protParam);
+        }
+
+        return record.isRemoved() ? null : record.holder.getEntry(record.alias, protParam);
+    }
+
+    @Override
+    public boolean engineEntryInstanceOf(String alias, Class<? extends KeyStore.Entry> entryClass) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.entryInstanceOf(alias, entryClass);
+            }
+
+            return !record.isRemoved() && record.holder.entryInstanceOf(record.alias, entryClass);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain)
+            throws KeyStoreException {
+        KeyStore holder = createHolder();
+        holder.setKeyEntry(alias, key, password, chain);
+        putRecord(alias, new EntryRecord(holder, password, null));
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+        KeyStore holder = createHolder();
+        holder.setKeyEntry(alias, key, chain);
+        putRecord(alias, new EntryRecord(holder, null, key.clone()));
+    }
+
+    @Override
+    public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+        KeyStore holder = createHolder();
+        holder.setCertificateEntry(alias, cert);
+        putRecord(alias, new EntryRecord(holder, null, null));
+    }
+
+    @Override
+    public void engineSetEntry(String alias, KeyStore.Entry entry, KeyStore.ProtectionParameter protParam)
+            throws KeyStoreException {
+        KeyStore holder = createHolder();
+        holder.setEntry(alias, entry, protParam);
+
+        char[] password = null;
+        if (protParam instanceof KeyStore.PasswordProtection) {
+            password = ((KeyStore.PasswordProtection) protParam).getPassword();
+        }
+
+        putRecord(alias, new EntryRecord(holder, password, null));
+    }
+
+    @Override
+    public void engineDeleteEntry(String alias) throws KeyStoreException {
+        if (!engineContainsAlias(alias)) {
+            return;
+        }
+
+        String normalizedAlias = type.normalizeAlias(alias);
+
+        if (base.containsAlias(alias)) {
+            changes = changes.put(normalizedAlias, EntryRecord.removed(alias));
+        } else {
+            changes = changes.remove(normalizedAlias);
+        }
+
+        size--;
+    }
+
+    @Override
+    public Enumeration<String> engineAliases() {
+        List<String> aliases = new ArrayList<>(size);
+
+        try {
+            for (Enumeration<String> baseAliases = base.aliases(); baseAliases.hasMoreElements(); ) {
+                String alias = baseAliases.nextElement();
+
+                if (lookup(alias) == null) {
+                    aliases.add(alias);
+                }
+            }
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+
+        changes.forEach((normalizedAlias, record) -> {
+            if (!record.isRemoved()) {
+                aliases.add(record.alias);
+            }
+        });
+
+        return Collections.enumeration(aliases);
+    }
+
+    @Override
+    public boolean engineContainsAlias(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            return record == null ? base.containsAlias(alias) : !record.isRemoved();
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public int engineSize() {
+        return size;
+    }
+
+    @Override
+    public boolean engineIsKeyEntry(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.isKeyEntry(alias);
+            }
+
+            return !record.isRemoved() && record.holder.isKeyEntry(record.alias);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public boolean engineIsCertificateEntry(String alias) {
+        EntryRecord record = lookup(alias);
+
+        try {
+            if (record == null) {
+                return base.isCertificateEntry(alias);
+            }
+
+            return !record.isRemoved() && record.holder.isCertificateEntry(record.alias);
+        } catch (KeyStoreException ex) {
+            throw baseFailure(ex);
+        }
+    }
+
+    @Override
+    public String engineGetCertificateAlias(Certificate cert) {
+        for (Enumeration<String> aliases = engineAliases(); aliases.hasMoreElements(); ) {
+            String alias = aliases.nextElement();
+            Certificate entryCert = engineGetCertificate(alias);
+
+            if (entryCert != null && entryCert.equals(cert)) {
+                return alias;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Store the KeyStore. Without changes the base KeyStore is stored as is,
+     * otherwise it is materialized first, which costs an additional store and
+     * load of the base KeyStore.
+     */
+    @Override
+    public void engineStore(OutputStream stream, char[] password)
+            throws IOException, NoSuchAlgorithmException, CertificateException {
+        try {
+            if (changes.isEmpty()) {
+                base.store(stream, password);
+            } else {
+                materialize().store(stream, password);
+            }
+        } catch (KeyStoreException | CryptoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void engineLoad(InputStream stream, char[] password) throws IOException {
+        if (stream != null) {
+            throw new IOException(KeyStoreState.res.getString("NoLoadCopyOnWriteKeyStore.exception.message"));
+        }
+    }
+
+    private KeyStore createHolder() throws KeyStoreException {
+        try {
+            return KeyStoreUtil.create(type);
+        } catch (CryptoException | IOException ex) {
+            throw new KeyStoreException(ex);
+        }
+    }
+
+    private void putRecord(String alias, EntryRecord record) throws KeyStoreException {
+        if (!engineContainsAlias(alias)) {
+            size++;
+        }
+
+        // take the alias as reported by the holder, it may have been normalized
+        record.alias = record.holder.aliases().nextElement();
+
+        changes = changes.put(type.normalizeAlias(alias), record);
+    }
+
+    /**
+     * A changed entry. The holder KeyStore is never modified after the record
+     * has been created, which allows sharing records between forks.
+     */
+    private static class EntryRecord {
+        private String alias;
+        private final KeyStore holder;
+        private char[] password;
+        private final byte[] protectedKey;
+
+        EntryRecord(KeyStore holder, char[] password, byte[] protectedKey) {
+            this.holder = holder;
+            this.password = password == null ? null : password.clone();
+            this.protectedKey = protectedKey;
+        }
+
+        static EntryRecord removed(String alias) {
+            EntryRecord record = new EntryRecord(null, null, null);
+            record.alias = alias;
+            return record;
+        }
+
+        boolean isRemoved() {
+            return holder == null;
+        }
+
+        void nullPassword() {
+            if (password != null) {
+                Arrays.fill(password, '\u0000');
+                password = null;
+            }
+        }
+
+        void copyTo(KeyStore keyStore) throws GeneralSecurityException {
+            if (holder.isCertificateEntry(alias)) {
+                keyStore.setCertificateEntry(alias, holder.getCertificate(alias));
+            } else if (protectedKey != null) {
+                keyStore.setKeyEntry(alias, protectedKey, holder.getCertificateChain(alias));
+            } else {
+                KeyStore.PasswordProtection protection = new KeyStore.PasswordProtection(password);
+                keyStore.setEntry(alias, holder.getEntry(alias, protection), protection);
+            }
+        }
+    }
+}
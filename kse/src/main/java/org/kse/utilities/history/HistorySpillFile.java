@@ -0,0 +1,177 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.kse.crypto.CryptoException;
+
+/**
+ * Temporary file that holds the history states that were evicted from memory,
+ * usually only their changes relative to the shared base KeyStore. Every
+ * record is encrypted with AES-GCM under a random key that only exists in
+ * memory, so the file is useless once the history has been closed. The file
+ * is created on first use.
+ */
+class HistorySpillFile {
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey key;
+    private File file;
+    private RandomAccessFile raf;
+
+    /**
+     * Location of an encrypted record in the spill file.
+     */
+    static class Record {
+        private final long offset;
+        private final int length;
+        private final byte[] iv;
+
+        private Record(long offset, int length, byte[] iv) {
+            this.offset = offset;
+            this.length = length;
+            this.iv = iv;
+        }
+
+        /**
+         * Get the number of bytes the record occupies in the file.
+         *
+         * @return Length
+         */
+        int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Encrypt data and append it to the spill file.
+     *
+     * @param data Data to write
+     * @return Record for reading the data back
+     * @throws CryptoException If the data could not be encrypted or written
+     */
+    synchronized Record write(byte[] data) throws CryptoException {
+        try {
+            open();
+
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encrypted = cipher.doFinal(data);
+
+            long offset = raf.length();
+            raf.seek(offset);
+            raf.write(encrypted);
+
+            return new Record(offset, encrypted.length, iv);
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoSpillKeyStoreState.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Read and decrypt a record.
+     *
+     * @param record Record to read
+     * @return Data
+     * @throws CryptoException If the data could not be read or decrypted
+     */
+    synchronized byte[] read(Record record) throws CryptoException {
+        if (raf == null) {
+            throw new CryptoException(KeyStoreState.res.getString("NoRestoreKeyStoreState.exception.message"));
+        }
+
+        try {
+            byte[] encrypted = new byte[record.length];
+            raf.seek(record.offset);
+            raf.readFully(encrypted);
+
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, record.iv));
+            return cipher.doFinal(encrypted);
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(KeyStoreState.res.getString("NoRestoreKeyStoreState.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Get the spill file.
+     *
+     * @return The file or null if nothing has been written yet
+     */
+    synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Delete the spill file and forget the encryption key.
+     */
+    synchronized void close() {
+        key = null;
+
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+            raf = null;
+        }
+
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ex) {
+                // ignore, file is deleted on exit anyway
+            }
+            file = null;
+        }
+    }
+
+    private void open() throws GeneralSecurityException, IOException {
+        if (raf != null) {
+            return;
+        }
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256, random);
+        key = keyGenerator.generateKey();
+
+        file = File.createTempFile("kse-history", ".tmp");
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+    }
+}
@@ -21,21 +21,44 @@ package org.kse.utilities.history;
 
 import java.io.File;
 import java.security.KeyStore;
+import java.security.KeyStoreException;
 import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.kse.crypto.CryptoException;
 import org.kse.crypto.keystore.KeyStoreType;
 import org.kse.gui.passwordmanager.Password;
 
 /**
  * Undo/redo history for a KeyStore.
+ * <p>
+ * The states kept in memory can be limited by number and by estimated size.
+ * When the budget is exceeded, the least recently used states are written to
+ * an encrypted temporary file and read back when they are needed again.
+ * </p>
  */
 public class KeyStoreHistory {
+    /**
+     * Rough heap footprint of a single KeyStore entry, used to estimate the size of a state
+     */
+    private static final long ESTIMATED_ENTRY_SIZE = 4096;
+
     private KeyStoreState initialState;
     private KeyStoreState currentState;
     private KeyStoreState savedState;
     private File file;
     private String name;
     private Provider explicitProvider;
+    private int maxStatesInMemory;
+    private long maxMemory;
+    private long useCounter;
+    private HistorySpillFile spillFile;
 
     /**
      * Create a new history for an unsaved KeyStore.
@@ -97,6 +120,33 @@ public class KeyStoreHistory {
         } while (state != null);
     }
 
+    /**
+     * Release the history when its KeyStore is closed. Nulls all passwords and
+     * deletes the temporary file with the evicted states.
+     */
+    public void close() {
+        nullPasswords();
+
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Set the memory budget for the states that are not current. States beyond
+     * the budget are evicted to a temporary file, least recently used first.
+     *
+     * @param maxStatesInMemory Maximum number of states in memory, zero for no limit
+     * @param maxMemory         Maximum estimated size in bytes of the states in memory, zero for no limit
+     */
+    public void setBudget(int maxStatesInMemory, long maxMemory) {
+        this.maxStatesInMemory = maxStatesInMemory;
+        this.maxMemory = maxMemory;
+
+        enforceBudget();
+    }
+
     /**
      * Get the KeyStore's save file.
      *
@@ -147,6 +197,98 @@ public class KeyStoreHistory {
 
     void setCurrentState(KeyStoreState state) {
         currentState = state;
+        state.setLastUsed(++useCounter);
+
+        enforceBudget();
+    }
+
+    HistorySpillFile getSpillFile() {
+        if (spillFile == null) {
+            spillFile = new HistorySpillFile();
+        }
+        return spillFile;
+    }
+
+    private void enforceBudget() {
+        if ((maxStatesInMemory <= 0 && maxMemory <= 0) || initialState instanceof AlwaysIdenticalKeyStoreState) {
+            return;
+        }
+
+        // KeyStores that other states are layered on cannot be released, so they do not count
+        Set<KeyStore> bases = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (KeyStoreState state = initialState; state != null; state = state.nextState()) {
+            KeyStore keyStore = state.getLoadedKeyStore();
+
+            if (keyStore instanceof CopyOnWriteKeyStore) {
+                bases.add(((CopyOnWriteKeyStore) keyStore).getBase());
+            } else if (state.getSpilledBase() != null) {
+                bases.add(state.getSpilledBase());
+            }
+        }
+
+        List<KeyStoreState> candidates = new ArrayList<>();
+        Map<KeyStoreState, Long> estimates = new IdentityHashMap<>();
+        long memory = 0;
+        KeyStoreState previous = null;
+
+        for (KeyStoreState state = initialState; state != null; previous = state, state = state.nextState()) {
+            KeyStore keyStore = state.getLoadedKeyStore();
+
+            if (keyStore == null || state == currentState || bases.contains(keyStore)) {
+                continue;
+            }
+
+            long estimate = estimateMemory(keyStore, previous == null ? null : previous.getLoadedKeyStore());
+            estimates.put(state, estimate);
+            memory += estimate;
+            candidates.add(state);
+        }
+
+        candidates.sort(Comparator.comparingLong(KeyStoreState::getLastUsed));
+        int statesInMemory = candidates.size();
+
+        for (KeyStoreState state : candidates) {
+            boolean tooMany = maxStatesInMemory > 0 && statesInMemory > maxStatesInMemory;
+            boolean tooLarge = maxMemory > 0 && memory > maxMemory;
+
+            if (!tooMany && !tooLarge) {
+                break;
+            }
+
+            try {
+                state.spill(getSpillFile());
+            } catch (CryptoException ex) {
+                return; // keep the remaining states in memory rather than losing undo information
+            }
+
+            statesInMemory--;
+            memory -= estimates.get(state);
+        }
+    }
+
+    private static long estimateMemory(KeyStore keyStore, KeyStore previousKeyStore) {
+        try {
+            if (keyStore instanceof CopyOnWriteKeyStore) {
+                CopyOnWriteKeyStore snapshot = (CopyOnWriteKeyStore) keyStore;
+                int changes = snapshot.getChangeCount();
+
+                // changes that are also in the previous state are shared with it
+                if (previousKeyStore instanceof CopyOnWriteKeyStore) {
+                    CopyOnWriteKeyStore previousSnapshot = (CopyOnWriteKeyStore) previousKeyStore;
+
+                    if (previousSnapshot.getBase() == snapshot.getBase()) {
+                        changes = Math.max(1, Math.abs(changes - previousSnapshot.getChangeCount()));
+                    }
+                }
+
+                return changes * ESTIMATED_ENTRY_SIZE;
+            }
+
+            return keyStore.size() * ESTIMATED_ENTRY_SIZE;
+        } catch (KeyStoreException ex) {
+            return 0;
+        }
     }
 
     KeyStoreState getSavedState() {
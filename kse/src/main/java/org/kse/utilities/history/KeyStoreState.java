@@ -19,10 +19,14 @@
  */
 package org.kse.utilities.history;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.interfaces.DSAPrivateKey;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -49,6 +53,10 @@ public class KeyStoreState {
     private boolean isStoredInPasswordManager = false;
     private KeyStoreState previous;
     private KeyStoreState next;
+    private HistorySpillFile.Record spillRecord;
+    private KeyStoreType spilledType;
+    private KeyStore spilledBase;
+    private long lastUsed;
 
     /**
      * Create an empty state.
@@ -133,6 +141,7 @@ public class KeyStoreState {
      */
     public void setPreviousStateAsCurrentState() throws CryptoException {
         if (previous != null) {
+            previous.restore();
             propagateNewPasswords(previous);
             previous.setAsCurrentState();
         }
@@ -145,6 +154,7 @@ public class KeyStoreState {
      */
     public void setNextStateAsCurrentState() throws CryptoException {
         if (next != null) {
+            next.restore();
             propagateNewPasswords(next);
             next.setAsCurrentState();
         }
@@ -192,15 +202,28 @@ public class KeyStoreState {
      * @return KeyStore's type
      */
     public KeyStoreType getType() {
+        if (keyStore == null) {
+            return spilledType;
+        }
+
         return KeyStoreType.resolveJce(keyStore.getType());
     }
 
     /**
-     * Get the KeyStore.
+     * Get the KeyStore. If the state has been evicted from memory, the KeyStore
+     * is restored from the history's spill file first.
      *
      * @return The KeyStore
      */
     public KeyStore getKeyStore() {
+        if (keyStore == null && spillRecord != null) {
+            try {
+                restore();
+            } catch (CryptoException ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        }
+
         return keyStore;
     }
 
@@ -286,11 +309,18 @@ public class KeyStoreState {
         for (Map.Entry<String, Password> entry : entryPasswords.entrySet()) {
             entry.getValue().nullPassword();
         }
+
+        // Null the entry passwords kept by the copy-on-write KeyStore
+        if (keyStore instanceof CopyOnWriteKeyStore) {
+            ((CopyOnWriteKeyStore) keyStore).nullPasswords();
+        }
     }
 
     /**
      * Create the basis for the next state based on this one. Makes a copy of
-     * the current state excluding its position in the history.
+     * the current state excluding its position in the history. The KeyStore of
+     * the new state is a copy-on-write snapshot that shares all unchanged
+     * entries with this state.
      *
      * @param action The action responsible for the creation of the next state
      * @return Next state
@@ -299,7 +329,7 @@ public class KeyStoreState {
     public KeyStoreState createBasisForNextState(HistoryAction action) throws CryptoException {
         KeyStoreState copy = new KeyStoreState();
         copy.history = this.history;
-        copy.keyStore = KeyStoreUtil.copy(this.keyStore);
+        copy.keyStore = CopyOnWriteKeyStore.snapshot(getKeyStore());
 
         if (password != null) {
             copy.password = new Password(password); // Copy as may be cleared
@@ -340,12 +370,119 @@ public class KeyStoreState {
         isStoredInPasswordManager = storedInPasswordManager;
     }
 
+    /**
+     * Get the KeyStore without restoring it from the spill file.
+     *
+     * @return The KeyStore or null if the state has been evicted from memory
+     */
+    KeyStore getLoadedKeyStore() {
+        return keyStore;
+    }
+
+    /**
+     * Has the KeyStore of this state been evicted from memory?
+     *
+     * @return True if it has
+     */
+    boolean isSpilled() {
+        return keyStore == null && spillRecord != null;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+
+    /**
+     * Get the base KeyStore that the KeyStore of this state has been layered on
+     * before it was evicted from memory.
+     *
+     * @return The base KeyStore or null if the state has not been evicted or
+     *         its KeyStore was not a copy-on-write snapshot
+     */
+    KeyStore getSpilledBase() {
+        return isSpilled() ? spilledBase : null;
+    }
+
+    /**
+     * Write the KeyStore of this state to the spill file and release it from
+     * memory. Passwords stay in memory. For a copy-on-write snapshot only its
+     * changes are written and the base KeyStore shared with the other states
+     * stays in memory.
+     *
+     * @param spillFile Spill file of the history
+     * @throws CryptoException If the KeyStore could not be written
+     */
+    void spill(HistorySpillFile spillFile) throws CryptoException {
+        if (keyStore == null) {
+            return;
+        }
+
+        // KeyStores in the history do not change anymore, so a previous spill record is still valid
+        if (spillRecord == null) {
+            byte[] data;
+
+            if (keyStore instanceof CopyOnWriteKeyStore) {
+                CopyOnWriteKeyStore snapshot = (CopyOnWriteKeyStore) keyStore;
+                spilledBase = snapshot.getBase();
+                data = snapshot.exportChanges();
+            } else {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+                try {
+                    keyStore.store(baos, new char[0]);
+                } catch (GeneralSecurityException | IOException ex) {
+                    throw new CryptoException(res.getString("NoSpillKeyStoreState.exception.message"), ex);
+                }
+
+                data = baos.toByteArray();
+            }
+
+            spillRecord = spillFile.write(data);
+            Arrays.fill(data, (byte) 0);
+        }
+
+        spilledType = getType();
+        keyStore = null;
+    }
+
+    /**
+     * Read the KeyStore of this state back from the spill file if it has been
+     * evicted from memory.
+     *
+     * @throws CryptoException If the KeyStore could not be read
+     */
+    void restore() throws CryptoException {
+        if (!isSpilled()) {
+            return;
+        }
+
+        byte[] data = history.getSpillFile().read(spillRecord);
+
+        try {
+            if (spilledBase != null) {
+                keyStore = CopyOnWriteKeyStore.restore(spilledBase, data);
+            } else {
+                KeyStore restored = KeyStoreUtil.create(spilledType);
+                restored.load(new ByteArrayInputStream(data), new char[0]);
+                keyStore = restored;
+            }
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(res.getString("NoRestoreKeyStoreState.exception.message"), ex);
+        } finally {
+            Arrays.fill(data, (byte) 0);
+        }
+    }
+
     protected void propagateNewPasswords(KeyStoreState targetState) throws CryptoException {
 
         // Copy all entry passwords not found in the target state from the current state to the target state
         try {
             for (String alias : entryPasswords.keySet()) {
-                if (KeyStoreUtil.isKeyPairEntry(alias, targetState.keyStore)) {
+                if (KeyStoreUtil.isKeyPairEntry(alias, targetState.getKeyStore())) {
                     if (!targetState.entryPasswords.containsKey(alias)) {
                         Password newPassword = entryPasswords.get(alias);
 
@@ -370,7 +507,7 @@ public class KeyStoreState {
 
     protected boolean isEntryPasswordCorrect(KeyStoreState targetState, String alias, Password password) {
         try {
-            targetState.keyStore.getKey(alias, password.toCharArray());
+            targetState.getKeyStore().getKey(alias, password.toCharArray());
 
             return true;
         } catch (GeneralSecurityException ex) {
@@ -380,7 +517,7 @@ public class KeyStoreState {
 
     protected boolean isEntryPrivateKeyEqual(KeyStoreState targetState, String alias, Password password)
             throws GeneralSecurityException {
-        Key currentKey = keyStore.getKey(alias, password.toCharArray());
+        Key currentKey = getKeyStore().getKey(alias, password.toCharArray());
         Key targetKey = targetState.getKeyStore().getKey(alias, password.toCharArray());
 
         // JDKDSAPrivateKey has no equals method defined
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map with structural sharing (hash array mapped trie). Every
+ * modification returns a new map that shares all untouched nodes with its
+ * predecessor, so put and remove only copy the O(log32 n) nodes on the path
+ * to the changed key.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentHashMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty map.
+     *
+     * @param <K> Key type
+     * @param <V> Value type
+     * @return Empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Get the value mapped to a key.
+     *
+     * @param key Key
+     * @return Value or null if the key is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        Leaf leaf = root.find(0, key.hashCode(), key);
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    /**
+     * Is the key mapped?
+     *
+     * @param key Key
+     * @return True if it is
+     */
+    boolean containsKey(K key) {
+        return root.find(0, key.hashCode(), key) != null;
+    }
+
+    /**
+     * Map a key to a value.
+     *
+     * @param key   Key
+     * @param value Value, must not be null
+     * @return New map containing the mapping, or this map if it is unchanged
+     */
+    PersistentHashMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        BitmapNode newRoot = (BitmapNode) root.put(0, new Leaf(key.hashCode(), key, value), added);
+
+        if (newRoot == root) {
+            return this;
+        }
+
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Remove the mapping for a key.
+     *
+     * @param key Key
+     * @return New map without the mapping, or this map if the key was not mapped
+     */
+    PersistentHashMap<K, V> remove(K key) {
+        Object newRoot = root.remove(0, key.hashCode(), key);
+
+        if (newRoot == root) {
+            return this;
+        }
+
+        if (newRoot == null) {
+            return empty();
+        }
+
+        if (newRoot instanceof Leaf) {
+            boolean[] added = new boolean[1];
+            newRoot = BitmapNode.EMPTY.put(0, (Leaf) newRoot, added);
+        }
+
+        return new PersistentHashMap<>((BitmapNode) newRoot, size - 1);
+    }
+
+    /**
+     * Get the number of mappings.
+     *
+     * @return Size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Is the map empty?
+     *
+     * @return True if it is
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visit every mapping. Iteration order is unspecified.
+     *
+     * @param action Action to perform for each mapping
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static final class Leaf {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private abstract static class Node {
+        abstract Leaf find(int shift, int hash, Object key);
+
+        abstract Node put(int shift, Leaf leaf, boolean[] added);
+
+        /**
+         * @return This node if unchanged, null if empty, a single remaining leaf or the replacement node
+         */
+        abstract Object remove(int shift, int hash, Object key);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        static Node merge(int shift, Leaf leaf1, Leaf leaf2) {
+            if (leaf1.hash == leaf2.hash) {
+                return new CollisionNode(leaf1.hash, new Leaf[] { leaf1, leaf2 });
+            }
+
+            int index1 = (leaf1.hash >>> shift) & MASK;
+            int index2 = (leaf2.hash >>> shift) & MASK;
+
+            if (index1 == index2) {
+                return new BitmapNode(1 << index1, new Object[] { merge(shift + BITS, leaf1, leaf2) });
+            }
+
+            Object[] slots = index1 < index2 ? new Object[] { leaf1, leaf2 } : new Object[] { leaf2, leaf1 };
+            return new BitmapNode((1 << index1) | (1 << index2), slots);
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object slot = slots[position(bit)];
+
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+            }
+
+            return ((Node) slot).find(shift + BITS, hash, key);
+        }
+
+        @Override
+        Node put(int shift, Leaf leaf, boolean[] added) {
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int pos = position(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, pos);
+                newSlots[pos] = leaf;
+                System.arraycopy(slots, pos, newSlots, pos + 1, slots.length - pos);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[pos];
+            Object newSlot;
+
+            if (slot instanceof Leaf) {
+                Leaf existing = (Leaf) slot;
+
+                if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+                    if (existing.value == leaf.value) {
+                        return this;
+                    }
+                    newSlot = leaf;
+                } else {
+                    added[0] = true;
+                    newSlot = merge(shift + BITS, existing, leaf);
+                }
+            } else {
+                newSlot = ((Node) slot).put(shift + BITS, leaf, added);
+
+                if (newSlot == slot) {
+                    return this;
+                }
+            }
+
+            Object[] newSlots = slots.clone();
+            newSlots[pos] = newSlot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int pos = position(bit);
+            Object slot = slots[pos];
+            Object newSlot;
+
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+
+                if (leaf.hash != hash || !leaf.key.equals(key)) {
+                    return this;
+                }
+                newSlot = null;
+            } else {
+                newSlot = ((Node) slot).remove(shift + BITS, hash, key);
+
+                if (newSlot == slot) {
+                    return this;
+                }
+            }
+
+            if (newSlot != null) {
+                if (slots.length == 1 && newSlot instanceof Leaf) {
+                    return newSlot; // let the parent inline the last leaf
+                }
+
+                Object[] newSlots = slots.clone();
+                newSlots[pos] = newSlot;
+                return new BitmapNode(bitmap, newSlots);
+            }
+
+            if (slots.length == 1) {
+                return null;
+            }
+
+            if (slots.length == 2 && slots[pos ^ 1] instanceof Leaf) {
+                return slots[pos ^ 1];
+            }
+
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, pos);
+            System.arraycopy(slots, pos + 1, newSlots, pos, slots.length - pos - 1);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Leaf) {
+                    Leaf leaf = (Leaf) slot;
+                    action.accept(leaf.key, leaf.value);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return null;
+            }
+
+            int index = indexOf(key);
+            return index < 0 ? null : leaves[index];
+        }
+
+        @Override
+        Node put(int shift, Leaf leaf, boolean[] added) {
+            if (leaf.hash != hash) {
+                // Push this collision node one level down and add the leaf beside it
+                BitmapNode node = new BitmapNode(1 << ((hash >>> shift) & MASK), new Object[] { this });
+                return node.put(shift, leaf, added);
+            }
+
+            int index = indexOf(leaf.key);
+
+            if (index < 0) {
+                Leaf[] newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+                newLeaves[leaves.length] = leaf;
+                added[0] = true;
+                return new CollisionNode(hash, newLeaves);
+            }
+
+            if (leaves[index].value == leaf.value) {
+                return this;
+            }
+
+            Leaf[] newLeaves = leaves.clone();
+            newLeaves[index] = leaf;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return this;
+            }
+
+            int index = indexOf(key);
+
+            if (index < 0) {
+                return this;
+            }
+
+            if (leaves.length == 2) {
+                return leaves[index ^ 1];
+            }
+
+            Leaf[] newLeaves = new Leaf[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, index);
+            System.arraycopy(leaves, index + 1, newLeaves, index, leaves.length - index - 1);
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Leaf leaf : leaves) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+    }
+}
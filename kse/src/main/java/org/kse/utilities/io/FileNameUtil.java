@@ -19,6 +19,15 @@
  */
 package org.kse.utilities.io;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class for manipulating and checking file names.
  */
@@ -63,4 +72,50 @@ public class FileNameUtil {
 
         return fileName.substring(0, index);
     }
+
+    /**
+     * Resolve a path that names a file, a directory or a glob pattern (e.g.
+     * "/release/*.tar.gz") in the file name part. A directory resolves to the
+     * regular files it contains, without descending into subdirectories.
+     *
+     * @param path Path of a file or directory or glob pattern
+     * @return The regular files sorted by name, or the file itself if it
+     *         neither is a directory nor contains glob characters
+     * @throws IOException If the directory could not be read or the pattern is invalid
+     */
+    public static List<File> resolveFiles(String path) throws IOException {
+        File file = new File(path);
+        String glob = "*";
+
+        if (!file.isDirectory()) {
+            if (!isGlob(file.getName())) {
+                return Collections.singletonList(file);
+            }
+            glob = file.getName();
+            file = file.getAbsoluteFile().getParentFile();
+        }
+
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(file.toPath(), glob)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry.toFile());
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        Collections.sort(files);
+        return files;
+    }
+
+    private static boolean isGlob(String fileName) {
+        for (char c : "*?[{".toCharArray()) {
+            if (fileName.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Input stream that reports the number of bytes read so far and aborts with an
+ * InterruptedIOException when the reading thread has been interrupted. This
+ * makes long-running parsers that consume a stream cancellable.
+ */
+public class ProgressInputStream extends FilterInputStream {
+    private final LongConsumer progressListener;
+    private long bytesRead;
+    private long mark;
+
+    /**
+     * Construct a ProgressInputStream.
+     *
+     * @param in               Stream to read from
+     * @param progressListener Receives the total number of bytes read after each read
+     */
+    public ProgressInputStream(InputStream in, LongConsumer progressListener) {
+        super(in);
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkInterrupted();
+
+        int b = super.read();
+
+        if (b >= 0) {
+            progress(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkInterrupted();
+
+        int read = super.read(b, off, len);
+
+        if (read > 0) {
+            progress(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkInterrupted();
+
+        long skipped = super.skip(n);
+
+        if (skipped > 0) {
+            progress(skipped);
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        super.mark(readlimit);
+        mark = bytesRead;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+        bytesRead = mark;
+    }
+
+    /**
+     * Get the number of bytes read so far.
+     *
+     * @return Bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void progress(long read) {
+        bytesRead += read;
+        progressListener.accept(bytesRead);
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+    }
+}
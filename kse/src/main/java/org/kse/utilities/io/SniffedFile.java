@@ -0,0 +1,187 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ResourceBundle;
+
+/**
+ * An open file whose head has already been read for sniffing its type. Other
+ * parts of the file, e.g. the tail, can be read without reading everything in
+ * between. The content can then be streamed once from the start without
+ * reading the head again, so that large files on slow drives or network shares
+ * are read only once.
+ */
+public class SniffedFile implements Closeable {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/utilities/io/resources");
+
+    private static final int HEAD_SIZE = 8 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final byte[] head;
+    private boolean streamed;
+    private byte[] content;
+
+    private SniffedFile(FileChannel channel, long size, byte[] head) {
+        this.channel = channel;
+        this.size = size;
+        this.head = head;
+    }
+
+    /**
+     * Open a file and read its head.
+     *
+     * @param file The file
+     * @return The opened file
+     * @throws IOException If the file could not be opened or read. A
+     *                     NoSuchFileException is thrown if it does not exist.
+     */
+    public static SniffedFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, HEAD_SIZE));
+
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until the head is complete
+            }
+
+            byte[] head = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(head);
+
+            return new SniffedFile(channel, size, head);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return Size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get the head of the file, which is the whole file if it is small.
+     *
+     * @return Head of the file
+     */
+    public byte[] getHead() {
+        return head;
+    }
+
+    /**
+     * Read a part of the file. Parts within the head are not read again.
+     *
+     * @param position Position to start reading at
+     * @param length   Number of bytes to read
+     * @return The bytes read, fewer than requested if the end of the file has
+     *         been reached
+     * @throws IOException If an I/O problem occurred
+     */
+    public byte[] read(long position, int length) throws IOException {
+        if (position < 0 || position >= size) {
+            return new byte[0];
+        }
+
+        int available = (int) Math.min(length, size - position);
+
+        if (position + available <= head.length) {
+            byte[] bytes = new byte[available];
+            System.arraycopy(head, (int) position, bytes, 0, available);
+            return bytes;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(available);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Get a stream of the whole file content starting with the head that has
+     * already been read. The file is only streamed once, further calls are
+     * only possible if the content has been read completely by
+     * {@link #readAll()}. The stream is closed together with this file.
+     *
+     * @return Stream of the file content
+     */
+    public InputStream getInputStream() {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+
+        if (streamed) {
+            throw new IllegalStateException("File content has already been streamed");
+        }
+        streamed = true;
+
+        // the channel is positioned right after the head
+        return new SequenceInputStream(new ByteArrayInputStream(head), Channels.newInputStream(channel));
+    }
+
+    /**
+     * Read the whole file content starting with the head that has already
+     * been read. The content is kept, so that it can be streamed again.
+     *
+     * @return The file content
+     * @throws IOException If an I/O problem occurred
+     */
+    public byte[] readAll() throws IOException {
+        if (content == null) {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException(MessageFormat.format(res.getString("FileTooLarge.exception.message"), size));
+            }
+
+            content = getInputStream().readAllBytes();
+        }
+
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -20,9 +20,13 @@
 package org.kse.utilities.pem;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 import org.bouncycastle.util.encoders.Base64;
@@ -32,6 +36,7 @@ import org.bouncycastle.util.encoders.Base64;
  */
 public class PemUtil {
     private static final int MAX_PRINTABLE_ENCODING_LINE_LENGTH = 64;
+    private static final int MAX_HEADER_LENGTH = 256;
 
     // Begin OpenSSL EC parameters PEM (see "openssl ecparam -name prime256v1 -genkey -out key.pem"; missing "-noout")
     private static final String OPENSSL_EC_PARAMS_PEM_TYPE = "EC PARAMETERS";
@@ -53,6 +58,125 @@ public class PemUtil {
         return new String(data, StandardCharsets.US_ASCII).startsWith(PEM_BEGIN_MARKER);
     }
 
+    /**
+     * Get a stream that PEM encodes everything written to it, so that large
+     * content can be encoded without keeping it in memory. The header is
+     * written immediately, the footer when the returned stream is closed.
+     * Closing the returned stream does not close the underlying stream.
+     *
+     * @param type   PEM type
+     * @param pemOut Stream to write the PEM encoding to
+     * @return Stream for the content to encode
+     * @throws IOException If an I/O problem occurred
+     */
+    public static OutputStream encode(String type, OutputStream pemOut) throws IOException {
+        pemOut.write((PEM_BEGIN_MARKER + type + PEM_FIVE_DASHES + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        OutputStream nonClosing = new FilterOutputStream(pemOut) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                pemOut.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+
+        OutputStream base64 = java.util.Base64.getMimeEncoder(MAX_PRINTABLE_ENCODING_LINE_LENGTH,
+                                                              new byte[] { '\n' }).wrap(nonClosing);
+
+        return new FilterOutputStream(base64) {
+            private boolean written;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                base64.write(b);
+                written = true;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                base64.write(b, off, len);
+                written |= len > 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+
+                    // writes the remaining base64 characters including any padding
+                    base64.close();
+                    if (written) {
+                        pemOut.write('\n');
+                    }
+                    pemOut.write((PEM_END_MARKER + type + PEM_FIVE_DASHES + "\n").getBytes(
+                            StandardCharsets.US_ASCII));
+                    pemOut.flush();
+                }
+            }
+        };
+    }
+
+    /**
+     * Get a stream that decodes the base64 body of the PEM read from the
+     * supplied stream, so that large content can be decoded without keeping it
+     * in memory. The header is read immediately, the body is read up to the
+     * footer as the returned stream is read. PEM header attributes are not
+     * supported.
+     *
+     * @param pemIn Stream to read the PEM from
+     * @return Stream of the decoded content
+     * @throws IOException If an I/O problem occurred or the stream does not start with a PEM header
+     */
+    public static InputStream decode(InputStream pemIn) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int c;
+
+        while ((c = pemIn.read()) != -1 && c != '\n' && header.length() < MAX_HEADER_LENGTH) {
+            header.append((char) c);
+        }
+
+        if (getTypeFromHeader(header.toString().trim()) == null) {
+            throw new IOException("No PEM header");
+        }
+
+        // the footer starts with a dash, which is no base64 character
+        InputStream base64 = new FilterInputStream(pemIn) {
+            private boolean footer;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (footer) {
+                    return -1;
+                }
+
+                int read = in.read(b, off, len);
+
+                for (int i = off; i < off + read; i++) {
+                    if (b[i] == '-') {
+                        footer = true;
+                        return i == off ? -1 : i - off;
+                    }
+                }
+
+                return read;
+            }
+        };
+
+        // line breaks are skipped by the MIME decoder
+        return java.util.Base64.getMimeDecoder().wrap(base64);
+    }
+
     /**
      * Encode the supplied information as PEM.
      *
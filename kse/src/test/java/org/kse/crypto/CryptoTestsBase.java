@@ -21,18 +21,62 @@
 
 package org.kse.crypto;
 
+import java.math.BigInteger;
+import java.security.KeyPair;
 import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Date;
 
+import org.bouncycastle.asn1.x500.X500Name;
 import org.junit.jupiter.api.BeforeAll;
 import org.kse.KSE;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CertificateGenerator;
+import org.kse.crypto.x509.X509CertificateVersion;
 
 /**
  * Abstract base class for all test cases. Sets up the BC provider.
  */
 public abstract class CryptoTestsBase {
+    private static final long DAY = 24L * 60 * 60 * 1000;
 
     @BeforeAll
     public static void addBcProvider() {
         Security.addProvider(KSE.BC);
     }
+
+    /**
+     * Create a self-signed certificate for an EC key pair that is valid for a
+     * day from now.
+     *
+     * @param keyPair      The key pair of the certificate
+     * @param dn           The subject and issuer DN
+     * @param serialNumber The serial number
+     * @return The certificate
+     * @throws CryptoException If the certificate could not be generated
+     */
+    protected static X509Certificate createSelfSignedCertificate(KeyPair keyPair, String dn, long serialNumber)
+            throws CryptoException {
+        Date now = new Date();
+        return createSelfSignedCertificate(keyPair, dn, now, new Date(now.getTime() + DAY), serialNumber);
+    }
+
+    /**
+     * Create a self-signed certificate for an EC key pair.
+     *
+     * @param keyPair       The key pair of the certificate
+     * @param dn            The subject and issuer DN
+     * @param validityStart The start of the validity
+     * @param validityEnd   The end of the validity
+     * @param serialNumber  The serial number
+     * @return The certificate
+     * @throws CryptoException If the certificate could not be generated
+     */
+    protected static X509Certificate createSelfSignedCertificate(KeyPair keyPair, String dn, Date validityStart,
+                                                                 Date validityEnd, long serialNumber)
+            throws CryptoException {
+        return new X509CertificateGenerator(X509CertificateVersion.VERSION3).generateSelfSigned(
+                new X500Name(dn), validityStart, validityEnd, keyPair.getPublic(), keyPair.getPrivate(),
+                SignatureType.SHA256_ECDSA, BigInteger.valueOf(serialNumber));
+    }
 }
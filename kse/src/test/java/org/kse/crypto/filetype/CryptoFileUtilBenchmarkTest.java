@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.filetype;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.kse.KSE;
+
+/**
+ * Compares the single pass classification of CryptoFileUtil with probing all
+ * parsers in turn over the test files plus some large files that are not of
+ * any supported type. Only runs if the environment variable KSE_BENCHMARK is
+ * set to true.
+ */
+@EnabledIfEnvironmentVariable(named = "KSE_BENCHMARK", matches = "true")
+class CryptoFileUtilBenchmarkTest {
+
+    private static final String TEST_FILES_PATH = "src/test/resources/testdata/CryptoFileUtilTest";
+    private static final int LARGE_FILE_SIZE = 2 * 1024 * 1024;
+    private static final int RUNS = 20;
+
+    static {
+        Security.addProvider(KSE.BC);
+    }
+
+    @Test
+    void classificationVersusProbing() throws Exception {
+        Map<String, byte[]> corpus = createCorpus();
+
+        long classifyNanos = 0;
+        long probeNanos = 0;
+
+        for (Map.Entry<String, byte[]> file : corpus.entrySet()) {
+            byte[] data = file.getValue();
+            byte[] decoded = CryptoFileUtil.decodeIfBase64sanitizeIfPem(data);
+
+            // the classification must not change the result
+            assertThat(CryptoFileUtil.detectFileType(data)).as(file.getKey())
+                                                           .isEqualTo(CryptoFileUtil.probeFileType(decoded));
+
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                CryptoFileUtil.detectFileType(data);
+                classifyNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                CryptoFileUtil.probeFileType(CryptoFileUtil.decodeIfBase64sanitizeIfPem(data));
+                probeNanos += System.nanoTime() - start;
+            }
+        }
+
+        System.out.printf("Detecting %d files %d times: classification %d ms, probing %d ms, speedup %.2f%n",
+                          corpus.size(), RUNS, classifyNanos / 1_000_000, probeNanos / 1_000_000,
+                          (double) probeNanos / classifyNanos);
+    }
+
+    private static Map<String, byte[]> createCorpus() throws Exception {
+        Map<String, byte[]> corpus = new LinkedHashMap<>();
+
+        File[] files = new File(TEST_FILES_PATH).listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            corpus.put(file.getName(), Files.readAllBytes(file.toPath()));
+        }
+
+        // large files as they are dropped on the application by accident
+        byte[] binary = new byte[LARGE_FILE_SIZE];
+        new Random(42).nextBytes(binary);
+        binary[0] = 'B';
+        corpus.put("large.bin", binary);
+
+        StringBuilder text = new StringBuilder(LARGE_FILE_SIZE);
+        while (text.length() < LARGE_FILE_SIZE) {
+            text.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit.\n");
+        }
+        corpus.put("large.txt", text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        return corpus;
+    }
+}
@@ -30,6 +30,7 @@ import java.security.Security;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.kse.KSE;
+import org.kse.crypto.keystore.KeyStoreType;
 
 class CryptoFileUtilTest {
 
@@ -127,4 +128,26 @@ class CryptoFileUtilTest {
 
         assertEquals(expectedResult, CryptoFileUtil.detectFileType(data));
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    // @formatter:off
+    @CsvSource({
+            "keystore.bcfks, BCFKS",
+            "keystore.bks, BKS",
+            "keystore.jceks, JCEKS",
+            "keystore.jks, JKS",
+            "keystore.p12, PKCS12",
+            "keystore.uber, UBER",
+            "unknown.txt, ",
+            "empty.txt, ",
+    })
+    // @formatter:on
+    void detectKeyStoreTypeFromFile(String fileName, KeyStoreType expectedResult) throws IOException {
+        File file = new File(TEST_FILES_PATH, fileName);
+
+        // only sniffing head and tail of the file must give the same result as parsing all of it
+        assertEquals(expectedResult, CryptoFileUtil.detectKeyStoreType(file));
+        assertEquals(CryptoFileUtil.detectKeyStoreType(Files.readAllBytes(file.toPath())),
+                     CryptoFileUtil.detectKeyStoreType(file));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.KeyPair;
+import java.security.cert.CRLReason;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+import org.kse.crypto.x509.X509CrlGenerator;
+
+/**
+ * Unit tests for OcspResponder.
+ */
+public class OcspResponderTest extends CryptoTestsBase {
+    private static final long VALIDITY = 60L * 60 * 1000;
+
+    @Test
+    void statusIsTakenFromCrl() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+        Date revocationDate = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        OcspResponder responder = new OcspResponder(caCert, keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null,
+                                                    createRevokedEntries(keyPair, revocationDate), VALIDITY);
+
+        SingleResp revoked = getSingleResponse(responder.respond(createRequest(caCert, BigInteger.TEN)), caCert);
+        assertThat(revoked.getCertStatus()).isInstanceOf(RevokedStatus.class);
+        RevokedStatus revokedStatus = (RevokedStatus) revoked.getCertStatus();
+        assertThat(revokedStatus.getRevocationTime()).isEqualTo(revocationDate);
+        assertThat(revokedStatus.getRevocationReason()).isEqualTo(CRLReason.KEY_COMPROMISE.ordinal());
+
+        SingleResp good = getSingleResponse(responder.respond(createRequest(caCert, BigInteger.TWO)), caCert);
+        assertThat(good.getCertStatus()).isEqualTo(CertificateStatus.GOOD);
+        assertThat(good.getNextUpdate().getTime() - good.getThisUpdate().getTime()).isEqualTo(VALIDITY);
+    }
+
+    @Test
+    void responsesAreCached() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        OcspResponder responder = new OcspResponder(caCert, keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null,
+                                                    null, VALIDITY);
+        byte[] request = createRequest(caCert, BigInteger.TWO);
+
+        // ECDSA signatures are randomized, so only a cached response is the same
+        assertThat(responder.respond(request)).isEqualTo(responder.respond(request));
+    }
+
+    @Test
+    void answersHttpPost() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        OcspResponder responder = new OcspResponder(caCert, keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null,
+                                                    null, VALIDITY);
+        responder.start(0);
+        try {
+            HttpURLConnection con = (HttpURLConnection) new URL(responder.getUrl()).openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Content-Type", "application/ocsp-request");
+            con.setDoOutput(true);
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(createRequest(caCert, BigInteger.TWO));
+            }
+
+            assertThat(con.getContentType()).isEqualTo("application/ocsp-response");
+            SingleResp good = getSingleResponse(con.getInputStream().readAllBytes(), caCert);
+            assertThat(good.getCertStatus()).isEqualTo(CertificateStatus.GOOD);
+        } finally {
+            responder.stop();
+        }
+
+        assertThat(responder.isRunning()).isFalse();
+    }
+
+    @Test
+    void answersHttpGetWithPlusInPath() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        // find a request whose base64 encoding contains a '+', which is not escaped in a path
+        BigInteger serialNumber = BigInteger.TWO;
+        String encodedRequest = Base64.getEncoder().encodeToString(createRequest(caCert, serialNumber));
+        while (!encodedRequest.contains("+")) {
+            serialNumber = serialNumber.add(BigInteger.ONE);
+            encodedRequest = Base64.getEncoder().encodeToString(createRequest(caCert, serialNumber));
+        }
+
+        OcspResponder responder = new OcspResponder(caCert, keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null,
+                                                    null, VALIDITY);
+        responder.start(0);
+        try {
+            String path = encodedRequest.replace("/", "%2F").replace("=", "%3D");
+            HttpURLConnection con = (HttpURLConnection) new URL(responder.getUrl() + path).openConnection();
+
+            assertThat(con.getContentType()).isEqualTo("application/ocsp-response");
+            SingleResp good = getSingleResponse(con.getInputStream().readAllBytes(), caCert);
+            assertThat(good.getCertID().getSerialNumber()).isEqualTo(serialNumber);
+            assertThat(good.getCertStatus()).isEqualTo(CertificateStatus.GOOD);
+        } finally {
+            responder.stop();
+        }
+    }
+
+    private static X509CrlEntryIndex createRevokedEntries(KeyPair keyPair, Date revocationDate) throws Exception {
+        X509CrlGenerator crlGen = new X509CrlGenerator(new X500Name("CN=CA"), new Date());
+        crlGen.addEntry(BigInteger.TEN, revocationDate, CRLReason.KEY_COMPROMISE);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        crlGen.generate(keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null, baos);
+
+        return X509CrlEntryIndex.create(X509CertUtil.loadCRL(baos.toByteArray()));
+    }
+
+    private static byte[] createRequest(X509Certificate caCert, BigInteger serialNumber) throws Exception {
+        CertificateID certId = new CertificateID(
+                new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                new JcaX509CertificateHolder(caCert), serialNumber);
+
+        return new OCSPReqBuilder().addRequest(certId).build().getEncoded();
+    }
+
+    private static SingleResp getSingleResponse(byte[] encodedResponse, X509Certificate caCert) throws Exception {
+        OCSPResp response = new OCSPResp(encodedResponse);
+        assertThat(response.getStatus()).isEqualTo(OCSPResp.SUCCESSFUL);
+
+        BasicOCSPResp basicResponse = (BasicOCSPResp) response.getResponseObject();
+        assertThat(basicResponse.isSignatureValid(
+                new JcaContentVerifierProviderBuilder().setProvider(KSE.BC).build(caCert))).isTrue();
+
+        assertThat(basicResponse.getResponses()).hasSize(1);
+        return basicResponse.getResponses()[0];
+    }
+}
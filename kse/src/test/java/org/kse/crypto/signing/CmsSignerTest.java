@@ -0,0 +1,167 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.utilities.pem.PemInfo;
+import org.kse.utilities.pem.PemUtil;
+
+/**
+ * Unit tests for CmsSigner.
+ */
+public class CmsSignerTest extends CryptoTestsBase {
+    private static final int CONTENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    File tempDir;
+
+    private KeyPair keyPair;
+    private X509Certificate cert;
+    private File inputFile;
+
+    @BeforeEach
+    void createSigner() throws Exception {
+        keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        cert = createSelfSignedCertificate(keyPair, "CN=Signer", 1);
+        inputFile = new File(tempDir, "content.bin");
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "false, false", "false, true", "true, false", "true, true" })
+    void streamingSignatureVerifies(boolean detached, boolean outputPem) throws Exception {
+        byte[] content = createContent();
+        File outputFile = new File(tempDir, "content.bin.p7s");
+
+        AtomicLong progress = new AtomicLong();
+        CmsSigner.sign(inputFile, outputFile, keyPair.getPrivate(), new X509Certificate[] { cert }, detached,
+                       outputPem, SignatureType.SHA256_ECDSA, null, null, progress::set);
+
+        assertThat(progress.get()).isEqualTo(CONTENT_SIZE);
+
+        // the detached content is found next to the signature
+        CMSSignedData signedData = CmsUtil.loadSignature(outputFile, null);
+        assertThat(signedData.isDetachedSignature()).isEqualTo(detached);
+
+        ByteArrayOutputStream signedContent = new ByteArrayOutputStream();
+        signedData.getSignedContent().write(signedContent);
+        assertThat(signedContent.toByteArray()).isEqualTo(content);
+
+        for (SignerInformation signer : signedData.getSignerInfos()) {
+            assertThat(signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC).build(cert)))
+                    .isTrue();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void streamedSignatureKeepsContentDigest(boolean outputPem) throws Exception {
+        createContent();
+        File outputFile = new File(tempDir, "content.bin.p7s");
+
+        CmsSigner.sign(inputFile, outputFile, keyPair.getPrivate(), new X509Certificate[] { cert }, false, outputPem,
+                       SignatureType.SHA256_ECDSA, null, null, bytes -> {
+                });
+
+        // stream any signature through the parser
+        AtomicLong progress = new AtomicLong();
+        CMSSignedData signedData = CmsUtil.loadSignature(outputFile, null, progress::set, 0);
+
+        assertThat(progress.get()).isGreaterThan(CONTENT_SIZE);
+        assertThat(signedData.getSignedContent()).isNull();
+
+        List<KseSignerInformation> signers = CmsUtil.convertSignerInformations(
+                signedData.getSignerInfos().getSigners(), new CollectionStore<>(Collections.emptyList()), signedData);
+        assertThat(signers).hasSize(1);
+
+        for (KseSignerInformation signer : signers) {
+            assertThat(signer.isContentAvailable()).isTrue();
+            assertThat(signer.getStatus()).isIn(CmsSignatureStatus.VALID_TRUSTED, CmsSignatureStatus.VALID_NOT_TRUSTED);
+        }
+    }
+
+    @Test
+    void failedSigningKeepsExistingSignature() throws Exception {
+        File outputFile = new File(tempDir, "content.bin.p7s");
+        byte[] existing = { 1, 2, 3 };
+        Files.write(outputFile.toPath(), existing);
+
+        // the input file does not exist
+        assertThatThrownBy(() -> CmsSigner.sign(inputFile, outputFile, keyPair.getPrivate(),
+                                                new X509Certificate[] { cert }, false, false,
+                                                SignatureType.SHA256_ECDSA, null, null, bytes -> {
+                })).isInstanceOf(CryptoException.class);
+
+        assertThat(Files.readAllBytes(outputFile.toPath())).isEqualTo(existing);
+        assertThat(tempDir.list()).containsExactly(outputFile.getName());
+    }
+
+    @Test
+    void pemStreamMatchesPemEncoding() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+
+        ByteArrayOutputStream pem = new ByteArrayOutputStream();
+        try (OutputStream os = PemUtil.encode("PKCS7", pem)) {
+            // write in odd chunks to cross the line boundaries
+            for (int i = 0; i < content.length; i += 7) {
+                os.write(content, i, Math.min(7, content.length - i));
+            }
+        }
+
+        assertThat(pem.toString("US-ASCII")).isEqualTo(PemUtil.encode(new PemInfo("PKCS7", null, content)));
+        assertThat(PemUtil.decode(new ByteArrayInputStream(pem.toByteArray())).readAllBytes()).isEqualTo(content);
+    }
+
+    private byte[] createContent() throws IOException {
+        byte[] content = new byte[CONTENT_SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(inputFile.toPath(), content);
+        return content;
+    }
+}
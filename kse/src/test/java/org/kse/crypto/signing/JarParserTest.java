@@ -0,0 +1,161 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for JarParser. Large JARs are verified concurrently on a
+ * multi-core machine.
+ */
+public class JarParserTest extends CryptoTestsBase {
+    private static final int SMALL_JAR = 10;
+    private static final int LARGE_JAR = JarSigner.MIN_PARALLEL_ENTRIES + 300;
+
+    @TempDir
+    File tempDir;
+
+    private KeyPair keyPair;
+    private X509Certificate cert;
+
+    @BeforeEach
+    void createSigner() throws Exception {
+        keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        cert = createSelfSignedCertificate(keyPair, "CN=Signer", 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { SMALL_JAR, LARGE_JAR })
+    void signedJarIsVerified(int entries) throws Exception {
+        File jarFile = createSignedJar(entries);
+
+        VerifiedJar verifiedJar = new JarParser(jarFile).verify();
+
+        assertThat(verifiedJar.getSignerCertificates()).containsExactly(cert);
+        assertThat(verifiedJar.getSignatureFiles()).containsOnlyKeys("META-INF/TEST.SF");
+        assertThat(verifiedJar.getSignatureBlocks()).containsOnlyKeys("META-INF/TEST.EC");
+        assertThat(verifiedJar.getSignatureFile("META-INF/TEST.EC")).isNotNull();
+
+        for (JarEntry entry : verifiedJar.getEntries()) {
+            if (entry.getName().startsWith("org/")) {
+                assertThat(entry.getCodeSigners()).as(entry.getName()).isNotEmpty();
+            }
+        }
+    }
+
+    @Test
+    void unsignedJarHasNoSigners() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"), LARGE_JAR);
+
+        VerifiedJar verifiedJar = new JarParser(jarFile).verify();
+
+        assertThat(verifiedJar.getEntries()).hasSize(LARGE_JAR);
+        assertThat(verifiedJar.getSignerCertificates()).isEmpty();
+        assertThat(verifiedJar.getSignatureFiles()).isEmpty();
+        assertThat(verifiedJar.getSignatureBlocks()).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { SMALL_JAR, LARGE_JAR })
+    void tamperedEntryFails(int entries) throws Exception {
+        File jarFile = createSignedJar(entries);
+        File tamperedJar = new File(tempDir, "tampered.jar");
+
+        // replace the content of the last entry, but keep the manifest and signature
+        try (JarFile jar = new JarFile(jarFile);
+             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(tamperedJar.toPath()))) {
+            for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
+                JarEntry jarEntry = jarEntries.nextElement();
+                byte[] content = jar.getInputStream(jarEntry).readAllBytes();
+
+                if (jarEntry.getName().equals(getEntryName(entries - 1))) {
+                    content = "tampered".getBytes(StandardCharsets.US_ASCII);
+                }
+
+                jos.putNextEntry(new JarEntry(jarEntry.getName()));
+                jos.write(content);
+                jos.closeEntry();
+            }
+        }
+
+        assertThatThrownBy(() -> new JarParser(tamperedJar).verify()).isInstanceOf(SecurityException.class);
+    }
+
+    @Test
+    void signatureFileIsFoundIgnoringCase() {
+        byte[] sf = new byte[1];
+        VerifiedJar verifiedJar = new VerifiedJar(null, Map.of("META-INF/test.sf", sf),
+                                                  Map.of("META-INF/test.ec", new byte[1]), new X509Certificate[0]);
+
+        assertThat(verifiedJar.getSignatureFile("META-INF/test.ec")).isSameAs(sf);
+        assertThat(verifiedJar.getSignatureFile("META-INF/other.ec")).isNull();
+    }
+
+    private File createSignedJar(int entries) throws Exception {
+        File jarFile = createJar(new File(tempDir, "signed.jar"), entries);
+        JarSigner.sign(jarFile, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+        return jarFile;
+    }
+
+    private static File createJar(File file, int entries) throws IOException {
+        Random random = new Random(42);
+
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(file.toPath()))) {
+            for (int i = 0; i < entries; i++) {
+                byte[] content = new byte[random.nextInt(4096)];
+                random.nextBytes(content);
+
+                jos.putNextEntry(new JarEntry(getEntryName(i)));
+                jos.write(content);
+                jos.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static String getEntryName(int index) {
+        return "org/kse/test/Entry" + index + ".class";
+    }
+}
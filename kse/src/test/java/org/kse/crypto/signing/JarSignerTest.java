@@ -0,0 +1,337 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for JarSigner.
+ */
+public class JarSignerTest extends CryptoTestsBase {
+    private static final int ENTRIES = 1000;
+
+    @TempDir
+    File tempDir;
+
+    private KeyPair keyPair;
+    private X509Certificate cert;
+
+    @BeforeEach
+    void createSigner() throws Exception {
+        keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        cert = createSelfSignedCertificate(keyPair, "CN=Signer", 1);
+    }
+
+    @AfterEach
+    void resetThreads() {
+        JarSigner.setThreads(0);
+    }
+
+    @Test
+    void parallelDigestingMatchesSequentialDigesting() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        File sequentialJar = new File(tempDir, "sequential.jar");
+        File parallelJar = new File(tempDir, "parallel.jar");
+
+        JarSigner.setThreads(1);
+        JarSigner.sign(jarFile, sequentialJar, keyPair.getPrivate(), new X509Certificate[] { cert },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+
+        JarSigner.setThreads(4);
+        JarSigner.sign(jarFile, parallelJar, keyPair.getPrivate(), new X509Certificate[] { cert },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+
+        // the signature blocks differ by their signing time, but what is signed must be identical
+        assertThat(readEntry(parallelJar, JarFile.MANIFEST_NAME)).isEqualTo(
+                readEntry(sequentialJar, JarFile.MANIFEST_NAME));
+        assertThat(readEntry(parallelJar, "META-INF/TEST.SF")).isEqualTo(readEntry(sequentialJar, "META-INF/TEST.SF"));
+        assertThat(new String(readEntry(parallelJar, JarFile.MANIFEST_NAME), StandardCharsets.UTF_8))
+                .contains("Name: " + getEntryName(ENTRIES - 1));
+    }
+
+    @Test
+    void manifestContainsDigestOfEveryEntry() throws Exception {
+        // enough entries to be digested in parallel on a multi-core machine
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        File signedJar = new File(tempDir, "signed.jar");
+        assertThat(ENTRIES).isGreaterThan(JarSigner.MIN_PARALLEL_ENTRIES);
+
+        JarSigner.sign(jarFile, signedJar, keyPair.getPrivate(), new X509Certificate[] { cert },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile unsigned = new JarFile(jarFile); JarFile signed = new JarFile(signedJar)) {
+            Manifest manifest = signed.getManifest();
+
+            for (int i = 0; i < ENTRIES; i++) {
+                String name = getEntryName(i);
+                byte[] content = unsigned.getInputStream(unsigned.getJarEntry(name)).readAllBytes();
+                String digest = Base64.getEncoder().encodeToString(
+                        MessageDigest.getInstance("SHA-256").digest(content));
+
+                assertThat(manifest.getAttributes(name).getValue("SHA-256-Digest")).as(name).isEqualTo(digest);
+            }
+        }
+    }
+
+    @Test
+    void signedJarContainsOriginalEntriesVerbatim() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        File signedJar = new File(tempDir, "signed.jar");
+
+        JarSigner.sign(jarFile, signedJar, keyPair.getPrivate(), new X509Certificate[] { cert },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile unsigned = new JarFile(jarFile); JarFile signed = new JarFile(signedJar, true)) {
+            assertThat(signed.size()).isEqualTo(unsigned.size() + 3);
+
+            for (int i = 0; i < ENTRIES; i++) {
+                String name = getEntryName(i);
+                JarEntry original = unsigned.getJarEntry(name);
+                JarEntry copy = signed.getJarEntry(name);
+
+                assertThat(copy.getCompressedSize()).as(name).isEqualTo(original.getCompressedSize());
+                assertThat(copy.getCrc()).as(name).isEqualTo(original.getCrc());
+
+                // the entry must be read completely before its signers are known
+                signed.getInputStream(copy).readAllBytes();
+                assertThat(copy.getCodeSigners()).as(name).isNotEmpty();
+            }
+        }
+    }
+
+    @Test
+    void resigningReusesDigestsOfAnyVerifiedSigner() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+
+        try (JarFile unsigned = new JarFile(jarFile)) {
+            assertThat(JarSigner.getSignedDigests(unsigned, DigestType.SHA256)).isEmpty();
+        }
+
+        JarSigner.sign(jarFile, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile signed = new JarFile(jarFile)) {
+            assertThat(JarSigner.getSignedDigests(signed, DigestType.SHA256)).hasSize(ENTRIES);
+            assertThat(JarSigner.getSignedDigests(signed, DigestType.SHA512)).isEmpty();
+        }
+
+        // a second signer takes over the digests of the first one
+        KeyPair otherKeyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate otherCert = createSelfSignedCertificate(otherKeyPair, "CN=Other", 2);
+
+        JarSigner.sign(jarFile, otherKeyPair.getPrivate(), new X509Certificate[] { otherCert },
+                       SignatureType.SHA256_ECDSA, "other", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile signed = new JarFile(jarFile, true)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                JarEntry jarEntry = signed.getJarEntry(getEntryName(i));
+                signed.getInputStream(jarEntry).readAllBytes();
+                assertThat(jarEntry.getCodeSigners()).as(jarEntry.getName()).hasSize(2);
+            }
+        }
+    }
+
+    @Test
+    void resigningIgnoresSignatureFilesThatDoNotVerify() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        JarSigner.sign(jarFile, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        File tamperedJar = new File(tempDir, "tampered.jar");
+        try (JarFile jar = new JarFile(jarFile);
+             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(tamperedJar.toPath()))) {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry jarEntry = entries.nextElement();
+                byte[] content = jar.getInputStream(jarEntry).readAllBytes();
+
+                if (jarEntry.getName().equals("META-INF/TEST.SF")) {
+                    content = new String(content, StandardCharsets.UTF_8).replace("Created-By: KSE",
+                                                                                  "Created-By: Other")
+                                                                         .getBytes(StandardCharsets.UTF_8);
+                }
+
+                jos.putNextEntry(new JarEntry(jarEntry.getName()));
+                jos.write(content);
+                jos.closeEntry();
+            }
+        }
+
+        try (JarFile tampered = new JarFile(tamperedJar)) {
+            assertThat(JarSigner.getSignedDigests(tampered, DigestType.SHA256)).isEmpty();
+        }
+    }
+
+    @Test
+    void resigningDigestsModifiedEntriesAgain() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        JarSigner.sign(jarFile, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        // patch the content of one entry and the manifest digest of another one
+        File patchedJar = patchJar(jarFile, new File(tempDir, "patched.jar"), true);
+
+        try (JarFile patched = new JarFile(patchedJar)) {
+            Map<String, String> signedDigests = JarSigner.getSignedDigests(patched, DigestType.SHA256);
+            assertThat(signedDigests).hasSize(ENTRIES - 2);
+            assertThat(signedDigests).doesNotContainKeys(getEntryName(7), getEntryName(8));
+        }
+
+        JarSigner.sign(patchedJar, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile signed = new JarFile(patchedJar, true)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                JarEntry jarEntry = signed.getJarEntry(getEntryName(i));
+                signed.getInputStream(jarEntry).readAllBytes();
+                assertThat(jarEntry.getCodeSigners()).as(jarEntry.getName()).isNotEmpty();
+            }
+        }
+    }
+
+    @Test
+    void resigningDigestsEntriesModifiedWithoutNewerTime() throws Exception {
+        File jarFile = createJar(new File(tempDir, "unsigned.jar"));
+        JarSigner.sign(jarFile, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        // e.g. a reproducible build with fixed timestamps
+        File patchedJar = patchJar(jarFile, new File(tempDir, "patched.jar"), false);
+
+        try (JarFile signed = new JarFile(jarFile); JarFile patched = new JarFile(patchedJar)) {
+            assertThat(patched.getJarEntry(getEntryName(7)).getTime()).isEqualTo(
+                    signed.getJarEntry(getEntryName(7)).getTime());
+            assertThat(JarSigner.getSignedDigests(patched, DigestType.SHA256)).doesNotContainKey(
+                    getEntryName(7));
+        }
+
+        JarSigner.sign(patchedJar, keyPair.getPrivate(), new X509Certificate[] { cert }, SignatureType.SHA256_ECDSA,
+                       "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile signed = new JarFile(patchedJar, true)) {
+            JarEntry jarEntry = signed.getJarEntry(getEntryName(7));
+            assertThat(signed.getInputStream(jarEntry).readAllBytes()).isEqualTo(
+                    "patched".getBytes(StandardCharsets.US_ASCII));
+            assertThat(jarEntry.getCodeSigners()).isNotEmpty();
+        }
+    }
+
+    private static String getEntryName(int index) {
+        return "org/kse/test/Entry" + index + ".class";
+    }
+
+    /*
+     * Copy a signed JAR with new content for entry 7, which is written after the
+     * signature if newerTime is set and keeps its time otherwise, and a wrong
+     * manifest digest for entry 8
+     */
+    private static File patchJar(File signedJar, File file, boolean newerTime) throws IOException {
+        try (JarFile jar = new JarFile(signedJar);
+             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(file.toPath()))) {
+            long signingTime = jar.getJarEntry("META-INF/TEST.SF").getTime();
+
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry jarEntry = entries.nextElement();
+                byte[] content = jar.getInputStream(jarEntry).readAllBytes();
+                JarEntry copy = new JarEntry(jarEntry.getName());
+                copy.setTime(jarEntry.getTime());
+
+                if (jarEntry.getName().equals(getEntryName(7))) {
+                    content = "patched".getBytes(StandardCharsets.US_ASCII);
+
+                    if (newerTime) {
+                        copy.setTime(signingTime + 60 * 1000);
+                    }
+                } else if (jarEntry.getName().equals(JarFile.MANIFEST_NAME)) {
+                    Manifest manifest = new Manifest(new ByteArrayInputStream(content));
+                    String wrongDigest = manifest.getAttributes(getEntryName(9)).getValue("SHA-256-Digest");
+                    String manifestText = new String(content, StandardCharsets.UTF_8);
+                    manifestText = manifestText.replace(
+                            "Name: " + getEntryName(8) + "\r\nSHA-256-Digest: "
+                            + manifest.getAttributes(getEntryName(8)).getValue("SHA-256-Digest"),
+                            "Name: " + getEntryName(8) + "\r\nSHA-256-Digest: " + wrongDigest);
+                    content = manifestText.getBytes(StandardCharsets.UTF_8);
+                }
+
+                jos.putNextEntry(copy);
+                jos.write(content);
+                jos.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static File createJar(File file) throws IOException {
+        return createJar(file, -1);
+    }
+
+    private static File createJar(File file, int patchedEntry) throws IOException {
+        Random random = new Random(42);
+
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(file.toPath()))) {
+            for (int i = 0; i < ENTRIES; i++) {
+                byte[] content = new byte[random.nextInt(4096)];
+                random.nextBytes(content);
+
+                if (i == patchedEntry) {
+                    content = "patched".getBytes(StandardCharsets.US_ASCII);
+                }
+
+                jos.putNextEntry(new JarEntry(getEntryName(i)));
+                jos.write(content);
+                jos.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static byte[] readEntry(File file, String name) throws IOException {
+        try (JarFile jar = new JarFile(file)) {
+            JarEntry jarEntry = jar.getJarEntry(name);
+            assertThat(jarEntry).as(name).isNotNull();
+            return jar.getInputStream(jarEntry).readAllBytes();
+        }
+    }
+}
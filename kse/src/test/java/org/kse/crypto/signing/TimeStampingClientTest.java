@@ -21,13 +21,19 @@
 package org.kse.crypto.signing;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.kse.crypto.digest.DigestType;
 import org.kse.utilities.net.URLs;
 
+import com.sun.net.httpserver.HttpServer;
+
 class TimeStampingClientTest {
 
     private static final byte[] DATA = new byte[] { 0x31, 0x32, 0x33, 0x34, 0x35, 0x36, 0x37, 0x38 };
@@ -40,6 +46,74 @@ class TimeStampingClientTest {
                   .doesNotThrowAnyException();
     }
 
+    @Test
+    public void failedRequestReportsTsaUrl() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = startFailingTsa(requests);
+
+        try {
+            String tsaUrl = getUrl(server);
+
+            Assertions.assertThatThrownBy(() -> TimeStampingClient.getTimeStampToken(tsaUrl, DATA, DigestType.SHA256))
+                      .isInstanceOf(IOException.class)
+                      .hasMessageContaining(tsaUrl);
+            Assertions.assertThat(requests).hasValue(1);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void failsOverToNextTsa() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer first = startFailingTsa(requests);
+        HttpServer second = startFailingTsa(requests);
+
+        try {
+            List<String> tsaUrls = List.of(getUrl(first), getUrl(second));
+
+            Assertions.assertThatThrownBy(() -> TimeStampingClient.getTimeStampToken(tsaUrls, DATA, DigestType.SHA256))
+                      .isInstanceOf(IOException.class)
+                      .hasMessageContaining(getUrl(second))
+                      .satisfies(e -> Assertions.assertThat(e.getSuppressed()).hasSize(1));
+            Assertions.assertThat(requests).hasValue(2);
+        } finally {
+            first.stop(0);
+            second.stop(0);
+        }
+    }
+
+    @Test
+    public void splitsTsaUrls() {
+        Assertions.assertThat(TimeStampingClient.splitTsaUrls(" http://tsa1/,http://tsa2/  http://tsa3/ "))
+                  .containsExactly("http://tsa1/", "http://tsa2/", "http://tsa3/");
+        Assertions.assertThat(TimeStampingClient.splitTsaUrls("http://tsa1/")).containsExactly("http://tsa1/");
+        Assertions.assertThat(TimeStampingClient.splitTsaUrls("")).isEmpty();
+    }
+
+    @Test
+    public void invalidTsaUrlFails() {
+        Assertions.assertThatThrownBy(() -> TimeStampingClient.getTimeStampToken("ftp://tsa", DATA, DigestType.SHA256))
+                  .isInstanceOf(IOException.class)
+                  .hasMessageContaining("ftp://tsa");
+    }
+
+    private static HttpServer startFailingTsa(AtomicInteger requests) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static String getUrl(HttpServer server) {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
     static String[] tsaUrls() {
         return URLs.TSA_URLS;
     }
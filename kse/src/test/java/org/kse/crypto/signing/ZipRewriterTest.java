@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for ZipRewriter.
+ */
+public class ZipRewriterTest {
+    private static final byte[] LAUNCHER = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(
+            StandardCharsets.US_ASCII);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void rewritesPlainJar() throws Exception {
+        File source = new File(tempDir, "source.jar");
+        Files.write(source.toPath(), createJar());
+        File target = new File(tempDir, "target.jar");
+
+        assertThat(ZipRewriter.rewrite(source, target, Map.of("META-INF/NEW.TXT", new byte[] { 1, 2, 3 }),
+                                       name -> false)).isTrue();
+
+        try (JarFile jar = new JarFile(target)) {
+            assertThat(jar.getInputStream(jar.getJarEntry("META-INF/NEW.TXT")).readAllBytes()).containsExactly(1, 2,
+                                                                                                              3);
+            assertThat(jar.getInputStream(jar.getJarEntry("test.txt")).readAllBytes()).isEqualTo(
+                    "test".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void leavesJarWithLauncherToCaller() throws Exception {
+        File source = new File(tempDir, "source.jar");
+        Files.write(source.toPath(), prependLauncher(createJar()));
+        File target = new File(tempDir, "target.jar");
+
+        // the JAR itself is valid, but its launcher would be lost
+        try (JarFile jar = new JarFile(source)) {
+            assertThat(jar.getJarEntry("test.txt")).isNotNull();
+        }
+
+        assertThat(ZipRewriter.rewrite(source, target, Map.of("META-INF/NEW.TXT", new byte[] { 1, 2, 3 }),
+                                       name -> false)).isFalse();
+    }
+
+    private static byte[] createJar() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (JarOutputStream jos = new JarOutputStream(baos)) {
+            jos.putNextEntry(new JarEntry("test.txt"));
+            jos.write("test".getBytes(StandardCharsets.US_ASCII));
+            jos.closeEntry();
+        }
+        return baos.toByteArray();
+    }
+
+    /*
+     * Put the launcher in front of the JAR and adjust the offsets of the
+     * central directory like "zip -A" does
+     */
+    private static byte[] prependLauncher(byte[] jar) {
+        ByteBuffer zip = ByteBuffer.allocate(LAUNCHER.length + jar.length).order(ByteOrder.LITTLE_ENDIAN);
+        zip.put(LAUNCHER).put(jar);
+
+        // the JAR has no comment, so the end of central directory record is at its end
+        int endPos = zip.limit() - 22;
+        int cdOffset = zip.getInt(endPos + 16);
+        int count = zip.getShort(endPos + 10);
+        zip.putInt(endPos + 16, cdOffset + LAUNCHER.length);
+
+        int pos = LAUNCHER.length + cdOffset;
+        for (int i = 0; i < count; i++) {
+            zip.putInt(pos + 42, zip.getInt(pos + 42) + LAUNCHER.length);
+            pos += 46 + zip.getShort(pos + 28) + zip.getShort(pos + 30) + zip.getShort(pos + 32);
+        }
+
+        return zip.array();
+    }
+}
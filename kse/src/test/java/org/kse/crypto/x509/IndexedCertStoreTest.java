@@ -0,0 +1,81 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.util.Store;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for IndexedCertStore.
+ */
+public class IndexedCertStoreTest extends CryptoTestsBase {
+
+    @Test
+    void matchesLikeJcaCertStore() throws Exception {
+        List<X509Certificate> certs = new ArrayList<>();
+        List<KeyPair> keyPairs = new ArrayList<>();
+
+        // certificates with the same subject, like after a key rollover
+        for (int i = 1; i <= 5; i++) {
+            KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+            keyPairs.add(keyPair);
+            certs.add(createSelfSignedCertificate(keyPair, "CN=Root", i));
+        }
+
+        IndexedCertStore indexedStore = new IndexedCertStore(certs);
+        @SuppressWarnings("unchecked")
+        Store<X509CertificateHolder> jcaStore = new JcaCertStore(certs);
+
+        assertThat(indexedStore.size()).isEqualTo(certs.size());
+        assertThat(indexedStore.getMatches(null)).containsExactlyInAnyOrderElementsOf(jcaStore.getMatches(null));
+
+        JcaX509ExtensionUtils extensionUtils = new JcaX509ExtensionUtils();
+
+        for (int i = 0; i < certs.size(); i++) {
+            SignerId byIssuerSerial = new SignerId(new X500Name("CN=Root"), BigInteger.valueOf(i + 1));
+            SignerId bySki = new SignerId(
+                    extensionUtils.createSubjectKeyIdentifier(keyPairs.get(i).getPublic()).getKeyIdentifier());
+
+            assertThat(indexedStore.getMatches(byIssuerSerial)).hasSize(1)
+                                                               .containsExactlyElementsOf(
+                                                                       jcaStore.getMatches(byIssuerSerial));
+            assertThat(indexedStore.getMatches(bySki)).containsExactlyInAnyOrderElementsOf(
+                    jcaStore.getMatches(bySki));
+        }
+
+        assertThat(indexedStore.getMatches(new SignerId(new X500Name("CN=Other"), BigInteger.ONE))).isEmpty();
+    }
+}
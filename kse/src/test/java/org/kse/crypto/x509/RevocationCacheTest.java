@@ -0,0 +1,202 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.CRLReason;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.ocsp.OcspResponder;
+import org.kse.crypto.signing.SignatureType;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for RevocationCache.
+ */
+public class RevocationCacheTest extends CryptoTestsBase {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void crlsAreCachedOnDisk() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        byte[] crl = createCrl(keyPair, new Date(System.currentTimeMillis() + DAY));
+
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, crl.length);
+            exchange.getResponseBody().write(crl);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            String crlUrl = "http://localhost:" + server.getAddress().getPort() + "/ca.crl";
+            X509Certificate cert = createCert(keyPair, crlUrl, null);
+
+            RevocationCache cache = new RevocationCache(tempDir);
+            assertThat(cache.getCrls(cert)).hasSize(1);
+            assertThat(cache.getCrls(cert).get(0).getEncoded()).isEqualTo(crl);
+            assertThat(requests).hasValue(1);
+
+            // a new session reads the CRL from disk
+            assertThat(new RevocationCache(tempDir).getCrls(cert)).hasSize(1);
+            assertThat(requests).hasValue(1);
+
+            assertThat(new RevocationCache(null).getCrls(cert)).hasSize(1);
+            assertThat(requests).hasValue(2);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void ocspResponsesAreCachedOnDisk() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        OcspResponder responder = new OcspResponder(caCert, keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null,
+                                                    null, DAY);
+        responder.start(0);
+
+        X509Certificate cert = createCert(keyPair, null, responder.getUrl());
+
+        byte[] response;
+        try {
+            response = new RevocationCache(tempDir).getOcspResponse(cert, caCert);
+            assertThat(new OCSPResp(response).getStatus()).isEqualTo(OCSPResp.SUCCESSFUL);
+        } finally {
+            responder.stop();
+        }
+
+        // the responder is no longer running, so the response must come from disk
+        assertThat(new RevocationCache(tempDir).getOcspResponse(cert, caCert)).isEqualTo(response);
+    }
+
+    @Test
+    void expiredFilesArePruned() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date();
+
+        File valid = new File(tempDir, "crl-valid");
+        Files.write(valid.toPath(), createCrl(keyPair, new Date(now.getTime() + DAY)));
+        File expired = new File(tempDir, "crl-expired");
+        Files.write(expired.toPath(), createCrl(keyPair, new Date(now.getTime() - DAY)));
+        File unreadable = new File(tempDir, "ocsp-unreadable");
+        Files.write(unreadable.toPath(), new byte[] { 1, 2, 3 });
+        File aborted = new File(tempDir, "crl-aborted.tmp");
+        Files.write(aborted.toPath(), new byte[0]);
+        assertThat(aborted.setLastModified(now.getTime() - RevocationCache.MIN_TEMP_FILE_AGE)).isTrue();
+        File storing = new File(tempDir, "crl-storing.tmp");
+        Files.write(storing.toPath(), new byte[0]);
+
+        new RevocationCache(tempDir).prune();
+
+        assertThat(valid).exists();
+        assertThat(expired).doesNotExist();
+        assertThat(unreadable).doesNotExist();
+        assertThat(aborted).doesNotExist();
+        assertThat(storing).exists();
+    }
+
+    @Test
+    void unavailableOcspResponseIsLeftToChecker() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        // nothing listens on the port of a stopped server
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String ocspUrl = "http://localhost:" + server.getAddress().getPort() + "/ocsp";
+        server.stop(0);
+
+        X509Certificate cert = createCert(keyPair, null, ocspUrl);
+
+        assertThat(new RevocationCache(tempDir).getOcspResponse(cert, caCert)).isNull();
+        assertThat(tempDir.list()).isEmpty();
+    }
+
+    private static byte[] createCrl(KeyPair keyPair, Date nextUpdate) throws Exception {
+        Date now = new Date(nextUpdate.getTime() - 2 * DAY);
+        X509CrlGenerator crlGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        crlGen.setNextUpdate(nextUpdate);
+        crlGen.addEntry(BigInteger.TEN, now, CRLReason.KEY_COMPROMISE);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        crlGen.generate(keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null, baos);
+        return baos.toByteArray();
+    }
+
+    private static X509Certificate createCert(KeyPair caKeyPair, String crlUrl, String ocspUrl) throws Exception {
+        X509ExtensionSet extensions = new X509ExtensionSet();
+
+        if (crlUrl != null) {
+            GeneralNames fullName = new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, crlUrl));
+            CRLDistPoint crlDistPoint = new CRLDistPoint(new DistributionPoint[] {
+                    new DistributionPoint(new DistributionPointName(fullName), null, null) });
+            extensions.addExtension(Extension.cRLDistributionPoints.getId(), false,
+                                    new DEROctetString(crlDistPoint).getEncoded(ASN1Encoding.DER));
+        }
+
+        if (ocspUrl != null) {
+            AuthorityInformationAccess aia = new AuthorityInformationAccess(
+                    AccessDescription.id_ad_ocsp, new GeneralName(GeneralName.uniformResourceIdentifier, ocspUrl));
+            extensions.addExtension(Extension.authorityInfoAccess.getId(), false,
+                                    new DEROctetString(aia).getEncoded(ASN1Encoding.DER));
+        }
+
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date();
+        return new X509CertificateGenerator(X509CertificateVersion.VERSION3).generate(
+                new X500Name("CN=Leaf"), new X500Name("CN=CA"), now, new Date(now.getTime() + DAY),
+                keyPair.getPublic(), caKeyPair.getPrivate(), SignatureType.SHA256_ECDSA, BigInteger.TWO, extensions,
+                KSE.BC);
+    }
+}
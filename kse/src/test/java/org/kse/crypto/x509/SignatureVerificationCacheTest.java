@@ -0,0 +1,144 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for SignatureVerificationCache.
+ */
+public class SignatureVerificationCacheTest extends CryptoTestsBase {
+
+    private X509Certificate cert;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SignatureVerificationCache.clear();
+        cert = createSelfSignedCertificate(KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC), "CN=CA", 1);
+    }
+
+    @Test
+    void successfulVerificationIsCached() throws Exception {
+        assertThat(X509CertUtil.verifyCertificate(cert, cert)).isTrue();
+        assertThat(X509CertUtil.verifyCertificate(cert, cert)).isTrue();
+
+        assertThat(SignatureVerificationCache.getMisses()).isEqualTo(1);
+        assertThat(SignatureVerificationCache.getHits()).isEqualTo(1);
+        assertThat(SignatureVerificationCache.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void failedVerificationIsNotCached() {
+        AtomicInteger verifications = new AtomicInteger();
+        SignatureVerificationCache.Verification failing = () -> {
+            verifications.incrementAndGet();
+            throw new CryptoException("failed");
+        };
+
+        assertThatThrownBy(() -> SignatureVerificationCache.verify(cert, cert.getPublicKey(), failing))
+                .isInstanceOf(CryptoException.class);
+        assertThatThrownBy(() -> SignatureVerificationCache.verify(cert, cert.getPublicKey(), failing))
+                .isInstanceOf(CryptoException.class);
+
+        assertThat(verifications).hasValue(2);
+        assertThat(SignatureVerificationCache.getHits()).isZero();
+        assertThat(SignatureVerificationCache.getSize()).isZero();
+    }
+
+    @Test
+    void otherKeyIsVerifiedAgain() throws Exception {
+        // same subject, but the key has been replaced
+        X509Certificate rekeyedCert = createSelfSignedCertificate(KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC),
+                                                                  "CN=CA", 1);
+
+        assertThat(X509CertUtil.verifyCertificate(cert, cert)).isTrue();
+        assertThat(X509CertUtil.verifyCertificate(cert, rekeyedCert)).isFalse();
+
+        assertThat(SignatureVerificationCache.getMisses()).isEqualTo(2);
+        assertThat(SignatureVerificationCache.getHits()).isZero();
+    }
+
+    @Test
+    void leastRecentlyUsedResultIsEvicted() throws Exception {
+        AtomicInteger verifications = new AtomicInteger();
+        SignatureVerificationCache.Verification counting = () -> {
+            verifications.incrementAndGet();
+            return true;
+        };
+
+        for (int i = 0; i < SignatureVerificationCache.MAX_ENTRIES; i++) {
+            SignatureVerificationCache.verify(cert, new EncodedKey(i), counting);
+        }
+        assertThat(SignatureVerificationCache.getSize()).isEqualTo(SignatureVerificationCache.MAX_ENTRIES);
+
+        // using the first result makes the second one the least recently used
+        SignatureVerificationCache.verify(cert, new EncodedKey(0), counting);
+        SignatureVerificationCache.verify(cert, new EncodedKey(SignatureVerificationCache.MAX_ENTRIES), counting);
+        assertThat(SignatureVerificationCache.getSize()).isEqualTo(SignatureVerificationCache.MAX_ENTRIES);
+        assertThat(verifications).hasValue(SignatureVerificationCache.MAX_ENTRIES + 1);
+
+        SignatureVerificationCache.verify(cert, new EncodedKey(0), counting);
+        assertThat(verifications).hasValue(SignatureVerificationCache.MAX_ENTRIES + 1);
+
+        SignatureVerificationCache.verify(cert, new EncodedKey(1), counting);
+        assertThat(verifications).hasValue(SignatureVerificationCache.MAX_ENTRIES + 2);
+    }
+
+    /**
+     * Public key that only has an encoding, which is all the cache looks at.
+     */
+    private static class EncodedKey implements PublicKey {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+
+        private EncodedKey(int i) {
+            encoded = BigInteger.valueOf(i).toByteArray();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "TEST";
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return encoded.clone();
+        }
+    }
+}
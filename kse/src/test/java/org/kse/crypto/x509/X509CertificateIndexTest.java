@@ -0,0 +1,104 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+
+/**
+ * Unit tests for X509CertificateIndex and the chain building in X509CertUtil
+ * that uses it.
+ */
+public class X509CertificateIndexTest extends CryptoTestsBase {
+    private static final long VALIDITY = 24L * 60 * 60 * 1000;
+
+    private final X509CertificateGenerator certGen = new X509CertificateGenerator(X509CertificateVersion.VERSION3);
+
+    @Test
+    void ordersShuffledChain() throws Exception {
+        KeyPair rootKey = generateKeyPair();
+        KeyPair caKey = generateKeyPair();
+        KeyPair eeKey = generateKeyPair();
+
+        X509Certificate root = createSelfSignedCertificate(rootKey, "CN=Root", 1);
+        X509Certificate ca = issue("CN=CA", "CN=Root", caKey, rootKey, 2);
+        X509Certificate ee = issue("CN=End Entity", "CN=CA", eeKey, caKey, 3);
+
+        X509Certificate[] ordered = X509CertUtil.orderX509CertChain(new X509Certificate[] { ca, root, ee });
+
+        assertThat(ordered).containsExactly(ee, ca, root);
+    }
+
+    @Test
+    void findsIssuerAmongstCertificatesWithSameSubject() throws Exception {
+        KeyPair oldRootKey = generateKeyPair();
+        KeyPair newRootKey = generateKeyPair();
+        KeyPair eeKey = generateKeyPair();
+
+        X509Certificate oldRoot = createSelfSignedCertificate(oldRootKey, "CN=Root", 1);
+        X509Certificate newRoot = createSelfSignedCertificate(newRootKey, "CN=Root", 2);
+        X509Certificate ee = issue("CN=End Entity", "CN=Root", eeKey, newRootKey, 3);
+
+        X509CertificateIndex index = new X509CertificateIndex(Arrays.asList(oldRoot, newRoot));
+
+        assertThat(index.getIssuerCandidates(ee)).containsExactlyInAnyOrder(oldRoot, newRoot);
+        assertThat(index.findIssuer(ee)).isSameAs(newRoot);
+        assertThat(index.getIssuedCandidates(newRoot)).isEmpty();
+        assertThat(X509CertUtil.establishTrust(ee, index)).containsExactly(ee, newRoot);
+    }
+
+    @Test
+    void noTrustWithoutSelfSignedRoot() throws Exception {
+        KeyPair rootKey = generateKeyPair();
+        KeyPair caKey = generateKeyPair();
+        KeyPair eeKey = generateKeyPair();
+
+        X509Certificate ca = issue("CN=CA", "CN=Root", caKey, rootKey, 2);
+        X509Certificate ee = issue("CN=End Entity", "CN=CA", eeKey, caKey, 3);
+
+        assertThat(X509CertUtil.establishTrust(ee, List.of(ca))).isNull();
+    }
+
+    private X509Certificate issue(String subject, String issuer, KeyPair subjectKey, KeyPair issuerKey, int serial)
+            throws Exception {
+        Date validityStart = new Date();
+        Date validityEnd = new Date(validityStart.getTime() + VALIDITY);
+        return certGen.generate(new X500Name(subject), new X500Name(issuer), validityStart, validityEnd,
+                                subjectKey.getPublic(), issuerKey.getPrivate(), SignatureType.SHA256_ECDSA,
+                                BigInteger.valueOf(serial));
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        return KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+    }
+}
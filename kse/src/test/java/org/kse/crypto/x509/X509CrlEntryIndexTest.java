@@ -0,0 +1,132 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.Date;
+import java.util.Random;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for X509CrlEntryIndex.
+ */
+public class X509CrlEntryIndexTest extends CryptoTestsBase {
+    private static final int ENTRIES = 1000;
+
+    @Test
+    void entriesMatchCrl() throws Exception {
+        X509CRL crl = createCrl(ENTRIES);
+
+        X509CrlEntryIndex index = X509CrlEntryIndex.create(crl);
+
+        assertThat(index.size()).isEqualTo(ENTRIES);
+
+        for (int i = 1; i < index.size(); i++) {
+            assertThat(index.getSerialNumber(i - 1)).isLessThan(index.getSerialNumber(i));
+        }
+
+        for (X509CRLEntry expected : crl.getRevokedCertificates()) {
+            int i = index.indexOf(expected.getSerialNumber());
+            assertThat(i).isNotEqualTo(-1);
+
+            assertThat(index.getSerialNumber(i)).isEqualTo(expected.getSerialNumber());
+            assertThat(index.getRevocationDate(i)).isEqualTo(expected.getRevocationDate());
+            assertThat(index.getRevocationReason(i)).isEqualTo(expected.getRevocationReason());
+
+            X509CRLEntry entry = index.getEntry(i);
+            assertThat(entry.getEncoded()).isEqualTo(expected.getEncoded());
+            assertThat(entry.hasExtensions()).isEqualTo(expected.hasExtensions());
+            assertThat(entry.getNonCriticalExtensionOIDs()).isEqualTo(expected.getNonCriticalExtensionOIDs());
+            assertThat(entry.getExtensionValue(Extension.invalidityDate.getId())).isEqualTo(
+                    expected.getExtensionValue(Extension.invalidityDate.getId()));
+        }
+
+        assertThat(index.indexOf(BigInteger.valueOf(-1))).isEqualTo(-1);
+    }
+
+    @Test
+    void emptyCrl() throws Exception {
+        X509CrlEntryIndex index = X509CrlEntryIndex.create(createCrl(0));
+
+        assertThat(index.size()).isZero();
+        assertThat(index.indexOf(BigInteger.ONE)).isEqualTo(-1);
+    }
+
+    @Test
+    void differenceOmitsBaseEntries() throws Exception {
+        X509CrlEntryIndex base = X509CrlEntryIndex.create(createCrl(ENTRIES / 2));
+        X509CrlEntryIndex all = base.merge(X509CrlEntryIndex.create(createCrl(ENTRIES)));
+
+        X509CrlEntryIndex difference = all.difference(base);
+
+        assertThat(difference.size()).isEqualTo(all.size() - base.size());
+        for (int i = 0; i < difference.size(); i++) {
+            assertThat(base.indexOf(difference.getSerialNumber(i))).isEqualTo(-1);
+            assertThat(all.indexOf(difference.getSerialNumber(i))).isNotEqualTo(-1);
+        }
+    }
+
+    private static X509CRL createCrl(int entries) throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date();
+
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CA"), now);
+        crlBuilder.setNextUpdate(new Date(now.getTime() + 24L * 60 * 60 * 1000));
+
+        // serial numbers in random order, some entries without extensions
+        Random random = new Random(42);
+        for (int i = 0; i < entries; i++) {
+            BigInteger serialNumber = new BigInteger(64, random);
+            Date revocationDate = new Date(now.getTime() - random.nextInt(1000000) * 1000L);
+
+            switch (i % 3) {
+                case 0:
+                    crlBuilder.addCRLEntry(serialNumber, revocationDate, CRLReason.keyCompromise);
+                    break;
+                case 1:
+                    crlBuilder.addCRLEntry(serialNumber, revocationDate, CRLReason.superseded, revocationDate);
+                    break;
+                default:
+                    crlBuilder.addCRLEntry(serialNumber, revocationDate, (Extensions) null);
+                    break;
+            }
+        }
+
+        return new JcaX509CRLConverter().setProvider(KSE.BC).getCRL(
+                crlBuilder.build(new JcaContentSignerBuilder("SHA256withECDSA").setProvider(KSE.BC)
+                                                                              .build(keyPair.getPrivate())));
+    }
+}
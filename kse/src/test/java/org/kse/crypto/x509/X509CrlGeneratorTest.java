@@ -0,0 +1,200 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+
+/**
+ * Unit tests for X509CrlGenerator.
+ */
+public class X509CrlGeneratorTest extends CryptoTestsBase {
+    private static final int ENTRIES = 1000;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void previousEntriesAreCopied() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        X509CrlGenerator previousGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        for (int i = 1; i <= ENTRIES; i++) {
+            previousGen.addEntry(BigInteger.valueOf(i * 10L), now, CRLReason.values()[i % 4]);
+        }
+        X509CRL previousCrl = generate(previousGen, keyPair, BigInteger.ONE);
+
+        X509CrlGenerator crlGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        crlGen.setNextUpdate(new Date(now.getTime() + 24L * 60 * 60 * 1000));
+        crlGen.addPreviousCrl(X509CrlHeader.create(write(previousCrl)));
+        crlGen.addEntry(BigInteger.valueOf(15), now, CRLReason.KEY_COMPROMISE);
+        crlGen.addEntry(BigInteger.valueOf(20), now, CRLReason.AFFILIATION_CHANGED);
+        X509CRL crl = generate(crlGen, keyPair, BigInteger.TWO);
+
+        crl.verify(keyPair.getPublic(), KSE.BC);
+        assertThat(crl.getNextUpdate()).isEqualTo(new Date(now.getTime() + 24L * 60 * 60 * 1000));
+        assertThat(crl.getRevokedCertificates()).hasSize(ENTRIES + 1);
+
+        // an added entry replaces the previous entry with the same serial number
+        assertThat(crl.getRevokedCertificate(BigInteger.valueOf(15)).getRevocationReason())
+                .isEqualTo(CRLReason.KEY_COMPROMISE);
+        assertThat(crl.getRevokedCertificate(BigInteger.valueOf(20)).getRevocationReason())
+                .isEqualTo(CRLReason.AFFILIATION_CHANGED);
+
+        for (X509CRLEntry previousEntry : previousCrl.getRevokedCertificates()) {
+            if (!previousEntry.getSerialNumber().equals(BigInteger.valueOf(20))) {
+                assertThat(crl.getRevokedCertificate(previousEntry.getSerialNumber()).getEncoded())
+                        .isEqualTo(previousEntry.getEncoded());
+            }
+        }
+    }
+
+    @Test
+    void emptyCrl() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+
+        X509CRL crl = generate(new X509CrlGenerator(new X500Name("CN=CA"), new Date()), keyPair, BigInteger.ONE);
+
+        crl.verify(keyPair.getPublic(), KSE.BC);
+        assertThat(crl.getRevokedCertificates()).isNull();
+        assertThat(crl.getNextUpdate()).isNull();
+    }
+
+    @Test
+    void deltaCrlContainsOnlyNewEntries() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date();
+        IssuingDistributionPoint idp = new IssuingDistributionPoint(null, true, false, null, false, false);
+        CRLDistPoint freshestCrl = new CRLDistPoint(new DistributionPoint[] {
+                new DistributionPoint(new DistributionPointName(new GeneralNames(
+                        new GeneralName(GeneralName.uniformResourceIdentifier, "http://ca/delta.crl"))), null, null) });
+
+        X509CrlGenerator baseGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        for (int i = 1; i <= ENTRIES; i++) {
+            baseGen.addEntry(BigInteger.valueOf(i * 10L), now, CRLReason.KEY_COMPROMISE);
+        }
+        baseGen.addExtension(Extension.issuingDistributionPoint, true, idp);
+        baseGen.addExtension(Extension.freshestCRL, false, freshestCrl);
+        X509CRL baseCrl = generate(baseGen, keyPair, BigInteger.valueOf(5));
+        X509CrlHeader base = X509CrlHeader.create(write(baseCrl));
+
+        X509CrlGenerator deltaGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        deltaGen.addPreviousCrl(base);
+        deltaGen.addEntry(BigInteger.valueOf(15), now, CRLReason.SUPERSEDED);
+        deltaGen.addEntry(BigInteger.valueOf(25), now, CRLReason.SUPERSEDED);
+        deltaGen.addExtension(Extension.freshestCRL, false, freshestCrl);
+        deltaGen.setBaseCrl(base);
+        X509CRL deltaCrl = generate(deltaGen, keyPair, BigInteger.valueOf(6));
+
+        deltaCrl.verify(keyPair.getPublic(), KSE.BC);
+        assertThat(deltaCrl.getCriticalExtensionOIDs()).contains(Extension.deltaCRLIndicator.getId(),
+                                                                 Extension.issuingDistributionPoint.getId());
+        assertThat(CRLNumber.getInstance(JcaX509ExtensionUtils.parseExtensionValue(
+                deltaCrl.getExtensionValue(Extension.deltaCRLIndicator.getId()))).getCRLNumber())
+                .isEqualTo(BigInteger.valueOf(5));
+        assertThat(deltaCrl.getExtensionValue(Extension.issuingDistributionPoint.getId()))
+                .isEqualTo(baseCrl.getExtensionValue(Extension.issuingDistributionPoint.getId()));
+        assertThat(deltaCrl.getExtensionValue(Extension.freshestCRL.getId())).isNull();
+        assertThat(deltaCrl.getRevokedCertificates()).extracting(X509CRLEntry::getSerialNumber)
+                                                      .containsExactlyInAnyOrder(BigInteger.valueOf(15),
+                                                                                 BigInteger.valueOf(25));
+    }
+
+    @Test
+    void unorderedPreviousEntriesAreCopied() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        // the entries are written in the order they are added
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CA"), now);
+        for (int i = ENTRIES; i >= 1; i--) {
+            crlBuilder.addCRLEntry(BigInteger.valueOf(i * 10L), now,
+                                   org.bouncycastle.asn1.x509.CRLReason.keyCompromise);
+        }
+        X509CRL unorderedCrl = X509CertUtil.loadCRL(crlBuilder.build(
+                new JcaContentSignerBuilder("SHA256withECDSA").setProvider(KSE.BC)
+                                                              .build(keyPair.getPrivate())).getEncoded());
+
+        X509CrlGenerator otherGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        otherGen.addEntry(BigInteger.valueOf(10), now, CRLReason.SUPERSEDED);
+        otherGen.addEntry(BigInteger.valueOf(15), now, CRLReason.SUPERSEDED);
+        X509CRL otherCrl = generate(otherGen, keyPair, BigInteger.ONE);
+
+        X509CrlGenerator crlGen = new X509CrlGenerator(new X500Name("CN=CA"), now);
+        crlGen.addPreviousCrl(X509CrlHeader.create(write(unorderedCrl)));
+        crlGen.addPreviousCrl(X509CrlHeader.create(write(otherCrl)));
+        X509CRL crl = generate(crlGen, keyPair, BigInteger.TWO);
+
+        crl.verify(keyPair.getPublic(), KSE.BC);
+        assertThat(crl.getRevokedCertificates()).extracting(X509CRLEntry::getSerialNumber)
+                                                .isSorted()
+                                                .hasSize(ENTRIES + 1);
+
+        // the entry of the CRL that was added first is kept
+        assertThat(crl.getRevokedCertificate(BigInteger.valueOf(10)).getRevocationReason())
+                .isEqualTo(CRLReason.KEY_COMPROMISE);
+        assertThat(crl.getRevokedCertificate(BigInteger.valueOf(15)).getRevocationReason())
+                .isEqualTo(CRLReason.SUPERSEDED);
+    }
+
+    private File write(X509CRL crl) throws Exception {
+        File file = File.createTempFile("crl", ".db", tempDir);
+        Files.write(file.toPath(), crl.getEncoded());
+        return file;
+    }
+
+    private static X509CRL generate(X509CrlGenerator crlGen, KeyPair keyPair, BigInteger number) throws Exception {
+        crlGen.addExtension(Extension.cRLNumber, false, new CRLNumber(number));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        crlGen.generate(keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null, baos);
+
+        return X509CertUtil.loadCRL(baos.toByteArray());
+    }
+}
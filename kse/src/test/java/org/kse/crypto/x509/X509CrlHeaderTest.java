@@ -0,0 +1,166 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.X509CRL;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+/**
+ * Unit tests for X509CrlHeader.
+ */
+public class X509CrlHeaderTest extends CryptoTestsBase {
+    private static final int ENTRIES = 100;
+
+    @TempDir
+    File tempDir;
+
+    private KeyPair keyPair;
+    private byte[] encoded;
+
+    @BeforeEach
+    void createCrl() throws Exception {
+        keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date now = new Date();
+
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=CA"), now);
+        crlBuilder.setNextUpdate(new Date(now.getTime() + 24L * 60 * 60 * 1000));
+        crlBuilder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.TEN));
+        for (int i = 0; i < ENTRIES; i++) {
+            crlBuilder.addCRLEntry(BigInteger.valueOf(i + 1), now, CRLReason.keyCompromise);
+        }
+
+        encoded = crlBuilder.build(new JcaContentSignerBuilder("SHA256withECDSA").setProvider(KSE.BC)
+                                                                                 .build(keyPair.getPrivate()))
+                            .getEncoded();
+    }
+
+    @Test
+    void fieldsMatchCrl() throws Exception {
+        X509CRL expected = X509CertUtil.loadCRL(encoded);
+
+        X509CrlHeader crl = X509CrlHeader.create(encoded);
+
+        assertThat(crl.getVersion()).isEqualTo(expected.getVersion());
+        assertThat(crl.getIssuer()).isEqualTo(new X500Name("CN=CA"));
+        assertThat(crl.getThisUpdate()).isEqualTo(expected.getThisUpdate());
+        assertThat(crl.getNextUpdate()).isEqualTo(expected.getNextUpdate());
+        assertThat(crl.getSigAlgOID()).isEqualTo(expected.getSigAlgOID());
+        assertThat(crl.getSigAlgParams()).isEqualTo(expected.getSigAlgParams());
+        assertThat(crl.getNonCriticalExtensionOIDs()).isEqualTo(expected.getNonCriticalExtensionOIDs());
+        assertThat(crl.getExtensionValue(Extension.cRLNumber.getId())).isEqualTo(
+                expected.getExtensionValue(Extension.cRLNumber.getId()));
+        assertThat(crl.getEntries().size()).isEqualTo(ENTRIES);
+    }
+
+    @Test
+    void crlIsReadFromFile() throws Exception {
+        File file = new File(tempDir, "crl.db");
+        Files.write(file.toPath(), encoded);
+
+        X509CrlHeader crl = X509CrlHeader.create(file);
+
+        assertThat(crl.getThisUpdate()).isEqualTo(X509CrlHeader.create(encoded).getThisUpdate());
+        assertThat(crl.getExtensionValue(Extension.cRLNumber.getId())).isEqualTo(
+                X509CrlHeader.create(encoded).getExtensionValue(Extension.cRLNumber.getId()));
+        assertThat(crl.verify(keyPair.getPublic())).isTrue();
+        assertThat(crl.getEntries().size()).isEqualTo(ENTRIES);
+        assertThat(crl.getEncoded()).isEqualTo(encoded);
+
+        try (X509CrlEntryReader entries = crl.readEntries()) {
+            for (int i = 0; i < ENTRIES; i++) {
+                assertThat(entries.next()).isTrue();
+                assertThat(entries.getSerialNumber()).isEqualTo(BigInteger.valueOf(i + 1));
+            }
+            assertThat(entries.next()).isFalse();
+            assertThat(entries.isOrdered()).isTrue();
+        }
+    }
+
+    @Test
+    void pemFileIsDecoded() throws Exception {
+        File file = new File(tempDir, "crl.pem");
+        Files.write(file.toPath(), X509CertUtil.getCrlEncodedX509Pem(X509CrlHeader.create(encoded))
+                                               .getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(X509CrlHeader.create(file).getEncoded()).isEqualTo(encoded);
+    }
+
+    @Test
+    void pemIsDecoded() throws Exception {
+        String pem = X509CertUtil.getCrlEncodedX509Pem(X509CrlHeader.create(encoded));
+
+        X509CrlHeader crl = X509CrlHeader.create(pem.getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(crl.getEncoded()).isEqualTo(encoded);
+    }
+
+    @Test
+    void signatureIsVerifiedOverEncoding() throws Exception {
+        assertThat(X509CrlHeader.create(encoded).verify(keyPair.getPublic())).isTrue();
+
+        KeyPair otherKeyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        assertThat(X509CrlHeader.create(encoded).verify(otherKeyPair.getPublic())).isFalse();
+
+        // change the serial number of the last entry
+        X509CrlHeader crl = X509CrlHeader.create(encoded);
+        X509CrlEntryIndex entries = crl.getEntries();
+        int last = entries.size() - 1;
+        byte[] tampered = encoded.clone();
+        int serialNumberOffset = indexOf(tampered, entries.getEntry(last).getEncoded()) + 4;
+        tampered[serialNumberOffset]++;
+
+        X509CrlHeader tamperedCrl = X509CrlHeader.create(tampered);
+        assertThat(tamperedCrl.getEntries().getSerialNumber(last)).isNotEqualTo(entries.getSerialNumber(last));
+        assertThat(tamperedCrl.verify(keyPair.getPublic())).isFalse();
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i <= data.length - part.length; i++) {
+            boolean found = true;
+            for (int j = 0; j < part.length && found; j++) {
+                found = data[i + j] == part[j];
+            }
+            if (found) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
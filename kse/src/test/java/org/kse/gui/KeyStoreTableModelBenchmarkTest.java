@@ -0,0 +1,143 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+
+/**
+ * Compares loading a large KeyStore into the table model with one thread and
+ * with one thread per processor, including the background computation of all
+ * column values. As generating the KeyStore takes a while, it only runs if the
+ * environment variable KSE_BENCHMARK is set to true.
+ */
+@EnabledIfEnvironmentVariable(named = "KSE_BENCHMARK", matches = "true")
+public class KeyStoreTableModelBenchmarkTest extends CryptoTestsBase {
+    private static final Password PASSWORD = new Password(new char[] { 'p', 'a', 's', 's', 'w', 'o', 'r', 'd' });
+    private static final int ENTRIES = 20000;
+    private static final int RUNS = 3;
+
+    @AfterEach
+    void resetThreads() {
+        KeyStoreTableModel.setThreads(0);
+    }
+
+    @Test
+    void parallelColumnComputation() throws Exception {
+        KeyStoreHistory history = new KeyStoreHistory(createKeyStore(), "benchmark.jks", PASSWORD, null);
+        KeyStoreTableColumns columns = allColumns();
+
+        KeyStoreTableModel.setThreads(1);
+        KeyStoreTableModel sequentialModel = null;
+        long sequentialNanos = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            sequentialModel = new KeyStoreTableModel(columns, 30);
+            sequentialNanos = Math.min(sequentialNanos, timeLoad(sequentialModel, history));
+        }
+
+        KeyStoreTableModel.setThreads(0);
+        KeyStoreTableModel parallelModel = null;
+        long parallelNanos = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            parallelModel = new KeyStoreTableModel(columns, 30);
+            parallelNanos = Math.min(parallelNanos, timeLoad(parallelModel, history));
+        }
+
+        System.out.printf("Loading %d entries: 1 thread %d ms, %d threads %d ms, speedup %.2f%n", ENTRIES,
+                          sequentialNanos / 1_000_000, Runtime.getRuntime().availableProcessors(),
+                          parallelNanos / 1_000_000, (double) sequentialNanos / parallelNanos);
+
+        // parallel computation must not change the content or the order of the rows
+        assertThat(parallelModel.getRowCount()).isEqualTo(ENTRIES);
+        for (int row = 0; row < sequentialModel.getRowCount(); row++) {
+            for (int col = 0; col < sequentialModel.getColumnCount(); col++) {
+                assertThat(parallelModel.getValueAt(row, col)).isEqualTo(sequentialModel.getValueAt(row, col));
+            }
+        }
+    }
+
+    private static long timeLoad(KeyStoreTableModel model, KeyStoreHistory history) throws Exception {
+        long start = System.nanoTime();
+        model.load(history);
+        assertThat(KeyStoreTableModel.awaitPrefetch(5, TimeUnit.MINUTES)).isTrue();
+        return System.nanoTime() - start;
+    }
+
+    private static KeyStore createKeyStore() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date validityStart = Date.from(Instant.now());
+        Date validityEnd = Date.from(Instant.now().plus(365, ChronoUnit.DAYS));
+
+        KeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        for (int i = 0; i < ENTRIES; i++) {
+            keyStore.setCertificateEntry("entry" + i,
+                                         createSelfSignedCertificate(keyPair, "CN=Entry " + i + ",O=Benchmark",
+                                                                     validityStart, validityEnd, i + 1));
+        }
+
+        // reload, so that the entries are decoded by the JKS provider just like when opening a file
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        keyStore.store(baos, PASSWORD.toCharArray());
+        return KeyStoreUtil.load(new ByteArrayInputStream(baos.toByteArray()), PASSWORD, KeyStoreType.JKS);
+    }
+
+    private static KeyStoreTableColumns allColumns() {
+        KeyStoreTableColumns columns = new KeyStoreTableColumns();
+        columns.setEnableEntryName(true);
+        columns.setEnableAlgorithm(true);
+        columns.setEnableKeySize(true);
+        columns.setEnableCurve(true);
+        columns.setEnableCertificateValidityStart(true);
+        columns.setEnableCertificateExpiry(true);
+        columns.setEnableSKI(true);
+        columns.setEnableAKI(true);
+        columns.setEnableIssuerDN(true);
+        columns.setEnableSubjectDN(true);
+        columns.setEnableIssuerCN(true);
+        columns.setEnableSubjectCN(true);
+        columns.setEnableIssuerO(true);
+        columns.setEnableSubjectO(true);
+        columns.setEnableSerialNumberHex(true);
+        columns.setEnableSerialNumberDec(true);
+        columns.setEnableFingerprint(true);
+        columns.setFingerprintAlg(DigestType.SHA256);
+        return columns;
+    }
+}
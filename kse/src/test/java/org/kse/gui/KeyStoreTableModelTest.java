@@ -0,0 +1,210 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.history.KeyStoreState;
+
+/**
+ * Unit tests for the incremental updates and the parallel column computation
+ * of KeyStoreTableModel.
+ */
+public class KeyStoreTableModelTest extends CryptoTestsBase {
+    private static final Password PASSWORD = new Password(new char[] { 'p', 'a', 's', 's', 'w', 'o', 'r', 'd' });
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int ENTRIES = 20;
+
+    // enough rows to be completed in parallel, but not lazily
+    private static final int PARALLEL_ENTRIES = 600;
+
+    private final KeyStoreTableColumns columns = new KeyStoreTableColumns();
+
+    @Test
+    void changesFireRowEvents() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        KeyStoreHistory history = createHistory(keyPair, new Date(System.currentTimeMillis() + DAY));
+
+        KeyStoreTableModel model = new KeyStoreTableModel(columns, 0);
+        model.load(history);
+        assertThat(model.getRowCount()).isEqualTo(ENTRIES);
+
+        int entry10Row = getRow(model, "entry10");
+        int entry3Row = getRow(model, "entry3");
+        int entry5Row = getRow(model, "entry5");
+        assertThat(entry10Row).isLessThan(entry3Row);
+        assertThat(entry3Row).isLessThan(entry5Row);
+
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState next = state.createBasisForNextState(null);
+        KeyStore keyStore = next.getKeyStore();
+        keyStore.deleteEntry("entry5");
+        keyStore.setCertificateEntry("entry10a", createCert(keyPair, 100, new Date(System.currentTimeMillis() + DAY)));
+        keyStore.setCertificateEntry("entry3", createCert(keyPair, 101, new Date(System.currentTimeMillis() + DAY)));
+        state.append(next);
+
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        model.load(history);
+
+        // the inserted row shifts the rows after it by one
+        assertThat(events).hasSize(3);
+        assertEvent(events.get(0), TableModelEvent.INSERT, entry10Row + 1);
+        assertEvent(events.get(1), TableModelEvent.UPDATE, entry3Row + 1);
+        assertEvent(events.get(2), TableModelEvent.DELETE, entry5Row + 1);
+
+        assertThat(model.getRowCount()).isEqualTo(ENTRIES);
+        assertThat(getRow(model, "entry10a")).isEqualTo(entry10Row + 1);
+        assertThat(getRow(model, "entry5")).isEqualTo(-1);
+    }
+
+    @Test
+    void unchangedStateFiresNoEvents() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        KeyStoreHistory history = createHistory(keyPair, new Date(System.currentTimeMillis() + DAY));
+
+        KeyStoreTableModel model = new KeyStoreTableModel(columns, 0);
+        model.load(history);
+
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        model.load(history);
+
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void expirationOfUnchangedRowsIsRefreshed() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        Date expiry = new Date(System.currentTimeMillis() + DAY / 2);
+        KeyStoreHistory history = createHistory(keyPair, new Date(System.currentTimeMillis() + DAY));
+
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState next = state.createBasisForNextState(null);
+        next.getKeyStore().setCertificateEntry("expiring", createCert(keyPair, 100, expiry));
+        state.append(next);
+
+        KeyStoreTableModel model = new KeyStoreTableModel(columns, 0);
+        model.load(history);
+        int expiringRow = getRow(model, "expiring");
+        assertThat(model.getValueAt(expiringRow, 2)).isEqualTo(KeyStoreTableModel.Expiration.NOT_EXPIRED);
+
+        // the first load of the same state after the expiry
+        model.setClock(Clock.offset(Clock.systemDefaultZone(), Duration.ofMillis(DAY / 2 + 1000)));
+
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        model.load(history);
+
+        assertThat(events).hasSize(1);
+        assertEvent(events.get(0), TableModelEvent.UPDATE, expiringRow);
+        assertThat(model.getValueAt(expiringRow, 2)).isEqualTo(KeyStoreTableModel.Expiration.EXPIRED);
+    }
+
+    @Test
+    void parallelCompletionKeepsRowOrder() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        KeyStoreHistory history = createHistory(keyPair, new Date(System.currentTimeMillis() + DAY),
+                                                PARALLEL_ENTRIES);
+
+        KeyStoreTableColumns derivedColumns = new KeyStoreTableColumns();
+        derivedColumns.setEnableSubjectCN(true);
+        derivedColumns.setEnableSerialNumberDec(true);
+
+        KeyStoreTableModel sequentialModel = new KeyStoreTableModel(derivedColumns, 0);
+        KeyStoreTableModel parallelModel = new KeyStoreTableModel(derivedColumns, 0);
+        try {
+            KeyStoreTableModel.setThreads(1);
+            sequentialModel.load(history);
+
+            KeyStoreTableModel.setThreads(4);
+            parallelModel.load(history);
+        } finally {
+            KeyStoreTableModel.setThreads(0);
+        }
+
+        assertThat(parallelModel.getRowCount()).isEqualTo(PARALLEL_ENTRIES);
+        for (int row = 0; row < sequentialModel.getRowCount(); row++) {
+            for (int col = 0; col < sequentialModel.getColumnCount(); col++) {
+                assertThat(parallelModel.getValueAt(row, col)).as("row %d, column %d", row, col)
+                                                              .isEqualTo(sequentialModel.getValueAt(row, col));
+            }
+
+            // the values derived from the certificate belong to the entry of the row
+            String alias = (String) parallelModel.getValueAt(row, derivedColumns.colIndexEntryName());
+            int serial = Integer.parseInt(alias.substring("entry".length())) + 1;
+            assertThat(parallelModel.getValueAt(row, derivedColumns.colIndexSerialNumberDec())).isEqualTo(
+                    Integer.toString(serial));
+            assertThat(parallelModel.getValueAt(row, derivedColumns.colIndexSubjectCN())).isEqualTo(
+                    "Entry " + serial);
+        }
+    }
+
+    private int getRow(KeyStoreTableModel model, String alias) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (alias.equals(model.getValueAt(row, columns.colIndexEntryName()))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertEvent(TableModelEvent event, int type, int row) {
+        assertThat(event.getType()).isEqualTo(type);
+        assertThat(event.getFirstRow()).isEqualTo(row);
+        assertThat(event.getLastRow()).isEqualTo(row);
+    }
+
+    private static KeyStoreHistory createHistory(KeyPair keyPair, Date expiry) throws Exception {
+        return createHistory(keyPair, expiry, ENTRIES);
+    }
+
+    private static KeyStoreHistory createHistory(KeyPair keyPair, Date expiry, int entries) throws Exception {
+        KeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        for (int i = 0; i < entries; i++) {
+            keyStore.setCertificateEntry("entry" + i, createCert(keyPair, i + 1, expiry));
+        }
+        return new KeyStoreHistory(keyStore, "test.jks", PASSWORD, null);
+    }
+
+    private static X509Certificate createCert(KeyPair keyPair, int serial, Date expiry) throws Exception {
+        return createSelfSignedCertificate(keyPair, "CN=Entry " + serial, new Date(System.currentTimeMillis() - DAY),
+                                           expiry, serial);
+    }
+}
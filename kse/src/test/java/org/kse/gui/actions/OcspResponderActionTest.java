@@ -0,0 +1,117 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.CRLReason;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CrlEntryIndex;
+import org.kse.crypto.x509.X509CrlGenerator;
+import org.kse.crypto.x509.X509CrlHeader;
+
+/**
+ * Unit tests for loading the revoked certificates of the OCSP responder.
+ */
+public class OcspResponderActionTest extends CryptoTestsBase {
+
+    @TempDir
+    File tempDir;
+
+    private KeyPair keyPair;
+    private X509Certificate caCert;
+    private File baseFile;
+
+    @BeforeEach
+    void createBaseCrl() throws Exception {
+        keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        caCert = createSelfSignedCertificate(keyPair, "CN=CA", 1);
+
+        X509CrlGenerator baseGen = new X509CrlGenerator(new X500Name("CN=CA"), new Date());
+        baseGen.addEntry(BigInteger.valueOf(10), new Date(), CRLReason.KEY_COMPROMISE);
+        baseGen.addEntry(BigInteger.valueOf(20), new Date(), CRLReason.SUPERSEDED);
+        baseGen.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(5)));
+
+        baseFile = new File(tempDir, "1.db");
+        generate(baseGen, baseFile);
+    }
+
+    @Test
+    void deltaCrlEntriesAreMerged() throws Exception {
+        writeDeltaCrl(BigInteger.valueOf(30));
+
+        X509CrlEntryIndex revokedEntries = OcspResponderAction.loadRevokedEntries(baseFile, caCert);
+
+        assertThat(revokedEntries.size()).isEqualTo(3);
+        assertThat(revokedEntries.indexOf(BigInteger.valueOf(10))).isNotEqualTo(-1);
+        assertThat(revokedEntries.indexOf(BigInteger.valueOf(30))).isNotEqualTo(-1);
+    }
+
+    @Test
+    void deltaCrlOfAnotherBaseCrlIsIgnored() throws Exception {
+        writeDeltaCrl(BigInteger.valueOf(30));
+
+        // a new base CRL makes the stored delta CRL stale
+        X509CrlGenerator baseGen = new X509CrlGenerator(new X500Name("CN=CA"), new Date());
+        baseGen.addEntry(BigInteger.valueOf(10), new Date(), CRLReason.KEY_COMPROMISE);
+        baseGen.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(7)));
+        generate(baseGen, baseFile);
+
+        X509CrlEntryIndex revokedEntries = OcspResponderAction.loadRevokedEntries(baseFile, caCert);
+
+        assertThat(revokedEntries.size()).isEqualTo(1);
+        assertThat(revokedEntries.indexOf(BigInteger.valueOf(30))).isEqualTo(-1);
+    }
+
+    private void writeDeltaCrl(BigInteger serialNumber) throws Exception {
+        X509CrlHeader baseCrl = X509CrlHeader.create(Files.readAllBytes(baseFile.toPath()));
+
+        X509CrlGenerator deltaGen = new X509CrlGenerator(new X500Name("CN=CA"), new Date());
+        deltaGen.addEntry(serialNumber, new Date(), CRLReason.KEY_COMPROMISE);
+        deltaGen.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(6)));
+        deltaGen.setBaseCrl(baseCrl, baseCrl.getEntries());
+
+        generate(deltaGen, SignCrlAction.getFileDelta(caCert, baseFile));
+    }
+
+    private void generate(X509CrlGenerator crlGen, File file) throws Exception {
+        try (OutputStream os = new FileOutputStream(file)) {
+            crlGen.generate(keyPair.getPrivate(), SignatureType.SHA256_ECDSA, null, os);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyStore;
+import java.util.Collections;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+
+/**
+ * Unit tests for CopyOnWriteKeyStore.
+ */
+public class CopyOnWriteKeyStoreTest extends CryptoTestsBase {
+    private static final char[] PASSWORD = { 'p', 'a', 's', 's', 'w', 'o', 'r', 'd' };
+
+    @ParameterizedTest
+    // @formatter:off
+    @CsvSource({
+            "JCEKS",
+            "PKCS12",
+            "BKS",
+            "UBER",
+            "BCFKS",
+    })
+    // @formatter:on
+    void snapshotsAreIndependent(KeyStoreType keyStoreType) throws Exception {
+        KeyStore base = createKeyStore(keyStoreType, 10);
+
+        CopyOnWriteKeyStore first = CopyOnWriteKeyStore.snapshot(base);
+        CopyOnWriteKeyStore second = CopyOnWriteKeyStore.snapshot(first);
+
+        second.deleteEntry("key1");
+        second.setKeyEntry("new", new SecretKeySpec(new byte[16], "AES"), PASSWORD, null);
+
+        assertThat(first.size()).isEqualTo(10);
+        assertThat(first.containsAlias("key1")).isTrue();
+        assertThat(first.containsAlias("new")).isFalse();
+
+        assertThat(second.size()).isEqualTo(10);
+        assertThat(second.containsAlias("key1")).isFalse();
+        assertThat(second.containsAlias("new")).isTrue();
+        assertThat(Collections.list(second.aliases())).hasSize(10).contains("new").doesNotContain("key1");
+        assertThat(second.getChangeCount()).isEqualTo(2);
+
+        assertThat(base.size()).isEqualTo(10);
+    }
+
+    @ParameterizedTest
+    // @formatter:off
+    @CsvSource({
+            "JCEKS",
+            "PKCS12",
+            "BKS",
+            "UBER",
+            "BCFKS",
+    })
+    // @formatter:on
+    void storeAppliesChanges(KeyStoreType keyStoreType) throws Exception {
+        CopyOnWriteKeyStore snapshot = CopyOnWriteKeyStore.snapshot(createKeyStore(keyStoreType, 5));
+
+        snapshot.deleteEntry("key2");
+        snapshot.setKeyEntry("key3", new SecretKeySpec(new byte[32], "AES"), PASSWORD, null);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        snapshot.store(baos, PASSWORD);
+
+        KeyStore reloaded = KeyStoreUtil.create(keyStoreType);
+        reloaded.load(new ByteArrayInputStream(baos.toByteArray()), PASSWORD);
+
+        assertThat(reloaded.size()).isEqualTo(4);
+        assertThat(reloaded.containsAlias("key2")).isFalse();
+        assertThat(reloaded.getKey("key3", PASSWORD).getEncoded()).hasSize(32);
+    }
+
+    private static KeyStore createKeyStore(KeyStoreType keyStoreType, int entries) throws Exception {
+        KeyStore keyStore = KeyStoreUtil.create(keyStoreType);
+
+        for (int i = 0; i < entries; i++) {
+            keyStore.setKeyEntry("key" + i, new SecretKeySpec(new byte[16], "AES"), PASSWORD, null);
+        }
+
+        return keyStore;
+    }
+}
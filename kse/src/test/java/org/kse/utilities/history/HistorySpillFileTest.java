@@ -0,0 +1,94 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoException;
+
+/**
+ * Unit tests for HistorySpillFile.
+ */
+public class HistorySpillFileTest {
+
+    @Test
+    void recordsAreEncryptedAndReadBack() throws Exception {
+        HistorySpillFile spillFile = new HistorySpillFile();
+        byte[] first = "first state".getBytes(StandardCharsets.UTF_8);
+        byte[] second = new byte[100000];
+
+        try {
+            HistorySpillFile.Record firstRecord = spillFile.write(first);
+            HistorySpillFile.Record secondRecord = spillFile.write(second);
+
+            // AES-GCM appends a 16 byte tag
+            assertThat(firstRecord.getLength()).isEqualTo(first.length + 16);
+
+            assertThat(spillFile.read(secondRecord)).isEqualTo(second);
+            assertThat(spillFile.read(firstRecord)).isEqualTo(first);
+
+            try (RandomAccessFile raf = new RandomAccessFile(spillFile.getFile(), "r")) {
+                byte[] written = new byte[first.length];
+                raf.readFully(written);
+                assertThat(written).isNotEqualTo(first);
+            }
+        } finally {
+            spillFile.close();
+        }
+    }
+
+    @Test
+    void corruptedRecordIsRejected() throws Exception {
+        HistorySpillFile spillFile = new HistorySpillFile();
+
+        try {
+            HistorySpillFile.Record record = spillFile.write("state".getBytes(StandardCharsets.UTF_8));
+
+            try (RandomAccessFile raf = new RandomAccessFile(spillFile.getFile(), "rw")) {
+                int b = raf.read();
+                raf.seek(0);
+                raf.write(b ^ 0x01);
+            }
+
+            assertThatThrownBy(() -> spillFile.read(record)).isInstanceOf(CryptoException.class);
+        } finally {
+            spillFile.close();
+        }
+    }
+
+    @Test
+    void closeDeletesFile() throws Exception {
+        HistorySpillFile spillFile = new HistorySpillFile();
+        HistorySpillFile.Record record = spillFile.write(new byte[10]);
+        File file = spillFile.getFile();
+        assertThat(file).exists();
+
+        spillFile.close();
+
+        assertThat(file).doesNotExist();
+        assertThatThrownBy(() -> spillFile.read(record)).isInstanceOf(CryptoException.class);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.gui.passwordmanager.Password;
+
+/**
+ * Unit tests for the memory budget of KeyStoreHistory.
+ */
+public class KeyStoreHistoryTest extends CryptoTestsBase {
+    private static final char[] PASSWORD = { 'p', 'a', 's', 's', 'w', 'o', 'r', 'd' };
+    private static final int EDITS = 5;
+
+    @Test
+    void leastRecentlyUsedStatesBeyondCountAreSpilled() throws Exception {
+        KeyStoreHistory history = createHistory();
+
+        try {
+            history.setBudget(2, 0);
+
+            // the initial state is the shared base and the last state is current, the others are candidates
+            List<KeyStoreState> states = getStates(history);
+            assertThat(states.get(0).isSpilled()).isFalse();
+            assertThat(states.get(1).isSpilled()).isTrue();
+            assertThat(states.get(2).isSpilled()).isTrue();
+            assertThat(states.get(3).isSpilled()).isFalse();
+            assertThat(states.get(4).isSpilled()).isFalse();
+            assertThat(states.get(EDITS).isSpilled()).isFalse();
+            assertThat(history.getSpillFile().getFile()).exists();
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void statesBeyondMemoryAreSpilled() throws Exception {
+        KeyStoreHistory history = createHistory();
+
+        try {
+            history.setBudget(0, 1);
+
+            List<KeyStoreState> states = getStates(history);
+            assertThat(states.subList(1, EDITS)).allMatch(KeyStoreState::isSpilled);
+            assertThat(states.get(0).isSpilled()).isFalse();
+            assertThat(states.get(EDITS).isSpilled()).isFalse();
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void spilledStateIsRestoredOnSharedBase() throws Exception {
+        KeyStoreHistory history = createHistory();
+
+        try {
+            history.setBudget(1, 0);
+
+            List<KeyStoreState> states = getStates(history);
+            KeyStoreState spilled = states.get(2);
+            assertThat(spilled.isSpilled()).isTrue();
+
+            KeyStore keyStore = spilled.getKeyStore();
+            assertThat(spilled.isSpilled()).isFalse();
+            assertThat(keyStore).isInstanceOf(CopyOnWriteKeyStore.class);
+            assertThat(((CopyOnWriteKeyStore) keyStore).getBase()).isSameAs(states.get(0).getLoadedKeyStore());
+
+            assertThat(keyStore.size()).isEqualTo(20);
+            assertThat(keyStore.containsAlias("key0")).isFalse();
+            assertThat(keyStore.containsAlias("key1")).isFalse();
+            assertThat(keyStore.containsAlias("key2")).isTrue();
+            assertThat(keyStore.getKey("new1", PASSWORD).getEncoded()).hasSize(32);
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void closeDeletesSpillFile() throws Exception {
+        KeyStoreHistory history = createHistory();
+        history.setBudget(1, 0);
+        File file = history.getSpillFile().getFile();
+        assertThat(file).exists();
+
+        history.close();
+
+        assertThat(file).doesNotExist();
+    }
+
+    private static KeyStoreHistory createHistory() throws Exception {
+        KeyStore keyStore = KeyStoreUtil.create(KeyStoreType.PKCS12);
+
+        for (int i = 0; i < 20; i++) {
+            keyStore.setKeyEntry("key" + i, new SecretKeySpec(new byte[16], "AES"), PASSWORD, null);
+        }
+
+        KeyStoreHistory history = new KeyStoreHistory(keyStore, "test", new Password(PASSWORD.clone()), null);
+        KeyStoreState state = history.getCurrentState();
+
+        for (int i = 0; i < EDITS; i++) {
+            KeyStoreState next = state.createBasisForNextState(null);
+            next.getKeyStore().deleteEntry("key" + i);
+            next.getKeyStore().setKeyEntry("new" + i, new SecretKeySpec(new byte[32], "AES"), PASSWORD, null);
+            state.append(next);
+            state = next;
+        }
+
+        return history;
+    }
+
+    private static List<KeyStoreState> getStates(KeyStoreHistory history) {
+        List<KeyStoreState> states = new ArrayList<>();
+        for (KeyStoreState state = history.getInitialState(); state != null; state = state.nextState()) {
+            states.add(state);
+        }
+        return states;
+    }
+}
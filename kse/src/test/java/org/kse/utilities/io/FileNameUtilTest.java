@@ -0,0 +1,52 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for FileNameUtil.
+ */
+class FileNameUtilTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void resolveFiles() throws Exception {
+        for (String name : new String[] { "b.zip", "a.zip", "c.txt" }) {
+            Files.createFile(new File(tempDir, name).toPath());
+        }
+        Files.createDirectory(new File(tempDir, "sub.zip").toPath());
+
+        assertThat(FileNameUtil.resolveFiles(tempDir.getPath())).extracting(File::getName)
+                                                                 .containsExactly("a.zip", "b.zip", "c.txt");
+        assertThat(FileNameUtil.resolveFiles(new File(tempDir, "*.zip").getPath())).extracting(File::getName)
+                                                                                  .containsExactly("a.zip", "b.zip");
+        assertThat(FileNameUtil.resolveFiles(new File(tempDir, "c.txt").getPath())).containsExactly(
+                new File(tempDir, "c.txt"));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ProgressInputStream.
+ */
+class ProgressInputStreamTest {
+
+    @Test
+    void reportsBytesRead() throws Exception {
+        List<Long> progress = new ArrayList<>();
+
+        try (ProgressInputStream pis = new ProgressInputStream(new ByteArrayInputStream(new byte[100]),
+                                                               progress::add)) {
+            assertThat(pis.read()).isZero();
+            assertThat(pis.read(new byte[50])).isEqualTo(50);
+            assertThat(pis.skip(9)).isEqualTo(9);
+
+            pis.mark(100);
+            assertThat(pis.read(new byte[20])).isEqualTo(20);
+            pis.reset();
+            assertThat(pis.getBytesRead()).isEqualTo(60);
+
+            assertThat(pis.readAllBytes()).hasSize(40);
+            assertThat(pis.read()).isEqualTo(-1);
+            assertThat(pis.getBytesRead()).isEqualTo(100);
+        }
+
+        assertThat(progress).startsWith(1L, 51L, 60L, 80L).endsWith(100L).isSorted().hasSizeGreaterThan(4);
+    }
+
+    @Test
+    void interruptedThreadStopsReading() throws Exception {
+        CountDownLatch firstRead = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // a stream that never ends, like a parser working through a huge file
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+        };
+
+        Thread reader = new Thread(() -> {
+            try (ProgressInputStream pis = new ProgressInputStream(endless, read -> firstRead.countDown())) {
+                byte[] buffer = new byte[1024];
+                while (true) {
+                    pis.read(buffer);
+                }
+            } catch (Throwable ex) {
+                failure.set(ex);
+            }
+        });
+        reader.start();
+
+        firstRead.await();
+        reader.interrupt();
+        reader.join(10000);
+
+        assertThat(reader.isAlive()).isFalse();
+        assertThat(failure.get()).isInstanceOf(InterruptedIOException.class);
+    }
+
+    @Test
+    void interruptedBeforeFirstRead() {
+        ProgressInputStream pis = new ProgressInputStream(new ByteArrayInputStream(new byte[10]), read -> { });
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(pis::read).isInstanceOf(InterruptedIOException.class);
+        } finally {
+            // clear the flag for the next test
+            Thread.interrupted();
+        }
+    }
+}